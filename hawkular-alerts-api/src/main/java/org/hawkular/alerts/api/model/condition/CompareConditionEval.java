@@ -32,25 +32,28 @@ public class CompareConditionEval extends ConditionEval {
     @JsonInclude(Include.NON_NULL)
     private CompareCondition condition;
 
-    @JsonInclude(Include.NON_NULL)
-    private Double value1;
+    /*
+        Kept unboxed. A missing value is flagged apart, a NaN datum keeps its NaN value
+     */
+    private double value1 = Double.NaN;
 
-    @JsonInclude(Include.NON_NULL)
-    private Double value2;
+    private boolean value1Missing;
+
+    private double value2 = Double.NaN;
+
+    private boolean value2Missing;
 
     public CompareConditionEval() {
         super(false, 0);
         this.condition = null;
-        this.value1 = null;
-        this.value2 = null;
     }
 
     public CompareConditionEval(CompareCondition condition, NumericData data1, NumericData data2) {
-        super(condition.match(data1.getValue(), data2.getValue()),
+        super(condition.match(data1.doubleValue(), data2.doubleValue()),
                 ((data1.getTimestamp() > data1.getTimestamp()) ? data1.getTimestamp() : data2.getTimestamp()));
         this.condition = condition;
-        this.value1 = data1.getValue();
-        this.value2 = data2.getValue();
+        this.value1 = data1.doubleValue();
+        this.value2 = data2.doubleValue();
     }
 
     public CompareCondition getCondition() {
@@ -61,20 +64,24 @@ public class CompareConditionEval extends ConditionEval {
         this.condition = condition;
     }
 
+    @JsonInclude(Include.NON_NULL)
     public Double getValue1() {
-        return value1;
+        return value1Missing ? null : value1;
     }
 
     public void setValue1(Double value1) {
-        this.value1 = value1;
+        this.value1Missing = (null == value1);
+        this.value1 = value1Missing ? Double.NaN : value1.doubleValue();
     }
 
+    @JsonInclude(Include.NON_NULL)
     public Double getValue2() {
-        return value2;
+        return value2Missing ? null : value2;
     }
 
     public void setValue2(Double value2) {
-        this.value2 = value2;
+        this.value2Missing = (null == value2);
+        this.value2 = value2Missing ? Double.NaN : value2.doubleValue();
     }
 
     @Override
@@ -111,9 +118,9 @@ public class CompareConditionEval extends ConditionEval {
 
         if (condition != null ? !condition.equals(that.condition) : that.condition != null)
             return false;
-        if (value1 != null ? !value1.equals(that.value1) : that.value1 != null)
+        if (value1Missing != that.value1Missing || Double.compare(value1, that.value1) != 0)
             return false;
-        if (value2 != null ? !value2.equals(that.value2) : that.value2 != null)
+        if (value2Missing != that.value2Missing || Double.compare(value2, that.value2) != 0)
             return false;
 
         return true;
@@ -123,8 +130,8 @@ public class CompareConditionEval extends ConditionEval {
     public int hashCode() {
         int result = super.hashCode();
         result = 31 * result + (condition != null ? condition.hashCode() : 0);
-        result = 31 * result + (value1 != null ? value1.hashCode() : 0);
-        result = 31 * result + (value2 != null ? value2.hashCode() : 0);
+        result = 31 * result + (value1Missing ? 0 : Double.hashCode(value1));
+        result = 31 * result + (value2Missing ? 0 : Double.hashCode(value2));
         return result;
     }
 
@@ -133,8 +140,8 @@ public class CompareConditionEval extends ConditionEval {
         return "CompareConditionEval [evalTimestamp=" + evalTimestamp + ", " +
                 "dataTimestamp=" + dataTimestamp + ", " +
                 "condition=" + condition + ", " +
-                "value1=" + value1 + ", " +
-                "value2=" + value2 + "]";
+                "value1=" + getValue1() + ", " +
+                "value2=" + getValue2() + "]";
     }
 
 }
@@ -32,17 +32,21 @@ public class ThresholdConditionEval extends ConditionEval {
     @JsonInclude(Include.NON_NULL)
     private ThresholdCondition condition;
 
-    @JsonInclude(Include.NON_NULL)
-    private Double value;
+    /*
+        Kept unboxed. A missing value is flagged apart, a NaN datum keeps its NaN value
+     */
+    private double value = Double.NaN;
+
+    private boolean valueMissing;
 
     public ThresholdConditionEval() {
         super();
     }
 
     public ThresholdConditionEval(ThresholdCondition condition, NumericData data) {
-        super(condition.match(data.getValue()), data.getTimestamp());
+        super(condition.match(data.doubleValue()), data.getTimestamp());
         this.condition = condition;
-        this.value = data.getValue();
+        this.value = data.doubleValue();
     }
 
     public ThresholdCondition getCondition() {
@@ -53,12 +57,14 @@ public class ThresholdConditionEval extends ConditionEval {
         this.condition = condition;
     }
 
+    @JsonInclude(Include.NON_NULL)
     public Double getValue() {
-        return value;
+        return valueMissing ? null : value;
     }
 
     public void setValue(Double value) {
-        this.value = value;
+        this.valueMissing = (null == value);
+        this.value = valueMissing ? Double.NaN : value.doubleValue();
     }
 
     @Override
@@ -90,7 +96,8 @@ public class ThresholdConditionEval extends ConditionEval {
         ThresholdConditionEval that = (ThresholdConditionEval) o;
 
         if (condition != null ? !condition.equals(that.condition) : that.condition != null) return false;
-        if (value != null ? !value.equals(that.value) : that.value != null) return false;
+        if (valueMissing != that.valueMissing) return false;
+        if (Double.compare(value, that.value) != 0) return false;
 
         return true;
     }
@@ -99,7 +106,7 @@ public class ThresholdConditionEval extends ConditionEval {
     public int hashCode() {
         int result = super.hashCode();
         result = 31 * result + (condition != null ? condition.hashCode() : 0);
-        result = 31 * result + (value != null ? value.hashCode() : 0);
+        result = 31 * result + (valueMissing ? 0 : Double.hashCode(value));
         return result;
     }
 
@@ -108,7 +115,7 @@ public class ThresholdConditionEval extends ConditionEval {
         return "ThresholdConditionEval [evalTimestamp=" + evalTimestamp + ", " +
                 "dataTimestamp=" + dataTimestamp + ", " +
                 "condition=" + condition + ", " +
-                "value=" + value + "]";
+                "value=" + getValue() + "]";
     }
 
 }
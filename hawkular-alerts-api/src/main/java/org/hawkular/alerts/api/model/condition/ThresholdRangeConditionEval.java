@@ -32,19 +32,22 @@ public class ThresholdRangeConditionEval extends ConditionEval {
     @JsonInclude(Include.NON_NULL)
     private ThresholdRangeCondition condition;
 
-    @JsonInclude(Include.NON_NULL)
-    private Double value;
+    /*
+        Kept unboxed. A missing value is flagged apart, a NaN datum keeps its NaN value
+     */
+    private double value = Double.NaN;
+
+    private boolean valueMissing;
 
     public ThresholdRangeConditionEval() {
         super(false, 0);
         this.condition = null;
-        this.value = null;
     }
 
     public ThresholdRangeConditionEval(ThresholdRangeCondition condition, NumericData data) {
-        super(condition.match(data.getValue()), data.getTimestamp());
+        super(condition.match(data.doubleValue()), data.getTimestamp());
         this.condition = condition;
-        this.value = data.getValue();
+        this.value = data.doubleValue();
     }
 
     public ThresholdRangeCondition getCondition() {
@@ -55,12 +58,14 @@ public class ThresholdRangeConditionEval extends ConditionEval {
         this.condition = condition;
     }
 
+    @JsonInclude(Include.NON_NULL)
     public Double getValue() {
-        return value;
+        return valueMissing ? null : value;
     }
 
     public void setValue(Double value) {
-        this.value = value;
+        this.valueMissing = (null == value);
+        this.value = valueMissing ? Double.NaN : value.doubleValue();
     }
 
     @Override
@@ -92,7 +97,8 @@ public class ThresholdRangeConditionEval extends ConditionEval {
         ThresholdRangeConditionEval that = (ThresholdRangeConditionEval) o;
 
         if (condition != null ? !condition.equals(that.condition) : that.condition != null) return false;
-        if (value != null ? !value.equals(that.value) : that.value != null) return false;
+        if (valueMissing != that.valueMissing) return false;
+        if (Double.compare(value, that.value) != 0) return false;
 
         return true;
     }
@@ -101,7 +107,7 @@ public class ThresholdRangeConditionEval extends ConditionEval {
     public int hashCode() {
         int result = super.hashCode();
         result = 31 * result + (condition != null ? condition.hashCode() : 0);
-        result = 31 * result + (value != null ? value.hashCode() : 0);
+        result = 31 * result + (valueMissing ? 0 : Double.hashCode(value));
         return result;
     }
 
@@ -110,7 +116,7 @@ public class ThresholdRangeConditionEval extends ConditionEval {
         return "ThresholdRangeConditionEval [evalTimestamp=" + evalTimestamp + ", " +
                 "dataTimestamp=" + dataTimestamp + ", " +
                 "condition=" + condition + ", " +
-                "value=" + value + "]";
+                "value=" + getValue() + "]";
     }
 
 }
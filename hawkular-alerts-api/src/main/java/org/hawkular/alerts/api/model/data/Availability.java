@@ -56,7 +56,8 @@ public class Availability extends Data {
 
     @Override
     public String toString() {
-        return "Availability [id=" + id + ", timestamp=" + timestamp + ", value=" + value + "]";
+        return "Availability [tenantId=" + tenantId + ", id=" + id + ", timestamp=" + timestamp + ", value=" + value +
+                "]";
     }
 
     @Override
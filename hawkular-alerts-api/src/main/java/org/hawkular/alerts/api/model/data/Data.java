@@ -36,6 +36,9 @@ public abstract class Data implements Comparable<Data> {
         AVAILABILITY, NUMERIC, STRING
     };
 
+    @JsonInclude(Include.NON_NULL)
+    protected String tenantId;
+
     @JsonInclude
     protected String id;
 
@@ -68,6 +71,29 @@ public abstract class Data implements Comparable<Data> {
         this.type = type;
     }
 
+    /**
+     * @return the tenant of the data, null if the data is not scoped to a tenant.
+     */
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    /**
+     * @param tenantId the tenant of the data, null to be evaluated by the Conditions of any tenant.
+     */
+    public void setTenantId(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    /**
+     * @param tenantId the tenant of a Condition
+     * @return true if the data can be evaluated by the Conditions of the tenant. Data not scoped to a tenant is
+     * evaluated by the Conditions of any tenant.
+     */
+    public boolean matchesTenant(String tenantId) {
+        return null == this.tenantId || this.tenantId.equals(tenantId);
+    }
+
     public String getId() {
         return id;
     }
@@ -92,6 +118,13 @@ public abstract class Data implements Comparable<Data> {
     }
 
     public void setValue(Object value) {
+        assignValue(value);
+    }
+
+    /*
+        Subclasses holding the value in a primitive field override this, and the value based methods
+     */
+    void assignValue(Object value) {
         this.value = value;
     }
 
@@ -107,6 +140,7 @@ public abstract class Data implements Comparable<Data> {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
+        result = prime * result + ((tenantId == null) ? 0 : tenantId.hashCode());
         result = prime * result + ((id == null) ? 0 : id.hashCode());
         result = prime * result + (int) (timestamp ^ (timestamp >>> 32));
         result = prime * result + ((value == null) ? 0 : value.hashCode());
@@ -122,6 +156,11 @@ public abstract class Data implements Comparable<Data> {
         if (getClass() != obj.getClass())
             return false;
         Data other = (Data) obj;
+        if (tenantId == null) {
+            if (other.tenantId != null)
+                return false;
+        } else if (!tenantId.equals(other.tenantId))
+            return false;
         if (id == null) {
             if (other.id != null)
                 return false;
@@ -139,7 +178,7 @@ public abstract class Data implements Comparable<Data> {
 
     @Override
     public String toString() {
-        return "Data [id=" + id + ", timestamp=" + timestamp + ", value=" + value + "]";
+        return "Data [tenantId=" + tenantId + ", id=" + id + ", timestamp=" + timestamp + ", value=" + value + "]";
     }
 
     @Override
@@ -148,10 +187,25 @@ public abstract class Data implements Comparable<Data> {
         if (0 != c)
             return c;
 
+        // data not scoped to a tenant first
+        if (this.tenantId != o.tenantId) {
+            if (null == this.tenantId)
+                return -1;
+            if (null == o.tenantId)
+                return 1;
+            c = this.tenantId.compareTo(o.tenantId);
+            if (0 != c)
+                return c;
+        }
+
         c = Long.compare(this.timestamp, o.timestamp);
         if (0 != c)
             return c;
 
+        return compareValue(o);
+    }
+
+    int compareValue(Data o) {
         return compareValue(this.value, o.value);
     }
 
@@ -19,11 +19,16 @@ package org.hawkular.alerts.api.model.data;
 /**
  * A numeric incoming data.
  *
+ * The value is held as a primitive double, use {@link #doubleValue()} to read it without boxing. {@link #getValue()}
+ * boxes it on every call, it is kept for the JSON mapping and the generic {@link Data} API.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 public class NumericData extends Data {
 
+    private double doubleValue;
+
     public NumericData() {
         /*
             Default constructor is needed for JSON libraries in JAX-RS context.
@@ -32,20 +37,63 @@ public class NumericData extends Data {
     }
 
     public NumericData(String id, long timestamp, Double value) {
-        super(id, timestamp, (null == value) ? Double.NaN : value, Type.NUMERIC);
+        this(id, timestamp, (null == value) ? Double.NaN : value.doubleValue());
+    }
+
+    public NumericData(String id, long timestamp, double value) {
+        super(id, timestamp, null, Type.NUMERIC);
+        this.doubleValue = value;
+    }
+
+    /**
+     * @return the value, NaN if not assigned
+     */
+    public double doubleValue() {
+        return doubleValue;
     }
 
     public Double getValue() {
-        return (Double) value;
+        return doubleValue;
     }
 
+    /*
+        A single setter for JSON libraries, a setValue(double) overload would conflict with it
+     */
     public void setValue(Double value) {
-        super.setValue(null == value ? Double.NaN : value);
+        this.doubleValue = (null == value) ? Double.NaN : value.doubleValue();
+    }
+
+    @Override
+    void assignValue(Object value) {
+        this.doubleValue = (null == value) ? Double.NaN : ((Number) value).doubleValue();
+    }
+
+    @Override
+    public int hashCode() {
+        // same hash as with a boxed value
+        return super.hashCode() + Double.hashCode(doubleValue);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!super.equals(obj))
+            return false;
+        NumericData other = (NumericData) obj;
+        return Double.compare(doubleValue, other.doubleValue) == 0;
     }
 
     @Override
     public String toString() {
-        return "NumericData [id=" + id + ", timestamp=" + timestamp + ", value=" + value + "]";
+        return "NumericData [tenantId=" + tenantId + ", id=" + id + ", timestamp=" + timestamp + ", value="
+                + doubleValue + "]";
+    }
+
+    @Override
+    int compareValue(Data o) {
+        if (o instanceof NumericData) {
+            return Double.compare(doubleValue, ((NumericData) o).doubleValue);
+        }
+        return super.compareValue(o);
     }
 
     @Override
@@ -45,7 +45,8 @@ public class StringData extends Data {
 
     @Override
     public String toString() {
-        return "StringData [id=" + id + ", timestamp=" + timestamp + ", value=" + value + "]";
+        return "StringData [tenantId=" + tenantId + ", id=" + id + ", timestamp=" + timestamp + ", value=" + value +
+                "]";
     }
 
     @Override
@@ -93,7 +93,7 @@ public class AlertComparator implements Comparator<Alert> {
                 }
                 return o1.getTriggerId().compareTo(o2.getTriggerId()) * iOrder;
             case CTIME:
-                return (int)((o1.getCtime() - o2.getCtime()) * iOrder);
+                return Long.compare(o1.getCtime(), o2.getCtime()) * iOrder;
             case SEVERITY:
                 if (o1.getSeverity() == null && o2.getSeverity() == null) {
                     return 0;
@@ -19,6 +19,7 @@ package org.hawkular.alerts.api.model.paging;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * @author Lukas Krejci
@@ -30,6 +31,7 @@ public class PageContext {
     private final int pageSize;
     private final int pageNumber;
     private final List<Order> order;
+    private final String continuationToken;
 
     public PageContext(int pageNumber, int pageSize, Order... orders) {
         if (orders.length == 0) {
@@ -40,9 +42,20 @@ public class PageContext {
         List<Order> tmp = new ArrayList<>();
         Collections.addAll(tmp, orders);
         this.order = Collections.unmodifiableList(tmp);
+        this.continuationToken = null;
     }
 
     public PageContext(int pageNumber, int pageSize, Iterable<Order> orders) {
+        this(pageNumber, pageSize, orders, null);
+    }
+
+    /**
+     * @param pageNumber the number of the page
+     * @param pageSize the number of the elements on the page
+     * @param orders the ordering of the results
+     * @param continuationToken the position in the overall results, see {@link #getContinuationToken()}
+     */
+    public PageContext(int pageNumber, int pageSize, Iterable<Order> orders, String continuationToken) {
         this.pageNumber = pageSize >= 0 ? pageNumber : 0;
         this.pageSize = pageSize;
         List<Order> tmp = new ArrayList<>();
@@ -52,6 +65,7 @@ public class PageContext {
         }
 
         this.order = Collections.unmodifiableList(tmp);
+        this.continuationToken = continuationToken;
     }
 
     /**
@@ -104,6 +118,19 @@ public class PageContext {
         return pageSize >= 0;
     }
 
+    /**
+     * An opaque position in the overall results, only valid for the same ordering and criteria.
+     *
+     * When requesting a page, the page starts just after that position instead of at {@link #getStart()}, so the
+     * results before it don't need to be read again. The context of a returned {@link Page} carries the position of
+     * its last element, to request the next page.
+     *
+     * @return the continuation token, or null if there is no position
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
     /**
      * This list of ordering fields.
      *
@@ -120,7 +147,8 @@ public class PageContext {
 
         PageContext that = (PageContext) o;
 
-        return pageSize == that.pageSize && pageNumber == that.pageNumber && this.order.equals(that.order);
+        return pageSize == that.pageSize && pageNumber == that.pageNumber && this.order.equals(that.order)
+                && Objects.equals(continuationToken, that.continuationToken);
 
     }
 
@@ -133,7 +161,7 @@ public class PageContext {
 
     @Override public String toString() {
         return "PagingState[" + "order=" + order + ", pageNumber=" + pageNumber + ", pageSize=" +
-                pageSize + ']';
+                pageSize + ", continuationToken=" + continuationToken + ']';
     }
 
 }
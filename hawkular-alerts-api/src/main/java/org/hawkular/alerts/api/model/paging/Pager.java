@@ -69,17 +69,30 @@ public final class Pager extends PageContext {
         super(pageNumber, pageSize, orders);
     }
 
+    /**
+     * @param pageNumber see {@link #Pager(int, int, Order...)}
+     * @param pageSize see {@link #Pager(int, int, Order...)}
+     * @param orders see {@link #Pager(int, int, Order...)}
+     * @param continuationToken see {@link PageContext#getContinuationToken()}
+     */
+    public Pager(int pageNumber, int pageSize, Iterable<Order> orders, String continuationToken) {
+        super(pageNumber, pageSize, orders, continuationToken);
+    }
+
     /**
      * If this is a limited pager ({@link #isLimited()}), returns the pager pointing to the next page of the results.
      *
      * If this is an unlimited pager, then simply returns this very pager because there can be no other page of the
      * results.
      *
+     * The continuation token is kept, so the next page of the context of a returned {@link Page} continues just after
+     * its last element.
+     *
      * @return a new pager instance
      */
     public Pager nextPage() {
         if (getPageSize() >= 0) {
-            return new Pager(getPageNumber() + 1, getPageSize(), getOrder());
+            return new Pager(getPageNumber() + 1, getPageSize(), getOrder(), getContinuationToken());
         } else {
             return this;
         }
@@ -106,6 +119,7 @@ public final class Pager extends PageContext {
         private int pageNumber;
         private int pageSize;
         private List<Order> order = new ArrayList<>();
+        private String continuationToken;
 
         private Builder() {
         }
@@ -138,8 +152,13 @@ public final class Pager extends PageContext {
             return this;
         }
 
+        public Builder withContinuationToken(String continuationToken) {
+            this.continuationToken = continuationToken;
+            return this;
+        }
+
         public Pager build() {
-            return new Pager(pageNumber, pageSize, order);
+            return new Pager(pageNumber, pageSize, order, continuationToken);
         }
     }
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.services;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.hawkular.alerts.api.model.action.Action;
+
+/**
+ * Thrown by an {@link ActionListener} that could not deliver some of the actions of a batch. Only the failed
+ * actions are delivered again to the listener, the rest of the batch is taken as delivered.
+ */
+public class ActionDeliveryException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final Collection<Action> failedActions;
+
+    /**
+     * @param message the detail message
+     * @param failedActions the actions of the batch not delivered, the same instances the listener received
+     */
+    public ActionDeliveryException(String message, Collection<Action> failedActions) {
+        this(message, failedActions, null);
+    }
+
+    /**
+     * @param message the detail message
+     * @param failedActions the actions of the batch not delivered, the same instances the listener received
+     * @param cause the cause of the last failure
+     */
+    public ActionDeliveryException(String message, Collection<Action> failedActions, Throwable cause) {
+        super(message, cause);
+        if (failedActions == null) {
+            throw new IllegalArgumentException("FailedActions must be not null");
+        }
+        this.failedActions = Collections.unmodifiableCollection(failedActions);
+    }
+
+    /**
+     * @return the actions of the batch not delivered
+     */
+    public Collection<Action> getFailedActions() {
+        return failedActions;
+    }
+}
@@ -16,6 +16,10 @@
  */
 package org.hawkular.alerts.api.services;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 import org.hawkular.alerts.api.model.action.Action;
 
 /**
@@ -28,8 +32,38 @@ public interface ActionListener {
 
     /**
      * Process a action sent to {@link ActionListener}.
+     * The listener throws an exception if the action can not be delivered, so it is delivered again later.
      *
      * @param action Action to be processed.
      */
     void process(Action action);
+
+    /**
+     * Process a batch of actions sent to {@link ActionListener}, in the order they were sent.
+     * Listeners can override it to share work between the actions of a batch, by default each action is
+     * processed with {@link #process(Action)}.
+     * The listener throws an {@link ActionDeliveryException} with the actions it could not deliver, so only those
+     * are delivered again later. Any other exception fails the whole batch.
+     *
+     * @param actions Actions to be processed.
+     */
+    default void process(Collection<Action> actions) {
+        List<Action> failedActions = null;
+        RuntimeException lastError = null;
+        for (Action action : actions) {
+            try {
+                process(action);
+            } catch (RuntimeException e) {
+                if (failedActions == null) {
+                    failedActions = new ArrayList<>();
+                }
+                failedActions.add(action);
+                lastError = e;
+            }
+        }
+        if (failedActions != null) {
+            throw new ActionDeliveryException(failedActions.size() + " of " + actions.size()
+                    + " actions not delivered", failedActions, lastError);
+        }
+    }
 }
@@ -31,6 +31,7 @@ public interface ActionsService {
     /**
      * Send a action to an internal queue.
      * Primary used by the alerts-engine implementation to send a action.
+     * It must not block the caller on the listeners processing.
      *
      * @param action Action to send
      */
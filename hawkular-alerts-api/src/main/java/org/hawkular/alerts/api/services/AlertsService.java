@@ -19,6 +19,7 @@ package org.hawkular.alerts.api.services;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.hawkular.alerts.api.model.condition.Alert;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
@@ -41,6 +42,17 @@ public interface AlertsService {
      */
     void addAlerts(Collection<Alert> alerts) throws Exception;
 
+    /**
+     * Persist the provided alerts without waiting for the writes.
+     * @param alerts Set of unpersisted Alerts.
+     * @return a future completed when the alerts are persisted, or completed exceptionally on failure
+     * @throws Exception any problem
+     */
+    default CompletableFuture<Void> addAlertsAsync(Collection<Alert> alerts) throws Exception {
+        addAlerts(alerts);
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * @param tenantId Tenant where alerts are stored
      * @param criteria If null returns all alerts (not recommended)
@@ -87,6 +99,22 @@ public interface AlertsService {
     void resolveAlertsForTrigger(String tenantId, String triggerId, String resolvedBy, String resolvedNotes,
             List<Set<ConditionEval>> resolvedEvalSets) throws Exception;
 
+    /**
+     * Set unresolved alerts for the provided trigger to RESOLVED status without waiting for the writes.
+     * @param tenantId Tenant where alerts are stored
+     * @param triggerId Trigger of the alerts to resolve
+     * @param resolvedBy Optional. Typically the user resolving the alerts.
+     * @param resolvedNotes Optional notes about the resolution.
+     * @param resolvedEvalSets Optional. Typically the evalSets leading to an auto-resolved alert.
+     * @return a future completed when the alerts are resolved, or completed exceptionally on failure
+     * @throws Exception any problem
+     */
+    default CompletableFuture<Void> resolveAlertsForTriggerAsync(String tenantId, String triggerId,
+            String resolvedBy, String resolvedNotes, List<Set<ConditionEval>> resolvedEvalSets) throws Exception {
+        resolveAlertsForTrigger(tenantId, triggerId, resolvedBy, resolvedNotes, resolvedEvalSets);
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Send data into the alerting system for evaluation.
      *
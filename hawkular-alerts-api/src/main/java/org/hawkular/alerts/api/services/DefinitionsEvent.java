@@ -16,27 +16,73 @@
  */
 package org.hawkular.alerts.api.services;
 
+import java.util.Collection;
+import java.util.Collections;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+
 /**
  * Immutable definitions event.
  *
+ * A CONDITION_CHANGE event may carry the Conditions added and removed by the change, so listeners can maintain
+ * their state incrementally instead of reading all the Conditions again.
+ *
  * @author jay shaughnessy
  * @author lucas ponce
  */
 public class DefinitionsEvent {
 
     public enum EventType {
-        TRIGGER_CHANGE, DAMPENING_CHANGE, CONDITION_CHANGE
+        TRIGGER_CHANGE, DAMPENING_CHANGE, CONDITION_CHANGE, ACTION_CHANGE
     };
 
     private EventType eventType;
 
+    private Collection<Condition> addedConditions;
+
+    private Collection<Condition> removedConditions;
+
     public DefinitionsEvent(EventType eventType) {
+        this(eventType, null, null);
+    }
+
+    /**
+     * @param eventType type of the event
+     * @param addedConditions Conditions added by the change, null if not known
+     * @param removedConditions Conditions removed by the change, null if not known
+     */
+    public DefinitionsEvent(EventType eventType, Collection<Condition> addedConditions,
+            Collection<Condition> removedConditions) {
         super();
         this.eventType = eventType;
+        this.addedConditions = addedConditions == null ? null : Collections.unmodifiableCollection(addedConditions);
+        this.removedConditions = removedConditions == null ? null :
+                Collections.unmodifiableCollection(removedConditions);
     }
 
     public EventType getEventType() {
         return eventType;
     }
 
+    /**
+     * @return Conditions added by the change, null if the event does not carry them
+     */
+    public Collection<Condition> getAddedConditions() {
+        return addedConditions;
+    }
+
+    /**
+     * @return Conditions removed by the change, null if the event does not carry them
+     */
+    public Collection<Condition> getRemovedConditions() {
+        return removedConditions;
+    }
+
+    /**
+     * @return true if the event carries the Conditions added and removed by the change
+     */
+    public boolean hasConditionChanges() {
+        return addedConditions != null && removedConditions != null;
+    }
+
 }
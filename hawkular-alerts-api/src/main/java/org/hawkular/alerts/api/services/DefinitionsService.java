@@ -90,6 +90,15 @@ public interface DefinitionsService {
      */
     Collection<Trigger> getAllTriggers() throws Exception;
 
+    /**
+     * Get all stored Triggers, with their Actions, Conditions and Dampenings, for all Tenants.
+     * Definitions are fetched with a few bulk scans instead of per Trigger queries, it is intended for the
+     * initial load of the alerts engine.
+     * @return A snapshot of all the stored definitions. Not null.
+     * @throws Exception on any problem
+     */
+    DefinitionsSnapshot getAllDefinitions() throws Exception;
+
 
     /**
      * Used to generate an explicit Trigger from a Tokenized Trigger.  The dataIdMap replaces the tokens in the
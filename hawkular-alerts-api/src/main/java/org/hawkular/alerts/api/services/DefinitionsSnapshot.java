@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+
+/**
+ * All the Trigger definitions stored for all Tenants, fetched in bulk.
+ * Conditions and Dampenings are joined in memory with their Trigger by tenantId and triggerId.
+ */
+public class DefinitionsSnapshot {
+    private final Collection<Trigger> triggers;
+    private final Map<String, List<Condition>> conditions = new HashMap<>();
+    private final Map<String, List<Dampening>> dampenings = new HashMap<>();
+    private int numConditions = 0;
+    private int numDampenings = 0;
+
+    public DefinitionsSnapshot(Collection<Trigger> triggers, Collection<Condition> conditions,
+            Collection<Dampening> dampenings) {
+        if (triggers == null) {
+            throw new IllegalArgumentException("Triggers must be not null");
+        }
+        if (conditions == null) {
+            throw new IllegalArgumentException("Conditions must be not null");
+        }
+        if (dampenings == null) {
+            throw new IllegalArgumentException("Dampenings must be not null");
+        }
+        this.triggers = triggers;
+        for (Condition c : conditions) {
+            this.conditions.computeIfAbsent(key(c.getTenantId(), c.getTriggerId()), k -> new ArrayList<>()).add(c);
+        }
+        for (Dampening d : dampenings) {
+            this.dampenings.computeIfAbsent(key(d.getTenantId(), d.getTriggerId()), k -> new ArrayList<>()).add(d);
+        }
+        this.numConditions = conditions.size();
+        this.numDampenings = dampenings.size();
+    }
+
+    private static String key(String tenantId, String triggerId) {
+        return tenantId + "/" + triggerId;
+    }
+
+    public Collection<Trigger> getTriggers() {
+        return triggers;
+    }
+
+    /**
+     * @param tenantId Tenant where trigger is stored
+     * @param triggerId Given trigger
+     * @return The conditions of the trigger for all trigger modes. Not null.
+     */
+    public List<Condition> getTriggerConditions(String tenantId, String triggerId) {
+        List<Condition> triggerConditions = conditions.get(key(tenantId, triggerId));
+        return triggerConditions == null ? Collections.emptyList() : triggerConditions;
+    }
+
+    /**
+     * @param tenantId Tenant where trigger is stored
+     * @param triggerId Given trigger
+     * @return The dampenings of the trigger for all trigger modes. Not null.
+     */
+    public List<Dampening> getTriggerDampenings(String tenantId, String triggerId) {
+        List<Dampening> triggerDampenings = dampenings.get(key(tenantId, triggerId));
+        return triggerDampenings == null ? Collections.emptyList() : triggerDampenings;
+    }
+
+    public int getNumConditions() {
+        return numConditions;
+    }
+
+    public int getNumDampenings() {
+        return numDampenings;
+    }
+
+    @Override
+    public String toString() {
+        return "DefinitionsSnapshot [triggers=" + triggers.size() + ", conditions=" + numConditions
+                + ", dampenings=" + numDampenings + "]";
+    }
+}
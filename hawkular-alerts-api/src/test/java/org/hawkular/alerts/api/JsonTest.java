@@ -18,6 +18,7 @@ package org.hawkular.alerts.api;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -43,6 +44,7 @@ import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
 import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Availability;
 import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.MixedData;
 import org.hawkular.alerts.api.model.data.NumericData;
 import org.hawkular.alerts.api.model.data.StringData;
 import org.hawkular.alerts.api.model.trigger.Trigger;
@@ -480,6 +482,33 @@ public class JsonTest {
         assertTrue(!output.contains("threshold"));
     }
 
+    @Test
+    public void jsonNumericDataTest() throws Exception {
+        String str = "{\"tenantId\":\"tenantTest\",\"id\":\"metric-1\",\"timestamp\":1,\"value\":25.5," +
+                "\"type\":\"NUMERIC\"}";
+        NumericData data = objectMapper.readValue(str, NumericData.class);
+
+        assertEquals("tenantTest", data.getTenantId());
+        assertEquals("metric-1", data.getId());
+        assertEquals(1L, data.getTimestamp());
+        assertTrue(data.doubleValue() == 25.5);
+        assertEquals(Double.valueOf(25.5), data.getValue());
+
+        String output = objectMapper.writeValueAsString(data);
+
+        assertTrue(output.contains("\"value\":25.5"));
+        assertTrue(!output.contains("doubleValue"));
+        assertEquals(data, objectMapper.readValue(output, NumericData.class));
+
+        str = "{\"numericData\":[{\"id\":\"metric-1\",\"timestamp\":1,\"value\":10}," +
+                "{\"id\":\"metric-2\",\"timestamp\":2}]}";
+        MixedData mixedData = objectMapper.readValue(str, MixedData.class);
+        List<NumericData> numericData = new ArrayList<>(mixedData.getNumericData());
+
+        assertTrue(numericData.get(0).doubleValue() == 10.0);
+        assertTrue(Double.isNaN(numericData.get(1).doubleValue()));
+    }
+
     @Test
     public void jsonThresholdConditionEvalTest() throws Exception {
         String str = "{\"evalTimestamp\":1,\"dataTimestamp\":1," +
@@ -498,6 +527,18 @@ public class JsonTest {
         assertTrue(eval.getCondition().getOperator().equals(ThresholdCondition.Operator.LT));
         assertTrue(eval.getCondition().getThreshold() == 10.5);
         assertTrue(eval.getValue() == 1.0);
+
+        String output = objectMapper.writeValueAsString(eval);
+        assertTrue(output.contains("\"value\":1.0"));
+        assertTrue(!output.contains("Missing"));
+
+        // a NaN datum keeps its value, a missing value is skipped
+        eval = new ThresholdConditionEval(eval.getCondition(), new NumericData("Default", 1, Double.NaN));
+        assertTrue(eval.getValue().isNaN());
+        eval.setValue(null);
+        assertNull(eval.getValue());
+        output = objectMapper.writeValueAsString(eval);
+        assertTrue(!output.contains("value"));
     }
 
     @Test
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.init;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+/**
+ * Set of the ids referenced by active Conditions, used by the bus listeners to filter incoming data. Ids are scoped
+ * to the tenant of the Conditions, see {@link #key(String, String)}.
+ *
+ * An id is referenced by one or more Conditions, so the number of references of each id is counted and an id is
+ * removed with its last reference. Lookups are lock-free, updates are serialized as they only happen on
+ * definitions changes.
+ *
+ * Optionally a Bloom filter is checked before the exact set, so the lookup of an id not referenced, the usual case
+ * for most of the incoming data, is answered by a few bit reads instead of hashing into a large map. The Bloom filter
+ * is copied on write and published on each update, and rebuilt when it gets saturated or when many of its ids are
+ * removed.
+ */
+public class ActiveIdsFilter {
+    private static final int MIN_BLOOM_INSERTIONS = 1024;
+    private static final double BLOOM_FPP = 0.01;
+
+    private final Map<String, Integer> references = new ConcurrentHashMap<>();
+    private final boolean bloom;
+
+    private volatile BloomFilter<CharSequence> bloomFilter;
+    private int bloomCapacity;
+    private int bloomInsertions;
+    private int bloomRemovals;
+
+    /**
+     * @param bloom true to check a Bloom filter before the exact set
+     */
+    public ActiveIdsFilter(boolean bloom) {
+        this.bloom = bloom;
+        if (bloom) {
+            buildBloomFilter();
+        }
+    }
+
+    /**
+     * @param tenantId tenant of the Condition
+     * @param dataId dataId of the Condition
+     * @return the id of the filter for a dataId of a tenant
+     */
+    public static String key(String tenantId, String dataId) {
+        return tenantId + "|" + dataId;
+    }
+
+    /**
+     * @param tenantId tenant of the data
+     * @param dataId dataId
+     * @return true if the dataId is referenced by an active Condition of the tenant
+     */
+    public boolean contains(String tenantId, String dataId) {
+        return contains(key(tenantId, dataId));
+    }
+
+    /**
+     * @param id id of the filter, see {@link #key(String, String)}
+     * @return true if the id is referenced by an active Condition
+     */
+    public boolean contains(String id) {
+        BloomFilter<CharSequence> bloomFilter = this.bloomFilter;
+        if (bloomFilter != null && !bloomFilter.mightContain(id)) {
+            return false;
+        }
+        return references.containsKey(id);
+    }
+
+    /**
+     * Counts a reference of each added id and removes a reference of each removed id.
+     *
+     * @param added ids referenced by added Conditions
+     * @param removed ids referenced by removed Conditions
+     */
+    public synchronized void update(Collection<String> added, Collection<String> removed) {
+        BloomFilter<CharSequence> updated = null;
+        for (String id : added) {
+            if (references.merge(id, 1, Integer::sum) == 1 && bloom) {
+                if (updated == null) {
+                    updated = bloomFilter.copy();
+                }
+                updated.put(id);
+                bloomInsertions++;
+            }
+        }
+        for (String id : removed) {
+            if (references.containsKey(id)
+                    && references.computeIfPresent(id, (k, n) -> n == 1 ? null : n - 1) == null) {
+                bloomRemovals++;
+            }
+        }
+        if (!bloom) {
+            return;
+        }
+        if (bloomInsertions > bloomCapacity || bloomRemovals > references.size()) {
+            buildBloomFilter();
+        } else if (updated != null) {
+            bloomFilter = updated;
+        }
+    }
+
+    /**
+     * @return number of ids referenced
+     */
+    public int size() {
+        return references.size();
+    }
+
+    private void buildBloomFilter() {
+        // room to double the ids before the filter is saturated
+        bloomCapacity = Math.max(MIN_BLOOM_INSERTIONS, 2 * references.size());
+        BloomFilter<CharSequence> built = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                bloomCapacity, BLOOM_FPP);
+        references.keySet().forEach(built::put);
+        bloomInsertions = references.size();
+        bloomRemovals = 0;
+        bloomFilter = built;
+    }
+
+    @Override
+    public String toString() {
+        return "ActiveIdsFilter [size=" + size() + ", bloom=" + bloom + "]";
+    }
+}
@@ -16,12 +16,14 @@
  */
 package org.hawkular.alerts.bus.init;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
 import javax.ejb.Singleton;
 
@@ -36,20 +38,30 @@ import org.jboss.logging.Logger;
 /**
  * A helper class to initialize bus callbacks into the alerts engine.
  *
+ * The ids of the active Conditions, scoped by tenant, are loaded once and then maintained with the Conditions added
+ * and removed by each CONDITION_CHANGE event. The filters are read by the bus listeners on every message, so lookups
+ * do not take the singleton lock.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class CacheManager {
+    private static final String ACTIVE_IDS_BLOOM = "hawkular-alerts.active-ids-bloom";
+
     private final Logger log = Logger.getLogger(CacheManager.class);
 
     //public static final String CACHE_KEY_TRIGGER_UPDATE_TIME = "HawkularAlerts:TriggerUpdateTime";
     //public static final String CACHE_KEY_CONDITION_UPDATE_TIME = "HawkularAlerts:ConditionUpdateTime";
     //public static final String CACHE_KEY_DAMPENING_UPDATE_TIME = "HawkularAlerts:DampeningUpdateTime";
 
-    Set<String> activeDataIds;
-    //long activeDataIdsTime = 0L;
-    Set<String> activeAvailabiityIds;
+    volatile ActiveIdsFilter activeDataIds;
+    volatile ActiveIdsFilter activeAvailabilityIds;
+
+    private boolean bloom;
+    private boolean loading = false;
+    private boolean reloadPending = false;
 
     //@Resource(lookup = "java:jboss/infinispan/container/hawkular")
     //private CacheContainer container;
@@ -62,79 +74,128 @@ public class CacheManager {
     public void init() {
         // cache = cacheContainer.getCache();
 
-        updateActiveIds();
+        bloom = Boolean.parseBoolean(System.getProperty(ACTIVE_IDS_BLOOM, "false"));
 
         definitions.registerListener(new DefinitionsListener() {
             @Override
             public void onChange(DefinitionsEvent event) {
                 if (DefinitionsEvent.EventType.CONDITION_CHANGE == event.getEventType()) {
-                    updateActiveIds();
+                    updateActiveIds(event);
                 }
             }
         });
+
+        loadActiveIds();
     }
 
-    public Set<String> getActiveDataIds() {
+    /**
+     * @return filter of the dataIds of the active Conditions, null if all data must be forwarded
+     */
+    public ActiveIdsFilter getActiveDataIds() {
         return activeDataIds;
     }
 
-    public void setActiveDataIds(Set<String> activeDataIds) {
+    public void setActiveDataIds(ActiveIdsFilter activeDataIds) {
         this.activeDataIds = activeDataIds;
     }
 
-    public Set<String> getActiveAvailabilityIds() {
-        return activeAvailabiityIds;
+    /**
+     * @return filter of the dataIds of the active AvailabilityConditions, null if all data must be forwarded
+     */
+    public ActiveIdsFilter getActiveAvailabilityIds() {
+        return activeAvailabilityIds;
     }
 
-    public void setActiveAvailabilityIds(Set<String> activeAvailabilityIds) {
-        this.activeDataIds = activeAvailabilityIds;
+    public void setActiveAvailabilityIds(ActiveIdsFilter activeAvailabilityIds) {
+        this.activeAvailabilityIds = activeAvailabilityIds;
+    }
+
+    private void updateActiveIds(DefinitionsEvent event) {
+        synchronized (this) {
+            if (loading) {
+                // the load in progress may not have read this change, it reads the conditions again
+                reloadPending = true;
+                return;
+            }
+            if (event.hasConditionChanges() && null != activeDataIds && null != activeAvailabilityIds) {
+                List<String> addedDataIds = new ArrayList<>();
+                List<String> addedAvailIds = new ArrayList<>();
+                List<String> removedDataIds = new ArrayList<>();
+                List<String> removedAvailIds = new ArrayList<>();
+                collectIds(event.getAddedConditions(), addedDataIds, addedAvailIds);
+                collectIds(event.getRemovedConditions(), removedDataIds, removedAvailIds);
+                activeDataIds.update(addedDataIds, removedDataIds);
+                activeAvailabilityIds.update(addedAvailIds, removedAvailIds);
+
+                log.debugf("Updated activeDataIds! %s", activeDataIds);
+                log.debugf("Updated activeAvailIds! %s", activeAvailabilityIds);
+                return;
+            }
+        }
+        // no deltas or no filters to update
+        loadActiveIds();
     }
 
-    private synchronized void updateActiveIds() {
-
-        //        if (null != activeDataIds) {
-        //            if (null == cache) {
-        //                log.error("ISPN Cache is null. All data being forwarded to alerting!");
-        //                activeDataIds = null;
-        //                return;
-        //            }
-        //
-        //            Long updateTime = (Long) cache.get("HawkularAlerts:ConditionUpdateTime");
-        //            if (null == updateTime || updateTime <= activeDataIdsTime) {
-        //                return;
-        //            }
-        //
-        //            activeDataIdsTime = updateTime;
-        //        }
-
-        Set<String> dataIds = null;
-        Set<String> availIds = null;
+    /*
+        Full load of the ids from all the conditions. Changes notified while the conditions are read are not applied,
+        the conditions are read again instead.
+     */
+    private void loadActiveIds() {
+        synchronized (this) {
+            if (loading) {
+                reloadPending = true;
+                return;
+            }
+            loading = true;
+        }
         try {
-            Collection<Condition> conditions = definitions.getAllConditions();
-            dataIds = new HashSet<>(conditions.size());
-            availIds = new HashSet<>(conditions.size());
-            for (Condition c : conditions) {
-                if (c instanceof AvailabilityCondition) {
-                    availIds.add(c.getDataId());
-                    continue;
+            while (true) {
+                synchronized (this) {
+                    reloadPending = false;
                 }
-                dataIds.add(c.getDataId());
-                if (c instanceof CompareCondition) {
-                    dataIds.add(((CompareCondition) c).getData2Id());
+                Collection<Condition> conditions = definitions.getAllConditions();
+                List<String> dataIds = new ArrayList<>(conditions.size());
+                List<String> availIds = new ArrayList<>(conditions.size());
+                collectIds(conditions, dataIds, availIds);
+                ActiveIdsFilter dataIdsFilter = new ActiveIdsFilter(bloom);
+                ActiveIdsFilter availIdsFilter = new ActiveIdsFilter(bloom);
+                dataIdsFilter.update(dataIds, Collections.emptyList());
+                availIdsFilter.update(availIds, Collections.emptyList());
+                synchronized (this) {
+                    if (!reloadPending) {
+                        activeDataIds = dataIdsFilter;
+                        activeAvailabilityIds = availIdsFilter;
+                        loading = false;
+                        break;
+                    }
                 }
             }
         } catch (Exception e) {
             log.error("FAILED to load conditions to create Id filters. All data being forwarded to alerting!", e);
-            activeDataIds = null;
-            activeAvailabiityIds = null;
-            //activeDataIdsTime = 0L;
+            synchronized (this) {
+                activeDataIds = null;
+                activeAvailabilityIds = null;
+                loading = false;
+            }
+            return;
         }
 
-        activeDataIds = Collections.unmodifiableSet(dataIds);
-        activeAvailabiityIds = Collections.unmodifiableSet(availIds);
+        log.debugf("Loaded activeDataIds! %s", activeDataIds);
+        log.debugf("Loaded activeAvailIds! %s", activeAvailabilityIds);
+    }
 
-        log.debugf("Updated activeDataIds! %s", activeDataIds);
-        log.debugf("Updated activeAvailIds! %s", activeAvailabiityIds);
+    private void collectIds(Collection<Condition> conditions, Collection<String> dataIds,
+            Collection<String> availIds) {
+        for (Condition c : conditions) {
+            if (c instanceof AvailabilityCondition) {
+                availIds.add(ActiveIdsFilter.key(c.getTenantId(), c.getDataId()));
+                continue;
+            }
+            dataIds.add(ActiveIdsFilter.key(c.getTenantId(), c.getDataId()));
+            if (c instanceof CompareCondition) {
+                dataIds.add(ActiveIdsFilter.key(c.getTenantId(), ((CompareCondition) c).getData2Id()));
+            }
+        }
     }
 
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.init;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.jboss.logging.Logger;
+
+/**
+ * Groups the data of the messages received by the bus listeners into a single call to the alerts engine.
+ *
+ * The first message of a batch waits up to <code>hawkular-alerts.bus-batch-delay</code> milliseconds, or until
+ * <code>hawkular-alerts.bus-batch-size</code> messages have joined the batch, and then sends the data of all of them
+ * with one {@link AlertsService#sendData(Collection)} call. Every message of the batch returns when the batch has been
+ * sent, so the messages are acknowledged as a group, and a failure is thrown to every message of the batch for
+ * redelivery. The messages of a batch are received by different listener instances, so a batch can not be larger than
+ * the listener pool. A message waits up to <code>hawkular-alerts.bus-batch-timeout</code> milliseconds for its batch
+ * to be sent, then it fails for redelivery even if the batch is sent later.
+ *
+ * Batching is off with a batch size of 1, the default, and the listeners send the data of every message on its own.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DataBatcher {
+    private static final String BUS_BATCH_SIZE = "hawkular-alerts.bus-batch-size";
+    private static final String BUS_BATCH_SIZE_DEFAULT = "1";
+    private static final String BUS_BATCH_DELAY = "hawkular-alerts.bus-batch-delay";
+    private static final String BUS_BATCH_DELAY_DEFAULT = "10";
+    private static final String BUS_BATCH_TIMEOUT = "hawkular-alerts.bus-batch-timeout";
+    private static final String BUS_BATCH_TIMEOUT_DEFAULT = "30000";
+
+    private final Logger log = Logger.getLogger(DataBatcher.class);
+
+    @EJB
+    AlertsService alerts;
+
+    private int batchSize = Integer.parseInt(BUS_BATCH_SIZE_DEFAULT);
+    private long batchDelay = Long.parseLong(BUS_BATCH_DELAY_DEFAULT);
+    private long batchTimeout = Long.parseLong(BUS_BATCH_TIMEOUT_DEFAULT);
+
+    /*
+        Batch accepting messages, null when the last one has been closed
+     */
+    private Batch current;
+
+    private final long start = System.nanoTime();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder sentData = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAccumulator maxBatch = new LongAccumulator(Math::max, 0);
+
+    @PostConstruct
+    public void init() {
+        try {
+            setBatchSize(Integer.parseInt(System.getProperty(BUS_BATCH_SIZE, BUS_BATCH_SIZE_DEFAULT)));
+            setBatchDelay(Long.parseLong(System.getProperty(BUS_BATCH_DELAY, BUS_BATCH_DELAY_DEFAULT)));
+            setBatchTimeout(Long.parseLong(System.getProperty(BUS_BATCH_TIMEOUT, BUS_BATCH_TIMEOUT_DEFAULT)));
+        } catch (IllegalArgumentException e) {
+            log.errorf("Invalid bus batch configuration, using size [%s], delay [%s] ms and timeout [%s] ms. %s",
+                    BUS_BATCH_SIZE_DEFAULT, BUS_BATCH_DELAY_DEFAULT, BUS_BATCH_TIMEOUT_DEFAULT, e.getMessage());
+            batchSize = Integer.parseInt(BUS_BATCH_SIZE_DEFAULT);
+            batchDelay = Long.parseLong(BUS_BATCH_DELAY_DEFAULT);
+            batchTimeout = Long.parseLong(BUS_BATCH_TIMEOUT_DEFAULT);
+        }
+        log.debugf("Bus batch size [%s], delay [%s] ms, timeout [%s] ms", batchSize, batchDelay, batchTimeout);
+    }
+
+    /**
+     * @return true if the messages are batched, false if every message should be sent on its own
+     */
+    public boolean isEnabled() {
+        return batchSize > 1;
+    }
+
+    public AlertsService getAlerts() {
+        return alerts;
+    }
+
+    public void setAlerts(AlertsService alerts) {
+        this.alerts = alerts;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("BatchSize must be greater than 0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public long getBatchDelay() {
+        return batchDelay;
+    }
+
+    public void setBatchDelay(long batchDelay) {
+        if (batchDelay < 0) {
+            throw new IllegalArgumentException("BatchDelay must be not negative");
+        }
+        this.batchDelay = batchDelay;
+    }
+
+    public long getBatchTimeout() {
+        return batchTimeout;
+    }
+
+    public void setBatchTimeout(long batchTimeout) {
+        if (batchTimeout < 1) {
+            throw new IllegalArgumentException("BatchTimeout must be greater than 0");
+        }
+        this.batchTimeout = batchTimeout;
+    }
+
+    /**
+     * Send the data of a message into the alerts engine, returning when the batch it has joined has been sent.
+     *
+     * @param data Not Null.  The data of a single message.
+     * @throws Exception the failure of the batch, or a {@link TimeoutException} if the batch is not sent in time
+     */
+    public void send(Collection<Data> data) throws Exception {
+        if (null == data) {
+            throw new IllegalArgumentException("Data must be not null");
+        }
+        if (batchSize == 1) {
+            messages.increment();
+            sendBatch(data, 1);
+            return;
+        }
+
+        Batch batch;
+        boolean first;
+        synchronized (this) {
+            first = (null == current);
+            if (first) {
+                current = new Batch(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchDelay));
+            }
+            batch = current;
+            batch.add(data);
+            if (batch.messages.size() >= batchSize) {
+                current = null;
+                notifyAll();
+            }
+        }
+        messages.increment();
+
+        if (!first) {
+            if (!batch.await(batchTimeout)) {
+                timeouts.increment();
+                throw new TimeoutException("Batch not sent in [" + batchTimeout + "] ms, message to be redelivered");
+            }
+            return;
+        }
+
+        try {
+            synchronized (this) {
+                long wait;
+                while (current == batch && (wait = batch.deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(this, wait);
+                }
+                if (current == batch) {
+                    current = null;
+                }
+            }
+            sendBatch(batch.toData(), batch.messages.size());
+            batch.done(null);
+        } catch (Exception e) {
+            synchronized (this) {
+                if (current == batch) {
+                    current = null;
+                }
+            }
+            batch.done(e);
+            throw e;
+        }
+    }
+
+    private void sendBatch(Collection<Data> data, int numMessages) throws Exception {
+        log.debugf("Sending batch of [%s] messages: [%s]", numMessages, data);
+        alerts.sendData(data);
+        batches.increment();
+        sentData.add(data.size());
+        maxBatch.accumulate(numMessages);
+    }
+
+    /**
+     * @return messages received since the start
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * @return messages received per second since the start
+     */
+    public double getMessagesPerSecond() {
+        long elapsed = System.nanoTime() - start;
+        return elapsed > 0 ? messages.sum() * 1e9 / elapsed : 0;
+    }
+
+    /**
+     * @return batches sent since the start
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return messages failed for redelivery because their batch was not sent in time
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return data sent since the start
+     */
+    public long getSentData() {
+        return sentData.sum();
+    }
+
+    /**
+     * @return average number of messages of the batches sent
+     */
+    public double getAvgBatchSize() {
+        long n = batches.sum();
+        return n > 0 ? (double) messages.sum() / n : 0;
+    }
+
+    /**
+     * @return number of messages of the largest batch sent
+     */
+    public long getMaxBatchSize() {
+        return maxBatch.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DataBatcher [batchSize=" + batchSize + ", batchDelay=" + batchDelay + ", batchTimeout="
+                + batchTimeout + ", messages=" + getMessages() + ", messagesPerSecond="
+                + String.format("%.1f", getMessagesPerSecond()) + ", batches=" + getBatches() + ", avgBatchSize="
+                + String.format("%.1f", getAvgBatchSize()) + ", maxBatchSize=" + getMaxBatchSize() + ", timeouts="
+                + getTimeouts() + "]";
+    }
+
+    private static class Batch {
+        final long deadline;
+        final List<Collection<Data>> messages = new ArrayList<>();
+        int numData = 0;
+
+        final CountDownLatch sent = new CountDownLatch(1);
+        volatile Exception failure;
+
+        Batch(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void add(Collection<Data> data) {
+            messages.add(data);
+            numData += data.size();
+        }
+
+        /*
+            Called once the batch is closed, no more messages are added
+         */
+        List<Data> toData() {
+            List<Data> result = new ArrayList<>(numData);
+            for (Collection<Data> data : messages) {
+                result.addAll(data);
+            }
+            return result;
+        }
+
+        void done(Exception e) {
+            failure = e;
+            sent.countDown();
+        }
+
+        /*
+            Returns false if the batch has not been sent before the timeout
+         */
+        boolean await(long timeout) throws Exception {
+            if (!sent.await(timeout, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            if (null != failure) {
+                throw failure;
+            }
+            return true;
+        }
+    }
+}
@@ -16,20 +16,26 @@
  */
 package org.hawkular.alerts.bus.listener;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageListener;
+import javax.jms.TextMessage;
 
 import org.hawkular.alerts.api.model.data.Availability;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.bus.init.ActiveIdsFilter;
 import org.hawkular.alerts.bus.init.CacheManager;
+import org.hawkular.alerts.bus.init.DataBatcher;
+import org.hawkular.alerts.bus.log.MsgLogger;
 import org.hawkular.alerts.bus.messages.AvailDataMessage;
 import org.hawkular.alerts.bus.messages.AvailDataMessage.AvailData;
 import org.hawkular.alerts.bus.messages.AvailDataMessage.SingleAvail;
@@ -46,6 +52,9 @@ import com.google.gson.GsonBuilder;
  * This is useful only when deploying into the Hawkular Bus with Hawkular Metrics. The expected message payload should
  * be JSON representation of {@link AvailDataMessage}.
  *
+ * With <code>hawkular-alerts.bus-stream-decoder</code> set, text messages are decoded with the
+ * {@link DataMessageDecoder} straight into Alerting Data.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -53,23 +62,46 @@ import com.google.gson.GsonBuilder;
         @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
         @ActivationConfigProperty(propertyName = "destination", propertyValue = "HawkularAvailData") })
 public class AvailDataListener extends BasicMessageListener<AvailDataMessage> {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(AvailDataListener.class);
 
     @EJB
     AlertsService alerts;
 
+    @EJB
+    DataBatcher batcher;
+
     @EJB
     DefinitionsService definitions;
 
     @EJB
     CacheManager cacheManager;
 
-    private boolean isNeeded(Set<String> activeAvailabilityIds, String id) {
-        if (null == activeAvailabilityIds) {
-            return true;
+    @Override
+    public void onMessage(Message message) {
+        if (!DataMessageDecoder.isEnabled() || !(message instanceof TextMessage)) {
+            super.onMessage(message);
+            return;
+        }
+
+        String json;
+        try {
+            json = ((TextMessage) message).getText();
+        } catch (JMSException e) {
+            throw new RuntimeException(e);
+        }
+        log.debugf("Message received: [%s]", json);
+
+        List<Data> alertData = new ArrayList<>();
+        try {
+            int filtered = DataMessageDecoder.decodeAvailData(json, cacheManager.getActiveAvailabilityIds(), alertData);
+            log.debugf("Filtered [%s] data not used in Triggers", filtered);
+        } catch (IOException | RuntimeException e) {
+            msgLog.errorInvalidDataMessage(e.toString());
+            return;
         }
 
-        return activeAvailabilityIds.contains(id);
+        send(alertData);
     }
 
     @Override
@@ -80,16 +112,30 @@ public class AvailDataListener extends BasicMessageListener<AvailDataMessage> {
 
         List<SingleAvail> data = availData.getData();
         List<Data> alertData = new ArrayList<>(data.size());
-        Set<String> activeAvailabilityIds = cacheManager.getActiveAvailabilityIds();
+        ActiveIdsFilter activeAvailabilityIds = cacheManager.getActiveAvailabilityIds();
         for (SingleAvail a : data) {
-            if (isNeeded(activeAvailabilityIds, a.getId())) {
-                alertData.add(new Availability(a.getId(), a.getTimestamp(), a.getAvail()));
+            if (DataMessageDecoder.isNeeded(activeAvailabilityIds, a.getTenantId(), a.getId())) {
+                Availability availability = new Availability(a.getId(), a.getTimestamp(), a.getAvail());
+                availability.setTenantId(a.getTenantId());
+                alertData.add(availability);
             }
         }
 
+        send(alertData);
+    }
+
+    private void send(List<Data> alertData) {
+        if (alertData.isEmpty()) {
+            return;
+        }
+
         log.debugf("Sending: [%s]", alertData);
         try {
-            alerts.sendData(alertData);
+            if (batcher.isEnabled()) {
+                batcher.send(alertData);
+            } else {
+                alerts.sendData(alertData);
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
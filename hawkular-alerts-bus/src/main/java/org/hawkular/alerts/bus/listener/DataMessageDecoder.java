@@ -0,0 +1,591 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.listener;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.bus.init.ActiveIdsFilter;
+import org.hawkular.alerts.bus.messages.AvailDataMessage;
+import org.hawkular.alerts.bus.messages.MetricDataMessage;
+
+/**
+ * Streaming decoder of the JSON of {@link MetricDataMessage} and {@link AvailDataMessage} into alerts engine Data.
+ *
+ * The message body is scanned in place: field names are compared against the body, numbers are parsed from it and the
+ * fields of every datum are kept in locals, so there are no intermediate message objects and only the ids are copied
+ * out of the body. The active ids filter is checked as soon as the id is read, the rest of a datum not used in
+ * Triggers is skipped without creating its Data. Unknown fields are skipped.
+ *
+ * The listeners use the decoder only when <code>hawkular-alerts.bus-stream-decoder</code> is true, by default they map
+ * the messages with {@link org.hawkular.bus.common.consumer.BasicMessageListener}.
+ */
+public final class DataMessageDecoder {
+    private static final String BUS_STREAM_DECODER = "hawkular-alerts.bus-stream-decoder";
+    private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(BUS_STREAM_DECODER, "false"));
+
+    /*
+        Decimals of up to 15 digits are exactly represented in a double, as the powers of ten up to 10^22, so a single
+        division is correctly rounded
+     */
+    private static final int MAX_FAST_DIGITS = 15;
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final String json;
+    private int pos;
+
+    /*
+        Bounds of the last name read, names are compared in place
+     */
+    private int nameStart;
+    private int nameEnd;
+
+    /*
+        True right after an object or array is opened, so the first element is not preceded by a comma
+     */
+    private boolean first;
+
+    private DataMessageDecoder(String json) {
+        this.json = json;
+        this.pos = 0;
+    }
+
+    /**
+     * @return true if the listeners decode the text messages with the decoder
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /*
+        Data without tenant can not be filtered by the tenant scoped ids, it is forwarded and filtered by the engine
+     */
+    static boolean isNeeded(ActiveIdsFilter activeIds, String tenantId, String id) {
+        if (null == activeIds || null == tenantId) {
+            return true;
+        }
+
+        return activeIds.contains(tenantId, id);
+    }
+
+    /**
+     * Decode the JSON of a {@link MetricDataMessage} into {@link NumericData}.
+     *
+     * @param json Not Null.  The message body.
+     * @param activeIds The filter of the dataIds used in Triggers, null if all data must be decoded.
+     * @param result Not Null.  The list where the decoded data is added.
+     * @return the number of datums filtered out
+     * @throws IOException if the body is not a valid JSON
+     */
+    public static int decodeMetricData(String json, ActiveIdsFilter activeIds, List<Data> result)
+            throws IOException {
+        if (null == json) {
+            throw new IllegalArgumentException("Json must be not null");
+        }
+        if (null == result) {
+            throw new IllegalArgumentException("Result must be not null");
+        }
+        return new DataMessageDecoder(json).metricDataMessage(activeIds, result);
+    }
+
+    /**
+     * Decode the JSON of an {@link AvailDataMessage} into {@link Availability}.
+     *
+     * @param json Not Null.  The message body.
+     * @param activeIds The filter of the dataIds used in Triggers, null if all data must be decoded.
+     * @param result Not Null.  The list where the decoded data is added.
+     * @return the number of datums filtered out
+     * @throws IOException if the body is not a valid JSON
+     */
+    public static int decodeAvailData(String json, ActiveIdsFilter activeIds, List<Data> result)
+            throws IOException {
+        if (null == json) {
+            throw new IllegalArgumentException("Json must be not null");
+        }
+        if (null == result) {
+            throw new IllegalArgumentException("Result must be not null");
+        }
+        return new DataMessageDecoder(json).availDataMessage(activeIds, result);
+    }
+
+    private int metricDataMessage(ActiveIdsFilter activeIds, List<Data> result) throws IOException {
+        int filtered = 0;
+        beginObject();
+        while (hasNext('}')) {
+            if (!nextNameIs("metricData") || peek() != '{') {
+                skipValue();
+                continue;
+            }
+            String tenantId = null;
+            boolean tenantRead = false;
+            int first = -1;
+            beginObject();
+            while (hasNext('}')) {
+                if (nextNameIs("tenantId")) {
+                    tenantId = nextString();
+                    tenantRead = true;
+                } else if (nameIs("data") && peek() == '[') {
+                    if (!tenantRead) {
+                        first = result.size();
+                    }
+                    beginArray();
+                    while (hasNext(']')) {
+                        if (!metric(tenantId, tenantRead ? activeIds : null, result)) {
+                            filtered++;
+                        }
+                    }
+                } else {
+                    skipValue();
+                }
+            }
+            if (first >= 0 && null != tenantId) {
+                // the data was decoded before the tenant was read
+                filtered += scope(result, first, tenantId, activeIds);
+            }
+        }
+        end();
+        return filtered;
+    }
+
+    private boolean metric(String tenantId, ActiveIdsFilter activeIds, List<Data> result) throws IOException {
+        String source = null;
+        long timestamp = 0;
+        double value = 0;
+        beginObject();
+        while (hasNext('}')) {
+            nextName();
+            if (nextIsNull()) {
+                continue;
+            }
+            if (nameIs("source")) {
+                source = nextString();
+                if (!isNeeded(activeIds, tenantId, source)) {
+                    skipRest('}');
+                    return false;
+                }
+            } else if (nameIs("timestamp")) {
+                timestamp = nextLong();
+            } else if (nameIs("value")) {
+                value = nextDouble();
+            } else {
+                skipValue();
+            }
+        }
+        NumericData numericData = new NumericData(source, timestamp, value);
+        numericData.setTenantId(tenantId);
+        result.add(numericData);
+        return true;
+    }
+
+    private int availDataMessage(ActiveIdsFilter activeIds, List<Data> result) throws IOException {
+        int filtered = 0;
+        beginObject();
+        while (hasNext('}')) {
+            if (!nextNameIs("availData") || peek() != '{') {
+                skipValue();
+                continue;
+            }
+            beginObject();
+            while (hasNext('}')) {
+                if (!nextNameIs("data") || peek() != '[') {
+                    skipValue();
+                    continue;
+                }
+                beginArray();
+                while (hasNext(']')) {
+                    if (!avail(activeIds, result)) {
+                        filtered++;
+                    }
+                }
+            }
+        }
+        end();
+        return filtered;
+    }
+
+    /*
+        Every SingleAvail carries its tenant, the filter is checked once both the tenant and the id are read
+     */
+    private boolean avail(ActiveIdsFilter activeIds, List<Data> result) throws IOException {
+        String tenantId = null;
+        String id = null;
+        long timestamp = 0;
+        AvailabilityType avail = null;
+        beginObject();
+        while (hasNext('}')) {
+            nextName();
+            if (nextIsNull()) {
+                continue;
+            }
+            if (nameIs("tenantId")) {
+                tenantId = nextString();
+            } else if (nameIs("id")) {
+                id = nextString();
+            } else if (nameIs("timestamp")) {
+                timestamp = nextLong();
+            } else if (nameIs("avail")) {
+                avail = nextAvailabilityType();
+            } else {
+                skipValue();
+            }
+            if (null != tenantId && null != id && !isNeeded(activeIds, tenantId, id)) {
+                skipRest('}');
+                return false;
+            }
+        }
+        Availability availability = new Availability(id, timestamp, avail);
+        availability.setTenantId(tenantId);
+        result.add(availability);
+        return true;
+    }
+
+    private static int scope(List<Data> result, int first, String tenantId, ActiveIdsFilter activeIds) {
+        int filtered = 0;
+        ListIterator<Data> it = result.listIterator(first);
+        while (it.hasNext()) {
+            Data d = it.next();
+            d.setTenantId(tenantId);
+            if (!isNeeded(activeIds, tenantId, d.getId())) {
+                it.remove();
+                filtered++;
+            }
+        }
+        return filtered;
+    }
+
+    // Scanning of the body
+
+    private IOException malformed(String expected) {
+        return new IOException("Malformed JSON, expected " + expected + " at position " + pos);
+    }
+
+    private char peek() throws IOException {
+        int length = json.length();
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+            pos++;
+        }
+        throw malformed("a value");
+    }
+
+    private void consume(char expected) throws IOException {
+        if (peek() != expected) {
+            throw malformed("'" + expected + "'");
+        }
+        pos++;
+    }
+
+    private void beginObject() throws IOException {
+        consume('{');
+        first = true;
+    }
+
+    private void beginArray() throws IOException {
+        consume('[');
+        first = true;
+    }
+
+    /*
+        Consumes the separator before the next element, or the close of the object or array
+     */
+    private boolean hasNext(char close) throws IOException {
+        char c = peek();
+        if (c == close) {
+            pos++;
+            first = false;
+            return false;
+        }
+        if (first) {
+            first = false;
+            return true;
+        }
+        if (c != ',') {
+            throw malformed("',' or '" + close + "'");
+        }
+        pos++;
+        return true;
+    }
+
+    private void end() throws IOException {
+        int length = json.length();
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                pos--;
+                throw malformed("end of message");
+            }
+        }
+    }
+
+    private void nextName() throws IOException {
+        consume('"');
+        nameStart = pos;
+        nameEnd = skipString();
+        consume(':');
+    }
+
+    private boolean nextNameIs(String name) throws IOException {
+        nextName();
+        return nameIs(name);
+    }
+
+    private boolean nameIs(String name) {
+        return nameEnd - nameStart == name.length() && json.regionMatches(nameStart, name, 0, name.length());
+    }
+
+    private boolean nextIsNull() throws IOException {
+        if (peek() == 'n') {
+            literal("null");
+            return true;
+        }
+        return false;
+    }
+
+    private void literal(String literal) throws IOException {
+        if (!json.startsWith(literal, pos)) {
+            throw malformed(literal);
+        }
+        pos += literal.length();
+    }
+
+    /*
+        Skips a string after its opening quote, returns the position of its closing quote
+     */
+    private int skipString() throws IOException {
+        int length = json.length();
+        while (pos < length) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return pos - 1;
+            }
+            if (c == '\\') {
+                pos++;
+            }
+        }
+        throw malformed("'\"'");
+    }
+
+    private String nextString() throws IOException {
+        if (nextIsNull()) {
+            return null;
+        }
+        consume('"');
+        int start = pos;
+        int end = skipString();
+        for (int i = start; i < end; i++) {
+            if (json.charAt(i) == '\\') {
+                return unescape(start, end);
+            }
+        }
+        return json.substring(start, end);
+    }
+
+    private String unescape(int start, int end) throws IOException {
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = json.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            c = json.charAt(++i);
+            switch (c) {
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 >= end) {
+                        pos = i;
+                        throw malformed("an unicode escape");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e) {
+                        pos = i;
+                        throw malformed("an unicode escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private AvailabilityType nextAvailabilityType() throws IOException {
+        consume('"');
+        int start = pos;
+        int end = skipString();
+        for (AvailabilityType type : AvailabilityType.values()) {
+            String name = type.name();
+            if (end - start == name.length() && json.regionMatches(start, name, 0, name.length())) {
+                return type;
+            }
+        }
+        return AvailabilityType.valueOf(json.substring(start, end));
+    }
+
+    /*
+        Skips a number, returns its start
+     */
+    private int skipNumber() throws IOException {
+        peek();
+        int start = pos;
+        int length = json.length();
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if ((c < '0' || c > '9') && c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') {
+                break;
+            }
+            pos++;
+        }
+        if (start == pos) {
+            throw malformed("a number");
+        }
+        return start;
+    }
+
+    private long nextLong() throws IOException {
+        int start = skipNumber();
+        int i = start;
+        boolean negative = json.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        if (pos - i > 18 || i == pos) {
+            return (long) parseDouble(start);
+        }
+        long value = 0;
+        for (; i < pos; i++) {
+            char c = json.charAt(i);
+            if (c < '0' || c > '9') {
+                return (long) parseDouble(start);
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private double nextDouble() throws IOException {
+        int start = skipNumber();
+        int i = start;
+        boolean negative = json.charAt(i) == '-';
+        if (negative) {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < pos; i++) {
+            char c = json.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || ++digits > MAX_FAST_DIGITS) {
+                return parseDouble(start);
+            }
+            mantissa = mantissa * 10 + (c - '0');
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            return parseDouble(start);
+        }
+        double value = decimals > 0 ? mantissa / POW10[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private double parseDouble(int start) throws IOException {
+        try {
+            return Double.parseDouble(json.substring(start, pos));
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw malformed("a number");
+        }
+    }
+
+    private void skipValue() throws IOException {
+        char c = peek();
+        switch (c) {
+            case '{':
+                beginObject();
+                skipRest('}');
+                break;
+            case '[':
+                beginArray();
+                while (hasNext(']')) {
+                    skipValue();
+                }
+                break;
+            case '"':
+                pos++;
+                skipString();
+                break;
+            case 't':
+                literal("true");
+                break;
+            case 'f':
+                literal("false");
+                break;
+            case 'n':
+                literal("null");
+                break;
+            default:
+                skipNumber();
+        }
+    }
+
+    /*
+        Skips the remaining fields of an object, and its close
+     */
+    private void skipRest(char close) throws IOException {
+        while (hasNext(close)) {
+            nextName();
+            skipValue();
+        }
+    }
+}
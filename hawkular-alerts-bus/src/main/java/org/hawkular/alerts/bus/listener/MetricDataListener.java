@@ -16,19 +16,25 @@
  */
 package org.hawkular.alerts.bus.listener;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageListener;
+import javax.jms.TextMessage;
 
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.data.NumericData;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.bus.init.ActiveIdsFilter;
 import org.hawkular.alerts.bus.init.CacheManager;
+import org.hawkular.alerts.bus.init.DataBatcher;
+import org.hawkular.alerts.bus.log.MsgLogger;
 import org.hawkular.alerts.bus.messages.MetricDataMessage;
 import org.hawkular.alerts.bus.messages.MetricDataMessage.MetricData;
 import org.hawkular.alerts.bus.messages.MetricDataMessage.SingleMetric;
@@ -43,6 +49,9 @@ import org.jboss.logging.Logger;
  * This is useful only when deploying into the Hawkular Bus with Hawkular Metrics. The expected message payload should
  * be JSON representation of {@link MetricDataMessage}.
  *
+ * With <code>hawkular-alerts.bus-stream-decoder</code> set, text messages are decoded with the
+ * {@link DataMessageDecoder} straight into Alerting Data.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -50,45 +59,80 @@ import org.jboss.logging.Logger;
         @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
         @ActivationConfigProperty(propertyName = "destination", propertyValue = "HawkularMetricData") })
 public class MetricDataListener extends BasicMessageListener<MetricDataMessage> {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(MetricDataListener.class);
 
-
     @EJB
     AlertsService alerts;
 
+    @EJB
+    DataBatcher batcher;
+
     @EJB
     CacheManager cacheManager;
 
+    @Override
+    public void onMessage(Message message) {
+        if (!DataMessageDecoder.isEnabled() || !(message instanceof TextMessage)) {
+            super.onMessage(message);
+            return;
+        }
 
-    private boolean isNeeded(Set<String> activeMetricIds, String metricId) {
-        if (null == activeMetricIds) {
-            return true;
+        String json;
+        try {
+            json = ((TextMessage) message).getText();
+        } catch (JMSException e) {
+            throw new RuntimeException(e);
         }
+        log.debugf("Message received: [%s]", json);
 
-        return activeMetricIds.contains(metricId);
+        List<Data> alertData = new ArrayList<>();
+        try {
+            int filtered = DataMessageDecoder.decodeMetricData(json, cacheManager.getActiveDataIds(), alertData);
+            log.debugf("Filtered [%s] data not used in Triggers", filtered);
+        } catch (IOException | RuntimeException e) {
+            msgLog.errorInvalidDataMessage(e.toString());
+            return;
+        }
+
+        send(alertData);
     }
 
     @Override
     protected void onBasicMessage(MetricDataMessage msg) {
         log.debugf("Message received: [%s]", msg);
 
-        // TODO: tenants?
         MetricData metricData = msg.getMetricData();
+        String tenantId = metricData.getTenantId();
 
         List<SingleMetric> data = metricData.getData();
         List<Data> alertData = new ArrayList<>(data.size());
-        Set<String> activeMetricIds = cacheManager.getActiveDataIds();
+        ActiveIdsFilter activeMetricIds = cacheManager.getActiveDataIds();
         for (SingleMetric m : data) {
-            if (isNeeded(activeMetricIds, m.getSource())) {
-                alertData.add(new NumericData(m.getSource(), m.getTimestamp(), m.getValue()));
+            if (DataMessageDecoder.isNeeded(activeMetricIds, tenantId, m.getSource())) {
+                NumericData numericData = new NumericData(m.getSource(), m.getTimestamp(), m.getValue());
+                numericData.setTenantId(tenantId);
+                alertData.add(numericData);
             } else {
-                log.debugf("Filtering data not used in Triggers. MetricId=%s", m.getSource());
+                log.debugf("Filtering data not used in Triggers. TenantId=%s MetricId=%s", tenantId, m.getSource());
             }
         }
 
+        send(alertData);
+    }
+
+    private void send(List<Data> alertData) {
+        if (alertData.isEmpty()) {
+            return;
+        }
+
         log.debugf("Sending: [%s]", alertData);
         try {
-            alerts.sendData(alertData);
+            if (batcher.isEnabled()) {
+                batcher.send(alertData);
+            } else {
+                alerts.sendData(alertData);
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
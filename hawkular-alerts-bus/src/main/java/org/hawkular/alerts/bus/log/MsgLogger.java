@@ -68,4 +68,8 @@ public interface MsgLogger extends BasicLogger {
     @LogMessage(level = Logger.Level.ERROR)
     @Message(id = 210009, value = "Error accesing to DefinitionsService. Description: [%s]")
     void errorDefinitionsService(String msg);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 210010, value = "Invalid data message discarded. Description: [%s]")
+    void errorInvalidDataMessage(String msg);
 }
@@ -57,7 +57,7 @@ public class AlertData {
 
     public Data convert() {
         if (type != null && !type.isEmpty() && type.equalsIgnoreCase("numeric")) {
-            return new NumericData(id, timestamp, Double.valueOf(value));
+            return new NumericData(id, timestamp, Double.parseDouble(value));
         } else if (type != null && !type.isEmpty() && type.equalsIgnoreCase("availability")) {
             return new Availability(id, timestamp, Availability.AvailabilityType.valueOf(value));
         } else {
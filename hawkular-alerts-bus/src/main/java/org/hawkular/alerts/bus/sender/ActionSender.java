@@ -17,6 +17,8 @@
 package org.hawkular.alerts.bus.sender;
 
 import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.services.ActionDeliveryException;
+import org.hawkular.alerts.api.services.DefinitionsEvent;
 import org.hawkular.alerts.api.services.DefinitionsService;
 import org.hawkular.alerts.api.services.ActionListener;
 import org.hawkular.alerts.bus.log.MsgLogger;
@@ -28,10 +30,20 @@ import org.hawkular.bus.common.producer.ProducerConnectionContext;
 import org.hawkular.actions.api.model.ActionMessage;
 import org.jboss.logging.Logger;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import javax.jms.TopicConnectionFactory;
 import javax.naming.InitialContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An implementation of {@link org.hawkular.alerts.api.services.ActionListener} that will send listener
@@ -47,6 +59,8 @@ public class ActionSender implements ActionListener {
     private static final String ACTIONS_TOPIC = "HawkularAlertsActionsTopic";
     private static final String DEFINITIONS_SERVICE =
             "java:app/hawkular-alerts-engine/CassDefinitionsServiceImpl";
+    private static final String ACTIONS_CACHE_SIZE = "hawkular-alerts.actions-cache-size";
+    private static final String ACTIONS_CACHE_TTL = "hawkular-alerts.actions-cache-ttl";
 
     private TopicConnectionFactory conFactory;
     private ConnectionContextFactory ccf;
@@ -55,32 +69,74 @@ public class ActionSender implements ActionListener {
 
     DefinitionsService definitions;
 
+    /*
+        Properties of the actions by tenantId, actionPlugin and actionId. Entries are invalidated on ACTION_CHANGE
+        events, the ttl bounds the staleness of changes made in other nodes.
+     */
+    private final Cache<String, Optional<Map<String, String>>> properties;
+
     public ActionSender() {
+        properties = CacheBuilder.newBuilder()
+                .maximumSize(Long.getLong(ACTIONS_CACHE_SIZE, 10000L))
+                .expireAfterWrite(Long.getLong(ACTIONS_CACHE_TTL, 300000L), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
     }
 
     @Override
     public void process(Action action) {
+        process(Collections.singletonList(action));
+    }
+
+    /*
+        Actions that can not be sent are reported in an ActionDeliveryException, so the dispatcher sends them again
+        and they are not marked as delivered in its journal.
+     */
+    @Override
+    public void process(Collection<Action> actions) {
         try {
             init();
-            if (pcc == null) {
-                msgLogger.warnCannotConnectToBus();
-                return;
-            }
-            ActionMessage nMsg = new ActionMessage();
-            nMsg.setActionId(action.getActionId());
-            nMsg.setMessage(action.getMessage());
-            if (definitions != null) {
-                Map<String, String> properties = definitions.getAction(action.getTenantId(),
-                        action.getActionPlugin(), action.getActionId());
-                nMsg.setProperties(properties);
-                MessageId mid = new MessageProcessor().send(pcc, nMsg, actionPluginFilter(action.getActionPlugin()));
-                msgLogger.infoSentActionMessage(mid.getId());
-            } else {
-                msgLogger.warnCannotAccessToDefinitionsService();
-            }
         } catch (Exception e) {
             log.debug(e.getMessage(), e);
             msgLogger.errorProcessingAction(e.getMessage());
+            throw new ActionDeliveryException(e.getMessage(), actions, e);
+        }
+        if (pcc == null) {
+            msgLogger.warnCannotConnectToBus();
+            throw new ActionDeliveryException("Cannot connect to hawkular bus", actions);
+        }
+        if (definitions == null) {
+            msgLogger.warnCannotAccessToDefinitionsService();
+            throw new ActionDeliveryException("Cannot access to DefinitionsService", actions);
+        }
+        List<Action> failedActions = null;
+        Exception lastError = null;
+        for (Action action : actions) {
+            try {
+                String key = action.getTenantId() + "/" + action.getActionPlugin() + "/" + action.getActionId();
+                Optional<Map<String, String>> actionProperties = properties.get(key,
+                        () -> Optional.ofNullable(definitions.getAction(action.getTenantId(),
+                                action.getActionPlugin(), action.getActionId())));
+                ActionMessage nMsg = new ActionMessage();
+                nMsg.setActionId(action.getActionId());
+                nMsg.setMessage(action.getMessage());
+                nMsg.setProperties(actionProperties.orElse(null));
+                MessageId mid = new MessageProcessor().send(pcc, nMsg, actionPluginFilter(action.getActionPlugin()));
+                msgLogger.infoSentActionMessage(mid.getId());
+            } catch (Exception e) {
+                log.debug(e.getMessage(), e);
+                msgLogger.errorProcessingAction(e.getMessage());
+                if (failedActions == null) {
+                    failedActions = new ArrayList<>();
+                }
+                failedActions.add(action);
+                lastError = e;
+            }
+        }
+        log.debugf("Actions properties cache %s", properties.stats());
+        if (failedActions != null) {
+            throw new ActionDeliveryException(failedActions.size() + " of " + actions.size() + " actions not sent",
+                    failedActions, lastError);
         }
     }
 
@@ -88,16 +144,37 @@ public class ActionSender implements ActionListener {
         if (ctx == null) {
             ctx = new InitialContext();
         }
-        if (conFactory == null) {
-            conFactory = (TopicConnectionFactory) ctx.lookup(CONNECTION_FACTORY);
-            ccf = new ConnectionContextFactory(conFactory);
+        if (pcc == null) {
+            if (ccf == null) {
+                conFactory = (TopicConnectionFactory) ctx.lookup(CONNECTION_FACTORY);
+                ccf = new ConnectionContextFactory(conFactory);
+            }
             pcc = ccf.createProducerConnectionContext(new Endpoint(Endpoint.Type.TOPIC, ACTIONS_TOPIC));
         }
         if (definitions == null) {
             definitions = (DefinitionsService) ctx.lookup(DEFINITIONS_SERVICE);
+            definitions.registerListener(event -> {
+                if (DefinitionsEvent.EventType.ACTION_CHANGE == event.getEventType()) {
+                    properties.invalidateAll();
+                }
+            });
         }
     }
 
+    /**
+     * @return hit and miss statistics of the action properties cache
+     */
+    public CacheStats getCacheStats() {
+        return properties.stats();
+    }
+
+    @Override
+    public String toString() {
+        CacheStats stats = properties.stats();
+        return "ActionSender [cacheSize=" + properties.size() + ", hitRate=" + stats.hitRate() +
+                ", missRate=" + stats.missRate() + "]";
+    }
+
     private static Map<String, String> actionPluginFilter(String actionPlugin) {
         Map<String, String> map = new HashMap<String, String>(1);
         map.put("actionPlugin", actionPlugin);
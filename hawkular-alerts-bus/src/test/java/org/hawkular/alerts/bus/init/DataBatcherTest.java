@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.init;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.junit.Test;
+
+/**
+ * Grouping of messages and timeouts of {@link DataBatcher}.
+ */
+public class DataBatcherTest {
+
+    private AlertsService alerts(AtomicInteger calls, CountDownLatch release) {
+        return (AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class<?>[] { AlertsService.class }, (proxy, method, args) -> {
+                    if ("sendData".equals(method.getName()) && args[0] instanceof Collection) {
+                        release.await();
+                        calls.incrementAndGet();
+                    }
+                    return null;
+                });
+    }
+
+    private Collection<Data> data(int i) {
+        return Collections.singletonList(new NumericData("metric", i, (double) i));
+    }
+
+    @Test
+    public void batchSizeOfOneIsDisabled() {
+        DataBatcher batcher = new DataBatcher();
+        assertFalse(batcher.isEnabled());
+        batcher.setBatchSize(2);
+        assertTrue(batcher.isEnabled());
+    }
+
+    @Test
+    public void messagesAreSentInOneBatch() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        DataBatcher batcher = new DataBatcher();
+        batcher.setAlerts(alerts(calls, new CountDownLatch(0)));
+        batcher.setBatchSize(2);
+        batcher.setBatchDelay(5000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = pool.submit(() -> {
+                batcher.send(data(1));
+                return null;
+            });
+            Future<?> second = pool.submit(() -> {
+                batcher.send(data(2));
+                return null;
+            });
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(2, batcher.getMessages());
+        assertEquals(1, batcher.getBatches());
+        assertEquals(2, batcher.getSentData());
+    }
+
+    @Test
+    public void unsentBatchTimesOut() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        DataBatcher batcher = new DataBatcher();
+        batcher.setAlerts(alerts(calls, release));
+        batcher.setBatchSize(2);
+        batcher.setBatchDelay(5000);
+        batcher.setBatchTimeout(100);
+
+        // the second message closes the batch, the leader stays blocked sending it
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        int timedOut = 0;
+        try {
+            List<Future<?>> sends = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                int n = i;
+                sends.add(pool.submit(() -> {
+                    batcher.send(data(n));
+                    return null;
+                }));
+            }
+            long timeout = System.currentTimeMillis() + 5000;
+            while (batcher.getTimeouts() == 0 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<?> send : sends) {
+                try {
+                    send.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause().toString(), e.getCause() instanceof TimeoutException);
+                    timedOut++;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, timedOut);
+        assertEquals(1, batcher.getTimeouts());
+        assertEquals(1, calls.get());
+    }
+}
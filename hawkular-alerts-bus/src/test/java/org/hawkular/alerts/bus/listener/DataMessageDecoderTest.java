@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.bus.init.ActiveIdsFilter;
+import org.junit.Test;
+
+/**
+ * Decoding of bus data messages with {@link DataMessageDecoder}.
+ */
+public class DataMessageDecoderTest {
+
+    private ActiveIdsFilter filter(String... keys) {
+        ActiveIdsFilter filter = new ActiveIdsFilter(false);
+        filter.update(Arrays.asList(keys), Collections.emptyList());
+        return filter;
+    }
+
+    @Test
+    public void metricData() throws Exception {
+        String json = "{\"messageId\":{\"id\":\"m-1\"},\"metricData\":{\"tenantId\":\"tenant-1\",\"data\":["
+                + "{\"source\":\"metric-1\",\"timestamp\":1000,\"value\":1.5},"
+                + "{\"timestamp\":2000,\"value\":2.5,\"source\":\"metric-2\",\"unknown\":[1,{\"a\":null}]},"
+                + "{\"source\":\"metric-3\",\"timestamp\":3000,\"value\":3.5}]}}";
+
+        List<Data> result = new ArrayList<>();
+        assertEquals(0, DataMessageDecoder.decodeMetricData(json, null, result));
+        assertEquals(3, result.size());
+        NumericData d = (NumericData) result.get(1);
+        assertEquals("metric-2", d.getId());
+        assertEquals("tenant-1", d.getTenantId());
+        assertEquals(2000L, d.getTimestamp());
+        assertEquals(2.5, d.getValue(), 0.0);
+
+        result.clear();
+        ActiveIdsFilter filter = filter(ActiveIdsFilter.key("tenant-1", "metric-2"),
+                ActiveIdsFilter.key("tenant-2", "metric-3"));
+        assertEquals(2, DataMessageDecoder.decodeMetricData(json, filter, result));
+        assertEquals(1, result.size());
+        assertEquals("metric-2", result.get(0).getId());
+    }
+
+    @Test
+    public void metricDataTenantAfterData() throws Exception {
+        String json = "{\"metricData\":{\"data\":["
+                + "{\"source\":\"metric-1\",\"timestamp\":1000,\"value\":1.5},"
+                + "{\"source\":\"metric-2\",\"timestamp\":2000,\"value\":2.5}],\"tenantId\":\"tenant-1\"}}";
+
+        List<Data> result = new ArrayList<>();
+        ActiveIdsFilter filter = filter(ActiveIdsFilter.key("tenant-1", "metric-1"));
+        assertEquals(1, DataMessageDecoder.decodeMetricData(json, filter, result));
+        assertEquals(1, result.size());
+        assertEquals("metric-1", result.get(0).getId());
+        assertEquals("tenant-1", result.get(0).getTenantId());
+
+        // without tenant all the data is decoded
+        json = "{\"metricData\":{\"data\":[{\"source\":\"metric-2\",\"timestamp\":2000,\"value\":2.5}]}}";
+        result.clear();
+        assertEquals(0, DataMessageDecoder.decodeMetricData(json, filter, result));
+        assertEquals(1, result.size());
+        assertNull(result.get(0).getTenantId());
+    }
+
+    @Test
+    public void availData() throws Exception {
+        String json = "{\"availData\":{\"data\":["
+                + "{\"tenantId\":\"tenant-1\",\"id\":\"avail-1\",\"timestamp\":1000,\"avail\":\"DOWN\"},"
+                + "{\"id\":\"avail-2\",\"avail\":\"UP\",\"timestamp\":2000,\"tenantId\":\"tenant-1\"},"
+                + "{\"tenantId\":\"tenant-2\",\"id\":\"avail-1\",\"timestamp\":3000,\"avail\":null}]}}";
+
+        List<Data> result = new ArrayList<>();
+        assertEquals(0, DataMessageDecoder.decodeAvailData(json, null, result));
+        assertEquals(3, result.size());
+        Availability a = (Availability) result.get(0);
+        assertEquals("avail-1", a.getId());
+        assertEquals("tenant-1", a.getTenantId());
+        assertEquals(1000L, a.getTimestamp());
+        assertEquals(AvailabilityType.DOWN, a.getValue());
+        assertEquals(AvailabilityType.UP, result.get(2).getValue());
+
+        result.clear();
+        ActiveIdsFilter filter = filter(ActiveIdsFilter.key("tenant-1", "avail-2"),
+                ActiveIdsFilter.key("tenant-2", "avail-1"));
+        assertEquals(1, DataMessageDecoder.decodeAvailData(json, filter, result));
+        assertEquals(2, result.size());
+        assertEquals("avail-2", result.get(0).getId());
+        assertEquals("tenant-2", result.get(1).getTenantId());
+    }
+
+    @Test
+    public void values() throws Exception {
+        String json = "{ \"metricData\" : {\n \"tenantId\" : \"tenant\\u002D1\",\n \"data\" : [\n"
+                + "  { \"source\" : \"metric \\\"1\\\"\", \"timestamp\" : 1.5E3, \"value\" : -1.25e-2 },\n"
+                + "  { \"source\" : \"metric-2\", \"timestamp\" : 20, \"value\" : -0.1 },\n"
+                + "  { \"source\" : \"metric-3\", \"timestamp\" : 1234567890123, \"value\" : 12345678.123456789 },\n"
+                + "  { \"source\" : \"metric-4\", \"timestamp\" : null, \"value\" : 7,"
+                + " \"tags\" : {\"a\":[true,false]} }\n"
+                + " ] } }";
+
+        List<Data> result = new ArrayList<>();
+        assertEquals(0, DataMessageDecoder.decodeMetricData(json, null, result));
+        assertEquals(4, result.size());
+        assertEquals("metric \"1\"", result.get(0).getId());
+        assertEquals("tenant-1", result.get(0).getTenantId());
+        assertEquals(1500L, result.get(0).getTimestamp());
+        assertEquals(-1.25e-2, result.get(0).getValue());
+        assertEquals(20L, result.get(1).getTimestamp());
+        assertEquals(-0.1, result.get(1).getValue());
+        assertEquals(1234567890123L, result.get(2).getTimestamp());
+        assertEquals(12345678.123456789, result.get(2).getValue());
+        assertEquals(7.0, result.get(3).getValue());
+    }
+
+    @Test
+    public void malformed() throws Exception {
+        String[] jsons = {
+                "",
+                "{\"metricData\":{\"tenantId\":\"tenant-1\",\"data\":[{\"source\":\"metric-1\"}]}",
+                "{\"metricData\":{\"tenantId\":\"tenant-1\" \"data\":[]}}",
+                "{\"metricData\":{\"data\":[{\"source\":\"metric-1\",\"value\":1..2}]}}",
+                "{\"metricData\":{\"data\":[{\"source\":\"metric-1\",\"value\":tru}]}}",
+                "{\"metricData\":{}} {}"
+        };
+        for (String json : jsons) {
+            try {
+                DataMessageDecoder.decodeMetricData(json, null, new ArrayList<>());
+                fail("Expected IOException for " + json);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.listener;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.bus.init.CacheManager;
+import org.hawkular.alerts.bus.init.DataBatcher;
+import org.hawkular.alerts.bus.messages.MetricDataMessage;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.MetricData;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.SingleMetric;
+import org.jboss.logging.Logger;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * <p>
+ * Performance tests of the bus listeners with synthetic metric messages.
+ * </p>
+ * The listener is invoked by a fixed number of threads, as the instances of the listener pool, and the alerts engine
+ * is replaced by a stand-in where each call to sendData costs a fixed overhead under a lock, to compare sending the
+ * data of every message on its own with sending the data of the messages in batches.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfDataListenerTest {
+    private static final Logger log = Logger.getLogger(PerfDataListenerTest.class);
+    private static final int LISTENERS = 16;
+    private static final long SEND_NANOS = 100 * 1000;
+    private static final int NUM_MESSAGES = 20000;
+    private static final int METRICS_PER_MESSAGE = 5;
+
+    private AlertsService alerts(AtomicLong calls, AtomicLong received) {
+        Object engineLock = new Object();
+        return (AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class<?>[] { AlertsService.class }, (proxy, method, args) -> {
+                    if ("sendData".equals(method.getName())) {
+                        synchronized (engineLock) {
+                            LockSupport.parkNanos(SEND_NANOS);
+                        }
+                        calls.incrementAndGet();
+                        received.addAndGet(args[0] instanceof Collection ? ((Collection<?>) args[0]).size() : 1);
+                    }
+                    return null;
+                });
+    }
+
+    private MetricDataMessage message(int i) {
+        List<SingleMetric> data = new ArrayList<>(METRICS_PER_MESSAGE);
+        for (int j = 0; j < METRICS_PER_MESSAGE; j++) {
+            data.add(new SingleMetric("metric-" + (i % 100) + "-" + j, i, i * 0.5));
+        }
+        MetricData metricData = new MetricData();
+        metricData.setTenantId("tenant-" + (i % 4));
+        metricData.setData(data);
+        return new MetricDataMessage(metricData);
+    }
+
+    private void drive(int batchSize, long batchDelay) throws Exception {
+        AtomicLong calls = new AtomicLong();
+        AtomicLong received = new AtomicLong();
+
+        DataBatcher batcher = new DataBatcher();
+        batcher.setAlerts(alerts(calls, received));
+        batcher.setBatchSize(batchSize);
+        batcher.setBatchDelay(batchDelay);
+
+        MetricDataListener listener = new MetricDataListener();
+        // no active ids filter, all data is forwarded
+        listener.cacheManager = new CacheManager();
+        listener.alerts = batcher.getAlerts();
+        listener.batcher = batcher;
+
+        List<MetricDataMessage> messages = new ArrayList<>(NUM_MESSAGES);
+        for (int i = 0; i < NUM_MESSAGES; i++) {
+            messages.add(message(i));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(LISTENERS);
+        long start = System.nanoTime();
+        for (MetricDataMessage msg : messages) {
+            pool.execute(() -> listener.onBasicMessage(msg));
+        }
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+
+        log.infof("BatchSize [%s] BatchDelay [%s] ms: %s messages in %s ms, %.0f messages/s, %s sendData calls. %s",
+                batchSize, batchDelay, NUM_MESSAGES, TimeUnit.NANOSECONDS.toMillis(elapsed),
+                NUM_MESSAGES * 1e9 / elapsed, calls.get(), batcher);
+
+        if (batcher.isEnabled()) {
+            assertEquals(NUM_MESSAGES, batcher.getMessages());
+            assertEquals(calls.get(), batcher.getBatches());
+        } else {
+            assertEquals(NUM_MESSAGES, calls.get());
+        }
+        assertEquals((long) NUM_MESSAGES * METRICS_PER_MESSAGE, received.get());
+    }
+
+    @Test
+    public void test000SendPerMessage() throws Exception {
+        drive(1, 0);
+    }
+
+    @Test
+    public void test001SendBatches() throws Exception {
+        drive(LISTENERS, 5);
+    }
+}
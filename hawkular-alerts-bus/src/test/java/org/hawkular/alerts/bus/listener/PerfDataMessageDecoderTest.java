@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.listener;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.bus.init.ActiveIdsFilter;
+import org.hawkular.alerts.bus.messages.MetricDataMessage;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.MetricData;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.SingleMetric;
+import org.jboss.logging.Logger;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * <p>
+ * Performance tests of decoding a metric data message of 10k samples into alerts engine Data.
+ * </p>
+ * The object mapping of the message followed by the copy into NumericData is compared with the streaming decoder, with
+ * all the samples forwarded and with a tenth of them used in Triggers. The allocated bytes are measured on the
+ * decoding thread.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfDataMessageDecoderTest {
+    private static final Logger log = Logger.getLogger(PerfDataMessageDecoderTest.class);
+    private static final int SAMPLES = 10000;
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+    private static final String TENANT = "tenant-1";
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+
+    private interface Decoder {
+        List<Data> decode(String json, ActiveIdsFilter activeIds) throws Exception;
+    }
+
+    private String message() {
+        List<SingleMetric> data = new ArrayList<>(SAMPLES);
+        for (int i = 0; i < SAMPLES; i++) {
+            data.add(new SingleMetric("metric-" + i, 1000L + i, i * 0.5));
+        }
+        MetricData metricData = new MetricData();
+        metricData.setTenantId(TENANT);
+        metricData.setData(data);
+        return gson.toJson(new MetricDataMessage(metricData));
+    }
+
+    private ActiveIdsFilter activeIds(int every) {
+        List<String> keys = new ArrayList<>(SAMPLES / every);
+        for (int i = 0; i < SAMPLES; i += every) {
+            keys.add(ActiveIdsFilter.key(TENANT, "metric-" + i));
+        }
+        ActiveIdsFilter activeIds = new ActiveIdsFilter(false);
+        activeIds.update(keys, Collections.emptyList());
+        return activeIds;
+    }
+
+    private List<Data> mapped(String json, ActiveIdsFilter activeIds) {
+        MetricData metricData = gson.fromJson(json, MetricDataMessage.class).getMetricData();
+        List<Data> result = new ArrayList<>(metricData.getData().size());
+        for (SingleMetric m : metricData.getData()) {
+            if (DataMessageDecoder.isNeeded(activeIds, metricData.getTenantId(), m.getSource())) {
+                NumericData numericData = new NumericData(m.getSource(), m.getTimestamp(), m.getValue());
+                numericData.setTenantId(metricData.getTenantId());
+                result.add(numericData);
+            }
+        }
+        return result;
+    }
+
+    private List<Data> streamed(String json, ActiveIdsFilter activeIds) throws Exception {
+        List<Data> result = new ArrayList<>();
+        DataMessageDecoder.decodeMetricData(json, activeIds, result);
+        return result;
+    }
+
+    private void measure(String name, Decoder decoder, ActiveIdsFilter activeIds, int expected) throws Exception {
+        String json = message();
+        for (int i = 0; i < WARMUP; i++) {
+            assertEquals(expected, decoder.decode(json, activeIds).size());
+        }
+        long threadId = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decoder.decode(json, activeIds);
+        }
+        long elapsed = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(threadId) - bytes;
+
+        log.infof("%s: %.1f messages/s, %.0f samples/s, %s KB allocated per message", name,
+                ITERATIONS * 1e9 / elapsed, (double) ITERATIONS * SAMPLES * 1e9 / elapsed,
+                bytes / ITERATIONS / 1024);
+    }
+
+    @Test
+    public void test000MappedAll() throws Exception {
+        measure("Mapped, all forwarded", this::mapped, null, SAMPLES);
+    }
+
+    @Test
+    public void test001StreamedAll() throws Exception {
+        measure("Streamed, all forwarded", this::streamed, null, SAMPLES);
+    }
+
+    @Test
+    public void test002MappedFiltered() throws Exception {
+        measure("Mapped, 10% active", this::mapped, activeIds(10), SAMPLES / 10);
+    }
+
+    @Test
+    public void test003StreamedFiltered() throws Exception {
+        measure("Streamed, 10% active", this::streamed, activeIds(10), SAMPLES / 10);
+    }
+}
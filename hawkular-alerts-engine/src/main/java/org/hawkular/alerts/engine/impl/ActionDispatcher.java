@@ -0,0 +1,647 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.services.ActionDeliveryException;
+import org.hawkular.alerts.api.services.ActionListener;
+import org.hawkular.alerts.engine.log.MsgLogger;
+import org.jboss.logging.Logger;
+
+/**
+ * Delivers the actions sent by the rules to the {@link ActionListener}s out of the rules evaluation thread.
+ *
+ * Actions are queued in a bounded queue, an action that does not fit is dropped so the rules never wait for the
+ * listeners. A dispatcher thread moves the queued actions to a queue per action plugin, and a pool of workers
+ * delivers them in batches to the listeners, with at most <code>pluginConcurrency</code> batches of the same
+ * plugin in progress. So a slow plugin does not hold the actions of the other plugins.
+ *
+ * An action is removed from the dispatcher once it has been delivered to all the listeners. When a listener fails,
+ * the actions of the batch are delivered again only to that listener, after a delay doubled on every attempt. A
+ * listener that throws an {@link ActionDeliveryException} gets again only the actions it reports as failed. An
+ * action still not taken after <code>maxRetries</code> retries is kept as a dead letter, up to
+ * <code>maxDeadLetters</code>, the oldest dead letters are evicted from memory. With an {@link ActionJournal} the
+ * accepted actions are journaled, and the actions not delivered before a restart, dead letters evicted or not, are
+ * sent again when the dispatcher is created.
+ */
+public class ActionDispatcher {
+    private static final long OVERFLOW_CHECK_MS = 1000L;
+    private static final long JOURNAL_COMPACT_RECORDS = 10000L;
+    private static final long MAX_RETRY_DELAY_MS = 60000L;
+
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
+    private final Logger log = Logger.getLogger(ActionDispatcher.class);
+
+    private final int capacity;
+    private final int batchSize;
+    private final int pluginConcurrency;
+    private final int maxRetries;
+    private final long retryDelay;
+    private final int maxDeadLetters;
+    private final BlockingQueue<PendingAction> queue;
+    private final Map<String, PluginQueue> pluginQueues = new ConcurrentHashMap<>();
+    private final Collection<ActionListener> listeners;
+    private final ActionJournal journal;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentSkipListMap<Long, PendingAction> inFlight = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<Long, PendingAction> deadLetters = new ConcurrentSkipListMap<>();
+    private final AtomicInteger numDeadLetters = new AtomicInteger();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService retries;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder dispatchLatency = new LongAdder();
+    private final AtomicLong maxDispatchLatency = new AtomicLong();
+    private long lastDrops = 0;
+    private long compactedRecords = 0;
+
+    /**
+     * @param capacity max number of actions waiting to be delivered
+     * @param numWorkers number of threads delivering actions to the listeners
+     * @param pluginConcurrency max number of batches of the same action plugin delivered at the same time
+     * @param batchSize max number of actions delivered to the listeners in a single call
+     * @param listeners the listeners, registered listeners are visible to the dispatcher
+     */
+    public ActionDispatcher(int capacity, int numWorkers, int pluginConcurrency, int batchSize,
+            Collection<ActionListener> listeners) {
+        this(capacity, numWorkers, pluginConcurrency, batchSize, listeners, null);
+    }
+
+    /**
+     * @param capacity max number of actions waiting to be delivered
+     * @param numWorkers number of threads delivering actions to the listeners
+     * @param pluginConcurrency max number of batches of the same action plugin delivered at the same time
+     * @param batchSize max number of actions delivered to the listeners in a single call
+     * @param listeners the listeners, registered listeners are visible to the dispatcher
+     * @param journal journal of the accepted actions, null to keep them only in memory
+     */
+    public ActionDispatcher(int capacity, int numWorkers, int pluginConcurrency, int batchSize,
+            Collection<ActionListener> listeners, ActionJournal journal) {
+        this(capacity, numWorkers, pluginConcurrency, batchSize, listeners, journal, 5, 1000L);
+    }
+
+    /**
+     * @param capacity max number of actions waiting to be delivered
+     * @param numWorkers number of threads delivering actions to the listeners
+     * @param pluginConcurrency max number of batches of the same action plugin delivered at the same time
+     * @param batchSize max number of actions delivered to the listeners in a single call
+     * @param listeners the listeners, registered listeners are visible to the dispatcher
+     * @param journal journal of the accepted actions, null to keep them only in memory
+     * @param maxRetries max number of times an action is delivered again to a failed listener
+     * @param retryDelay delay in milliseconds before the first retry, doubled on every retry
+     */
+    public ActionDispatcher(int capacity, int numWorkers, int pluginConcurrency, int batchSize,
+            Collection<ActionListener> listeners, ActionJournal journal, int maxRetries, long retryDelay) {
+        this(capacity, numWorkers, pluginConcurrency, batchSize, listeners, journal, maxRetries, retryDelay, 1000);
+    }
+
+    /**
+     * @param capacity max number of actions waiting to be delivered
+     * @param numWorkers number of threads delivering actions to the listeners
+     * @param pluginConcurrency max number of batches of the same action plugin delivered at the same time
+     * @param batchSize max number of actions delivered to the listeners in a single call
+     * @param listeners the listeners, registered listeners are visible to the dispatcher
+     * @param journal journal of the accepted actions, null to keep them only in memory
+     * @param maxRetries max number of times an action is delivered again to a failed listener
+     * @param retryDelay delay in milliseconds before the first retry, doubled on every retry
+     * @param maxDeadLetters max number of dead letters kept in memory, the journal keeps the evicted ones
+     */
+    public ActionDispatcher(int capacity, int numWorkers, int pluginConcurrency, int batchSize,
+            Collection<ActionListener> listeners, ActionJournal journal, int maxRetries, long retryDelay,
+            int maxDeadLetters) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("NumWorkers must be greater than 0");
+        }
+        if (pluginConcurrency < 1) {
+            throw new IllegalArgumentException("PluginConcurrency must be greater than 0");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("BatchSize must be greater than 0");
+        }
+        if (listeners == null) {
+            throw new IllegalArgumentException("Listeners must be not null");
+        }
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("MaxRetries must be not negative");
+        }
+        if (retryDelay < 1) {
+            throw new IllegalArgumentException("RetryDelay must be greater than 0");
+        }
+        if (maxDeadLetters < 0) {
+            throw new IllegalArgumentException("MaxDeadLetters must be not negative");
+        }
+        this.capacity = capacity;
+        this.maxRetries = maxRetries;
+        this.retryDelay = retryDelay;
+        this.maxDeadLetters = maxDeadLetters;
+        this.batchSize = batchSize;
+        this.pluginConcurrency = pluginConcurrency;
+        this.listeners = listeners;
+        this.journal = journal;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        if (journal != null) {
+            recover();
+        }
+        AtomicInteger workerId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(numWorkers, r -> {
+            Thread t = new Thread(r, "hawkular-alerts-action-worker-" + workerId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.retries = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hawkular-alerts-action-retry");
+            t.setDaemon(true);
+            return t;
+        });
+        this.dispatcher = new Thread(this::dispatch, "hawkular-alerts-action-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queue an action to be delivered to the listeners. It never blocks.
+     * @param action the action to deliver
+     * @return true if the action was queued, false if it was dropped because the queue is full
+     */
+    public boolean send(Action action) {
+        if (action == null) {
+            throw new IllegalArgumentException("Action must be not null");
+        }
+        if (!running) {
+            drops.increment();
+            return false;
+        }
+        PendingAction pendingAction = new PendingAction(sequence.incrementAndGet(), action, System.nanoTime());
+        inFlight.put(pendingAction.seq, pendingAction);
+        depth.incrementAndGet();
+        journal(pendingAction, true);
+        if (!queue.offer(pendingAction)) {
+            inFlight.remove(pendingAction.seq);
+            depth.decrementAndGet();
+            journal(pendingAction, false);
+            drops.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /*
+        The journal is written before the action is queued, so a delivered mark never precedes its action.
+        Once stopped the journal is closed, the actions delivered meanwhile are kept pending and sent again.
+     */
+    private void journal(PendingAction pendingAction, boolean added) {
+        if (journal == null || !running) {
+            return;
+        }
+        try {
+            if (added) {
+                journal.append(pendingAction.seq, pendingAction.action);
+            } else {
+                journal.delivered(pendingAction.seq);
+            }
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            msgLog.errorActionJournal(e.getMessage());
+        }
+    }
+
+    /*
+        Queues again the actions of the journal not delivered, and compacts the journal with them.
+        Actions that do not fit in the queue are dropped.
+     */
+    private void recover() {
+        try {
+            Map<Long, Action> recovered = journal.recover();
+            long now = System.nanoTime();
+            for (Map.Entry<Long, Action> entry : recovered.entrySet()) {
+                PendingAction pendingAction = new PendingAction(entry.getKey(), entry.getValue(), now);
+                if (queue.offer(pendingAction)) {
+                    inFlight.put(pendingAction.seq, pendingAction);
+                    depth.incrementAndGet();
+                } else {
+                    drops.increment();
+                }
+                sequence.set(Math.max(sequence.get(), entry.getKey()));
+            }
+            compactJournal();
+            log.debugf("Recovered [%s] actions from %s", recovered.size(), journal);
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            msgLog.errorActionJournal(e.getMessage());
+        }
+    }
+
+    /*
+        The pending actions are read from the journal holding its lock, so an action accepted meanwhile is either in
+        the compacted journal or appended after it. Dead letters, also the ones evicted from memory, are kept to be
+        sent again on next start.
+     */
+    private void compactJournal() throws IOException {
+        synchronized (journal) {
+            journal.compact(journal.recover());
+            compactedRecords = journal.getRecords();
+        }
+    }
+
+    private void maintainJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.flush();
+            if (journal.getRecords() > compactedRecords + JOURNAL_COMPACT_RECORDS) {
+                compactJournal();
+            }
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            msgLog.errorActionJournal(e.getMessage());
+        }
+    }
+
+    private void dispatch() {
+        List<PendingAction> batch = new ArrayList<>(batchSize);
+        Set<PluginQueue> touched = new HashSet<>();
+        while (running) {
+            try {
+                PendingAction first = queue.poll(OVERFLOW_CHECK_MS, TimeUnit.MILLISECONDS);
+                checkOverflow();
+                maintainJournal();
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (PendingAction pendingAction : batch) {
+                    String actionPlugin = pendingAction.action.getActionPlugin();
+                    PluginQueue pluginQueue = pluginQueues.computeIfAbsent(actionPlugin == null ? "" : actionPlugin,
+                            PluginQueue::new);
+                    pluginQueue.actions.add(pendingAction);
+                    touched.add(pluginQueue);
+                }
+                for (PluginQueue pluginQueue : touched) {
+                    schedule(pluginQueue);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.debug(e.getMessage(), e);
+                msgLog.errorProcessingAction(e.getMessage());
+            } finally {
+                batch.clear();
+                touched.clear();
+            }
+        }
+    }
+
+    private void checkOverflow() {
+        long currentDrops = drops.sum();
+        if (currentDrops > lastDrops) {
+            msgLog.warnActionDispatcherOverflow(currentDrops - lastDrops, toString());
+            lastDrops = currentDrops;
+        }
+    }
+
+    /*
+        Starts workers for the plugin queue while there are pending actions and the plugin limit allows it.
+        Called by the dispatcher when actions are added and by the workers when a batch is delivered.
+     */
+    private void schedule(PluginQueue pluginQueue) {
+        while (running && !pluginQueue.actions.isEmpty()) {
+            int inProgress = pluginQueue.inProgress.get();
+            if (inProgress >= pluginConcurrency) {
+                return;
+            }
+            if (pluginQueue.inProgress.compareAndSet(inProgress, inProgress + 1)) {
+                workers.execute(() -> deliver(pluginQueue));
+            }
+        }
+    }
+
+    private void deliver(PluginQueue pluginQueue) {
+        try {
+            List<PendingAction> batch = new ArrayList<>(batchSize);
+            PendingAction pendingAction;
+            while (batch.size() < batchSize && (pendingAction = pluginQueue.actions.poll()) != null) {
+                batch.add(pendingAction);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Action> actions = new ArrayList<>(batch.size());
+            List<PendingAction> owed = new ArrayList<>(batch.size());
+            for (ActionListener listener : listeners) {
+                for (PendingAction p : batch) {
+                    if (p.owes(listener)) {
+                        actions.add(p.action);
+                        owed.add(p);
+                    }
+                }
+                if (actions.isEmpty()) {
+                    continue;
+                }
+                try {
+                    listener.process(actions);
+                } catch (ActionDeliveryException e) {
+                    failures.increment();
+                    log.debug(e.getMessage(), e);
+                    msgLog.errorProcessingAction(e.getMessage());
+                    Set<Action> failedActions = Collections.newSetFromMap(new IdentityHashMap<>());
+                    failedActions.addAll(e.getFailedActions());
+                    for (PendingAction p : owed) {
+                        if (failedActions.contains(p.action)) {
+                            p.failed(listener);
+                        }
+                    }
+                } catch (Exception e) {
+                    failures.increment();
+                    log.debug(e.getMessage(), e);
+                    msgLog.errorProcessingAction(e.getMessage());
+                    for (PendingAction p : owed) {
+                        p.failed(listener);
+                    }
+                } finally {
+                    actions.clear();
+                    owed.clear();
+                }
+            }
+            long now = System.nanoTime();
+            int delivered = 0;
+            for (PendingAction p : batch) {
+                if (p.endAttempt()) {
+                    long latency = now - p.queued;
+                    dispatchLatency.add(latency);
+                    maxDispatchLatency.accumulateAndGet(latency, Math::max);
+                    inFlight.remove(p.seq);
+                    journal(p, false);
+                    delivered++;
+                } else {
+                    retry(pluginQueue, p);
+                }
+            }
+            dispatched.add(delivered);
+            depth.addAndGet(-delivered);
+        } finally {
+            pluginQueue.inProgress.decrementAndGet();
+            schedule(pluginQueue);
+        }
+    }
+
+    /*
+        The action is queued again for the failed listeners after the backoff delay, or kept as a dead letter when
+        the retries are exhausted. Once stopped it is left pending in the journal.
+        Dead letters over maxDeadLetters evict the oldest ones, which are never marked as delivered in the journal.
+     */
+    private void retry(PluginQueue pluginQueue, PendingAction pendingAction) {
+        if (pendingAction.attempts > maxRetries) {
+            inFlight.remove(pendingAction.seq);
+            deadLetters.put(pendingAction.seq, pendingAction);
+            numDeadLetters.incrementAndGet();
+            depth.decrementAndGet();
+            msgLog.warnActionDeadLetter(pendingAction.attempts, pendingAction.action.toString());
+            while (numDeadLetters.get() > maxDeadLetters && deadLetters.pollFirstEntry() != null) {
+                numDeadLetters.decrementAndGet();
+                evicted.increment();
+            }
+            return;
+        }
+        long delay = Math.min(retryDelay << Math.min(pendingAction.attempts - 1, 30), MAX_RETRY_DELAY_MS);
+        try {
+            retries.schedule(() -> {
+                retried.increment();
+                pluginQueue.actions.add(pendingAction);
+                schedule(pluginQueue);
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debugf("Dispatcher stopped, action kept pending: %s", pendingAction.action);
+        }
+    }
+
+    /**
+     * Stop the dispatcher and the workers. Queued actions not delivered yet are discarded, or kept in the journal
+     * to be sent again on the next start.
+     */
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+        retries.shutdownNow();
+        workers.shutdown();
+        if (journal != null) {
+            try {
+                workers.awaitTermination(OVERFLOW_CHECK_MS, TimeUnit.MILLISECONDS);
+                journal.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.debug(e.getMessage(), e);
+                msgLog.errorActionJournal(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return number of actions queued or in delivery
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return time in nanoseconds since the oldest action not delivered yet was sent, 0 if there is none
+     */
+    public long getOldestAge() {
+        Map.Entry<Long, PendingAction> oldest = inFlight.firstEntry();
+        return oldest == null ? 0 : System.nanoTime() - oldest.getValue().queued;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return total number of actions delivered to the listeners
+     */
+    public long getDispatched() {
+        return dispatched.sum();
+    }
+
+    /**
+     * @return total number of actions dropped because the queue was full
+     */
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    /**
+     * @return total number of listener calls that failed
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return total number of actions delivered again to a failed listener
+     */
+    public long getRetries() {
+        return retried.sum();
+    }
+
+    /**
+     * @return number of actions not taken by a listener after all the retries, kept in memory
+     */
+    public int getDeadLetters() {
+        return numDeadLetters.get();
+    }
+
+    /**
+     * @return total number of dead letters evicted from memory to keep at most <code>maxDeadLetters</code>
+     */
+    public long getEvictedDeadLetters() {
+        return evicted.sum();
+    }
+
+    /**
+     * @return the actions not taken by a listener after all the retries, oldest first
+     */
+    public List<Action> getDeadLetterActions() {
+        List<Action> result = new ArrayList<>(deadLetters.size());
+        for (PendingAction pendingAction : deadLetters.values()) {
+            result.add(pendingAction.action);
+        }
+        return result;
+    }
+
+    /**
+     * @return average time in nanoseconds from the action sent to its delivery to all the listeners
+     */
+    public long getAvgDispatchLatency() {
+        long n = dispatched.sum();
+        return n == 0 ? 0 : dispatchLatency.sum() / n;
+    }
+
+    /**
+     * @return max time in nanoseconds from the action sent to its delivery to all the listeners
+     */
+    public long getMaxDispatchLatency() {
+        return maxDispatchLatency.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ActionDispatcher [capacity=" + capacity +
+                ", depth=" + getDepth() +
+                ", oldestAge=" + getOldestAge() +
+                ", dispatched=" + getDispatched() +
+                ", drops=" + getDrops() +
+                ", failures=" + getFailures() +
+                ", retries=" + getRetries() +
+                ", deadLetters=" + getDeadLetters() +
+                ", evictedDeadLetters=" + getEvictedDeadLetters() +
+                ", avgDispatchLatency=" + getAvgDispatchLatency() +
+                ", maxDispatchLatency=" + getMaxDispatchLatency() + "]";
+    }
+
+    /*
+        A batch is delivered by one worker at a time, so the delivery state is not shared between threads.
+     */
+    private static class PendingAction {
+        final long seq;
+        final Action action;
+        final long queued;
+        int attempts;
+        // listeners that have not taken the action yet, null for all of them
+        Set<ActionListener> remaining;
+        // listeners failed in the current attempt
+        Set<ActionListener> failed;
+
+        PendingAction(long seq, Action action, long queued) {
+            this.seq = seq;
+            this.action = action;
+            this.queued = queued;
+        }
+
+        boolean owes(ActionListener listener) {
+            return remaining == null || remaining.contains(listener);
+        }
+
+        void failed(ActionListener listener) {
+            if (failed == null) {
+                failed = new HashSet<>();
+            }
+            failed.add(listener);
+        }
+
+        /*
+            Returns true if every listener has taken the action.
+         */
+        boolean endAttempt() {
+            attempts++;
+            remaining = failed;
+            failed = null;
+            return remaining == null;
+        }
+    }
+
+    private static class PluginQueue {
+        final String actionPlugin;
+        final Queue<PendingAction> actions = new ConcurrentLinkedQueue<>();
+        final AtomicInteger inProgress = new AtomicInteger();
+
+        PluginQueue(String actionPlugin) {
+            this.actionPlugin = actionPlugin;
+        }
+
+        @Override
+        public String toString() {
+            return "PluginQueue [actionPlugin=" + actionPlugin + ", inProgress=" + inProgress.get() + "]";
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hawkular.alerts.api.model.action.Action;
+import org.jboss.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Append-only file journal of the actions accepted by the {@link ActionDispatcher}, so the actions not delivered
+ * yet survive a restart.
+ *
+ * Each accepted action is appended as a <code>A seq json</code> line, and a <code>D seq</code> line is appended
+ * when it has been delivered to all the listeners. Lines are buffered and written on {@link #flush()}.
+ * {@link #compact(Map)} rewrites the journal with the pending actions only, so it does not grow without bound.
+ */
+public class ActionJournal {
+    private static final String ADDED = "A";
+    private static final String DELIVERED = "D";
+
+    private final Logger log = Logger.getLogger(ActionJournal.class);
+
+    private final File file;
+    private final Gson gson;
+    private Writer writer;
+    private long records = 0;
+
+    public ActionJournal(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("File must be not null");
+        }
+        this.file = file;
+        this.gson = new GsonBuilder().create();
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create folder " + parent);
+        }
+        this.writer = open();
+    }
+
+    private Writer open() throws IOException {
+        return Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Read the actions of the journal not marked as delivered.
+     * @return pending actions by sequence number, in the order they were accepted
+     * @throws IOException on any problem reading the journal
+     */
+    public synchronized TreeMap<Long, Action> recover() throws IOException {
+        writer.flush();
+        TreeMap<Long, Action> pending = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    if (line.startsWith(ADDED + " ")) {
+                        int separator = line.indexOf(' ', 2);
+                        long seq = Long.parseLong(line.substring(2, separator));
+                        pending.put(seq, gson.fromJson(line.substring(separator + 1), Action.class));
+                    } else if (line.startsWith(DELIVERED + " ")) {
+                        pending.remove(Long.parseLong(line.substring(2)));
+                    }
+                } catch (Exception e) {
+                    // a partial line written on a crash, the action was not accepted
+                    log.debugf("Skipping journal line [%s] %s", line, e.getMessage());
+                }
+            }
+        }
+        return pending;
+    }
+
+    public synchronized void append(long seq, Action action) throws IOException {
+        writer.write(ADDED + " " + seq + " " + gson.toJson(action) + "\n");
+        records++;
+    }
+
+    public synchronized void delivered(long seq) throws IOException {
+        writer.write(DELIVERED + " " + seq + "\n");
+        records++;
+    }
+
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    /**
+     * @return number of lines written since the last compaction
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * Replace the journal with the given pending actions. The new journal is written aside and moved over the old
+     * one, so a crash during the compaction keeps a valid journal.
+     * @param pending pending actions by sequence number
+     * @throws IOException on any problem writing the journal
+     */
+    public synchronized void compact(Map<Long, Action> pending) throws IOException {
+        File compacted = new File(file.getPath() + ".compact");
+        try (Writer out = Files.newBufferedWriter(compacted.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<Long, Action> entry : pending.entrySet()) {
+                out.write(ADDED + " " + entry.getKey() + " " + gson.toJson(entry.getValue()) + "\n");
+            }
+        }
+        writer.close();
+        Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        writer = open();
+        records = pending.size();
+    }
+
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ActionJournal [file=" + file + "]";
+    }
+}
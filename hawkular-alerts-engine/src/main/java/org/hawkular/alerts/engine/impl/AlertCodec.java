@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.ByteBuffer;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+
+/**
+ * Encoding of the {@link Alert} payloads stored in the alerts table.
+ *
+ * A codec must recognize its own payloads, so rows written with different codecs can be read from the same table,
+ * see {@link AlertCodecs#decode(ByteBuffer, boolean)}.
+ */
+public interface AlertCodec {
+
+    /**
+     * @return the name of the codec, as used in the <code>hawkular-alerts.alerts-payload-codec</code> property
+     */
+    String getName();
+
+    /**
+     * @param alert the Alert to encode
+     * @return the payload of the alert
+     */
+    ByteBuffer encode(Alert alert);
+
+    /**
+     * The position of the payload is not modified.
+     *
+     * @param payload a payload written by this codec
+     * @param thin true if the evalSets and resolvedEvalSets of the alert must not be decoded
+     * @return the decoded Alert
+     */
+    Alert decode(ByteBuffer payload, boolean thin);
+
+    /**
+     * @param payload a payload of the alerts table
+     * @return true if the payload was written by this codec
+     */
+    boolean canDecode(ByteBuffer payload);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+
+/**
+ * Registry of the {@link AlertCodec} available to read and write alert payloads.
+ *
+ * Alerts are written with a single codec, but any registered codec can read, so the format of the alerts table can
+ * be changed without rewriting the existing rows.
+ */
+public final class AlertCodecs {
+
+    private static final List<AlertCodec> codecs = new CopyOnWriteArrayList<>();
+
+    static {
+        JsonAlertCodec json = new JsonAlertCodec();
+        register(new BinaryAlertCodec(json));
+        register(json);
+    }
+
+    private AlertCodecs() {
+    }
+
+    /**
+     * Registers a codec, replacing a previous one with the same name.
+     *
+     * @param codec the AlertCodec to register
+     */
+    public static void register(AlertCodec codec) {
+        if (codec == null) {
+            throw new IllegalArgumentException("Codec must be not null");
+        }
+        codecs.removeIf(c -> c.getName().equals(codec.getName()));
+        codecs.add(codec);
+    }
+
+    /**
+     * @param name the name of a registered codec
+     * @return the codec
+     */
+    public static AlertCodec get(String name) {
+        for (AlertCodec codec : codecs) {
+            if (codec.getName().equals(name)) {
+                return codec;
+            }
+        }
+        throw new IllegalArgumentException("Unknown alert codec [" + name + "]");
+    }
+
+    /**
+     * @param payload a payload of the alerts table, written by any registered codec
+     * @param thin true if the evalSets and resolvedEvalSets of the alert must not be decoded
+     * @return the decoded Alert
+     */
+    public static Alert decode(ByteBuffer payload, boolean thin) {
+        if (payload == null) {
+            throw new IllegalArgumentException("Payload must be not null");
+        }
+        for (AlertCodec codec : codecs) {
+            if (codec.canDecode(payload)) {
+                return codec.decode(payload, thin);
+            }
+        }
+        throw new IllegalArgumentException("Unknown alert payload format");
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+
+/**
+ * Time buckets of the alerts tables.
+ *
+ * Alerts rows are partitioned by tenantId and the day of the alert ctime, so a partition stops growing when its
+ * day is over and a query on a ctime range only reads the partitions of the days in the range. The bucket of an
+ * alert is the start of the day of its ctime in epoch milliseconds.
+ */
+public final class AlertsBuckets {
+
+    /**
+     * Size of a bucket in milliseconds. It is part of the stored layout, rows are not found if it is changed.
+     */
+    public static final long BUCKET_SIZE = TimeUnit.DAYS.toMillis(1);
+
+    private AlertsBuckets() {
+    }
+
+    /**
+     * @param ctime time in epoch milliseconds
+     * @return the bucket for the given time
+     */
+    public static long bucket(long ctime) {
+        return Math.floorDiv(ctime, BUCKET_SIZE) * BUCKET_SIZE;
+    }
+
+    /**
+     * @param alert an Alert
+     * @return the bucket where the alert is stored
+     */
+    public static long bucket(Alert alert) {
+        return bucket(alert.getCtime());
+    }
+
+    /**
+     * Alerts generated by the engine have ids in the form <code>triggerId|ctime</code>, so the bucket can be resolved
+     * from the id without reading the alert.
+     *
+     * @param alertId id of an Alert
+     * @return the bucket of the alert, or null if it can not be resolved from the id
+     */
+    public static Long bucket(String alertId) {
+        if (alertId == null) {
+            return null;
+        }
+        int i = alertId.lastIndexOf('|');
+        if (i < 0 || i == alertId.length() - 1) {
+            return null;
+        }
+        try {
+            return bucket(Long.parseLong(alertId.substring(i + 1)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
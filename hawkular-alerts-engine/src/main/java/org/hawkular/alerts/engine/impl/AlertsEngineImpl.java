@@ -16,8 +16,14 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -25,8 +31,16 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
 import javax.ejb.Singleton;
 
@@ -39,40 +53,136 @@ import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.ActionsService;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.DefinitionsSnapshot;
 import org.hawkular.alerts.engine.log.MsgLogger;
 import org.hawkular.alerts.engine.rules.RulesEngine;
 import org.hawkular.alerts.engine.service.AlertsEngine;
+import org.hawkular.alerts.engine.service.IngestionBuffer;
 import org.jboss.logging.Logger;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
 /**
  * Cassandra implementation for {@link org.hawkular.alerts.api.services.AlertsService}.
  * This implementation processes data asynchronously using a buffer queue.
  *
+ * Two engine modes are supported, configured with <code>hawkular-alerts.engine-mode</code>:
+ * <ul>
+ *   <li><b>periodic</b>: pending data is evaluated every <code>hawkular-alerts.engine-period</code> ms.</li>
+ *   <li><b>event</b> (default): pending data is evaluated as soon as it arrives, in micro-batches. A batch is
+ *   closed when <code>hawkular-alerts.engine-batch-size</code> datums are pending or when the first pending datum
+ *   has waited <code>hawkular-alerts.engine-batch-linger</code> ms, whichever comes first.</li>
+ * </ul>
+ * In both modes the periodic task is kept, as it is needed to check the dampening timeouts.
+ *
+ * Incoming data is queued in a bounded {@link IngestionBuffer} of <code>hawkular-alerts.engine-buffer-capacity</code>
+ * elements. When the buffer is full the <code>hawkular-alerts.engine-buffer-overflow</code> policy is applied
+ * (BLOCK, DROP_OLDEST, DROP_NEWEST or REJECT) and an immediate evaluation is requested to drain it.
+ *
+ * If <code>hawkular-alerts.engine-partitions</code> is greater than 1 the triggers are sharded across that number
+ * of rules sessions evaluated in parallel, see {@link PartitionedRulesEngineImpl}.
+ *
+ * The rules engine implementation is selected with <code>hawkular-alerts.rules-engine</code>: <b>drools</b>
+ * (default) or <b>native</b>, see {@link NativeRulesEngineImpl}.
+ *
+ * Incoming data not referenced by any loaded Condition is discarded before it is buffered, using a
+ * {@link DataRoutingIndex}. This can be disabled with <code>hawkular-alerts.engine-data-filter=false</code>.
+ *
+ * {@link #reload()} reconciles the stored definitions with the ones loaded in the rules engine, with
+ * <code>hawkular-alerts.engine-reload</code>:
+ * <ul>
+ *   <li><b>reconcile</b> (default): only new, updated and removed Triggers are loaded or removed. Unchanged Triggers
+ *   keep their Dampening state and mode, and data is evaluated during the reload.</li>
+ *   <li><b>reset</b>: the rules engine session is reset and all the Triggers are loaded again.</li>
+ * </ul>
+ * In both modes all the definitions are fetched with one query per type (triggers, conditions, dampenings).
+ *
+ * The bean manages its own concurrency. Data is sent without taking any lock, so a producer blocked on a full buffer
+ * never holds a lock the rules task needs to drain it. Definition changes are serialized on the bean.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class AlertsEngineImpl implements AlertsEngine {
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(AlertsEngineImpl.class);
 
     private static final String ENGINE_DELAY = "hawkular-alerts.engine-delay";
     private static final String ENGINE_PERIOD = "hawkular-alerts.engine-period";
+    private static final String ENGINE_MODE = "hawkular-alerts.engine-mode";
+    private static final String ENGINE_BATCH_SIZE = "hawkular-alerts.engine-batch-size";
+    private static final String ENGINE_BATCH_LINGER = "hawkular-alerts.engine-batch-linger";
+    private static final String ENGINE_BUFFER_CAPACITY = "hawkular-alerts.engine-buffer-capacity";
+    private static final String ENGINE_BUFFER_OVERFLOW = "hawkular-alerts.engine-buffer-overflow";
+    private static final String ENGINE_PARTITIONS = "hawkular-alerts.engine-partitions";
+    private static final String ENGINE_DATA_FILTER = "hawkular-alerts.engine-data-filter";
+    private static final String RULES_ENGINE = "hawkular-alerts.rules-engine";
+    private static final String ENGINE_RELOAD = "hawkular-alerts.engine-reload";
+    private static final String ENGINE_RESOLVE_TIMEOUT = "hawkular-alerts.engine-resolve-timeout";
+
+    private static final String RULES_DROOLS = "drools";
+    private static final String RULES_NATIVE = "native";
+
+    private static final String MODE_PERIODIC = "periodic";
+    private static final String MODE_EVENT = "event";
+
+    private static final String RELOAD_RESET = "reset";
+    private static final String RELOAD_RECONCILE = "reconcile";
 
     private int delay;
     private int period;
-
-    private final List<Data> pendingData;
+    private boolean eventMode;
+    private int batchSize;
+    private int batchLinger;
+    private int numPartitions;
+    private boolean dataFilter;
+    private boolean nativeRules;
+    private boolean resetOnReload;
+    private long resolveTimeout;
+
+    private volatile IngestionBuffer<Data> pendingData;
+    private final DataRoutingIndex dataRoutingIndex;
+
+    /*
+        Definitions of the Triggers loaded in the rules engine, by tenantId and triggerId, as a SHA-1 fingerprint of
+        the json of the Trigger, Conditions and Dampenings read from the DefinitionsService. Used to find the updated
+        Triggers on reload without keeping a copy of every definition.
+     */
+    private final Map<String, Map<String, String>> loadedDefinitions;
+    private final Gson gson;
     private final List<Alert> alerts;
     private final Set<Dampening> pendingTimeouts;
     private final Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers;
     private final Set<Trigger> disabledTriggers;
+    /*
+        Alerts writes not known to be completed, only accessed from the timer thread.
+     */
+    private CompletableFuture<Void> pendingWrites = CompletableFuture.completedFuture(null);
 
     private final Timer wakeUpTimer;
+    /*
+        Only accessed with the bean lock held.
+     */
     private TimerTask rulesTask;
-
+    private final AtomicInteger batchState;
+    /*
+        Only accessed from the timer thread.
+     */
+    private long lastDrops;
+    private long lastRejects;
+
+    private static final int BATCH_NONE = 0;
+    private static final int BATCH_LINGER = 1;
+    private static final int BATCH_IMMEDIATE = 2;
+
+    /*
+        Replaced on reload when the rules engine implementation changes, read by the timer thread.
+     */
     @EJB
-    RulesEngine rules;
+    volatile RulesEngine rules;
 
     @EJB
     DefinitionsService definitions;
@@ -84,16 +194,49 @@ public class AlertsEngineImpl implements AlertsEngine {
     AlertsService alertsService;
 
     public AlertsEngineImpl() {
-        pendingData = new ArrayList<>();
-        alerts = new ArrayList<>();
-        pendingTimeouts = new HashSet<>();
-        autoResolvedTriggers = new HashMap<>();
-        disabledTriggers = new HashSet<>();
+        // Globals are updated concurrently when the rules are evaluated by several partitions
+        alerts = Collections.synchronizedList(new ArrayList<>());
+        pendingTimeouts = ConcurrentHashMap.newKeySet();
+        autoResolvedTriggers = new ConcurrentHashMap<>();
+        disabledTriggers = ConcurrentHashMap.newKeySet();
 
         wakeUpTimer = new Timer("CassAlertsServiceImpl-Timer");
 
         delay = new Integer(AlertProperties.getProperty(ENGINE_DELAY, "1000"));
         period = new Integer(AlertProperties.getProperty(ENGINE_PERIOD, "2000"));
+        eventMode = !MODE_PERIODIC.equalsIgnoreCase(AlertProperties.getProperty(ENGINE_MODE, MODE_EVENT));
+        batchSize = new Integer(AlertProperties.getProperty(ENGINE_BATCH_SIZE, "1000"));
+        batchLinger = new Integer(AlertProperties.getProperty(ENGINE_BATCH_LINGER, "20"));
+        batchState = new AtomicInteger(BATCH_NONE);
+        numPartitions = new Integer(AlertProperties.getProperty(ENGINE_PARTITIONS, "1"));
+        dataFilter = Boolean.valueOf(AlertProperties.getProperty(ENGINE_DATA_FILTER, "true"));
+        nativeRules = RULES_NATIVE.equalsIgnoreCase(AlertProperties.getProperty(RULES_ENGINE, RULES_DROOLS));
+        dataRoutingIndex = new DataRoutingIndex();
+        resetOnReload = RELOAD_RESET.equalsIgnoreCase(AlertProperties.getProperty(ENGINE_RELOAD, RELOAD_RECONCILE));
+        resolveTimeout = new Long(AlertProperties.getProperty(ENGINE_RESOLVE_TIMEOUT, "5000"));
+        loadedDefinitions = new ConcurrentHashMap<>();
+        gson = new GsonBuilder().create();
+
+        int capacity = new Integer(AlertProperties.getProperty(ENGINE_BUFFER_CAPACITY, "65536"));
+        IngestionBuffer.OverflowPolicy overflow = IngestionBuffer.OverflowPolicy.valueOf(AlertProperties
+                .getProperty(ENGINE_BUFFER_OVERFLOW, "BLOCK").trim().toUpperCase());
+        setPendingData(new RingIngestionBuffer<>(capacity, overflow));
+    }
+
+    public IngestionBuffer<Data> getPendingData() {
+        return pendingData;
+    }
+
+    public void setPendingData(IngestionBuffer<Data> pendingData) {
+        if (null == pendingData) {
+            throw new IllegalArgumentException("PendingData must be not null");
+        }
+        pendingData.setFullListener(this::scheduleImmediateBatchTask);
+        this.pendingData = pendingData;
+    }
+
+    public DataRoutingIndex getDataRoutingIndex() {
+        return dataRoutingIndex;
     }
 
     public RulesEngine getRules() {
@@ -140,10 +283,30 @@ public class AlertsEngineImpl implements AlertsEngine {
         }
     }
 
-    public void clear() {
-        rulesTask.cancel();
+    /**
+     * Stop the rules task and the rules engine worker threads, the engine can not be used after this call.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (rulesTask != null) {
+            rulesTask.cancel();
+            rulesTask = null;
+        }
+        wakeUpTimer.cancel();
+        if (rules instanceof PartitionedRulesEngineImpl) {
+            ((PartitionedRulesEngineImpl) rules).shutdown();
+        }
+    }
+
+    public synchronized void clear() {
+        if (rulesTask != null) {
+            rulesTask.cancel();
+        }
+        batchState.set(BATCH_NONE);
 
         rules.clear();
+        dataRoutingIndex.clear();
+        loadedDefinitions.clear();
 
         pendingData.clear();
         alerts.clear();
@@ -156,21 +319,28 @@ public class AlertsEngineImpl implements AlertsEngine {
     }
 
     @Override
-    public void reload() {
-        rules.reset();
-        if (rulesTask != null) {
-            rulesTask.cancel();
+    public synchronized void reload() {
+        if (initRules() || resetOnReload) {
+            rules.reset();
+            dataRoutingIndex.clear();
+            loadedDefinitions.clear();
+            if (rulesTask != null) {
+                rulesTask.cancel();
+                rulesTask = null;
+            }
         }
 
-        Collection<Trigger> triggers = null;
+        DefinitionsSnapshot snapshot = null;
         try {
-            triggers = definitions.getAllTriggers();
+            snapshot = definitions.getAllDefinitions();
         } catch (Exception e) {
             log.debugf(e.getMessage(), e);
             msgLog.errorDefinitionsService("Triggers", e.getMessage());
         }
-        if (triggers != null && !triggers.isEmpty()) {
-            triggers.stream().filter(Trigger::isEnabled).forEach(this::reloadTrigger);
+
+        // A failed read keeps the definitions already loaded
+        if (snapshot != null) {
+            reconcile(snapshot);
         }
 
         rules.addGlobal("log", log);
@@ -180,11 +350,97 @@ public class AlertsEngineImpl implements AlertsEngine {
         rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
         rules.addGlobal("disabledTriggers", disabledTriggers);
 
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, delay, period);
+        if (rulesTask == null) {
+            rulesTask = new RulesInvoker();
+            wakeUpTimer.schedule(rulesTask, delay, period);
+        }
+    }
+
+    /*
+        Loads the enabled Triggers not loaded or with updated definitions, and removes the loaded Triggers that are
+        no longer stored or enabled. Unchanged Triggers are not touched. Triggers are matched by tenantId and
+        triggerId, as triggerIds are only unique within a tenant.
+     */
+    private void reconcile(DefinitionsSnapshot snapshot) {
+        int loaded = 0;
+        int unchanged = 0;
+        Map<String, Set<String>> enabled = new HashMap<>();
+        for (Trigger trigger : snapshot.getTriggers()) {
+            if (!trigger.isEnabled()) {
+                continue;
+            }
+            enabled.computeIfAbsent(trigger.getTenantId(), k -> new HashSet<>()).add(trigger.getId());
+            Collection<Condition> conditionSet = snapshot.getTriggerConditions(trigger.getTenantId(),
+                    trigger.getId());
+            Collection<Dampening> triggerDampenings = snapshot.getTriggerDampenings(trigger.getTenantId(),
+                    trigger.getId());
+            if (fingerprint(trigger, conditionSet, triggerDampenings).equals(loadedDefinition(trigger))) {
+                unchanged++;
+            } else {
+                loadTrigger(trigger, conditionSet, triggerDampenings);
+                loaded++;
+            }
+        }
+
+        int removed = 0;
+        for (Map.Entry<String, Map<String, String>> tenant : loadedDefinitions.entrySet()) {
+            Set<String> tenantEnabled = enabled.getOrDefault(tenant.getKey(), Collections.emptySet());
+            for (String triggerId : new ArrayList<>(tenant.getValue().keySet())) {
+                if (!tenantEnabled.contains(triggerId)) {
+                    removeTrigger(doomedTrigger(tenant.getKey(), triggerId));
+                    removed++;
+                }
+            }
+        }
+
+        log.debugf("Reload: [%s] triggers loaded, [%s] unchanged, [%s] removed", loaded, unchanged, removed);
+    }
+
+    /*
+        Conditions and Dampenings are sorted so the fingerprint does not depend on the order they are read.
+        SHA-1 is supported by every Java platform.
+     */
+    private String fingerprint(Trigger trigger, Collection<Condition> conditionSet,
+            Collection<Dampening> dampenings) {
+        List<Condition> sortedConditions = new ArrayList<>(conditionSet);
+        sortedConditions.sort(Comparator.comparing(Condition::getConditionId));
+        List<Dampening> sortedDampenings = new ArrayList<>(dampenings);
+        sortedDampenings.sort(Comparator.comparing(Dampening::getDampeningId));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(gson.toJson(trigger).getBytes(StandardCharsets.UTF_8));
+            for (Condition c : sortedConditions) {
+                digest.update(gson.toJson(c).getBytes(StandardCharsets.UTF_8));
+            }
+            for (Dampening d : sortedDampenings) {
+                digest.update(gson.toJson(d).getBytes(StandardCharsets.UTF_8));
+            }
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+        Returns true if a new rules engine instance is used, so all the definitions must be loaded again.
+     */
+    private boolean initRules() {
+        if (numPartitions > 1) {
+            if (!(rules instanceof PartitionedRulesEngineImpl)) {
+                log.debugf("Partitioning rules engine in [%s] partitions", numPartitions);
+                rules = new PartitionedRulesEngineImpl(numPartitions,
+                        nativeRules ? NativeRulesEngineImpl::new : DroolsRulesEngineImpl::new);
+                return true;
+            }
+        } else if (nativeRules && !(rules instanceof NativeRulesEngineImpl)) {
+            log.debugf("Using native rules engine");
+            rules = new NativeRulesEngineImpl();
+            return true;
+        }
+        return false;
     }
 
-    public void reloadTrigger(final String tenantId, final String triggerId) {
+    public synchronized void reloadTrigger(final String tenantId, final String triggerId) {
         if (isEmpty(tenantId)) {
             throw new IllegalArgumentException("TenantId must be not null");
         }
@@ -201,8 +457,7 @@ public class AlertsEngineImpl implements AlertsEngine {
         }
         if (null == trigger) {
             log.debugf("Trigger not found for triggerId [" + triggerId + "], removing from rulebase if it exists");
-            Trigger doomedTrigger = new Trigger(triggerId, "doomed");
-            removeTrigger(doomedTrigger);
+            removeTrigger(doomedTrigger(tenantId, triggerId));
             return;
         }
 
@@ -214,9 +469,6 @@ public class AlertsEngineImpl implements AlertsEngine {
             throw new IllegalArgumentException("Trigger must be not null");
         }
 
-        // Look for the Trigger in the rules engine, if it is there then remove everything about it
-        removeTrigger(trigger);
-
         if (trigger.isEnabled()) {
             try {
                 Collection<Condition> conditionSet = definitions.getTriggerConditions(trigger.getTenantId(),
@@ -224,37 +476,57 @@ public class AlertsEngineImpl implements AlertsEngine {
                 Collection<Dampening> dampenings = definitions.getTriggerDampenings(trigger.getTenantId(),
                         trigger.getId(), null);
 
-                rules.addFact(trigger);
-                rules.addFacts(conditionSet);
-                if (!dampenings.isEmpty()) {
-                    rules.addFacts(dampenings);
-                }
+                loadTrigger(trigger, conditionSet, dampenings);
             } catch (Exception e) {
                 log.debugf(e.getMessage(), e);
                 msgLog.errorDefinitionsService("Conditions/Dampening", e.getMessage());
             }
+        } else {
+            removeTrigger(trigger);
+        }
+    }
+
+    private void loadTrigger(Trigger trigger, Collection<Condition> conditionSet, Collection<Dampening> dampenings) {
+        String fingerprint = fingerprint(trigger, conditionSet, dampenings);
+
+        // Look for the Trigger in the rules engine, if it is there then remove everything about it
+        removeTrigger(trigger);
+
+        rules.addFact(trigger);
+        rules.addFacts(conditionSet);
+        if (!dampenings.isEmpty()) {
+            rules.addFacts(dampenings);
         }
+        dataRoutingIndex.addTrigger(trigger.getTenantId(), trigger.getId(), conditionSet);
+        loadedDefinitions.computeIfAbsent(trigger.getTenantId(), k -> new ConcurrentHashMap<>())
+                .put(trigger.getId(), fingerprint);
+    }
+
+    private String loadedDefinition(Trigger trigger) {
+        Map<String, String> tenantDefinitions = loadedDefinitions.get(trigger.getTenantId());
+        return null == tenantDefinitions ? null : tenantDefinitions.get(trigger.getId());
+    }
+
+    /*
+        A Trigger no longer stored, only its tenantId and triggerId are needed to remove it.
+     */
+    private static Trigger doomedTrigger(String tenantId, String triggerId) {
+        Trigger doomedTrigger = new Trigger(triggerId, "doomed");
+        doomedTrigger.setTenantId(tenantId);
+        return doomedTrigger;
     }
 
     private void removeTrigger(Trigger trigger) {
-        if (null != rules.getFact(trigger)) {
-            // First remove the related Trigger facts from the engine
-            rules.removeFact(trigger);
-
-            // then remove everything else.
-            // We may want to do this with rules, because as is, we need to loop through every Fact in
-            // the rules engine doing a relatively slow check.
-            final String triggerId = trigger.getId();
-            rules.removeFacts(t -> {
-                if (t instanceof Dampening) {
-                    return ((Dampening) t).getTriggerId().equals(triggerId);
-                } else if (t instanceof Condition) {
-                    return ((Condition) t).getTriggerId().equals(triggerId);
-                }
-                return false;
-            });
-        } else {
-            log.debugf("Trigger not found. Not removed from rulebase %s", trigger);
+        dataRoutingIndex.removeTrigger(trigger.getTenantId(), trigger.getId());
+        Map<String, String> tenantDefinitions = loadedDefinitions.get(trigger.getTenantId());
+        if (null != tenantDefinitions) {
+            tenantDefinitions.remove(trigger.getId());
+        }
+        // The rules engine indexes the Trigger, Condition and Dampening facts by tenantId and triggerId, so this
+        // does not loop through every Fact. Conditions and Dampenings are removed also when the Trigger fact is not
+        // found, i.e. an autoDisabled Trigger.
+        if (!rules.removeTriggerFacts(trigger.getTenantId(), trigger.getId())) {
+            log.debugf("Trigger not found in rulebase %s", trigger);
         }
     }
 
@@ -263,6 +535,18 @@ public class AlertsEngineImpl implements AlertsEngine {
         if (data == null) {
             throw new IllegalArgumentException("Data must be not null");
         }
+        if (dataFilter) {
+            List<Data> referenced = new ArrayList<>(data.size());
+            for (Data d : data) {
+                if (dataRoutingIndex.isReferenced(d)) {
+                    referenced.add(d);
+                }
+            }
+            if (referenced.isEmpty()) {
+                return;
+            }
+            data = referenced;
+        }
         addPendingData(data);
     }
 
@@ -271,27 +555,82 @@ public class AlertsEngineImpl implements AlertsEngine {
         if (data == null) {
             throw new IllegalArgumentException("Data must be not null");
         }
+        if (dataFilter && !dataRoutingIndex.isReferenced(data)) {
+            log.tracef("Data not referenced by any condition, discarded %s", data);
+            return;
+        }
         addPendingData(data);
     }
 
-    private synchronized void addPendingData(Collection<Data> data) {
-        pendingData.addAll(data);
+    /*
+        Producers do not share any lock, the buffer is lock-free and the batch scheduling only needs a CAS.
+        If the buffer rejects a datum the IllegalStateException is propagated to the caller, as with REJECT policy
+        the remaining data of a collection is not added.
+     */
+    private void addPendingData(Collection<Data> data) {
+        for (Data d : data) {
+            pendingData.add(d);
+        }
+        scheduleBatchTask();
     }
 
-    private synchronized void addPendingData(Data data) {
+    private void addPendingData(Data data) {
         pendingData.add(data);
+        scheduleBatchTask();
     }
 
-    private synchronized Collection<Data> getAndClearPendingData() {
-        Collection<Data> result = new ArrayList<>(pendingData);
-        pendingData.clear();
+    private Collection<Data> getAndClearPendingData() {
+        // Pending data is drained, next incoming data opens a new batch
+        batchState.set(BATCH_NONE);
+        List<Data> result = new ArrayList<>(pendingData.size());
+        pendingData.drainTo(result, Integer.MAX_VALUE);
         return result;
     }
 
+    /*
+        In event mode a one-shot RulesInvoker is scheduled when a new batch is opened, delayed by the linger time.
+        If the batch reaches its size before the linger expires, another task is scheduled to run immediately.
+        Tasks run on the same Timer thread used for the periodic task, so rules are never fired concurrently.
+     */
+    private void scheduleBatchTask() {
+        if (!eventMode) {
+            return;
+        }
+        if (pendingData.size() >= batchSize) {
+            scheduleImmediateBatchTask();
+        } else if (batchState.compareAndSet(BATCH_NONE, BATCH_LINGER)) {
+            schedule(batchLinger);
+        }
+    }
+
+    /*
+        Also used as full listener of the buffer, so a full buffer is drained without waiting the period or linger.
+     */
+    private void scheduleImmediateBatchTask() {
+        int state = batchState.get();
+        while (state != BATCH_IMMEDIATE) {
+            if (batchState.compareAndSet(state, BATCH_IMMEDIATE)) {
+                schedule(0);
+                return;
+            }
+            state = batchState.get();
+        }
+    }
+
+    private void schedule(long batchDelay) {
+        try {
+            wakeUpTimer.schedule(new RulesInvoker(), batchDelay);
+        } catch (IllegalStateException e) {
+            log.debugf("Batch not scheduled, data will be processed on next period: %s", e.getMessage());
+            batchState.set(BATCH_NONE);
+        }
+    }
+
     private class RulesInvoker extends TimerTask {
         @Override
         public void run() {
             int numTimeouts = checkPendingTimeouts();
+            checkBufferOverflow();
 
             if (!pendingData.isEmpty() || numTimeouts > 0) {
                 Collection<Data> newData = getAndClearPendingData();
@@ -299,17 +638,30 @@ public class AlertsEngineImpl implements AlertsEngine {
                 log.debugf("Executing rules engine on [%1d] datums and [%2d] dampening timeouts.", newData.size(),
                         numTimeouts);
 
+                // a reload can replace the rules engine, the whole batch is fired on the same one
+                RulesEngine engine = rules;
                 try {
                     if (newData.isEmpty()) {
-                        rules.fireNoData();
+                        engine.fireNoData();
 
                     } else {
-                        rules.addData(newData);
+                        engine.addData(newData);
                         newData.clear();
                     }
 
-                    rules.fire();
-                    alertsService.addAlerts(alerts);
+                    engine.fire();
+                    if (!alerts.isEmpty()) {
+                        List<Alert> newAlerts = new ArrayList<>(alerts);
+                        CompletableFuture<Void> written = alertsService.addAlertsAsync(newAlerts);
+                        written.whenComplete((v, e) -> {
+                            if (e != null) {
+                                log.debug(e.getMessage(), e);
+                                msgLog.errorAlertsLost(newAlerts.size(), String.valueOf(e.getMessage()));
+                            }
+                        });
+                        pendingWrites = pendingWrites.isDone() ? written :
+                                CompletableFuture.allOf(pendingWrites, written);
+                    }
                     alerts.clear();
                     handleDisabledTriggers();
                     handleAutoResolvedTriggers();
@@ -324,6 +676,16 @@ public class AlertsEngineImpl implements AlertsEngine {
             }
         }
 
+        private void checkBufferOverflow() {
+            long drops = pendingData.getDrops();
+            long rejects = pendingData.getRejects();
+            if (drops > lastDrops || rejects > lastRejects) {
+                msgLog.warnIngestionBufferOverflow(drops - lastDrops, rejects - lastRejects, pendingData.toString());
+                lastDrops = drops;
+                lastRejects = rejects;
+            }
+        }
+
         private int checkPendingTimeouts() {
             if (pendingTimeouts.isEmpty()) {
                 return 0;
@@ -376,13 +738,36 @@ public class AlertsEngineImpl implements AlertsEngine {
     }
 
     private void handleAutoResolvedTriggers() {
+        if (autoResolvedTriggers.isEmpty()) {
+            return;
+        }
         try {
+            // the alerts to resolve must be persisted before resolving them, without holding the timer thread
+            // longer than resolveTimeout when the writes are slow
+            try {
+                pendingWrites.get(resolveTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                msgLog.warnAlertsWritesPendingOnResolve(resolveTimeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.debugf("Failed alerts writes before AutoResolve: %s", e);
+            }
             for (Map.Entry<Trigger, List<Set<ConditionEval>>> entry : autoResolvedTriggers.entrySet()) {
                 Trigger t = entry.getKey();
                 try {
                     if (t.isAutoResolveAlerts()) {
-                        alertsService.resolveAlertsForTrigger(t.getTenantId(), t.getId(), "AUTO", null,
-                                entry.getValue());
+                        // resolved alerts are written in background, as the new alerts
+                        CompletableFuture<Void> resolved = alertsService.resolveAlertsForTriggerAsync(
+                                t.getTenantId(), t.getId(), "AUTO", null, entry.getValue());
+                        resolved.whenComplete((v, e) -> {
+                            if (e != null) {
+                                log.errorf("Failed to resolve Alerts. Could not AutoResolve alerts for trigger %s",
+                                        t);
+                            }
+                        });
+                        pendingWrites = pendingWrites.isDone() ? resolved :
+                                CompletableFuture.allOf(pendingWrites, resolved);
                     }
                 } catch (Exception e) {
                     log.errorf("Failed to resolve Alerts. Could not AutoResolve alerts for trigger %s", t);
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.ToLongBiFunction;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+
+import com.datastax.driver.core.Statement;
+
+/**
+ * A clause of an {@link org.hawkular.alerts.api.model.paging.AlertsCriteria} query.
+ *
+ * Each filter can drive a query, reading the alertIds of its index with the <code>selects</code> statements, or can
+ * be checked on an alert already fetched by another filter with its <code>predicate</code>. The
+ * <code>counts</code> statements estimate how many alertIds the filter would read.
+ *
+ * Only the most selective filter drives the query, the rest are checked on the decoded alerts, so no set of
+ * alertIds is materialized per filter.
+ */
+public class AlertsFilter {
+
+    /**
+     * Kinds of filter, in the order they are expected to be more selective when there is no estimation.
+     */
+    public enum Kind {
+        ALERTS, TRIGGERS, CTIME, SEVERITIES, STATUSES
+    }
+
+    private final Kind kind;
+    private final Predicate<Alert> predicate;
+    private final List<Statement> selects;
+    private final List<Statement> counts;
+    private long estimate = -1;
+
+    public AlertsFilter(Kind kind, Predicate<Alert> predicate, List<Statement> selects, List<Statement> counts) {
+        if (kind == null) {
+            throw new IllegalArgumentException("Kind must be not null");
+        }
+        if (predicate == null) {
+            throw new IllegalArgumentException("Predicate must be not null");
+        }
+        this.kind = kind;
+        this.predicate = predicate;
+        this.selects = selects == null ? Collections.emptyList() : selects;
+        this.counts = counts == null ? Collections.emptyList() : counts;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Predicate<Alert> getPredicate() {
+        return predicate;
+    }
+
+    public List<Statement> getSelects() {
+        return selects;
+    }
+
+    public List<Statement> getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return the estimated number of alertIds read by this filter, -1 if it has not been estimated
+     */
+    public long getEstimate() {
+        return estimate;
+    }
+
+    public void setEstimate(long estimate) {
+        this.estimate = estimate;
+    }
+
+    /**
+     * Orders the filters by selectivity, the first one of the result is the one that should drive the query.
+     *
+     * Filters are estimated in the order of their {@link Kind}, each estimation is given as a bound the best estimate
+     * so far, so the estimator can stop counting once the filter is known to be less selective than a previous one.
+     * A filter of kind {@link Kind#ALERTS} is never estimated, it carries the alertIds explicitly.
+     *
+     * @param filters the filters of a query
+     * @param estimator estimation of a filter, bounded by the given best estimate so far
+     * @return the filters ordered by estimated selectivity
+     */
+    public static List<AlertsFilter> plan(List<AlertsFilter> filters,
+            ToLongBiFunction<AlertsFilter, Long> estimator) {
+        List<AlertsFilter> plan = new ArrayList<>(filters);
+        plan.sort(Comparator.comparing(AlertsFilter::getKind));
+        long best = Long.MAX_VALUE;
+        for (AlertsFilter filter : plan) {
+            if (filter.getEstimate() < 0) {
+                filter.setEstimate(filter.getKind() == Kind.ALERTS ? filter.getSelects().size() :
+                        estimator.applyAsLong(filter, best));
+            }
+            best = Math.min(best, filter.getEstimate());
+        }
+        // stable sort, with equal estimates the order of kinds is kept
+        plan.sort(Comparator.comparingLong(AlertsFilter::getEstimate));
+        return plan;
+    }
+
+    /**
+     * @param filters the filters of a query
+     * @param driver the filter that drives the query
+     * @return a predicate with the rest of filters
+     */
+    public static Predicate<Alert> residual(List<AlertsFilter> filters, AlertsFilter driver) {
+        Predicate<Alert> residual = a -> true;
+        for (AlertsFilter filter : filters) {
+            if (filter != driver) {
+                residual = residual.and(filter.getPredicate());
+            }
+        }
+        return residual;
+    }
+
+    @Override
+    public String toString() {
+        return "AlertsFilter [kind=" + kind +
+                ", selects=" + selects.size() +
+                ", estimate=" + estimate + "]";
+    }
+}
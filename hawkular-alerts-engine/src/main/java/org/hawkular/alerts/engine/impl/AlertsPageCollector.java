@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.paging.AlertComparator;
+import org.hawkular.alerts.api.model.paging.AlertComparator.Field;
+import org.hawkular.alerts.api.model.paging.Order;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.paging.Pager;
+
+/**
+ * Collects the page of a {@link Pager} from a stream of alerts without holding all of them.
+ *
+ * The orders of the pager are applied in sequence, the first one is the primary order, and ties are broken by
+ * alertId so the position of an alert in the results is stable between requests. A limited pager keeps only the
+ * best <code>start + pageSize</code> alerts in a bounded heap, or only <code>pageSize</code> when the pager carries
+ * a continuation token, as the alerts up to the token are skipped.
+ *
+ * The continuation token also carries the total size of the results, so a query that is costly to count can count
+ * them only for the first page.
+ */
+public class AlertsPageCollector {
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final Pager pager;
+    private final Comparator<Alert> comparator;
+    private final Alert after;
+    private final long afterTotal;
+    private final int limit;
+    private final PriorityQueue<Alert> heap;
+    private final List<Alert> all;
+    private long total;
+
+    /**
+     * @param pager the page to collect, null for all the alerts ordered by alertId
+     */
+    public AlertsPageCollector(Pager pager) {
+        this.pager = pager;
+        this.comparator = comparator(pager == null ? null : pager.getOrder());
+        this.after = pager == null ? null : fromToken(pager.getContinuationToken());
+        this.afterTotal = pager == null ? -1 : totalFromToken(pager.getContinuationToken());
+        if (pager != null && pager.isLimited()) {
+            limit = after != null ? pager.getPageSize() : pager.getEnd();
+            heap = new PriorityQueue<>(Math.max(1, Math.min(limit, 1024)), comparator.reversed());
+            all = null;
+        } else {
+            limit = Integer.MAX_VALUE;
+            heap = null;
+            all = new ArrayList<>();
+        }
+    }
+
+    /**
+     * @return the comparator of the alerts of the page
+     */
+    public Comparator<Alert> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * @return the alert marking the continuation token of the pager, null if there is no token
+     */
+    public Alert getAfter() {
+        return after;
+    }
+
+    /**
+     * @return the total size of the results carried by the continuation token of the pager, -1 if there is none
+     */
+    public long getAfterTotal() {
+        return afterTotal;
+    }
+
+    /**
+     * @return max number of alerts to collect
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param alert an alert of the results
+     * @return true if the alert is in the results after the continuation token of the pager
+     */
+    public boolean isAfter(Alert alert) {
+        return after == null || comparator.compare(alert, after) > 0;
+    }
+
+    /**
+     * Add an alert of the results. Each alert of the results must be added only once.
+     * @param alert an alert of the results
+     */
+    public void add(Alert alert) {
+        total++;
+        if (!isAfter(alert)) {
+            return;
+        }
+        if (all != null) {
+            all.add(alert);
+            return;
+        }
+        if (limit <= 0) {
+            return;
+        }
+        if (heap.size() < limit) {
+            heap.add(alert);
+        } else if (comparator.compare(alert, heap.peek()) < 0) {
+            heap.poll();
+            heap.add(alert);
+        }
+    }
+
+    public void addAll(Collection<Alert> alerts) {
+        alerts.forEach(this::add);
+    }
+
+    /**
+     * @return the page of the added alerts, its size is the number of alerts added
+     */
+    public Page<Alert> page() {
+        return page(total);
+    }
+
+    /**
+     * @param totalSize size of the overall results
+     * @return the page of the added alerts
+     */
+    public Page<Alert> page(long totalSize) {
+        List<Alert> ordered = all != null ? all : new ArrayList<>(heap);
+        ordered.sort(comparator);
+        if (pager != null && pager.isLimited() && after == null) {
+            ordered = pager.getStart() >= ordered.size() ? new ArrayList<>() :
+                    ordered.subList(pager.getStart(), ordered.size());
+        }
+        return toPage(ordered, totalSize);
+    }
+
+    /**
+     * @param alerts the ordered alerts of the page
+     * @param totalSize size of the overall results
+     * @return the page with the context of the pager
+     */
+    public Page<Alert> toPage(List<Alert> alerts, long totalSize) {
+        if (pager == null) {
+            Pager unlimited = Pager.builder().withPageSize(alerts.size()).orderBy(Field.ALERT_ID.getText(),
+                    Order.Direction.ASCENDING).build();
+            return new Page<>(alerts, unlimited, totalSize);
+        }
+        if (!pager.isLimited()) {
+            return new Page<>(alerts, new Pager(0, alerts.size(), pager.getOrder()), totalSize);
+        }
+        String token = alerts.isEmpty() ? pager.getContinuationToken() :
+                token(alerts.get(alerts.size() - 1), totalSize);
+        return new Page<>(alerts, new Pager(pager.getPageNumber(), pager.getPageSize(), pager.getOrder(), token),
+                totalSize);
+    }
+
+    /**
+     * @param orders orders of a pager, the first one is the primary order
+     * @return a comparator of the orders with ties broken by alertId
+     */
+    public static Comparator<Alert> comparator(List<Order> orders) {
+        Comparator<Alert> comparator = null;
+        Order.Direction tieBreak = Order.Direction.ASCENDING;
+        if (orders != null) {
+            for (Order o : orders) {
+                if (o.getDirection() == null) {
+                    continue;
+                }
+                Comparator<Alert> next = new AlertComparator(Field.getField(o.getField()), o.getDirection());
+                if (comparator == null) {
+                    tieBreak = o.getDirection();
+                    comparator = next;
+                } else {
+                    comparator = comparator.thenComparing(next);
+                }
+            }
+        }
+        Comparator<Alert> byAlertId = new AlertComparator(Field.ALERT_ID, tieBreak);
+        return comparator == null ? byAlertId : comparator.thenComparing(byAlertId);
+    }
+
+    /**
+     * @param alert an alert
+     * @return the continuation token of the position of the alert
+     */
+    public static String token(Alert alert) {
+        return encode(String.valueOf(alert.getCtime())) + "." +
+                encode(alert.getSeverity() == null ? "" : alert.getSeverity().name()) + "." +
+                encode(alert.getStatus() == null ? "" : alert.getStatus().name()) + "." +
+                encode(alert.getTriggerId()) + "." +
+                encode(alert.getAlertId());
+    }
+
+    /**
+     * @param alert an alert
+     * @param totalSize size of the overall results
+     * @return the continuation token of the position of the alert, with the total size of the results
+     */
+    public static String token(Alert alert, long totalSize) {
+        return token(alert) + "." + encode(String.valueOf(totalSize));
+    }
+
+    /**
+     * @param token a continuation token
+     * @return an alert with the ordering fields of the token, null if there is no token
+     */
+    public static Alert fromToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        String[] fields = token.split("\\.", -1);
+        if (fields.length != 5 && fields.length != 6) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token);
+        }
+        try {
+            Alert alert = new Alert();
+            alert.setCtime(Long.parseLong(decode(fields[0])));
+            String severity = decode(fields[1]);
+            alert.setSeverity(severity.isEmpty() ? null : Severity.valueOf(severity));
+            String status = decode(fields[2]);
+            alert.setStatus(status.isEmpty() ? null : Alert.Status.valueOf(status));
+            alert.setTriggerId(decode(fields[3]));
+            alert.setAlertId(decode(fields[4]));
+            return alert;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token);
+        }
+    }
+
+    /**
+     * @param token a continuation token
+     * @return the total size of the results carried by the token, -1 if there is no token or it has no total
+     */
+    public static long totalFromToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return -1;
+        }
+        String[] fields = token.split("\\.", -1);
+        if (fields.length != 6) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(decode(fields[5]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token: " + token);
+        }
+    }
+
+    private static String encode(String s) {
+        return s == null ? "" : ENCODER.encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String s) {
+        return new String(DECODER.decode(s), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,594 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.AvailabilityConditionEval;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.CompareConditionEval;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
+
+/**
+ * Compact binary encoding of the alert payloads.
+ *
+ * A payload starts with a magic byte, never the first byte of a JSON document, and the version of the format.
+ * Version 1 is:
+ * <pre>
+ *   magic, version, flags
+ *   tenantId, [alertId], triggerId, ctime, severity, status,
+ *   ackTime, ackBy, ackNotes, resolvedTime, resolvedBy, resolvedNotes
+ *   length of the evals section
+ *   evals section: conditions table, evalSets, resolvedEvalSets
+ * </pre>
+ * The alertId is only stored when it is not the generated <code>triggerId|ctime</code>. Each distinct condition is
+ * stored once in the conditions table and the evals refer to it by index. Timestamps of the evals are stored as
+ * deltas of the alert ctime. The length of the evals section lets a thin decode skip it without parsing it.
+ *
+ * Integers are stored as varints, strings as UTF-8 prefixed by their length, nulls are stored as a 0 length or
+ * ordinal.
+ *
+ * Alerts with evals not described by the format are encoded with the fallback codec.
+ */
+public class BinaryAlertCodec implements AlertCodec {
+    public static final String NAME = "binary";
+
+    static final byte MAGIC = (byte) 0xAB;
+    static final byte VERSION = 1;
+
+    private static final int FLAG_ALERT_ID = 1;
+    private static final int FLAG_MATCH = 1;
+    private static final int FLAG_USED = 2;
+
+    private static final Severity[] SEVERITIES = Severity.values();
+    private static final Alert.Status[] STATUSES = Alert.Status.values();
+    private static final Condition.Type[] TYPES = Condition.Type.values();
+    private static final Mode[] MODES = Mode.values();
+    private static final AvailabilityType[] AVAILABILITIES = AvailabilityType.values();
+    private static final AvailabilityCondition.Operator[] AVAILABILITY_OPERATORS =
+            AvailabilityCondition.Operator.values();
+    private static final CompareCondition.Operator[] COMPARE_OPERATORS = CompareCondition.Operator.values();
+    private static final StringCondition.Operator[] STRING_OPERATORS = StringCondition.Operator.values();
+    private static final ThresholdCondition.Operator[] THRESHOLD_OPERATORS = ThresholdCondition.Operator.values();
+    private static final ThresholdRangeCondition.Operator[] RANGE_OPERATORS =
+            ThresholdRangeCondition.Operator.values();
+
+    private final AlertCodec fallback;
+
+    /**
+     * @param fallback codec for the alerts that can not be encoded in this format
+     */
+    public BinaryAlertCodec(AlertCodec fallback) {
+        if (fallback == null) {
+            throw new IllegalArgumentException("Fallback must be not null");
+        }
+        this.fallback = fallback;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canDecode(ByteBuffer payload) {
+        return payload.remaining() > 1 && payload.get(payload.position()) == MAGIC;
+    }
+
+    @Override
+    public ByteBuffer encode(Alert alert) {
+        if (alert == null) {
+            throw new IllegalArgumentException("Alert must be not null");
+        }
+        Conditions conditions = new Conditions();
+        Output evals = new Output(256);
+        try {
+            writeEvalSets(evals, alert.getEvalSets(), alert.getCtime(), conditions);
+            writeEvalSets(evals, alert.getResolvedEvalSets(), alert.getCtime(), conditions);
+        } catch (UnsupportedOperationException e) {
+            return fallback.encode(alert);
+        }
+
+        boolean generatedId = alert.getAlertId() != null
+                && alert.getAlertId().equals(alert.getTriggerId() + "|" + alert.getCtime());
+        Output out = new Output(128 + conditions.table.size + evals.size);
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(generatedId ? 0 : FLAG_ALERT_ID);
+        out.writeString(alert.getTenantId());
+        if (!generatedId) {
+            out.writeString(alert.getAlertId());
+        }
+        out.writeString(alert.getTriggerId());
+        out.writeZigzag(alert.getCtime());
+        out.writeEnum(alert.getSeverity());
+        out.writeEnum(alert.getStatus());
+        out.writeZigzag(alert.getAckTime());
+        out.writeString(alert.getAckBy());
+        out.writeString(alert.getAckNotes());
+        out.writeZigzag(alert.getResolvedTime());
+        out.writeString(alert.getResolvedBy());
+        out.writeString(alert.getResolvedNotes());
+
+        int numConditions = conditions.descriptors.size();
+        out.writeVarint(Output.varintSize(numConditions) + conditions.table.size + evals.size);
+        out.writeVarint(numConditions);
+        out.write(conditions.table);
+        out.write(evals);
+        return out.toByteBuffer();
+    }
+
+    @Override
+    public Alert decode(ByteBuffer payload, boolean thin) {
+        ByteBuffer in = payload.duplicate();
+        if (in.get() != MAGIC) {
+            throw new IllegalArgumentException("Payload is not a binary alert");
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary alert version [" + version + "]");
+        }
+        int flags = in.get();
+
+        Alert alert = new Alert();
+        alert.setTenantId(readString(in));
+        String alertId = (flags & FLAG_ALERT_ID) != 0 ? readString(in) : null;
+        alert.setTriggerId(readString(in));
+        alert.setCtime(readZigzag(in));
+        alert.setAlertId((flags & FLAG_ALERT_ID) != 0 ? alertId : alert.getTriggerId() + "|" + alert.getCtime());
+        alert.setSeverity(readEnum(in, SEVERITIES));
+        alert.setStatus(readEnum(in, STATUSES));
+        alert.setAckTime(readZigzag(in));
+        alert.setAckBy(readString(in));
+        alert.setAckNotes(readString(in));
+        alert.setResolvedTime(readZigzag(in));
+        alert.setResolvedBy(readString(in));
+        alert.setResolvedNotes(readString(in));
+
+        int evalsLength = readVarint(in);
+        if (thin) {
+            return alert;
+        }
+        int end = in.position() + evalsLength;
+        Condition[] conditions = new Condition[readVarint(in)];
+        for (int i = 0; i < conditions.length; i++) {
+            conditions[i] = readCondition(in);
+        }
+        alert.setEvalSets(readEvalSets(in, alert.getCtime(), conditions));
+        alert.setResolvedEvalSets(readEvalSets(in, alert.getCtime(), conditions));
+        if (in.position() != end) {
+            throw new IllegalArgumentException("Corrupted binary alert [" + alert.getAlertId() + "]");
+        }
+        return alert;
+    }
+
+    /*
+        Conditions of an alert being encoded. The evals of an alert usually share a few conditions, each distinct
+        descriptor is written once in the table.
+     */
+    private static class Conditions {
+        final Map<Condition, Integer> identities = new IdentityHashMap<>();
+        final Map<ByteBuffer, Integer> descriptors = new HashMap<>();
+        final Output table = new Output(128);
+        final Output scratch = new Output(64);
+
+        int indexOf(Condition condition) {
+            Integer index = identities.get(condition);
+            if (index == null) {
+                scratch.size = 0;
+                writeCondition(scratch, condition);
+                ByteBuffer descriptor = ByteBuffer.wrap(Arrays.copyOf(scratch.buf, scratch.size));
+                index = descriptors.get(descriptor);
+                if (index == null) {
+                    index = descriptors.size();
+                    descriptors.put(descriptor, index);
+                    table.write(scratch);
+                }
+                identities.put(condition, index);
+            }
+            return index;
+        }
+    }
+
+    private static void writeEvalSets(Output out, List<Set<ConditionEval>> evalSets, long ctime,
+            Conditions conditions) {
+        if (evalSets == null) {
+            out.writeVarint(0);
+            return;
+        }
+        out.writeVarint(evalSets.size() + 1);
+        for (Set<ConditionEval> evalSet : evalSets) {
+            if (evalSet == null) {
+                out.writeVarint(0);
+                continue;
+            }
+            out.writeVarint(evalSet.size() + 1);
+            for (ConditionEval eval : evalSet) {
+                writeEval(out, eval, ctime, conditions);
+            }
+        }
+    }
+
+    private static void writeEval(Output out, ConditionEval eval, long ctime, Conditions conditions) {
+        if (eval == null) {
+            out.writeByte(0);
+            return;
+        }
+        Condition condition;
+        Condition.Type type;
+        if (eval instanceof ThresholdConditionEval) {
+            condition = ((ThresholdConditionEval) eval).getCondition();
+            type = Condition.Type.THRESHOLD;
+        } else if (eval instanceof AvailabilityConditionEval) {
+            condition = ((AvailabilityConditionEval) eval).getCondition();
+            type = Condition.Type.AVAILABILITY;
+        } else if (eval instanceof CompareConditionEval) {
+            condition = ((CompareConditionEval) eval).getCondition();
+            type = Condition.Type.COMPARE;
+        } else if (eval instanceof StringConditionEval) {
+            condition = ((StringConditionEval) eval).getCondition();
+            type = Condition.Type.STRING;
+        } else if (eval instanceof ThresholdRangeConditionEval) {
+            condition = ((ThresholdRangeConditionEval) eval).getCondition();
+            type = Condition.Type.RANGE;
+        } else {
+            throw new UnsupportedOperationException(eval.getClass().getName());
+        }
+        out.writeByte(type.ordinal() + 1);
+        out.writeVarint(condition == null ? 0 : conditions.indexOf(condition) + 1);
+        out.writeByte((eval.isMatch() ? FLAG_MATCH : 0) | (eval.isUsed() ? FLAG_USED : 0));
+        out.writeZigzag(eval.getEvalTimestamp() - ctime);
+        out.writeZigzag(eval.getDataTimestamp() - eval.getEvalTimestamp());
+        switch (type) {
+            case THRESHOLD:
+                out.writeDouble(((ThresholdConditionEval) eval).getValue());
+                break;
+            case AVAILABILITY:
+                out.writeEnum(((AvailabilityConditionEval) eval).getValue());
+                break;
+            case COMPARE:
+                out.writeDouble(((CompareConditionEval) eval).getValue1());
+                out.writeDouble(((CompareConditionEval) eval).getValue2());
+                break;
+            case STRING:
+                out.writeString(((StringConditionEval) eval).getValue());
+                break;
+            case RANGE:
+                out.writeDouble(((ThresholdRangeConditionEval) eval).getValue());
+                break;
+        }
+    }
+
+    private static void writeCondition(Output out, Condition condition) {
+        // conditions are rebuilt with their constructors, which need the trigger and mode to compose the id
+        if (condition.getType() == null || condition.getTriggerId() == null || condition.getTriggerMode() == null) {
+            throw new UnsupportedOperationException(condition.toString());
+        }
+        out.writeEnum(condition.getType());
+        out.writeString(condition.getTenantId());
+        out.writeString(condition.getTriggerId());
+        out.writeEnum(condition.getTriggerMode());
+        out.writeVarint(condition.getConditionSetSize());
+        out.writeVarint(condition.getConditionSetIndex());
+        out.writeString(condition.getDataId());
+        switch (condition.getType()) {
+            case THRESHOLD:
+                ThresholdCondition threshold = (ThresholdCondition) condition;
+                out.writeEnum(threshold.getOperator());
+                out.writeDouble(threshold.getThreshold());
+                break;
+            case AVAILABILITY:
+                out.writeEnum(((AvailabilityCondition) condition).getOperator());
+                break;
+            case COMPARE:
+                CompareCondition compare = (CompareCondition) condition;
+                out.writeEnum(compare.getOperator());
+                out.writeString(compare.getData2Id());
+                out.writeDouble(compare.getData2Multiplier());
+                break;
+            case STRING:
+                StringCondition string = (StringCondition) condition;
+                out.writeEnum(string.getOperator());
+                out.writeString(string.getPattern());
+                out.writeByte(string.isIgnoreCase() ? 1 : 0);
+                break;
+            case RANGE:
+                ThresholdRangeCondition range = (ThresholdRangeCondition) condition;
+                out.writeEnum(range.getOperatorLow());
+                out.writeEnum(range.getOperatorHigh());
+                out.writeDouble(range.getThresholdLow());
+                out.writeDouble(range.getThresholdHigh());
+                out.writeByte(range.isInRange() ? 1 : 0);
+                break;
+        }
+    }
+
+    private static Condition readCondition(ByteBuffer in) {
+        Condition.Type type = readEnum(in, TYPES);
+        String tenantId = readString(in);
+        String triggerId = readString(in);
+        Mode mode = readEnum(in, MODES);
+        int size = readVarint(in);
+        int index = readVarint(in);
+        String dataId = readString(in);
+        Condition condition;
+        switch (type) {
+            case THRESHOLD:
+                condition = new ThresholdCondition(triggerId, mode, size, index, dataId,
+                        readEnum(in, THRESHOLD_OPERATORS), readDouble(in));
+                break;
+            case AVAILABILITY:
+                condition = new AvailabilityCondition(triggerId, mode, size, index, dataId,
+                        readEnum(in, AVAILABILITY_OPERATORS));
+                break;
+            case COMPARE:
+                CompareCondition.Operator compareOperator = readEnum(in, COMPARE_OPERATORS);
+                String data2Id = readString(in);
+                condition = new CompareCondition(triggerId, mode, size, index, dataId, compareOperator,
+                        readDouble(in), data2Id);
+                break;
+            case STRING:
+                condition = new StringCondition(triggerId, mode, size, index, dataId,
+                        readEnum(in, STRING_OPERATORS), readString(in), in.get() != 0);
+                break;
+            case RANGE:
+                condition = new ThresholdRangeCondition(triggerId, mode, size, index, dataId,
+                        readEnum(in, RANGE_OPERATORS), readEnum(in, RANGE_OPERATORS), readDouble(in),
+                        readDouble(in), in.get() != 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown condition type [" + type + "]");
+        }
+        condition.setTenantId(tenantId);
+        return condition;
+    }
+
+    private static List<Set<ConditionEval>> readEvalSets(ByteBuffer in, long ctime, Condition[] conditions) {
+        int numSets = readVarint(in) - 1;
+        if (numSets < 0) {
+            return null;
+        }
+        List<Set<ConditionEval>> evalSets = new ArrayList<>(numSets);
+        for (int i = 0; i < numSets; i++) {
+            int numEvals = readVarint(in) - 1;
+            if (numEvals < 0) {
+                evalSets.add(null);
+                continue;
+            }
+            Set<ConditionEval> evalSet = new LinkedHashSet<>();
+            for (int j = 0; j < numEvals; j++) {
+                evalSet.add(readEval(in, ctime, conditions));
+            }
+            evalSets.add(evalSet);
+        }
+        return evalSets;
+    }
+
+    private static ConditionEval readEval(ByteBuffer in, long ctime, Condition[] conditions) {
+        Condition.Type type = readEnum(in, TYPES);
+        if (type == null) {
+            return null;
+        }
+        int conditionIndex = readVarint(in) - 1;
+        Condition condition = conditionIndex < 0 ? null : conditions[conditionIndex];
+        int flags = in.get();
+        long evalTimestamp = ctime + readZigzag(in);
+        long dataTimestamp = evalTimestamp + readZigzag(in);
+        ConditionEval eval;
+        switch (type) {
+            case THRESHOLD:
+                ThresholdConditionEval thresholdEval = new ThresholdConditionEval();
+                thresholdEval.setCondition((ThresholdCondition) condition);
+                thresholdEval.setValue(readDouble(in));
+                eval = thresholdEval;
+                break;
+            case AVAILABILITY:
+                AvailabilityConditionEval availabilityEval = new AvailabilityConditionEval();
+                availabilityEval.setCondition((AvailabilityCondition) condition);
+                availabilityEval.setValue(readEnum(in, AVAILABILITIES));
+                eval = availabilityEval;
+                break;
+            case COMPARE:
+                CompareConditionEval compareEval = new CompareConditionEval();
+                compareEval.setCondition((CompareCondition) condition);
+                compareEval.setValue1(readDouble(in));
+                compareEval.setValue2(readDouble(in));
+                eval = compareEval;
+                break;
+            case STRING:
+                StringConditionEval stringEval = new StringConditionEval();
+                stringEval.setCondition((StringCondition) condition);
+                stringEval.setValue(readString(in));
+                eval = stringEval;
+                break;
+            case RANGE:
+                ThresholdRangeConditionEval rangeEval = new ThresholdRangeConditionEval();
+                rangeEval.setCondition((ThresholdRangeCondition) condition);
+                rangeEval.setValue(readDouble(in));
+                eval = rangeEval;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown condition type [" + type + "]");
+        }
+        eval.setMatch((flags & FLAG_MATCH) != 0);
+        eval.setUsed((flags & FLAG_USED) != 0);
+        eval.setEvalTimestamp(evalTimestamp);
+        eval.setDataTimestamp(dataTimestamp);
+        return eval;
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static long readZigzag(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (value >>> 1) ^ -(value & 1);
+            }
+        }
+        throw new IllegalArgumentException("Malformed varlong");
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    private static Double readDouble(ByteBuffer in) {
+        return in.get() == 0 ? null : in.getDouble();
+    }
+
+    private static <E extends Enum<E>> E readEnum(ByteBuffer in, E[] values) {
+        int ordinal = in.get() & 0xFF;
+        return ordinal == 0 ? null : values[ordinal - 1];
+    }
+
+    /*
+        Growable byte array, cheaper than a ByteArrayOutputStream with a DataOutputStream on top of it.
+     */
+    private static class Output {
+        byte[] buf;
+        int size;
+
+        Output(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        static int varintSize(int value) {
+            int size = 1;
+            while ((value & ~0x7F) != 0) {
+                value >>>= 7;
+                size++;
+            }
+            return size;
+        }
+
+        private void ensure(int length) {
+            if (size + length > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + length));
+            }
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buf[size++] = (byte) value;
+        }
+
+        void write(Output other) {
+            ensure(other.size);
+            System.arraycopy(other.buf, 0, buf, size, other.size);
+            size += other.size;
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buf[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[size++] = (byte) value;
+        }
+
+        void writeZigzag(long value) {
+            ensure(10);
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            buf[size++] = (byte) zigzag;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeDouble(Double value) {
+            if (value == null) {
+                writeByte(0);
+                return;
+            }
+            ensure(9);
+            buf[size++] = 1;
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[size++] = (byte) (bits >>> shift);
+            }
+        }
+
+        void writeEnum(Enum<?> value) {
+            writeByte(value == null ? 0 : value.ordinal() + 1);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, size).slice();
+        }
+    }
+}
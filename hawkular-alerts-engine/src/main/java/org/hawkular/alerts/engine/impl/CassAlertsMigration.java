@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.engine.log.MsgLogger;
+import org.jboss.logging.Logger;
+
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Copies the alerts stored in the tenant partitioned tables of previous schema versions (alerts, alerts_triggers,
+ * alerts_ctimes, alerts_statuses and alerts_severities) into the time bucketed tables of schema version 2.
+ *
+ * The migration runs once per keyspace, it is recorded in the schema_version table. A tenant is migrated at a time,
+ * so memory is bounded by the alerts of the biggest tenant. The previous tables are not modified, they can be
+ * dropped once the migration is verified.
+ */
+public class CassAlertsMigration {
+    private static final MsgLogger msgLog = MsgLogger.LOGGER;
+    private static final Logger log = Logger.getLogger(CassAlertsMigration.class);
+
+    public static final String ALERTS_SCHEMA = "alerts";
+    public static final int ALERTS_SCHEMA_VERSION = 2;
+
+    private static final int FETCH_SIZE = 5000;
+    private static final int MAX_IN_FLIGHT = 256;
+
+    private final Session session;
+    private final String keyspace;
+    private final List<ResultSetFuture> inFlight = new ArrayList<>();
+
+    private long numAlerts;
+    private long numSkipped;
+
+    private CassAlertsMigration(Session session, String keyspace) {
+        this.session = session;
+        this.keyspace = keyspace;
+    }
+
+    /**
+     * Migrate the alerts of the previous schema versions if it was not done before.
+     * @param session Cassandra session
+     * @param keyspace keyspace of the alerts tables
+     * @return true if the alerts were migrated, false if there was nothing to migrate
+     * @throws Exception any problem
+     */
+    public static boolean migrate(Session session, String keyspace) throws Exception {
+        if (session == null) {
+            throw new IllegalArgumentException("Session must be not null");
+        }
+        if (keyspace == null) {
+            throw new IllegalArgumentException("Keyspace must be not null");
+        }
+        Row version = session.execute("SELECT version FROM " + keyspace + ".schema_version WHERE name = ?",
+                ALERTS_SCHEMA).one();
+        if (version != null && version.getInt("version") >= ALERTS_SCHEMA_VERSION) {
+            return false;
+        }
+        KeyspaceMetadata metadata = session.getCluster().getMetadata().getKeyspace(keyspace);
+        boolean legacy = metadata != null && metadata.getTable("alerts") != null;
+        if (legacy) {
+            new CassAlertsMigration(session, keyspace).copy();
+        }
+        session.execute("INSERT INTO " + keyspace + ".schema_version (name, version) VALUES (?, ?)",
+                ALERTS_SCHEMA, ALERTS_SCHEMA_VERSION);
+        return legacy;
+    }
+
+    private void copy() throws Exception {
+        List<String> tenantIds = new ArrayList<>();
+        for (Row row : select("SELECT DISTINCT tenantId FROM " + keyspace + ".alerts")) {
+            tenantIds.add(row.getString("tenantId"));
+        }
+        for (String tenantId : tenantIds) {
+            copyTenant(tenantId);
+        }
+        flush();
+        msgLog.infoAlertsMigrated(tenantIds.size(), numAlerts, numSkipped);
+    }
+
+    private void copyTenant(String tenantId) throws Exception {
+        log.debugf("Migrating alerts of tenant [%s]", tenantId);
+        Map<String, Long> buckets = new HashMap<>();
+        Set<Long> tenantBuckets = new HashSet<>();
+
+        PreparedStatement insertAlertCtime = CassStatement.get(session, CassStatement.INSERT_ALERT_CTIME);
+        for (Row row : select("SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes WHERE tenantId = ?",
+                tenantId)) {
+            String alertId = row.getString("alertId");
+            long ctime = row.getLong("ctime");
+            long bucket = AlertsBuckets.bucket(ctime);
+            buckets.put(alertId, bucket);
+            tenantBuckets.add(bucket);
+            write(insertAlertCtime.bind(tenantId, bucket, alertId, ctime));
+        }
+
+        PreparedStatement insertAlert = CassStatement.get(session, CassStatement.INSERT_ALERT);
+        for (Row row : select("SELECT alertId, payload FROM " + keyspace + ".alerts WHERE tenantId = ?",
+                tenantId)) {
+            Long bucket = bucket(buckets, row.getString("alertId"));
+            if (bucket != null) {
+                tenantBuckets.add(bucket);
+                // legacy JSON payloads are copied as they are, they are read by the json codec
+                write(insertAlert.bind(tenantId, bucket, row.getString("alertId"),
+                        ByteBuffer.wrap(row.getString("payload").getBytes(StandardCharsets.UTF_8))));
+                numAlerts++;
+            }
+        }
+
+        copyIndex(tenantId, buckets, "alerts_triggers", "triggerId", CassStatement.INSERT_ALERT_TRIGGER);
+        copyIndex(tenantId, buckets, "alerts_statuses", "status", CassStatement.INSERT_ALERT_STATUS);
+        copyIndex(tenantId, buckets, "alerts_severities", "severity", CassStatement.INSERT_ALERT_SEVERITY);
+
+        PreparedStatement insertAlertBucket = CassStatement.get(session, CassStatement.INSERT_ALERT_BUCKET);
+        for (Long bucket : tenantBuckets) {
+            write(insertAlertBucket.bind(tenantId, bucket));
+        }
+        flush();
+    }
+
+    private void copyIndex(String tenantId, Map<String, Long> buckets, String table, String column,
+            String insert) throws Exception {
+        PreparedStatement insertIndex = CassStatement.get(session, insert);
+        for (Row row : select("SELECT alertId, " + column + " FROM " + keyspace + "." + table
+                + " WHERE tenantId = ?", tenantId)) {
+            String alertId = row.getString("alertId");
+            Long bucket = bucket(buckets, alertId);
+            if (bucket != null) {
+                write(insertIndex.bind(tenantId, bucket, alertId, row.getString(column)));
+            }
+        }
+    }
+
+    /*
+        Rows without ctime are placed by the ctime of the alert id, or skipped if the id does not have it.
+     */
+    private Long bucket(Map<String, Long> buckets, String alertId) {
+        Long bucket = buckets.get(alertId);
+        if (bucket == null) {
+            bucket = AlertsBuckets.bucket(alertId);
+        }
+        if (bucket == null) {
+            log.debugf("Skipping alert [%s] without ctime", alertId);
+            numSkipped++;
+        }
+        return bucket;
+    }
+
+    private Iterable<Row> select(String cql, Object... values) {
+        Statement statement = new SimpleStatement(cql, values);
+        statement.setFetchSize(FETCH_SIZE);
+        return session.execute(statement);
+    }
+
+    private void write(Statement statement) throws Exception {
+        inFlight.add(session.executeAsync(statement));
+        if (inFlight.size() >= MAX_IN_FLIGHT) {
+            flush();
+        }
+    }
+
+    private void flush() throws Exception {
+        Futures.allAsList(inFlight).get();
+        inFlight.clear();
+    }
+}
@@ -21,8 +21,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
@@ -33,7 +38,6 @@ import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.condition.Alert;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.data.Data;
-import org.hawkular.alerts.api.model.paging.AlertComparator;
 import org.hawkular.alerts.api.model.paging.AlertComparator.Field;
 import org.hawkular.alerts.api.model.paging.Order;
 import org.hawkular.alerts.api.model.paging.Page;
@@ -51,11 +55,8 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
 import com.google.common.util.concurrent.Futures;
-import com.google.gson.ExclusionStrategy;
-import com.google.gson.FieldAttributes;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 /**
  * Cassandra implementation for {@link org.hawkular.alerts.api.services.AlertsService}.
@@ -65,14 +66,31 @@ import com.google.gson.GsonBuilder;
  */
 @Stateless
 public class CassAlertsServiceImpl implements AlertsService {
+    private static final String ALERTS_OPEN_INDEX_SIZE = "hawkular-alerts.alerts-open-index-size";
+    private static final String ALERTS_PAYLOAD_CODEC = "hawkular-alerts.alerts-payload-codec";
+    private static final String ALERTS_WRITE_BATCH_SIZE = "hawkular-alerts.alerts-write-batch-size";
+    private static final String ALERTS_WRITE_MAX_INFLIGHT = "hawkular-alerts.alerts-write-max-inflight";
+    private static final String ALERTS_WRITE_MAX_QUEUED = "hawkular-alerts.alerts-write-max-queued";
+    private static final int MAX_BUCKET_QUERIES = 64;
+    private static final int FETCH_SIZE = 1000;
+    private static final int ESTIMATE_LIMIT = 10000;
+
+    /*
+        Shared by all the instances of the pool, the in-flight limit is per server.
+     */
+    private static CassAlertsWriter writer;
+
+    /*
+        Unresolved alerts by trigger, shared by all the instances of the pool.
+     */
+    private static OpenAlertsIndex openAlerts;
 
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(CassAlertsServiceImpl.class);
 
     private Session session;
 
-    private Gson gson;
-    private Gson gsonThin;
+    private AlertCodec codec;
 
     @EJB
     AlertsEngine alertsEngine;
@@ -86,26 +104,9 @@ public class CassAlertsServiceImpl implements AlertsService {
             if (session == null) {
                 session = CassCluster.getSession();
             }
+            initWriter(session);
 
-            GsonBuilder gsonBuilder = new GsonBuilder();
-            gsonBuilder.registerTypeHierarchyAdapter(ConditionEval.class, new GsonAdapter<ConditionEval>());
-            gson = gsonBuilder.create();
-
-            GsonBuilder gsonBuilderThin = new GsonBuilder();
-            gsonBuilderThin.registerTypeHierarchyAdapter(ConditionEval.class, new GsonAdapter<ConditionEval>());
-            gsonBuilderThin.addDeserializationExclusionStrategy(new ExclusionStrategy() {
-                @Override
-                public boolean shouldSkipField(FieldAttributes f) {
-                    final Alert.Thin thin = f.getAnnotation(Alert.Thin.class);
-                    return thin != null;
-                }
-
-                @Override
-                public boolean shouldSkipClass(Class<?> clazz) {
-                    return false;
-                }
-            });
-            gsonThin = gsonBuilderThin.create();
+            codec = AlertCodecs.get(AlertProperties.getProperty(ALERTS_PAYLOAD_CODEC, BinaryAlertCodec.NAME));
 
         } catch (Throwable t) {
             if (log.isDebugEnabled()) {
@@ -115,57 +116,77 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
+    private static synchronized void initWriter(Session session) {
+        if (writer == null && session != null) {
+            int maxInFlight = new Integer(AlertProperties.getProperty(ALERTS_WRITE_MAX_INFLIGHT, "64"));
+            int batchSize = new Integer(AlertProperties.getProperty(ALERTS_WRITE_BATCH_SIZE, "10"));
+            int maxQueued = new Integer(AlertProperties.getProperty(ALERTS_WRITE_MAX_QUEUED, "1024"));
+            writer = new CassAlertsWriter(session::executeAsync, maxInFlight, batchSize, maxQueued);
+        }
+        if (openAlerts == null) {
+            openAlerts = new OpenAlertsIndex(new Integer(AlertProperties.getProperty(ALERTS_OPEN_INDEX_SIZE,
+                    "100000")));
+        }
+    }
+
+    public static CassAlertsWriter getWriter() {
+        return writer;
+    }
+
     @Override
     public void addAlerts(Collection<Alert> alerts) throws Exception {
+        /*
+            main method is synchronous so we need to wait until writes are completed
+         */
+        addAlertsAsync(alerts).get();
+    }
+
+    @Override
+    public CompletableFuture<Void> addAlertsAsync(Collection<Alert> alerts) throws Exception {
         if (alerts == null) {
             throw new IllegalArgumentException("Alerts must be not null");
         }
-        if (session == null) {
+        if (session == null || writer == null) {
             throw new RuntimeException("Cassandra session is null");
         }
         PreparedStatement insertAlert = CassStatement.get(session, CassStatement.INSERT_ALERT);
+        PreparedStatement insertAlertBucket = CassStatement.get(session, CassStatement.INSERT_ALERT_BUCKET);
         PreparedStatement insertAlertTrigger = CassStatement.get(session, CassStatement.INSERT_ALERT_TRIGGER);
         PreparedStatement insertAlertCtime = CassStatement.get(session, CassStatement.INSERT_ALERT_CTIME);
         PreparedStatement insertAlertStatus = CassStatement.get(session, CassStatement.INSERT_ALERT_STATUS);
         PreparedStatement insertAlertSeverity = CassStatement.get(session, CassStatement.INSERT_ALERT_SEVERITY);
-        try {
-            List<ResultSetFuture> futures = new ArrayList<>();
-            alerts.stream()
-                    .forEach(a -> {
-                        futures.add(session.executeAsync(insertAlert.bind(a.getTenantId(), a.getAlertId(),
-                                toJson(a))));
-                        futures.add(session.executeAsync(insertAlertTrigger.bind(a.getTenantId(),
-                                a.getAlertId(),
-                                a.getTriggerId())));
-                        futures.add(session.executeAsync(insertAlertCtime.bind(a.getTenantId(),
-                                a.getAlertId(), a.getCtime())));
-                        futures.add(session.executeAsync(insertAlertStatus.bind(a.getTenantId(),
-                                a.getAlertId(),
-                                a.getStatus().name())));
-                        futures.add(session.executeAsync(insertAlertSeverity.bind(a.getTenantId(),
-                                a.getAlertId(),
-                                a.getSeverity().name())));
-                    });
-            /*
-                main method is synchronous so we need to wait until futures are completed
-             */
-            Futures.allAsList(futures).get();
-        } catch (Exception e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
+        if (insertAlert == null || insertAlertBucket == null || insertAlertTrigger == null || insertAlertCtime == null
+                || insertAlertStatus == null || insertAlertSeverity == null) {
+            throw new RuntimeException("insertAlert* PreparedStatement is null");
         }
+        openAlerts.update(alerts);
+        CompletableFuture<Void> written = writer.write(alerts, a -> {
+            long bucket = AlertsBuckets.bucket(a);
+            List<Statement> statements = new ArrayList<>(6);
+            statements.add(insertAlert.bind(a.getTenantId(), bucket, a.getAlertId(), codec.encode(a)));
+            statements.add(insertAlertBucket.bind(a.getTenantId(), bucket));
+            statements.add(insertAlertTrigger.bind(a.getTenantId(), bucket, a.getAlertId(), a.getTriggerId()));
+            statements.add(insertAlertCtime.bind(a.getTenantId(), bucket, a.getAlertId(), a.getCtime()));
+            statements.add(insertAlertStatus.bind(a.getTenantId(), bucket, a.getAlertId(), a.getStatus().name()));
+            statements.add(insertAlertSeverity.bind(a.getTenantId(), bucket, a.getAlertId(),
+                    a.getSeverity().name()));
+            return statements;
+        });
+        written.whenComplete((v, t) -> {
+            if (t != null) {
+                openAlerts.invalidate(alerts);
+            }
+        });
+        return written;
     }
 
-    // TODO (jshaughn) The DB-Level filtering approach implemented below is a best-practice for dealing
-    // with Cassandra.  It's basically a series of queries, one for each filter, with a progressive
-    // intersection of the resulting ID set.  This will work well in most cases but we may want to consider
-    // an optimization for dealing with large Alert populations.  Certain filters dealing with low-cardinality
-    // values, like status and severity, could start pulling a large number if alert ids.  If we have reduced the
-    // result set to a small number, via the more narrowing filters, (TBD via perf tests, a threshold that makes
-    // sense), we may want to pull the resulting alerts and apply the low-cardinality filters here in the code,
-    // in a post-fetch step. For example, if we have filters "ctime > 123" and "status == Resolved", and the ctime
-    // filter returns 10 alertIds. We may want to pull the 10 alerts and apply the status filter in the code. For
-    // large Alert history, the status filter applied to the DB could return a huge set of ids.
+    /*
+        Each clause of the criteria is an AlertsFilter. Instead of reading the alertIds of every clause and
+        intersecting them, the selectivity of the clauses is estimated with bounded counts on their indexes, only the
+        most selective clause reads its index, and the rest of clauses are checked on the fetched alerts. Low
+        cardinality clauses, like status and severity, are usually checked post-fetch and never read their indexes.
+        The alerts are streamed into the page collector, so memory is bounded by the page, not by the result set.
+     */
     @Override
     public Page<Alert> getAlerts(String tenantId, AlertsCriteria criteria, Pager pager) throws Exception {
         if (isEmpty(tenantId)) {
@@ -181,115 +202,61 @@ public class CassAlertsServiceImpl implements AlertsService {
             log.debugf("getAlerts criteria: %s", criteria.toString());
         }
 
-        List<Alert> alerts = new ArrayList<>();
-        Set<String> alertIds = new HashSet<>();
+        AlertsPageCollector collector = new AlertsPageCollector(pager);
 
         try {
-            if (filter) {
-                /*
-                    Get alertsIds explicitly added into the criteria. Start with these as there is no query involved
-                */
-                Set<String> alertIdsFilteredByAlerts = new HashSet<>();
-                boolean filterByAlerts = filterByAlerts(alertIdsFilteredByAlerts, criteria);
-                if (filterByAlerts) {
-                    alertIds.addAll(alertIdsFilteredByAlerts);
-                }
-
-                /*
-                    Get alertIds filtered by triggerIds clause
-                 */
-                Set<String> alertIdsFilteredByTriggers = new HashSet<>();
-                boolean filterByTriggers = filterByTriggers(tenantId, alertIdsFilteredByTriggers, criteria);
-                if (filterByTriggers) {
-                    if (alertIds.isEmpty()) {
-                        alertIds.addAll(alertIdsFilteredByTriggers);
-                    } else {
-                        alertIds.retainAll(alertIdsFilteredByTriggers);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return new Page<>(alerts, pager, 0);
-                    }
-                }
-
-                /*
-                    Get alertsIds filtered by ctime clause
-                 */
-                Set<String> alertIdsFilteredByCtime = new HashSet<>();
-                boolean filterByCtime = filterByCtime(tenantId, alertIdsFilteredByCtime, criteria);
-                if (filterByCtime) {
-                    if (alertIds.isEmpty()) {
-                        alertIds.addAll(alertIdsFilteredByCtime);
-                    } else {
-                        alertIds.retainAll(alertIdsFilteredByCtime);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return new Page<>(alerts, pager, 0);
-                    }
-                }
-
-                /*
-                Get alertsIds filtered by severities clause
-                */
-                Set<String> alertIdsFilteredBySeverity = new HashSet<>();
-                boolean filterBySeverity = filterBySeverities(tenantId, alertIdsFilteredBySeverity, criteria);
-                if (filterBySeverity) {
-                    if (alertIds.isEmpty()) {
-                        alertIds.addAll(alertIdsFilteredBySeverity);
-                    } else {
-                        alertIds.retainAll(alertIdsFilteredBySeverity);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return new Page<>(alerts, pager, 0);
-                    }
-                }
+            /*
+                Only the buckets of the criteria ctime range are read
+             */
+            List<Long> buckets = getBuckets(tenantId, criteria);
+            if (buckets.isEmpty()) {
+                return collector.page();
+            }
 
+            if (isCtimeOrder(pager) && isCtimeCriteria(criteria)) {
                 /*
-                    Get alertsIds filtered by statuses clause
+                    Ordered by ctime and filtered at most by ctime - Read the page in the clustering order of the
+                    ctime index
                  */
-                Set<String> alertIdsFilteredByStatus = new HashSet<>();
-                boolean filterByStatus = filterByStatuses(tenantId, alertIdsFilteredByStatus, criteria);
-                if (filterByStatus) {
-                    if (alertIds.isEmpty()) {
-                        alertIds.addAll(alertIdsFilteredByStatus);
-                    } else {
-                        alertIds.retainAll(alertIdsFilteredByStatus);
-                    }
+                return getAlertsByCtime(tenantId, buckets, criteria, pager, collector, thin);
+            }
 
-                    if (alertIds.isEmpty()) {
-                        return new Page<>(alerts, pager, 0);
-                    }
-                }
+            List<AlertsFilter> filters = filter ? getFilters(tenantId, buckets, criteria) : Collections.emptyList();
+            if (filters == null) {
+                // a trigger filter by tags that does not match any trigger
+                return collector.page();
             }
 
-            if (!filter) {
+            if (filters.isEmpty()) {
                 /*
-                    Get all alerts - Single query
+                    Get all alerts - Single query per bucket, streamed through the page collector
                  */
                 PreparedStatement selectAlertsByTenant = CassStatement.get(session,
                         CassStatement.SELECT_ALERTS_BY_TENANT);
-                ResultSet rsAlerts = session.execute(selectAlertsByTenant.bind(tenantId));
-                for (Row row : rsAlerts) {
-                    String payload = row.getString("payload");
-                    Alert alert = fromJson(payload, Alert.class, thin);
-                    alerts.add(alert);
-                }
+                List<Statement> statements = buckets.stream()
+                        .map(bucket -> selectAlertsByTenant.bind(tenantId, bucket))
+                        .collect(Collectors.toList());
+                executeAll(statements, row -> collector.add(AlertCodecs.decode(row.getBytes("payload"), thin)));
             } else {
                 /*
-                    We have a filter, so we are going to perform several queries with alertsIds filtering
+                    The most selective filter drives the query, the rest are checked on the fetched alerts
                  */
-                PreparedStatement selectAlertsByTenantAndAlert = CassStatement.get(session,
-                        CassStatement.SELECT_ALERTS_BY_TENANT_AND_ALERT);
-                List<ResultSetFuture> futures = alertIds.stream().map(alertId ->
-                        session.executeAsync(selectAlertsByTenantAndAlert.bind(tenantId, alertId)))
-                        .collect(Collectors.toList());
-                List<ResultSet> rsAlerts = Futures.allAsList(futures).get();
-                rsAlerts.stream().forEach(r -> {
-                    for (Row row : r) {
-                        String payload = row.getString("payload");
-                        Alert alert = fromJson(payload, Alert.class, thin);
-                        alerts.add(alert);
-                    }
-                });
+                List<AlertsFilter> plan = AlertsFilter.plan(filters, this::estimate);
+                AlertsFilter driver = plan.get(0);
+                Predicate<Alert> residual = AlertsFilter.residual(plan, driver);
+                if (log.isDebugEnabled()) {
+                    log.debugf("getAlerts plan: %s", plan);
+                }
+                if (driver.getKind() == AlertsFilter.Kind.ALERTS) {
+                    executeAll(driver.getSelects(), row -> {
+                        Alert alert = AlertCodecs.decode(row.getBytes("payload"), thin);
+                        if (residual.test(alert)) {
+                            collector.add(alert);
+                        }
+                    });
+                } else {
+                    fetchAlerts(tenantId, driver.getSelects(), residual, collector, thin);
+                }
             }
 
         } catch (Exception e) {
@@ -297,33 +264,205 @@ public class CassAlertsServiceImpl implements AlertsService {
             throw e;
         }
 
-        return preparePage(alerts, pager);
+        return collector.page();
+    }
+
+    /*
+        Buckets of the tenant overlapping the ctime range of the criteria, all the buckets of the tenant if there is
+        no range.
+     */
+    private List<Long> getBuckets(String tenantId, AlertsCriteria criteria) throws Exception {
+        long start = Long.MIN_VALUE;
+        long end = Long.MAX_VALUE;
+        if (criteria != null && criteria.getStartTime() != null) {
+            start = AlertsBuckets.bucket(criteria.getStartTime());
+        }
+        if (criteria != null && criteria.getEndTime() != null) {
+            end = AlertsBuckets.bucket(criteria.getEndTime());
+        }
+        List<Long> buckets = new ArrayList<>();
+        if (start > end) {
+            return buckets;
+        }
+        PreparedStatement selectAlertBuckets = CassStatement.get(session, CassStatement.SELECT_ALERT_BUCKETS);
+        for (Row row : session.execute(selectAlertBuckets.bind(tenantId, start, end))) {
+            buckets.add(row.getLong("bucket"));
+        }
+        return buckets;
     }
 
-    private Page<Alert> preparePage(List<Alert> alerts, Pager pager) {
-        if (pager != null)  {
-            List<Alert> ordered = alerts;
-            if (pager.getOrder() != null) {
-                pager.getOrder().stream().filter(o -> o.getField() != null && o.getDirection() != null)
-                        .forEach(o -> {
-                        AlertComparator comparator = new AlertComparator(Field.getField(o.getField()),
-                                o.getDirection());
-                        Collections.sort(ordered, comparator);
-                });
+    /*
+        Executes the statements asynchronously, with at most MAX_BUCKET_QUERIES in flight, as queries fan out over
+        the buckets. Rows are passed to the consumer as they are fetched, FETCH_SIZE rows at a time.
+     */
+    private void executeAll(List<Statement> statements, Consumer<Row> consumer) throws Exception {
+        for (int i = 0; i < statements.size(); i += MAX_BUCKET_QUERIES) {
+            List<ResultSetFuture> futures = statements.subList(i, Math.min(i + MAX_BUCKET_QUERIES,
+                    statements.size())).stream()
+                    .map(statement -> session.executeAsync(statement.setFetchSize(FETCH_SIZE)))
+                    .collect(Collectors.toList());
+            for (ResultSet rs : Futures.allAsList(futures).get()) {
+                for (Row row : rs) {
+                    consumer.accept(row);
+                }
             }
-            if (!pager.isLimited() || ordered.size() < pager.getStart()) {
-                pager = new Pager(0, ordered.size(), pager.getOrder());
-                return new Page(ordered, pager, ordered.size());
+        }
+    }
+
+    /*
+        Reads the alertIds of the index queries and fetches the alerts that match the predicate into the collector.
+        Payloads are fetched in windows of FETCH_SIZE alerts as the index rows are read, so the alertIds of the
+        index are never held at once.
+     */
+    private void fetchAlerts(String tenantId, List<Statement> selects, Predicate<Alert> predicate,
+            AlertsPageCollector collector, boolean thin) throws Exception {
+        PreparedStatement selectAlertsByTenantAndAlert = CassStatement.get(session,
+                CassStatement.SELECT_ALERTS_BY_TENANT_AND_ALERT);
+        Consumer<Row> addAlert = row -> {
+            Alert alert = AlertCodecs.decode(row.getBytes("payload"), thin);
+            if (predicate.test(alert)) {
+                collector.add(alert);
             }
-            if (pager.getEnd() >= ordered.size()) {
-                return new Page(ordered.subList(pager.getStart(), ordered.size()), pager, ordered.size());
+        };
+        List<Statement> window = new ArrayList<>(FETCH_SIZE);
+        for (int i = 0; i < selects.size(); i += MAX_BUCKET_QUERIES) {
+            List<ResultSetFuture> futures = selects.subList(i, Math.min(i + MAX_BUCKET_QUERIES,
+                    selects.size())).stream()
+                    .map(statement -> session.executeAsync(statement.setFetchSize(FETCH_SIZE)))
+                    .collect(Collectors.toList());
+            for (ResultSet rs : Futures.allAsList(futures).get()) {
+                for (Row row : rs) {
+                    window.add(selectAlertsByTenantAndAlert.bind(tenantId, row.getLong("bucket"),
+                            row.getString("alertId")));
+                    if (window.size() == FETCH_SIZE) {
+                        executeAll(window, addAlert);
+                        window.clear();
+                    }
+                }
             }
-            return new Page(ordered.subList(pager.getStart(), pager.getEnd()), pager, ordered.size());
-        } else {
-            pager = Pager.builder().withPageSize(alerts.size()).orderBy(Field.ALERT_ID.getText(),
-                    Order.Direction.ASCENDING).build();
-            return new Page(alerts, pager, alerts.size());
         }
+        executeAll(window, addAlert);
+    }
+
+    /*
+        Counts the alertIds of a filter, each count statement is capped by ESTIMATE_LIMIT rows. Counting stops once
+        the filter is known to be less selective than the bound.
+     */
+    private long estimate(AlertsFilter filter, long bound) {
+        List<Statement> counts = filter.getCounts();
+        long estimate = 0;
+        try {
+            for (int i = 0; i < counts.size() && estimate <= bound; i += MAX_BUCKET_QUERIES) {
+                List<ResultSetFuture> futures = counts.subList(i, Math.min(i + MAX_BUCKET_QUERIES,
+                        counts.size())).stream()
+                        .map(statement -> session.executeAsync(statement))
+                        .collect(Collectors.toList());
+                for (ResultSet rs : Futures.allAsList(futures).get()) {
+                    estimate += rs.one().getLong(0);
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return estimate;
+    }
+
+    private boolean isCtimeOrder(Pager pager) {
+        if (pager == null || !pager.isLimited()) {
+            return false;
+        }
+        List<Order> orders = pager.getOrder().stream().filter(o -> o.getDirection() != null)
+                .collect(Collectors.toList());
+        return orders.size() == 1 && Field.getField(orders.get(0).getField()) == Field.CTIME;
+    }
+
+    private boolean isCtimeCriteria(AlertsCriteria criteria) {
+        return criteria == null || (criteria.getStatus() == null && isEmpty(criteria.getStatusSet())
+                && criteria.getSeverity() == null && isEmpty(criteria.getSeverities())
+                && isEmpty(criteria.getTriggerId()) && isEmpty(criteria.getTriggerIds())
+                && isEmpty(criteria.getAlertId()) && isEmpty(criteria.getAlertIds())
+                && criteria.getTag() == null && isEmpty(criteria.getTags()));
+    }
+
+    /*
+        The ctime index is clustered by (ctime, alertId), the same order of a ctime ordered page with ties broken by
+        alertId, so only the alertIds up to the end of the page are read, and only the payloads of the page. The
+        buckets are read in order until the page is complete. The total size is counted on the index of every bucket
+        of the range, so it is only counted when the pager has no continuation token, the next pages take it from
+        the token.
+     */
+    private Page<Alert> getAlertsByCtime(String tenantId, List<Long> buckets, AlertsCriteria criteria, Pager pager,
+            AlertsPageCollector collector, boolean thin) throws Exception {
+        boolean ascending = pager.getOrder().stream().filter(o -> o.getDirection() != null).findFirst().get()
+                .isAscending();
+        long startTime = criteria != null && criteria.getStartTime() != null ? criteria.getStartTime() :
+                Long.MIN_VALUE;
+        long endTime = criteria != null && criteria.getEndTime() != null ? criteria.getEndTime() : Long.MAX_VALUE;
+
+        long[] totalSize = new long[] { collector.getAfterTotal() };
+        if (totalSize[0] < 0) {
+            totalSize[0] = 0;
+            PreparedStatement countAlertCtime = CassStatement.get(session,
+                    CassStatement.COUNT_ALERT_CTIME_START_END);
+            List<Statement> counts = buckets.stream()
+                    .map(bucket -> countAlertCtime.bind(tenantId, bucket, startTime, endTime))
+                    .collect(Collectors.toList());
+            executeAll(counts, row -> totalSize[0] += row.getLong(0));
+        }
+
+        Alert after = collector.getAfter();
+        long fromTime = startTime;
+        long toTime = endTime;
+        if (after != null) {
+            if (ascending) {
+                fromTime = Math.max(startTime, after.getCtime());
+            } else {
+                toTime = Math.min(endTime, after.getCtime());
+            }
+        }
+        List<Long> orderedBuckets = new ArrayList<>(buckets);
+        if (!ascending) {
+            Collections.reverse(orderedBuckets);
+        }
+        PreparedStatement selectAlertCtime = CassStatement.get(session, ascending ?
+                CassStatement.SELECT_ALERT_CTIME_ORDER_ASC : CassStatement.SELECT_ALERT_CTIME_ORDER_DESC);
+        int limit = collector.getLimit();
+        List<Alert> keys = new ArrayList<>();
+        for (Long bucket : orderedBuckets) {
+            if (keys.size() >= limit) {
+                break;
+            }
+            if (bucket + AlertsBuckets.BUCKET_SIZE <= fromTime || bucket > toTime) {
+                continue;
+            }
+            Statement selectBucket = selectAlertCtime.bind(tenantId, bucket, fromTime, toTime)
+                    .setFetchSize(Math.min(limit, FETCH_SIZE));
+            for (Row row : session.execute(selectBucket)) {
+                Alert key = new Alert();
+                key.setAlertId(row.getString("alertId"));
+                key.setCtime(row.getLong("ctime"));
+                if (!collector.isAfter(key)) {
+                    continue;
+                }
+                keys.add(key);
+                if (keys.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        if (after == null) {
+            keys = pager.getStart() >= keys.size() ? new ArrayList<>() : keys.subList(pager.getStart(), keys.size());
+        }
+
+        PreparedStatement selectAlertsByTenantAndAlert = CassStatement.get(session,
+                CassStatement.SELECT_ALERTS_BY_TENANT_AND_ALERT);
+        List<Statement> statements = keys.stream()
+                .map(key -> selectAlertsByTenantAndAlert.bind(tenantId, AlertsBuckets.bucket(key), key.getAlertId()))
+                .collect(Collectors.toList());
+        List<Alert> alerts = new ArrayList<>(keys.size());
+        executeAll(statements, row -> alerts.add(AlertCodecs.decode(row.getBytes("payload"), thin)));
+        alerts.sort(collector.getComparator());
+        return collector.toPage(alerts, totalSize[0]);
     }
 
     /*
@@ -375,115 +514,108 @@ public class CassAlertsServiceImpl implements AlertsService {
         return hasTriggerId || hasTriggerIds || hasTag || hasTags;
     }
 
-    private boolean filterByTriggers(String tenantId, Set<String> alertsId, AlertsCriteria criteria) throws Exception {
-        Set<String> triggerIds = new HashSet<>();
-        boolean filterByTriggers = extractTriggerIds(triggerIds, criteria);
+    /*
+        Filters of the criteria, or null if the criteria can not match any alert.
+     */
+    private List<AlertsFilter> getFilters(String tenantId, List<Long> buckets, AlertsCriteria criteria)
+            throws Exception {
+        List<AlertsFilter> filters = new ArrayList<>();
 
-        if (triggerIds.size() > 0) {
-            List<ResultSetFuture> futures = new ArrayList<>();
-            PreparedStatement selectAlertsTriggers = CassStatement.get(session, CassStatement.SELECT_ALERTS_TRIGGERS);
+        AlertsFilter alertsFilter = filterByAlerts(tenantId, buckets, criteria);
+        if (alertsFilter != null) {
+            filters.add(alertsFilter);
+        }
 
-            for (String triggerId : triggerIds) {
-                if (isEmpty(triggerId)) {
-                    continue;
-                }
-                futures.add(session.executeAsync(selectAlertsTriggers.bind(tenantId, triggerId)));
+        Set<String> triggerIds = new HashSet<>();
+        if (extractTriggerIds(triggerIds, criteria)) {
+            if (triggerIds.isEmpty()) {
+                return null;
             }
+            filters.add(filterByTriggers(tenantId, buckets, triggerIds));
+        }
 
-            List<ResultSet> rsAlertIdsByTriggerIds = Futures.allAsList(futures).get();
+        AlertsFilter ctimeFilter = filterByCtime(tenantId, buckets, criteria);
+        if (ctimeFilter != null) {
+            filters.add(ctimeFilter);
+        }
 
-            rsAlertIdsByTriggerIds.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertId = row.getString("alertId");
-                    alertsId.add(alertId);
-                }
-            });
-            /*
-                If there is not alertId but we have triggersId means that we have an empty result.
-                So we need to sure a alertId to mark that we have an empty result for future joins.
-             */
-            if (alertsId.isEmpty()) {
-                alertsId.add("no-result-fake-alert-id");
-            }
+        AlertsFilter severitiesFilter = filterBySeverities(tenantId, buckets, criteria);
+        if (severitiesFilter != null) {
+            filters.add(severitiesFilter);
         }
 
-        return filterByTriggers;
-    }
+        AlertsFilter statusesFilter = filterByStatuses(tenantId, buckets, criteria);
+        if (statusesFilter != null) {
+            filters.add(statusesFilter);
+        }
 
-    private boolean filterByCtime(String tenantId, Set<String> alertsId, AlertsCriteria criteria) throws Exception {
-        boolean filterByCtime = false;
-        if (criteria.getStartTime() != null || criteria.getEndTime() != null) {
-            filterByCtime = true;
+        return filters;
+    }
 
-            BoundStatement boundCtime;
-            if (criteria.getStartTime() != null && criteria.getEndTime() != null) {
-                PreparedStatement selectAlertCTimeStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_START_END);
-                boundCtime = selectAlertCTimeStartEnd.bind(tenantId, criteria.getStartTime(),
-                        criteria.getEndTime());
-            } else if (criteria.getStartTime() != null) {
-                PreparedStatement selectAlertCTimeStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_START);
-                boundCtime = selectAlertCTimeStart.bind(tenantId, criteria.getStartTime());
-            } else {
-                PreparedStatement selectAlertCTimeEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_END);
-                boundCtime = selectAlertCTimeEnd.bind(tenantId, criteria.getEndTime());
+    private AlertsFilter filterByAlerts(String tenantId, List<Long> buckets, AlertsCriteria criteria) {
+        Set<String> alertIds = new HashSet<>();
+        if (isEmpty(criteria.getAlertIds())) {
+            if (!isEmpty(criteria.getAlertId())) {
+                alertIds.add(criteria.getAlertId());
             }
+        } else {
+            alertIds.addAll(criteria.getAlertIds());
+        }
+        if (alertIds.isEmpty()) {
+            return null;
+        }
 
-            ResultSet rsAlertsCtimes = session.execute(boundCtime);
-            if (rsAlertsCtimes.isExhausted()) {
-                alertsId.add("no-result-fake-alert-id");
+        PreparedStatement selectAlertsByTenantAndAlert = CassStatement.get(session,
+                CassStatement.SELECT_ALERTS_BY_TENANT_AND_ALERT);
+        List<Statement> selects = new ArrayList<>();
+        for (String alertId : alertIds) {
+            Long bucket = AlertsBuckets.bucket(alertId);
+            if (bucket != null) {
+                selects.add(selectAlertsByTenantAndAlert.bind(tenantId, bucket, alertId));
             } else {
-                for (Row row : rsAlertsCtimes) {
-                    String alertId = row.getString("alertId");
-                    alertsId.add(alertId);
-                }
+                // ids not generated by the engine are searched in all the buckets
+                buckets.stream().forEach(b -> selects.add(selectAlertsByTenantAndAlert.bind(tenantId, b, alertId)));
             }
         }
-        return filterByCtime;
+        return new AlertsFilter(AlertsFilter.Kind.ALERTS, a -> alertIds.contains(a.getAlertId()), selects, null);
     }
 
-    private boolean filterByStatuses(String tenantId, Set<String> alertsId, AlertsCriteria criteria) throws Exception {
-        boolean filterByStatus = false;
-        Set<Alert.Status> statuses = new HashSet<>();
-        if (isEmpty(criteria.getStatusSet())) {
-            if (criteria.getStatus() != null) {
-                statuses.add(criteria.getStatus());
+    private AlertsFilter filterByTriggers(String tenantId, List<Long> buckets, Set<String> triggerIds) {
+        PreparedStatement selectAlertsTriggers = CassStatement.get(session, CassStatement.SELECT_ALERTS_TRIGGERS);
+        PreparedStatement countAlertsTriggers = CassStatement.get(session, CassStatement.COUNT_ALERTS_TRIGGERS_LIMIT);
+        List<Statement> selects = new ArrayList<>();
+        List<Statement> counts = new ArrayList<>();
+        for (String triggerId : triggerIds) {
+            for (Long bucket : buckets) {
+                selects.add(selectAlertsTriggers.bind(tenantId, bucket, triggerId));
+                counts.add(countAlertsTriggers.bind(tenantId, bucket, triggerId, ESTIMATE_LIMIT));
             }
-        } else {
-            statuses.addAll(criteria.getStatusSet());
         }
+        return new AlertsFilter(AlertsFilter.Kind.TRIGGERS, a -> triggerIds.contains(a.getTriggerId()), selects,
+                counts);
+    }
 
-        if (statuses.size() > 0) {
-            filterByStatus = true;
-            PreparedStatement selectAlertStatusByTenantAndStatus = CassStatement.get(session,
-                    CassStatement.SELECT_ALERT_STATUS_BY_TENANT_AND_STATUS);
-            List<ResultSetFuture> futures = statuses.stream().map(status ->
-                    session.executeAsync(selectAlertStatusByTenantAndStatus.bind(tenantId, status.name())))
-                    .collect(Collectors.toList());
-
-            List<ResultSet> rsAlertStatuses = Futures.allAsList(futures).get();
-            rsAlertStatuses.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertId = row.getString("alertId");
-                    alertsId.add(alertId);
-                }
-            });
-            /*
-                If there is not alertId but we have triggersId means that we have an empty result.
-                So we need to sure a alertId to mark that we have an empty result for future joins.
-             */
-            if (alertsId.isEmpty()) {
-                alertsId.add("no-result-fake-alert-id");
-            }
+    private AlertsFilter filterByCtime(String tenantId, List<Long> buckets, AlertsCriteria criteria) {
+        if (criteria.getStartTime() == null && criteria.getEndTime() == null) {
+            return null;
+        }
+        long startTime = criteria.getStartTime() != null ? criteria.getStartTime() : Long.MIN_VALUE;
+        long endTime = criteria.getEndTime() != null ? criteria.getEndTime() : Long.MAX_VALUE;
+        PreparedStatement selectAlertCTimeStartEnd = CassStatement.get(session,
+                CassStatement.SELECT_ALERT_CTIME_START_END);
+        PreparedStatement countAlertCtimeStartEnd = CassStatement.get(session,
+                CassStatement.COUNT_ALERT_CTIME_START_END_LIMIT);
+        List<Statement> selects = new ArrayList<>();
+        List<Statement> counts = new ArrayList<>();
+        for (Long bucket : buckets) {
+            selects.add(selectAlertCTimeStartEnd.bind(tenantId, bucket, startTime, endTime));
+            counts.add(countAlertCtimeStartEnd.bind(tenantId, bucket, startTime, endTime, ESTIMATE_LIMIT));
         }
-        return filterByStatus;
+        return new AlertsFilter(AlertsFilter.Kind.CTIME, a -> a.getCtime() >= startTime && a.getCtime() <= endTime,
+                selects, counts);
     }
 
-    private boolean filterBySeverities(String tenantId, Set<String> alertsId, AlertsCriteria criteria)
-            throws Exception {
-        boolean filterBySeverity = false;
+    private AlertsFilter filterBySeverities(String tenantId, List<Long> buckets, AlertsCriteria criteria) {
         Set<Severity> severities = new HashSet<>();
         if (isEmpty(criteria.getSeverities())) {
             if (criteria.getSeverity() != null) {
@@ -492,45 +624,53 @@ public class CassAlertsServiceImpl implements AlertsService {
         } else {
             severities.addAll(criteria.getSeverities());
         }
+        if (severities.isEmpty()) {
+            return null;
+        }
 
-        if (severities.size() > 0) {
-            filterBySeverity = true;
-            PreparedStatement selectAlertSeverityByTenantAndSeverity = CassStatement.get(session,
-                    CassStatement.SELECT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY);
-            List<ResultSetFuture> futures = severities.stream().map(severity ->
-                    session.executeAsync(selectAlertSeverityByTenantAndSeverity.bind(tenantId, severity.name())))
-                    .collect(Collectors.toList());
-
-            List<ResultSet> rsAlertSeverities = Futures.allAsList(futures).get();
-            rsAlertSeverities.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertId = row.getString("alertId");
-                    alertsId.add(alertId);
-                }
-            });
-            /*
-                If there is not alertId but we have triggersId means that we have an empty result.
-                So we need to sure a alertId to mark that we have an empty result for future joins.
-             */
-            if (alertsId.isEmpty()) {
-                alertsId.add("no-result-fake-alert-id");
+        PreparedStatement selectAlertSeverityByTenantAndSeverity = CassStatement.get(session,
+                CassStatement.SELECT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY);
+        PreparedStatement countAlertSeverityByTenantAndSeverity = CassStatement.get(session,
+                CassStatement.COUNT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY_LIMIT);
+        List<Statement> selects = new ArrayList<>();
+        List<Statement> counts = new ArrayList<>();
+        for (Severity severity : severities) {
+            for (Long bucket : buckets) {
+                selects.add(selectAlertSeverityByTenantAndSeverity.bind(tenantId, bucket, severity.name()));
+                counts.add(countAlertSeverityByTenantAndSeverity.bind(tenantId, bucket, severity.name(),
+                        ESTIMATE_LIMIT));
             }
         }
-        return filterBySeverity;
+        return new AlertsFilter(AlertsFilter.Kind.SEVERITIES, a -> severities.contains(a.getSeverity()), selects,
+                counts);
     }
 
-    private boolean filterByAlerts(Set<String> alertsId, AlertsCriteria criteria) {
-        boolean filterByAlerts = false;
-        if (isEmpty(criteria.getAlertIds())) {
-            if (!isEmpty(criteria.getAlertId())) {
-                filterByAlerts = true;
-                alertsId.add(criteria.getAlertId());
+    private AlertsFilter filterByStatuses(String tenantId, List<Long> buckets, AlertsCriteria criteria) {
+        Set<Alert.Status> statuses = new HashSet<>();
+        if (isEmpty(criteria.getStatusSet())) {
+            if (criteria.getStatus() != null) {
+                statuses.add(criteria.getStatus());
             }
         } else {
-            filterByAlerts = true;
-            alertsId.addAll(criteria.getAlertIds());
+            statuses.addAll(criteria.getStatusSet());
+        }
+        if (statuses.isEmpty()) {
+            return null;
+        }
+
+        PreparedStatement selectAlertStatusByTenantAndStatus = CassStatement.get(session,
+                CassStatement.SELECT_ALERT_STATUS_BY_TENANT_AND_STATUS);
+        PreparedStatement countAlertStatusByTenantAndStatus = CassStatement.get(session,
+                CassStatement.COUNT_ALERT_STATUS_BY_TENANT_AND_STATUS_LIMIT);
+        List<Statement> selects = new ArrayList<>();
+        List<Statement> counts = new ArrayList<>();
+        for (Alert.Status status : statuses) {
+            for (Long bucket : buckets) {
+                selects.add(selectAlertStatusByTenantAndStatus.bind(tenantId, bucket, status.name()));
+                counts.add(countAlertStatusByTenantAndStatus.bind(tenantId, bucket, status.name(), ESTIMATE_LIMIT));
+            }
         }
-        return filterByAlerts;
+        return new AlertsFilter(AlertsFilter.Kind.STATUSES, a -> statuses.contains(a.getStatus()), selects, counts);
     }
 
     private Collection<String> getTriggersIdByTags(Collection<Tag> tags) throws Exception {
@@ -581,12 +721,13 @@ public class CassAlertsServiceImpl implements AlertsService {
         criteria.setAlertIds(alertIds);
         List<Alert> alertsToAck = getAlerts(tenantId, criteria, null);
 
-        for (Alert a : alertsToAck) {
+        long ackTime = System.currentTimeMillis();
+        updateAlertsStatus(alertsToAck, a -> {
             a.setStatus(Alert.Status.ACKNOWLEDGED);
+            a.setAckTime(ackTime);
             a.setAckBy(ackBy);
             a.setAckNotes(ackNotes);
-            updateAlertStatus(a);
-        }
+        }).get();
     }
 
     @Override
@@ -603,81 +744,118 @@ public class CassAlertsServiceImpl implements AlertsService {
         criteria.setAlertIds(alertIds);
         List<Alert> alertsToResolve = getAlerts(tenantId, criteria, null);
 
-        for (Alert a : alertsToResolve) {
-            a.setStatus(Alert.Status.RESOLVED);
-            a.setResolvedBy(resolvedBy);
-            a.setResolvedNotes(resolvedNotes);
-            a.setResolvedEvalSets(resolvedEvalSets);
-            updateAlertStatus(a);
-        }
+        updateAlertsStatus(alertsToResolve, resolve(resolvedBy, resolvedNotes, resolvedEvalSets)).get();
     }
 
     @Override
     public void resolveAlertsForTrigger(String tenantId, String triggerId, String resolvedBy, String resolvedNotes,
             List<Set<ConditionEval>> resolvedEvalSets) throws Exception {
+        resolveAlertsForTriggerAsync(tenantId, triggerId, resolvedBy, resolvedNotes, resolvedEvalSets).get();
+    }
+
+    @Override
+    public CompletableFuture<Void> resolveAlertsForTriggerAsync(String tenantId, String triggerId, String resolvedBy,
+            String resolvedNotes, List<Set<ConditionEval>> resolvedEvalSets) throws Exception {
 
         if (isEmpty(triggerId)) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
-        AlertsCriteria criteria = new AlertsCriteria();
-        criteria.setTriggerId(triggerId);
-        criteria.setStatusSet(EnumSet.complementOf(EnumSet.of(Alert.Status.RESOLVED)));
-        List<Alert> alertsToResolve = getAlerts(tenantId, criteria, null);
+        List<Alert> alertsToResolve;
+        Set<String> openAlertIds = openAlerts.get(tenantId, triggerId);
+        if (openAlertIds != null) {
+            /*
+                Only the alerts known as unresolved are fetched, by their primary key
+             */
+            if (openAlertIds.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            AlertsCriteria criteria = new AlertsCriteria();
+            criteria.setAlertIds(openAlertIds);
+            alertsToResolve = getAlerts(tenantId, criteria, null).stream()
+                    .filter(a -> a.getStatus() != Alert.Status.RESOLVED)
+                    .collect(Collectors.toList());
+            alertsToResolve.forEach(a -> openAlertIds.remove(a.getAlertId()));
+            if (!openAlertIds.isEmpty()) {
+                // resolved or removed out of this server
+                openAlerts.remove(tenantId, triggerId, openAlertIds);
+            }
+        } else {
+            /*
+                Trigger not indexed yet - Its unresolved alerts are queried and loaded into the index
+             */
+            Object token = openAlerts.load(tenantId, triggerId);
+            AlertsCriteria criteria = new AlertsCriteria();
+            criteria.setTriggerId(triggerId);
+            criteria.setStatusSet(EnumSet.complementOf(EnumSet.of(Alert.Status.RESOLVED)));
+            alertsToResolve = getAlerts(tenantId, criteria, null);
+            openAlerts.loaded(tenantId, triggerId, token,
+                    alertsToResolve.stream().map(Alert::getAlertId).collect(Collectors.toList()));
+        }
 
-        for (Alert a : alertsToResolve) {
+        return updateAlertsStatus(alertsToResolve, resolve(resolvedBy, resolvedNotes, resolvedEvalSets));
+    }
+
+    private Consumer<Alert> resolve(String resolvedBy, String resolvedNotes,
+            List<Set<ConditionEval>> resolvedEvalSets) {
+        long resolvedTime = System.currentTimeMillis();
+        return a -> {
             a.setStatus(Alert.Status.RESOLVED);
+            a.setResolvedTime(resolvedTime);
             a.setResolvedBy(resolvedBy);
             a.setResolvedNotes(resolvedNotes);
             a.setResolvedEvalSets(resolvedEvalSets);
-            updateAlertStatus(a);
-        }
+        };
     }
 
-    private Alert updateAlertStatus(Alert alert) throws Exception {
-        if (alert == null || alert.getAlertId() == null || alert.getAlertId().isEmpty()) {
-            throw new IllegalArgumentException("AlertId must be not null");
-        }
-        if (session == null) {
+    /*
+        Status transition of loaded alerts. The previous status is the one of the loaded alert, so the status index
+        is updated without reading it. The statements of an alert are in its partition, and the writer groups the
+        alerts of a partition in unlogged batches with a bounded number of batches in flight.
+     */
+    private CompletableFuture<Void> updateAlertsStatus(Collection<Alert> alerts, Consumer<Alert> transition)
+            throws Exception {
+        if (session == null || writer == null) {
             throw new RuntimeException("Cassandra session is null");
         }
-        try {
-            /*
-                Not sure if these queries can be wrapped in an async way as they have dependencies with results.
-                Async pattern could bring race hazards here.
-             */
-            PreparedStatement selectAlertStatus = CassStatement.get(session,
-                    CassStatement.SELECT_ALERT_STATUS);
-            PreparedStatement insertAlertStatus = CassStatement.get(session,
-                    CassStatement.INSERT_ALERT_STATUS);
-            PreparedStatement deleteAlertStatus = CassStatement.get(session,
-                    CassStatement.DELETE_ALERT_STATUS);
-            PreparedStatement updateAlert = CassStatement.get(session,
-                    CassStatement.UPDATE_ALERT);
-
-            List<ResultSetFuture> futures = new ArrayList<>();
-            futures.add(session.executeAsync(selectAlertStatus.bind(alert.getTenantId(), Alert.Status.OPEN.name(),
-                    alert.getAlertId())));
-            futures.add(session.executeAsync(selectAlertStatus.bind(alert.getTenantId(),
-                    Alert.Status.ACKNOWLEDGED.name(), alert.getAlertId())));
-            futures.add(session.executeAsync(selectAlertStatus.bind(alert.getTenantId(), Alert.Status.RESOLVED.name(),
-                    alert.getAlertId())));
-
-            List<ResultSet> rsAlertsStatusToDelete = Futures.allAsList(futures).get();
-            rsAlertsStatusToDelete.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertIdToDelete = row.getString("alertId");
-                    String statusToDelete = row.getString("status");
-                    session.execute(deleteAlertStatus.bind(alert.getTenantId(), statusToDelete, alertIdToDelete));
-                }
-            });
-            session.execute(insertAlertStatus.bind(alert.getTenantId(), alert.getAlertId(), alert.getStatus().name()));
-            session.execute(updateAlert.bind(toJson(alert), alert.getTenantId(), alert.getAlertId()));
-        } catch (Exception e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
+        PreparedStatement insertAlertStatus = CassStatement.get(session, CassStatement.INSERT_ALERT_STATUS);
+        PreparedStatement deleteAlertStatus = CassStatement.get(session, CassStatement.DELETE_ALERT_STATUS);
+        PreparedStatement updateAlert = CassStatement.get(session, CassStatement.UPDATE_ALERT);
+        if (insertAlertStatus == null || deleteAlertStatus == null || updateAlert == null) {
+            throw new RuntimeException("updateAlertsStatus PreparedStatement is null");
+        }
+
+        Map<Alert, Alert.Status> previousStatus = new IdentityHashMap<>();
+        for (Alert a : alerts) {
+            previousStatus.put(a, a.getStatus());
+            transition.accept(a);
         }
-        return alert;
+        openAlerts.update(alerts);
+
+        CompletableFuture<Void> written = writer.write(alerts, a -> {
+            long bucket = AlertsBuckets.bucket(a);
+            Alert.Status previous = previousStatus.get(a);
+            List<Statement> statements = new ArrayList<>(4);
+            for (Alert.Status status : Alert.Status.values()) {
+                /*
+                    The statements of a batch share the timestamp, where a delete wins over an insert of the same
+                    row, so the current status is never deleted. An unknown previous status deletes the others.
+                 */
+                if (status != a.getStatus() && (previous == null || previous == status)) {
+                    statements.add(deleteAlertStatus.bind(a.getTenantId(), bucket, status.name(), a.getAlertId()));
+                }
+            }
+            statements.add(insertAlertStatus.bind(a.getTenantId(), bucket, a.getAlertId(), a.getStatus().name()));
+            statements.add(updateAlert.bind(codec.encode(a), a.getTenantId(), bucket, a.getAlertId()));
+            return statements;
+        });
+        written.whenComplete((v, t) -> {
+            if (t != null) {
+                msgLog.errorDatabaseException(t.getMessage());
+                openAlerts.invalidate(alerts);
+            }
+        });
+        return written;
     }
 
     @Override
@@ -690,18 +868,6 @@ public class CassAlertsServiceImpl implements AlertsService {
         alertsEngine.sendData(data);
     }
 
-    private String toJson(Object resource) {
-
-        String result = gson.toJson(resource);
-        log.debugf(result);
-        return result;
-    }
-
-    private <T> T fromJson(String json, Class<T> clazz, boolean thin) {
-
-        return thin ? gsonThin.fromJson(json, clazz) : gson.fromJson(json, clazz);
-    }
-
     private boolean isEmpty(Collection<?> c) {
         return null == c || c.isEmpty();
     }
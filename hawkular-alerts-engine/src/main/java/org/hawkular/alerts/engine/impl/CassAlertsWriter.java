@@ -0,0 +1,337 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.engine.log.MsgLogger;
+import org.jboss.logging.Logger;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Write pipeline for the Alerts persisted by {@link CassAlertsServiceImpl}.
+ *
+ * The rows of an Alert are stored in the partitions of its tenantId and bucket (see {@link AlertsBuckets}), so the
+ * statements of the Alerts of a tenant and bucket are grouped in unlogged batches of up to <code>batchSize</code>
+ * Alerts, each one sent to the replicas of the same few partitions. At most <code>maxInFlight</code> batches are
+ * executed at the same time, the rest wait in a queue and are sent as the executing ones complete, so callers do not
+ * wait for a free slot. The queue holds at most <code>maxQueued</code> batches; when it is full the remaining batches
+ * of the write are rejected at once, the caller never waits for room.
+ *
+ * The completions of the batches run on a dedicated executor, never on the I/O threads of the driver.
+ */
+public class CassAlertsWriter {
+    private static final int DEFAULT_MAX_QUEUED = 1024;
+    private static final int CALLBACK_THREADS = 2;
+
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
+    private final Logger log = Logger.getLogger(CassAlertsWriter.class);
+
+    private final Function<Statement, ListenableFuture<?>> executor;
+    private final int maxInFlight;
+    private final int batchSize;
+    private final int maxQueued;
+    private final Executor callbacks;
+    private final Queue<PendingBatch> queued = new ConcurrentLinkedQueue<>();
+    private final Semaphore queueSlots;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder writeLatency = new LongAdder();
+    private final AtomicLong maxWriteLatency = new AtomicLong();
+
+    /**
+     * @param executor executes a statement asynchronously, typically <code>session::executeAsync</code>
+     * @param maxInFlight max number of batches executed at the same time
+     * @param batchSize max number of Alerts per batch
+     */
+    public CassAlertsWriter(Function<Statement, ListenableFuture<?>> executor, int maxInFlight, int batchSize) {
+        this(executor, maxInFlight, batchSize, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * @param executor executes a statement asynchronously, typically <code>session::executeAsync</code>
+     * @param maxInFlight max number of batches executed at the same time
+     * @param batchSize max number of Alerts per batch
+     * @param maxQueued max number of batches waiting for a free slot
+     */
+    public CassAlertsWriter(Function<Statement, ListenableFuture<?>> executor, int maxInFlight, int batchSize,
+            int maxQueued) {
+        this(executor, maxInFlight, batchSize, maxQueued,
+                Executors.newFixedThreadPool(CALLBACK_THREADS, r -> {
+                    Thread t = new Thread(r, "hawkular-alerts-alerts-writer");
+                    t.setDaemon(true);
+                    return t;
+                }));
+    }
+
+    /**
+     * @param executor executes a statement asynchronously, typically <code>session::executeAsync</code>
+     * @param maxInFlight max number of batches executed at the same time
+     * @param batchSize max number of Alerts per batch
+     * @param maxQueued max number of batches waiting for a free slot
+     * @param callbacks executor of the completions of the batches
+     */
+    public CassAlertsWriter(Function<Statement, ListenableFuture<?>> executor, int maxInFlight, int batchSize,
+            int maxQueued, Executor callbacks) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must be not null");
+        }
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("MaxInFlight must be greater than 0");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("BatchSize must be greater than 0");
+        }
+        if (maxQueued < 1) {
+            throw new IllegalArgumentException("MaxQueued must be greater than 0");
+        }
+        if (callbacks == null) {
+            throw new IllegalArgumentException("Callbacks must be not null");
+        }
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.batchSize = batchSize;
+        this.maxQueued = maxQueued;
+        this.callbacks = callbacks;
+        this.queueSlots = new Semaphore(maxQueued);
+    }
+
+    /**
+     * Write the Alerts without waiting for the writes, nor for room in the queue.
+     * @param alerts Alerts to write
+     * @param statements the statements to write an Alert
+     * @return a future completed when all the Alerts are written, or completed exceptionally on the first failure,
+     * including a {@link RejectedExecutionException} when the queue is full
+     */
+    public CompletableFuture<Void> write(Collection<Alert> alerts, Function<Alert, List<Statement>> statements) {
+        if (alerts == null) {
+            throw new IllegalArgumentException("Alerts must be not null");
+        }
+        if (statements == null) {
+            throw new IllegalArgumentException("Statements must be not null");
+        }
+        Map<String, List<Alert>> alertsByPartition = new LinkedHashMap<>();
+        for (Alert alert : alerts) {
+            alertsByPartition.computeIfAbsent(alert.getTenantId() + "|" + AlertsBuckets.bucket(alert),
+                    p -> new ArrayList<>()).add(alert);
+        }
+        List<PendingBatch> pendingBatches = new ArrayList<>();
+        for (List<Alert> partitionAlerts : alertsByPartition.values()) {
+            for (int i = 0; i < partitionAlerts.size(); i += batchSize) {
+                List<Alert> batchAlerts = partitionAlerts.subList(i,
+                        Math.min(i + batchSize, partitionAlerts.size()));
+                BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                for (Alert alert : batchAlerts) {
+                    for (Statement statement : statements.apply(alert)) {
+                        batch.add(statement);
+                    }
+                }
+                pendingBatches.add(new PendingBatch(batch, batchAlerts.size()));
+            }
+        }
+        CompletableFuture<?>[] completions = new CompletableFuture<?>[pendingBatches.size()];
+        int numRejected = 0;
+        for (int i = 0; i < pendingBatches.size(); i++) {
+            PendingBatch pendingBatch = pendingBatches.get(i);
+            completions[i] = pendingBatch.completion;
+            // the slot is released when the batch leaves the queue
+            if (numRejected > 0 || !queueSlots.tryAcquire()) {
+                numRejected += pendingBatch.numAlerts;
+                pendingBatch.completion.completeExceptionally(
+                        new RejectedExecutionException("Alerts write queue is full"));
+                continue;
+            }
+            queued.add(pendingBatch);
+            drain();
+        }
+        if (numRejected > 0) {
+            rejected.add(numRejected);
+            msgLog.warnAlertsWriteRejected(numRejected, maxQueued);
+        }
+        return CompletableFuture.allOf(completions);
+    }
+
+    /*
+        Executes queued batches while there are free slots. Called on write and on every batch completion.
+     */
+    private void drain() {
+        while (!queued.isEmpty()) {
+            int current = inFlight.get();
+            if (current >= maxInFlight) {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            PendingBatch pendingBatch = queued.poll();
+            if (pendingBatch == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            queueSlots.release();
+            execute(pendingBatch);
+        }
+    }
+
+    private void execute(PendingBatch pendingBatch) {
+        long start = System.nanoTime();
+        ListenableFuture<?> future;
+        try {
+            future = executor.apply(pendingBatch.batch);
+        } catch (Exception e) {
+            complete(pendingBatch, start, e);
+            return;
+        }
+        Futures.addCallback(future, new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                complete(pendingBatch, start, null);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                complete(pendingBatch, start, t);
+            }
+        }, callbacks);
+    }
+
+    private void complete(PendingBatch pendingBatch, long start, Throwable t) {
+        long latency = System.nanoTime() - start;
+        writeLatency.add(latency);
+        maxWriteLatency.accumulateAndGet(latency, Math::max);
+        batches.increment();
+        inFlight.decrementAndGet();
+        if (t == null) {
+            written.add(pendingBatch.numAlerts);
+            pendingBatch.completion.complete(null);
+        } else {
+            failures.add(pendingBatch.numAlerts);
+            log.debug(t.getMessage(), t);
+            msgLog.errorDatabaseException(t.getMessage());
+            pendingBatch.completion.completeExceptionally(t);
+        }
+        drain();
+    }
+
+    /**
+     * @return number of batches being executed
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of batches waiting for a free slot
+     */
+    public int getQueued() {
+        return queued.size();
+    }
+
+    /**
+     * @return total number of Alerts written
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return total number of Alerts which write failed
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return total number of Alerts rejected because the queue was full
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return total number of batches executed
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return average time in nanoseconds to execute a batch
+     */
+    public long getAvgWriteLatency() {
+        long n = batches.sum();
+        return n == 0 ? 0 : writeLatency.sum() / n;
+    }
+
+    /**
+     * @return max time in nanoseconds to execute a batch
+     */
+    public long getMaxWriteLatency() {
+        return maxWriteLatency.get();
+    }
+
+    @Override
+    public String toString() {
+        return "CassAlertsWriter [maxInFlight=" + maxInFlight +
+                ", batchSize=" + batchSize +
+                ", maxQueued=" + maxQueued +
+                ", inFlight=" + getInFlight() +
+                ", queued=" + getQueued() +
+                ", written=" + getWritten() +
+                ", failures=" + getFailures() +
+                ", rejected=" + getRejected() +
+                ", batches=" + getBatches() +
+                ", avgWriteLatency=" + getAvgWriteLatency() +
+                ", maxWriteLatency=" + getMaxWriteLatency() + "]";
+    }
+
+    private static class PendingBatch {
+        final BatchStatement batch;
+        final int numAlerts;
+        final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        PendingBatch(BatchStatement batch, int numAlerts) {
+            this.batch = batch;
+            this.numAlerts = numAlerts;
+        }
+    }
+}
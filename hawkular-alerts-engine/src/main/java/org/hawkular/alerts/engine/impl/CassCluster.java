@@ -27,6 +27,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.StringWriter;
 import java.util.Map;
+import org.hawkular.alerts.engine.log.MsgLogger;
 import org.hawkular.alerts.engine.util.TokenReplacingReader;
 import org.jboss.logging.Logger;
 
@@ -37,6 +38,7 @@ import org.jboss.logging.Logger;
  */
 public class CassCluster {
     private static final Logger log = Logger.getLogger(CassDefinitionsServiceImpl.class);
+    private static final MsgLogger msgLog = MsgLogger.LOGGER;
     private static final String ALERTS_CASSANDRA_PORT = "hawkular-alerts.cassandra-cql-port";
     private static final String ALERTS_CASSANDRA_NODES = "hawkular-alerts.cassandra-nodes";
     private static final String ALERTS_CASSANDRA_KEYSPACE = "hawkular-alerts.cassandra-keyspace";
@@ -59,16 +61,30 @@ public class CassCluster {
 
         log.debugf("Creating Schema for keyspace " + keyspace);
 
+        ImmutableMap<String, String> schemaVars = ImmutableMap.of("keyspace", keyspace);
+
         ResultSet resultSet = session.execute("SELECT * FROM system.schema_keyspaces WHERE keyspace_name = '" +
                 keyspace + "'");
         if (!resultSet.isExhausted()) {
             log.debugf("Schema already exist. Skipping schema creation.");
-            return;
+        } else {
+            executeScript(session, "/hawkular-alerts-schema.cql", schemaVars);
         }
 
-        ImmutableMap<String, String> schemaVars = ImmutableMap.of("keyspace", keyspace);
+        /*
+            Schema updates are idempotent, they are applied on new and existing keyspaces.
+         */
+        executeScript(session, "/hawkular-alerts-schema-v2.cql", schemaVars);
+        try {
+            CassAlertsMigration.migrate(session, keyspace);
+        } catch (Exception e) {
+            throw new IOException("Failed to migrate alerts to schema version " +
+                    CassAlertsMigration.ALERTS_SCHEMA_VERSION, e);
+        }
+    }
 
-        try (InputStream inputStream = CassCluster.class.getResourceAsStream("/hawkular-alerts-schema.cql");
+    private void executeScript(Session session, String script, Map<String, String> schemaVars) throws IOException {
+        try (InputStream inputStream = CassCluster.class.getResourceAsStream(script);
              InputStreamReader reader = new InputStreamReader(inputStream)) {
             String content = CharStreams.toString(reader);
 
@@ -134,6 +150,13 @@ public class CassCluster {
             if (session != null) {
                 String keyspace = AlertProperties.getProperty(ALERTS_CASSANDRA_KEYSPACE, "hawkular_alerts");
                 instance.initScheme(session, keyspace);
+                /*
+                    Statements are prepared once the schema exists, so the first requests do not wait for them
+                 */
+                int failures = CassStatement.prepareAll(session);
+                msgLog.infoStatementsPrepared(CassStatement.getStatementNames().size(), failures,
+                        CassStatement.getPrepareTime());
+                session = new CassTimedSession(session);
             }
         }
         return session;
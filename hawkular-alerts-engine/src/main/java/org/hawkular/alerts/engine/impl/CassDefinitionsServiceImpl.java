@@ -18,14 +18,17 @@ package org.hawkular.alerts.engine.impl;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,6 +53,7 @@ import org.hawkular.alerts.api.model.trigger.TriggerTemplate;
 import org.hawkular.alerts.api.services.DefinitionsEvent;
 import org.hawkular.alerts.api.services.DefinitionsListener;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.DefinitionsSnapshot;
 import org.hawkular.alerts.engine.log.MsgLogger;
 import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.jboss.logging.Logger;
@@ -72,11 +76,16 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
     private static final String JBOSS_DATA_DIR = "jboss.server.data.dir";
     private static final String INIT_FOLDER = "hawkular-alerts";
     private static final String CASSANDRA_KEYSPACE = "hawkular-alerts.cassandra-keyspace";
+    private static final String DEFINITIONS_FETCH_SIZE = "hawkular-alerts.definitions-fetch-size";
+    private static final String DEFINITIONS_SCAN_SPLITS = "hawkular-alerts.definitions-scan-splits";
+    private static final String MURMUR3_PARTITIONER = "org.apache.cassandra.dht.Murmur3Partitioner";
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(CassDefinitionsServiceImpl.class);
     private Session session;
     private String keyspace;
     private boolean initialized = false;
+    private int fetchSize;
+    private int scanSplits;
 
     private List<DefinitionsListener> listeners = new ArrayList<>();
 
@@ -84,6 +93,8 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
     AlertsEngine alertsEngine;
 
     public CassDefinitionsServiceImpl() {
+        fetchSize = new Integer(AlertProperties.getProperty(DEFINITIONS_FETCH_SIZE, "5000"));
+        scanSplits = new Integer(AlertProperties.getProperty(DEFINITIONS_SCAN_SPLITS, "4"));
     }
 
     public AlertsEngine getAlertsEngine() {
@@ -468,6 +479,8 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
+
+        notifyListeners(DefinitionsEvent.EventType.ACTION_CHANGE);
     }
 
     @Override
@@ -534,6 +547,7 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
         if (deleteDampenings == null || deleteConditions == null || deleteTriggers == null) {
             throw new RuntimeException("delete*Triggers PreparedStatement is null");
         }
+        Collection<Condition> conditions = getTriggerConditions(tenantId, triggerId, null);
         try {
             deleteTags(tenantId, triggerId, null, null);
             List<ResultSetFuture> futures = new ArrayList<>();
@@ -545,6 +559,11 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
+
+        if (!conditions.isEmpty()) {
+            notifyListeners(new DefinitionsEvent(DefinitionsEvent.EventType.CONDITION_CHANGE,
+                    Collections.emptyList(), conditions));
+        }
     }
 
     @Override
@@ -635,19 +654,22 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
         if (selectTriggersTenant == null) {
             throw new RuntimeException("selectTriggersTenant PreparedStatement is null");
         }
-        List<Trigger> triggers = new ArrayList<>();
+        PreparedStatement selectTriggersActionsTenant = CassStatement.get(session,
+                CassStatement.SELECT_TRIGGERS_ACTIONS_TENANT);
+        if (selectTriggersActionsTenant == null) {
+            throw new RuntimeException("selectTriggersActionsTenant PreparedStatement is null");
+        }
+        Map<String, Trigger> triggers = new LinkedHashMap<>();
         try {
+            ResultSetFuture rsTriggersActions = session.executeAsync(selectTriggersActionsTenant.bind(tenantId));
             ResultSet rsTriggers = session.execute(selectTriggersTenant.bind(tenantId));
-            for (Row row : rsTriggers) {
-                Trigger trigger = mapTrigger(row);
-                selectTriggerActions(trigger);
-                triggers.add(trigger);
-            }
+            mapTriggers(rsTriggers, triggers);
+            mapTriggersActions(rsTriggersActions.get(), triggers);
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
-        return triggers;
+        return new ArrayList<>(triggers.values());
     }
 
     @Override
@@ -659,19 +681,137 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
         if (selectTriggersAll == null) {
             throw new RuntimeException("selectTriggersAll PreparedStatement is null");
         }
-        List<Trigger> triggers = new ArrayList<>();
+        PreparedStatement selectTriggersActionsAll = CassStatement.get(session,
+                CassStatement.SELECT_TRIGGERS_ACTIONS_ALL);
+        if (selectTriggersActionsAll == null) {
+            throw new RuntimeException("selectTriggersActionsAll PreparedStatement is null");
+        }
+        Map<String, Trigger> triggers = new LinkedHashMap<>();
         try {
-            ResultSet rsTriggers = session.execute(selectTriggersAll.bind());
-            for (Row row : rsTriggers) {
-                Trigger trigger = mapTrigger(row);
-                selectTriggerActions(trigger);
-                triggers.add(trigger);
+            ResultSetFuture rsTriggersActions = session.executeAsync(selectTriggersActionsAll.bind()
+                    .setFetchSize(fetchSize));
+            ResultSet rsTriggers = session.execute(selectTriggersAll.bind().setFetchSize(fetchSize));
+            mapTriggers(rsTriggers, triggers);
+            mapTriggersActions(rsTriggersActions.get(), triggers);
+        } catch (Exception e) {
+            msgLog.errorDatabaseException(e.getMessage());
+            throw e;
+        }
+        return new ArrayList<>(triggers.values());
+    }
+
+    @Override
+    public DefinitionsSnapshot getAllDefinitions() throws Exception {
+        if (session == null) {
+            throw new RuntimeException("Cassandra session is null");
+        }
+        if (scanSplits <= 1 || !isMurmur3Partitioner()) {
+            Collection<Trigger> triggers = getAllTriggers();
+            Collection<Condition> conditions = getAllConditions();
+            Collection<Dampening> dampenings = getAllDampenings();
+            return new DefinitionsSnapshot(triggers, conditions, dampenings);
+        }
+        PreparedStatement selectTriggersRange = CassStatement.get(session, CassStatement.SELECT_TRIGGERS_RANGE);
+        PreparedStatement selectTriggersActionsRange = CassStatement.get(session,
+                CassStatement.SELECT_TRIGGERS_ACTIONS_RANGE);
+        PreparedStatement selectConditionsRange = CassStatement.get(session, CassStatement.SELECT_CONDITIONS_RANGE);
+        PreparedStatement selectDampeningsRange = CassStatement.get(session, CassStatement.SELECT_DAMPENINGS_RANGE);
+        if (selectTriggersRange == null || selectTriggersActionsRange == null || selectConditionsRange == null
+                || selectDampeningsRange == null) {
+            throw new RuntimeException("select*Range PreparedStatement is null");
+        }
+        Map<String, Trigger> triggers = new LinkedHashMap<>();
+        List<Condition> conditions = new ArrayList<>();
+        List<Dampening> dampenings = new ArrayList<>();
+        try {
+            /*
+                All the token range scans are sent before reading any result, the next pages of a range are fetched
+                while iterating its ResultSet.
+             */
+            List<long[]> ranges = tokenRanges(scanSplits);
+            List<ResultSetFuture> rsTriggers = executeRanges(selectTriggersRange, ranges);
+            List<ResultSetFuture> rsTriggersActions = executeRanges(selectTriggersActionsRange, ranges);
+            List<ResultSetFuture> rsConditions = executeRanges(selectConditionsRange, ranges);
+            List<ResultSetFuture> rsDampenings = executeRanges(selectDampeningsRange, ranges);
+            for (ResultSetFuture rs : rsTriggers) {
+                mapTriggers(rs.get(), triggers);
+            }
+            for (ResultSetFuture rs : rsTriggersActions) {
+                mapTriggersActions(rs.get(), triggers);
+            }
+            for (ResultSetFuture rs : rsConditions) {
+                mapConditions(rs.get(), conditions);
+            }
+            for (ResultSetFuture rs : rsDampenings) {
+                mapDampenings(rs.get(), dampenings);
             }
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
-        return triggers;
+        DefinitionsSnapshot snapshot = new DefinitionsSnapshot(triggers.values(), conditions, dampenings);
+        log.debugf("Definitions loaded in [%s] token ranges: %s", scanSplits, snapshot);
+        return snapshot;
+    }
+
+    /*
+        The token ranges are only valid for Murmur3Partitioner, on any other partitioner a range scan would silently
+        miss rows, so the definitions are read with a full scan.
+     */
+    private boolean isMurmur3Partitioner() {
+        String partitioner = session.getCluster().getMetadata().getPartitioner();
+        if (MURMUR3_PARTITIONER.equals(partitioner)) {
+            return true;
+        }
+        msgLog.warnTokenRangeScanUnsupported(partitioner);
+        scanSplits = 1;
+        return false;
+    }
+
+    private List<ResultSetFuture> executeRanges(PreparedStatement statement, List<long[]> ranges) {
+        List<ResultSetFuture> futures = new ArrayList<>(ranges.size());
+        for (long[] range : ranges) {
+            futures.add(session.executeAsync(statement.bind(range[0], range[1]).setFetchSize(fetchSize)));
+        }
+        return futures;
+    }
+
+    /*
+        Splits the Murmur3Partitioner token ring in consecutive (start, end] ranges.
+        Murmur3Partitioner never assigns Long.MIN_VALUE, so the first range start is excluded safely.
+     */
+    static List<long[]> tokenRanges(int splits) {
+        List<long[]> ranges = new ArrayList<>(splits);
+        BigInteger min = BigInteger.valueOf(Long.MIN_VALUE);
+        BigInteger span = BigInteger.valueOf(Long.MAX_VALUE).subtract(min);
+        long start = Long.MIN_VALUE;
+        for (int i = 1; i <= splits; i++) {
+            long end = i == splits ? Long.MAX_VALUE
+                    : min.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(splits))).longValue();
+            ranges.add(new long[] { start, end });
+            start = end;
+        }
+        return ranges;
+    }
+
+    private static String triggerKey(String tenantId, String triggerId) {
+        return tenantId + "/" + triggerId;
+    }
+
+    private void mapTriggers(ResultSet rsTriggers, Map<String, Trigger> triggers) {
+        for (Row row : rsTriggers) {
+            Trigger trigger = mapTrigger(row);
+            triggers.put(triggerKey(trigger.getTenantId(), trigger.getId()), trigger);
+        }
+    }
+
+    private void mapTriggersActions(ResultSet rsTriggersActions, Map<String, Trigger> triggers) {
+        for (Row row : rsTriggersActions) {
+            Trigger trigger = triggers.get(triggerKey(row.getString("tenantId"), row.getString("triggerId")));
+            if (trigger != null) {
+                trigger.addActions(row.getString("actionPlugin"), row.getSet("actions", String.class));
+            }
+        }
     }
 
     private void selectTriggerActions(Trigger trigger) throws Exception {
@@ -990,7 +1130,7 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
         }
         List<Dampening> dampenings = new ArrayList<>();
         try {
-            ResultSet rsDampenings = session.execute(selectDampeningsAll.bind());
+            ResultSet rsDampenings = session.execute(selectDampeningsAll.bind().setFetchSize(fetchSize));
             mapDampenings(rsDampenings, dampenings);
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
@@ -1169,7 +1309,8 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
                 || insertConditionThresholdRange == null) {
             throw new RuntimeException("insert*Condition PreparedStatement is null");
         }
-        // Get rid of the prior condition set
+        // Get rid of the prior condition set, listeners are notified of the replaced conditions
+        Collection<Condition> previousConditions = getTriggerConditions(tenantId, triggerId, triggerMode);
         removeConditions(tenantId, triggerId, triggerMode);
 
         // Now add the new condition set
@@ -1248,7 +1389,8 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
             alertsEngine.reloadTrigger(tenantId, triggerId);
         }
 
-        notifyListeners(DefinitionsEvent.EventType.CONDITION_CHANGE);
+        notifyListeners(new DefinitionsEvent(DefinitionsEvent.EventType.CONDITION_CHANGE, conditions,
+                previousConditions));
 
         return conditions;
     }
@@ -1348,9 +1490,12 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
     }
 
     private void notifyListeners(DefinitionsEvent.EventType eventType) {
-        DefinitionsEvent de = new DefinitionsEvent(eventType);
+        notifyListeners(new DefinitionsEvent(eventType));
+    }
+
+    private void notifyListeners(DefinitionsEvent de) {
         for (DefinitionsListener dl : listeners) {
-            log.debugf("Notified Listener %s", eventType.name());
+            log.debugf("Notified Listener %s", de.getEventType().name());
             dl.onChange(de);
         }
     }
@@ -1524,7 +1669,7 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
         }
         List<Condition> conditions = new ArrayList<>();
         try {
-            ResultSet rsConditions = session.execute(selectConditionsAll.bind());
+            ResultSet rsConditions = session.execute(selectConditionsAll.bind().setFetchSize(fetchSize));
             mapConditions(rsConditions, conditions);
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
@@ -1779,6 +1924,8 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
+
+        notifyListeners(DefinitionsEvent.EventType.ACTION_CHANGE);
     }
 
     @Override
@@ -1812,6 +1959,8 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
+
+        notifyListeners(DefinitionsEvent.EventType.ACTION_CHANGE);
     }
 
     @Override
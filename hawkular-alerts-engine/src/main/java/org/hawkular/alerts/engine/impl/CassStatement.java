@@ -16,16 +16,32 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.jboss.logging.Logger;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * PreparedStatements need to be prepared only one time for the Datastax driver.  Avoid overhead and warnings by
  * caching the PreparedStatements in one place.
  *
+ * All the statements are prepared in parallel by {@link #prepareAll(Session)} when the session is created, so
+ * {@link #get(Session, String)} is a lock free lookup. A statement not prepared at startup is prepared once on its
+ * first use. The execution latencies of the statements are recorded by {@link CassTimedSession}.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -34,8 +50,21 @@ public class CassStatement {
 
     private static final String keyspace;
 
-    private static final Map<String, PreparedStatement> statementMap = new HashMap<>();
+    private static final Logger log = Logger.getLogger(CassStatement.class);
+
+    private static final Map<String, PreparedStatement> statementMap = new ConcurrentHashMap<>();
+
+    private static final Map<String, String> statementNames = new HashMap<>();
+
+    private static final Map<String, StatementLatency> latencies = new ConcurrentHashMap<>();
+
+    private static volatile long prepareTime = 0;
 
+    public static final String COUNT_ALERT_CTIME_START_END;
+    public static final String COUNT_ALERT_CTIME_START_END_LIMIT;
+    public static final String COUNT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY_LIMIT;
+    public static final String COUNT_ALERT_STATUS_BY_TENANT_AND_STATUS_LIMIT;
+    public static final String COUNT_ALERTS_TRIGGERS_LIMIT;
     public static final String DELETE_ACTION;
     public static final String DELETE_ACTION_PLUGIN;
     public static final String DELETE_ALERT_STATUS;
@@ -52,6 +81,7 @@ public class CassStatement {
     public static final String INSERT_ACTION;
     public static final String INSERT_ACTION_PLUGIN;
     public static final String INSERT_ALERT;
+    public static final String INSERT_ALERT_BUCKET;
     public static final String INSERT_ALERT_TRIGGER;
     public static final String INSERT_ALERT_CTIME;
     public static final String INSERT_ALERT_SEVERITY;
@@ -73,10 +103,10 @@ public class CassStatement {
     public static final String SELECT_ACTION_PLUGIN;
     public static final String SELECT_ACTION_PLUGINS;
     public static final String SELECT_ACTIONS_PLUGIN;
-    public static final String SELECT_ALERT_CTIME_END;
-    public static final String SELECT_ALERT_CTIME_START;
+    public static final String SELECT_ALERT_BUCKETS;
+    public static final String SELECT_ALERT_CTIME_ORDER_ASC;
+    public static final String SELECT_ALERT_CTIME_ORDER_DESC;
     public static final String SELECT_ALERT_CTIME_START_END;
-    public static final String SELECT_ALERT_STATUS;
     public static final String SELECT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY;
     public static final String SELECT_ALERT_STATUS_BY_TENANT_AND_STATUS;
     public static final String SELECT_ALERTS_BY_TENANT;
@@ -85,9 +115,11 @@ public class CassStatement {
     public static final String SELECT_CONDITION_ID;
     public static final String SELECT_CONDITIONS_ALL;
     public static final String SELECT_CONDITIONS_BY_TENANT;
+    public static final String SELECT_CONDITIONS_RANGE;
     public static final String SELECT_DAMPENING_ID;
     public static final String SELECT_DAMPENINGS_ALL;
     public static final String SELECT_DAMPENINGS_BY_TENANT;
+    public static final String SELECT_DAMPENINGS_RANGE;
     public static final String SELECT_TAGS;
     public static final String SELECT_TAGS_BY_CATEGORY;
     public static final String SELECT_TAGS_BY_CATEGORY_AND_NAME;
@@ -102,7 +134,11 @@ public class CassStatement {
     public static final String SELECT_TRIGGER_DAMPENINGS;
     public static final String SELECT_TRIGGER_DAMPENINGS_MODE;
     public static final String SELECT_TRIGGERS_ALL;
+    public static final String SELECT_TRIGGERS_RANGE;
     public static final String SELECT_TRIGGERS_TENANT;
+    public static final String SELECT_TRIGGERS_ACTIONS_ALL;
+    public static final String SELECT_TRIGGERS_ACTIONS_RANGE;
+    public static final String SELECT_TRIGGERS_ACTIONS_TENANT;
 
     public static final String UPDATE_ACTION;
     public static final String UPDATE_ACTION_PLUGIN;
@@ -114,13 +150,28 @@ public class CassStatement {
     static {
         keyspace = AlertProperties.getProperty(CASSANDRA_KEYSPACE, "hawkular_alerts");
 
+        COUNT_ALERT_CTIME_START_END = "SELECT COUNT(*) FROM " + keyspace + ".alerts_ctimes_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ";
+
+        COUNT_ALERT_CTIME_START_END_LIMIT = "SELECT COUNT(*) FROM " + keyspace + ".alerts_ctimes_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? LIMIT ? ";
+
+        COUNT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY_LIMIT = "SELECT COUNT(*) FROM " + keyspace
+                + ".alerts_severities_v2 WHERE tenantId = ? AND bucket = ? AND severity = ? LIMIT ? ";
+
+        COUNT_ALERT_STATUS_BY_TENANT_AND_STATUS_LIMIT = "SELECT COUNT(*) FROM " + keyspace + ".alerts_statuses_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? LIMIT ? ";
+
+        COUNT_ALERTS_TRIGGERS_LIMIT = "SELECT COUNT(*) FROM " + keyspace + ".alerts_triggers_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND triggerId = ? LIMIT ? ";
+
         DELETE_ACTION = "DELETE FROM " + keyspace + ".actions "
                 + "WHERE tenantId = ? AND actionPlugin = ? AND actionId = ? ";
 
         DELETE_ACTION_PLUGIN = "DELETE FROM " + keyspace + ".action_plugins WHERE actionPlugin = ? ";
 
-        DELETE_ALERT_STATUS = "DELETE FROM " + keyspace + ".alerts_statuses "
-                + "WHERE tenantId = ? AND status = ? AND alertId = ? ";
+        DELETE_ALERT_STATUS = "DELETE FROM " + keyspace + ".alerts_statuses_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? AND alertId = ? ";
 
         DELETE_CONDITIONS = "DELETE FROM " + keyspace + ".conditions " + "WHERE tenantId = ? AND triggerId = ? ";
 
@@ -150,19 +201,22 @@ public class CassStatement {
         INSERT_ACTION_PLUGIN = "INSERT INTO " + keyspace + ".action_plugins "
                 + "(actionPlugin, properties) VALUES (?, ?) ";
 
-        INSERT_ALERT = "INSERT INTO " + keyspace + ".alerts " + "(tenantId, alertId, payload) VALUES (?, ?, ?) ";
+        INSERT_ALERT = "INSERT INTO " + keyspace + ".alerts_v2 "
+                + "(tenantId, bucket, alertId, payload) VALUES (?, ?, ?, ?) ";
 
-        INSERT_ALERT_TRIGGER = "INSERT INTO " + keyspace + ".alerts_triggers "
-                + "(tenantId, alertId, triggerId) VALUES (?, ?, ?) ";
+        INSERT_ALERT_BUCKET = "INSERT INTO " + keyspace + ".alerts_buckets (tenantId, bucket) VALUES (?, ?) ";
 
-        INSERT_ALERT_CTIME = "INSERT INTO " + keyspace + ".alerts_ctimes "
-                + "(tenantId, alertId, ctime) VALUES (?, ?, ?) ";
+        INSERT_ALERT_TRIGGER = "INSERT INTO " + keyspace + ".alerts_triggers_v2 "
+                + "(tenantId, bucket, alertId, triggerId) VALUES (?, ?, ?, ?) ";
 
-        INSERT_ALERT_SEVERITY = "INSERT INTO " + keyspace + ".alerts_severities "
-                + "(tenantId, alertId, severity) VALUES (?, ?, ?) ";
+        INSERT_ALERT_CTIME = "INSERT INTO " + keyspace + ".alerts_ctimes_v2 "
+                + "(tenantId, bucket, alertId, ctime) VALUES (?, ?, ?, ?) ";
 
-        INSERT_ALERT_STATUS = "INSERT INTO " + keyspace + ".alerts_statuses "
-                + "(tenantId, alertId, status) VALUES (?, ?, ?) ";
+        INSERT_ALERT_SEVERITY = "INSERT INTO " + keyspace + ".alerts_severities_v2 "
+                + "(tenantId, bucket, alertId, severity) VALUES (?, ?, ?, ?) ";
+
+        INSERT_ALERT_STATUS = "INSERT INTO " + keyspace + ".alerts_statuses_v2 "
+                + "(tenantId, bucket, alertId, status) VALUES (?, ?, ?, ?) ";
 
         INSERT_CONDITION_AVAILABILITY = "INSERT INTO " + keyspace + ".conditions "
                 + "(tenantId, triggerId, triggerMode, type, conditionSetSize, conditionSetIndex, conditionId, "
@@ -217,31 +271,32 @@ public class CassStatement {
         SELECT_ACTIONS_PLUGIN = "SELECT actionId FROM " + keyspace + ".actions "
                 + "WHERE tenantId = ? AND actionPlugin = ? ";
 
-        SELECT_ALERT_CTIME_END = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime <= ? ";
+        SELECT_ALERT_BUCKETS = "SELECT bucket FROM " + keyspace + ".alerts_buckets "
+                + "WHERE tenantId = ? AND bucket >= ? AND bucket <= ? ";
 
-        SELECT_ALERT_CTIME_START = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? ";
+        SELECT_ALERT_CTIME_ORDER_ASC = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ORDER BY ctime ASC ";
 
-        SELECT_ALERT_CTIME_START_END = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? AND ctime <= ? ";
+        SELECT_ALERT_CTIME_ORDER_DESC = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ORDER BY ctime DESC ";
 
-        SELECT_ALERT_STATUS = "SELECT alertId, status FROM " + keyspace + ".alerts_statuses "
-                + "WHERE tenantId = ? AND status = ? AND alertId = ? ";
+        SELECT_ALERT_CTIME_START_END = "SELECT alertId, bucket FROM " + keyspace + ".alerts_ctimes_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ";
 
-        SELECT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY = "SELECT alertId FROM " + keyspace + ".alerts_severities "
-                + "WHERE tenantId = ? AND severity = ? ";
+        SELECT_ALERT_SEVERITY_BY_TENANT_AND_SEVERITY = "SELECT alertId, bucket FROM " + keyspace
+                + ".alerts_severities_v2 WHERE tenantId = ? AND bucket = ? AND severity = ? ";
 
-        SELECT_ALERT_STATUS_BY_TENANT_AND_STATUS = "SELECT alertId FROM " + keyspace + ".alerts_statuses "
-                + "WHERE tenantId = ? AND status = ? ";
+        SELECT_ALERT_STATUS_BY_TENANT_AND_STATUS = "SELECT alertId, bucket FROM " + keyspace + ".alerts_statuses_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? ";
 
-        SELECT_ALERTS_BY_TENANT = "SELECT payload FROM " + keyspace + ".alerts " + "WHERE tenantId = ? ";
+        SELECT_ALERTS_BY_TENANT = "SELECT payload FROM " + keyspace + ".alerts_v2 "
+                + "WHERE tenantId = ? AND bucket = ? ";
 
-        SELECT_ALERTS_BY_TENANT_AND_ALERT = "SELECT payload FROM " + keyspace + ".alerts "
-                + "WHERE tenantId = ? AND alertId = ? ";
+        SELECT_ALERTS_BY_TENANT_AND_ALERT = "SELECT payload FROM " + keyspace + ".alerts_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ? ";
 
-        SELECT_ALERTS_TRIGGERS = "SELECT alertId FROM " + keyspace + ".alerts_triggers "
-                + "WHERE tenantId = ? AND triggerId = ? ";
+        SELECT_ALERTS_TRIGGERS = "SELECT alertId, bucket FROM " + keyspace + ".alerts_triggers_v2 "
+                + "WHERE tenantId = ? AND bucket = ? AND triggerId = ? ";
 
         SELECT_CONDITION_ID = "SELECT triggerId, triggerMode, type, conditionSetSize, "
                 + "conditionSetIndex, conditionId, dataId, operator, data2Id, data2Multiplier, pattern, "
@@ -260,6 +315,12 @@ public class CassStatement {
                 + "FROM " + keyspace + ".conditions "
                 + "WHERE tenantId = ? ";
 
+        SELECT_CONDITIONS_RANGE = "SELECT triggerId, triggerMode, type, conditionSetSize, "
+                + "conditionSetIndex, conditionId, dataId, operator, data2Id, data2Multiplier, pattern, "
+                + "ignoreCase, threshold, operatorLow, operatorHigh, thresholdLow, thresholdHigh, inRange, tenantId "
+                + "FROM " + keyspace + ".conditions "
+                + "WHERE token(tenantId) > ? AND token(tenantId) <= ? ";
+
         SELECT_DAMPENING_ID = "SELECT triggerId, triggerMode, type, evalTrueSetting, "
                 + "evalTotalSetting, evalTimeSetting, dampeningId, tenantId "
                 + "FROM " + keyspace + ".dampenings "
@@ -274,6 +335,11 @@ public class CassStatement {
                 + "FROM " + keyspace + ".dampenings "
                 + "WHERE tenantId = ? ";
 
+        SELECT_DAMPENINGS_RANGE = "SELECT tenantId, triggerId, triggerMode, type, evalTrueSetting, "
+                + "evalTotalSetting, evalTimeSetting, dampeningId "
+                + "FROM " + keyspace + ".dampenings "
+                + "WHERE token(tenantId) > ? AND token(tenantId) <= ? ";
+
         SELECT_TAGS = "SELECT tenantId, triggerId, category, name, visible "
                 + "FROM " + keyspace + ".tags "
                 + "WHERE tenantId = ? AND triggerId = ? ORDER BY triggerId, name ";
@@ -341,12 +407,28 @@ public class CassStatement {
                 + "autoResolveAlerts, severity, firingMatch, autoResolveMatch, id, enabled, tenantId "
                 + "FROM " + keyspace + ".triggers WHERE tenantId = ? ";
 
+        SELECT_TRIGGERS_RANGE = "SELECT name, description, autoDisable, autoResolve, "
+                + "autoResolveAlerts, severity, firingMatch, autoResolveMatch, id, enabled, tenantId "
+                + "FROM " + keyspace + ".triggers WHERE token(tenantId) > ? AND token(tenantId) <= ? ";
+
+        SELECT_TRIGGERS_ACTIONS_ALL = "SELECT tenantId, triggerId, actionPlugin, actions "
+                + "FROM " + keyspace + ".triggers_actions ";
+
+        SELECT_TRIGGERS_ACTIONS_RANGE = "SELECT tenantId, triggerId, actionPlugin, actions "
+                + "FROM " + keyspace + ".triggers_actions "
+                + "WHERE token(tenantId) > ? AND token(tenantId) <= ? ";
+
+        SELECT_TRIGGERS_ACTIONS_TENANT = "SELECT tenantId, triggerId, actionPlugin, actions "
+                + "FROM " + keyspace + ".triggers_actions "
+                + "WHERE tenantId = ? ";
+
         UPDATE_ACTION = "UPDATE " + keyspace + ".actions SET properties = ? "
                 + "WHERE tenantId = ? AND actionPlugin = ? AND actionId = ? ";
 
         UPDATE_ACTION_PLUGIN = "UPDATE " + keyspace + ".action_plugins SET properties = ? WHERE actionPlugin = ? ";
 
-        UPDATE_ALERT = "UPDATE " + keyspace + ".alerts SET payload = ? WHERE tenantId = ? AND alertId = ? ";
+        UPDATE_ALERT = "UPDATE " + keyspace + ".alerts_v2 SET payload = ? "
+                + "WHERE tenantId = ? AND bucket = ? AND alertId = ? ";
 
         UPDATE_DAMPENING_ID = "UPDATE " + keyspace + ".dampenings "
                 + "SET type = ?, evalTrueSetting = ?, evalTotalSetting = ?, evalTimeSetting = ? "
@@ -360,14 +442,95 @@ public class CassStatement {
                 + "severity = ?, firingMatch = ?, autoResolveMatch = ?, enabled = ? "
                 + "WHERE tenantId = ? AND id = ? ";
 
+        for (Field field : CassStatement.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                try {
+                    statementNames.put((String) field.get(null), field.getName());
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
     }
 
-    public static synchronized PreparedStatement get(Session session, String statement) {
+    public static PreparedStatement get(Session session, String statement) {
         PreparedStatement result = statementMap.get(statement);
         if (null == result) {
-            result = session.prepare(statement);
-            statementMap.put(statement, result);
+            result = statementMap.computeIfAbsent(statement, session::prepare);
         }
         return result;
     }
+
+    /**
+     * Prepares all the statements asynchronously and waits until they are prepared.
+     *
+     * @param session Cassandra session
+     * @return number of statements that could not be prepared, they are prepared again on first use
+     */
+    public static int prepareAll(Session session) {
+        long start = System.currentTimeMillis();
+        List<String> statements = new ArrayList<>(statementNames.keySet());
+        List<ListenableFuture<PreparedStatement>> futures = new ArrayList<>(statements.size());
+        for (String statement : statements) {
+            futures.add(session.prepareAsync(statement));
+        }
+        int failures = 0;
+        for (int i = 0; i < statements.size(); i++) {
+            try {
+                statementMap.putIfAbsent(statements.get(i), futures.get(i).get());
+            } catch (Exception e) {
+                log.debugf("Statement %s cannot be prepared. Msg: %s", statementNames.get(statements.get(i)),
+                        e.getMessage());
+                failures++;
+            }
+        }
+        prepareTime = System.currentTimeMillis() - start;
+        return failures;
+    }
+
+    /**
+     * @return names of the statements by their CQL
+     */
+    public static Map<String, String> getStatementNames() {
+        return Collections.unmodifiableMap(statementNames);
+    }
+
+    /**
+     * @return time in milliseconds of the last {@link #prepareAll(Session)}
+     */
+    public static long getPrepareTime() {
+        return prepareTime;
+    }
+
+    /**
+     * Records the execution latency of a statement. Statements bound from the prepared statements are recorded by
+     * their name, batches and the rest of statements are recorded as BATCH and OTHER.
+     *
+     * @param statement executed statement
+     * @param nanos execution time in nanoseconds
+     * @param failed true if the execution failed
+     */
+    public static void record(Statement statement, long nanos, boolean failed) {
+        String name = null;
+        if (statement instanceof BoundStatement) {
+            name = statementNames.get(((BoundStatement) statement).preparedStatement().getQueryString());
+        } else if (statement instanceof BatchStatement) {
+            name = "BATCH";
+        }
+        if (name == null) {
+            name = "OTHER";
+        }
+        StatementLatency latency = latencies.get(name);
+        if (latency == null) {
+            latency = latencies.computeIfAbsent(name, n -> new StatementLatency());
+        }
+        latency.record(nanos, failed);
+    }
+
+    /**
+     * @return execution latencies by statement name
+     */
+    public static Map<String, StatementLatency> getLatencies() {
+        return Collections.unmodifiableMap(latencies);
+    }
 }
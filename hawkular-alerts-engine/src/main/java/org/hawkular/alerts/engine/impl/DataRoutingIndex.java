@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.data.Data;
+
+/**
+ * Index of the dataIds referenced by the Conditions loaded in the engine.
+ *
+ * It maps a dataId to the Conditions, and so to the (tenantId, triggerId, conditionId), that use it. The engine
+ * uses it to discard incoming Data that no Condition references before it reaches the rules engine. Data scoped to a
+ * tenant is only referenced by the Conditions of that tenant. Trigger and Condition ids are only unique within a
+ * tenant, so Triggers and Conditions are keyed by tenantId and id.
+ * Lookups are lock-free, updates are serialized as they only happen on definitions changes.
+ */
+public class DataRoutingIndex {
+
+    private final Map<String, Map<String, Condition>> conditionsByDataId = new ConcurrentHashMap<>();
+    private final Map<String, Set<Condition>> conditionsByTriggerId = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Index the Conditions of a Trigger, replacing any Condition previously indexed for that tenantId and triggerId.
+     * @param tenantId the tenantId
+     * @param triggerId the triggerId
+     * @param conditions the Conditions of the Trigger
+     */
+    public synchronized void addTrigger(String tenantId, String triggerId, Collection<Condition> conditions) {
+        if (null == triggerId) {
+            throw new IllegalArgumentException("TriggerId must be not null");
+        }
+        removeTrigger(tenantId, triggerId);
+        if (null == conditions || conditions.isEmpty()) {
+            return;
+        }
+        Set<Condition> triggerConditions = ConcurrentHashMap.newKeySet();
+        for (Condition c : conditions) {
+            triggerConditions.add(c);
+            index(c.getDataId(), c);
+            if (c instanceof CompareCondition) {
+                index(((CompareCondition) c).getData2Id(), c);
+            }
+        }
+        conditionsByTriggerId.put(key(tenantId, triggerId), triggerConditions);
+    }
+
+    /**
+     * Remove from the index all the Conditions of a Trigger.
+     * @param tenantId the tenantId
+     * @param triggerId the triggerId
+     */
+    public synchronized void removeTrigger(String tenantId, String triggerId) {
+        Set<Condition> triggerConditions = conditionsByTriggerId.remove(key(tenantId, triggerId));
+        if (null == triggerConditions) {
+            return;
+        }
+        for (Condition c : triggerConditions) {
+            unindex(c.getDataId(), c);
+            if (c instanceof CompareCondition) {
+                unindex(((CompareCondition) c).getData2Id(), c);
+            }
+        }
+    }
+
+    private static String key(String tenantId, String id) {
+        return tenantId + "|" + id;
+    }
+
+    private void index(String dataId, Condition condition) {
+        if (null == dataId) {
+            return;
+        }
+        conditionsByDataId.computeIfAbsent(dataId, k -> new ConcurrentHashMap<>())
+                .put(key(condition.getTenantId(), condition.getConditionId()), condition);
+    }
+
+    private void unindex(String dataId, Condition condition) {
+        if (null == dataId) {
+            return;
+        }
+        Map<String, Condition> dataConditions = conditionsByDataId.get(dataId);
+        if (null != dataConditions) {
+            dataConditions.remove(key(condition.getTenantId(), condition.getConditionId()));
+            if (dataConditions.isEmpty()) {
+                conditionsByDataId.remove(dataId);
+            }
+        }
+    }
+
+    /**
+     * Check if a dataId is referenced by any Condition, updating the hit/miss counters.
+     * @param dataId the dataId
+     * @return true if at least one Condition references the dataId
+     */
+    public boolean isReferenced(String dataId) {
+        if (null != dataId && conditionsByDataId.containsKey(dataId)) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * Check if a Data is referenced by any Condition of its tenant, updating the hit/miss counters. Data not scoped
+     * to a tenant is referenced by the Conditions of any tenant.
+     * @param data the Data
+     * @return true if at least one Condition of the tenant of the Data references its dataId
+     */
+    public boolean isReferenced(Data data) {
+        if (null == data.getTenantId()) {
+            return isReferenced(data.getId());
+        }
+        Map<String, Condition> dataConditions = null == data.getId() ? null : conditionsByDataId.get(data.getId());
+        if (null != dataConditions) {
+            for (Condition c : dataConditions.values()) {
+                if (data.matchesTenant(c.getTenantId())) {
+                    hits.increment();
+                    return true;
+                }
+            }
+        }
+        misses.increment();
+        return false;
+    }
+
+    /**
+     * @param dataId the dataId
+     * @return the Conditions referencing the dataId, empty if none
+     */
+    public Collection<Condition> getConditions(String dataId) {
+        Map<String, Condition> dataConditions = null == dataId ? null : conditionsByDataId.get(dataId);
+        return null == dataConditions ? Collections.emptySet()
+                : Collections.unmodifiableCollection(dataConditions.values());
+    }
+
+    /**
+     * @return number of distinct dataIds referenced
+     */
+    public int size() {
+        return conditionsByDataId.size();
+    }
+
+    public synchronized void clear() {
+        conditionsByDataId.clear();
+        conditionsByTriggerId.clear();
+    }
+
+    /**
+     * @return number of lookups of a referenced dataId, so Data sent to the rules engine
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups of a not referenced dataId, so Data discarded
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "DataRoutingIndex [dataIds=" + size() + ", triggers=" + conditionsByTriggerId.size() + ", hits="
+                + getHits() + ", misses=" + getMisses() + "]";
+    }
+}
@@ -17,6 +17,10 @@
 package org.hawkular.alerts.engine.impl;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.function.Predicate;
 
@@ -24,7 +28,12 @@ import javax.ejb.Singleton;
 
 import org.drools.core.event.DebugAgendaEventListener;
 import org.drools.core.event.DebugRuleRuntimeEventListener;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
+import org.hawkular.alerts.engine.rules.DataWaves;
 import org.hawkular.alerts.engine.rules.RulesEngine;
 import org.jboss.logging.Logger;
 import org.kie.api.KieServices;
@@ -53,6 +62,14 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
     TreeSet<Data> pendingData = new TreeSet<>();
 
+    /*
+        Trigger, Condition and Dampening facts by tenantId and triggerId, triggerIds are only unique within a tenant.
+        The rules retract and insert again the Triggers and
+        Dampenings they update, so the facts are indexed instead of their FactHandles, and the current FactHandle is
+        looked up by equality.
+     */
+    private final Map<String, Set<Object>> triggerFacts = new HashMap<>();
+
     public DroolsRulesEngineImpl() {
         log.debugf("Creating instance.");
         ks = KieServices.Factory.get();
@@ -73,6 +90,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
         log.debugf("Insert %s ", fact);
         kSession.insert(fact);
+        indexFact(fact);
     }
 
     @Override
@@ -85,6 +103,39 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         for (Object fact : facts) {
             log.debugf("Insert %s ", fact);
             kSession.insert(fact);
+            indexFact(fact);
+        }
+    }
+
+    private static String triggerKey(String tenantId, String triggerId) {
+        return tenantId + "|" + triggerId;
+    }
+
+    private String triggerKeyOf(Object fact) {
+        if (fact instanceof Trigger) {
+            return triggerKey(((Trigger) fact).getTenantId(), ((Trigger) fact).getId());
+        } else if (fact instanceof Condition) {
+            return triggerKey(((Condition) fact).getTenantId(), ((Condition) fact).getTriggerId());
+        } else if (fact instanceof Dampening) {
+            return triggerKey(((Dampening) fact).getTenantId(), ((Dampening) fact).getTriggerId());
+        }
+        return null;
+    }
+
+    private void indexFact(Object fact) {
+        String triggerKey = triggerKeyOf(fact);
+        if (null != triggerKey) {
+            triggerFacts.computeIfAbsent(triggerKey, k -> new HashSet<>()).add(fact);
+        }
+    }
+
+    private void unindexFact(Object fact) {
+        String triggerKey = triggerKeyOf(fact);
+        if (null != triggerKey) {
+            Set<Object> facts = triggerFacts.get(triggerKey);
+            if (null != facts && facts.remove(fact) && facts.isEmpty()) {
+                triggerFacts.remove(triggerKey);
+            }
         }
     }
 
@@ -110,41 +161,38 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             log.debugf("Delete %s ", factHandle);
             kSession.delete(factHandle);
         }
+        triggerFacts.clear();
     }
 
     @Override
     public void fire() {
-        // The rules engine requires that for any DataId only the oldest Data instance is processed in one
-        // execution of the rules.  So, if we find multiple Data instances for the same Id, defer all but
-        // the oldest to a subsequent run. Note that pendingData is already sorted by (id ASC, timestamp ASC) so
-        // the iterator will present Data with the same id together, and time-ordered.
-        while (!pendingData.isEmpty()) {
-
-            log.debugf("Data found. Firing rules on [%1$d] datums.", pendingData.size());
-
-            TreeSet<Data> batchData = new TreeSet<Data>(pendingData);
-            Data previousData = null;
+        // The rules engine requires that for any DataId only the oldest Data instance is processed at a time. So, if
+        // we find multiple Data instances for the same Id, the more recent ones are held in DataWaves and inserted by
+        // the rules, wave by wave, when the previous wave has been fully processed. Note that pendingData is already
+        // sorted by (id ASC, timestamp ASC) so the waves are built in a single pass.
+        if (pendingData.isEmpty()) {
+            return;
+        }
 
-            pendingData.clear();
+        log.debugf("Data found. Firing rules on [%1$d] datums.", pendingData.size());
 
-            for (Data data : batchData) {
-                if (null == previousData || !data.getId().equals(previousData.getId())) {
-                    kSession.insert(data);
-                    previousData = data;
+        DataWaves waves = new DataWaves(pendingData);
+        pendingData.clear();
 
-                } else {
-                    pendingData.add(data);
-                    log.debugf("Deferring more recent %1$s until older %2$s is processed", data, previousData);
-                }
-            }
+        for (Data data : waves.next()) {
+            kSession.insert(data);
+        }
 
-            if (!pendingData.isEmpty()) {
-                log.debugf("Deferring [%1$d] Datum(s) to next firing !!", pendingData.size());
-            }
+        FactHandle wavesHandle = null;
+        if (waves.getRemaining() > 0) {
+            log.debugf("Deferring [%1$d] wave(s) of more recent Datums", waves.getRemaining());
+            wavesHandle = kSession.insert(waves);
+        }
 
-            batchData.clear();
+        kSession.fireAllRules();
 
-            kSession.fireAllRules();
+        if (null != wavesHandle) {
+            kSession.delete(wavesHandle);
         }
     }
 
@@ -165,6 +213,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             log.debugf("Delete %s ", factHandle);
             kSession.delete(factHandle);
         }
+        unindexFact(fact);
     }
 
     @Override
@@ -197,9 +246,37 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         }
 
         for (FactHandle h : handles) {
+            Object fact = kSession.getObject(h);
             log.debugf("Delete %s ", h);
-            removeFact(h);
+            kSession.delete(h);
+            unindexFact(fact);
+        }
+    }
+
+    @Override
+    public boolean removeTriggerFacts(String tenantId, String triggerId) {
+        boolean found = false;
+        Set<Object> facts = triggerFacts.remove(triggerKey(tenantId, triggerId));
+        if (null != facts) {
+            for (Object fact : facts) {
+                FactHandle factHandle = kSession.getFactHandle(fact);
+                if (factHandle != null) {
+                    log.debugf("Delete %s ", factHandle);
+                    kSession.delete(factHandle);
+                    found |= fact instanceof Trigger;
+                }
+            }
+        }
+        // Default Dampenings are inserted by the rules, they are equal to any Dampening of the same trigger and mode
+        for (Mode mode : Mode.values()) {
+            FactHandle factHandle = kSession.getFactHandle(new Dampening(triggerId, mode, Dampening.Type.STRICT, 1, 1,
+                    0));
+            if (factHandle != null) {
+                log.debugf("Delete %s ", factHandle);
+                kSession.delete(factHandle);
+            }
         }
+        return found;
     }
 
     @Override
@@ -213,5 +290,6 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         log.debugf("Reset session");
         kSession.dispose();
         kSession = kc.newKieSession(SESSION_NAME);
+        triggerFacts.clear();
     }
 }
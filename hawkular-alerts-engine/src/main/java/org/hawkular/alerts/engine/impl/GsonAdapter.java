@@ -16,6 +16,7 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 
 import com.google.gson.Gson;
@@ -28,6 +29,10 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 
 /**
@@ -52,10 +57,36 @@ public class GsonAdapter<T extends Object> implements JsonSerializer<T>, JsonDes
      */
     private static final String INSTANCE_TYPE = "typ";
 
+    /*
+     * JSON has no NaN nor infinities, so non finite doubles are skipped and read back as the field default.
+     */
+    private static final TypeAdapter<Double> FINITE_DOUBLES = new TypeAdapter<Double>() {
+        @Override
+        public void write(JsonWriter out, Double value) throws IOException {
+            if (value == null || value.isNaN() || value.isInfinite()) {
+                out.nullValue();
+            } else {
+                out.value(value);
+            }
+        }
+
+        @Override
+        public Double read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            return in.nextDouble();
+        }
+    };
+
     /*
      * Another instance of Serializer to give an external context
      */
-    private final Gson gson = new GsonBuilder().create();
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(double.class, FINITE_DOUBLES)
+            .registerTypeAdapter(Double.class, FINITE_DOUBLES)
+            .create();
 
     @Override
     public T deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context)
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Gson encoding of the alert payloads, the format of the alerts written before {@link BinaryAlertCodec}.
+ *
+ * In thin mode the {@link Alert.Thin} fields are skipped by the deserialization, but the whole document is parsed.
+ */
+public class JsonAlertCodec implements AlertCodec {
+    public static final String NAME = "json";
+
+    private final Gson gson;
+    private final Gson gsonThin;
+
+    public JsonAlertCodec() {
+        GsonBuilder gsonBuilder = new GsonBuilder();
+        gsonBuilder.registerTypeHierarchyAdapter(ConditionEval.class, new GsonAdapter<ConditionEval>());
+        gson = gsonBuilder.create();
+
+        GsonBuilder gsonBuilderThin = new GsonBuilder();
+        gsonBuilderThin.registerTypeHierarchyAdapter(ConditionEval.class, new GsonAdapter<ConditionEval>());
+        gsonBuilderThin.addDeserializationExclusionStrategy(new ExclusionStrategy() {
+            @Override
+            public boolean shouldSkipField(FieldAttributes f) {
+                final Alert.Thin thin = f.getAnnotation(Alert.Thin.class);
+                return thin != null;
+            }
+
+            @Override
+            public boolean shouldSkipClass(Class<?> clazz) {
+                return false;
+            }
+        });
+        gsonThin = gsonBuilderThin.create();
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ByteBuffer encode(Alert alert) {
+        return ByteBuffer.wrap(toJson(alert).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Alert decode(ByteBuffer payload, boolean thin) {
+        String json;
+        if (payload.hasArray()) {
+            json = new String(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining(),
+                    StandardCharsets.UTF_8);
+        } else {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.duplicate().get(bytes);
+            json = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return fromJson(json, thin);
+    }
+
+    /**
+     * JSON payloads are documents, the first non blank character is '{'.
+     */
+    @Override
+    public boolean canDecode(ByteBuffer payload) {
+        for (int i = payload.position(); i < payload.limit(); i++) {
+            byte b = payload.get(i);
+            if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+                return b == '{';
+            }
+        }
+        return false;
+    }
+
+    public String toJson(Alert alert) {
+        return gson.toJson(alert);
+    }
+
+    public Alert fromJson(String json, boolean thin) {
+        return thin ? gsonThin.fromJson(json, Alert.class) : gson.fromJson(json, Alert.class);
+    }
+}
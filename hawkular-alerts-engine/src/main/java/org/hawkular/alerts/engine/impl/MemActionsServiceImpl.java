@@ -22,10 +22,11 @@ import org.hawkular.alerts.api.services.ActionListener;
 import org.hawkular.alerts.engine.log.MsgLogger;
 import org.jboss.logging.Logger;
 
+import javax.annotation.PreDestroy;
 import javax.ejb.Singleton;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -33,19 +34,57 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * It is intended only for early prototype phases.
  * It will be replaced for a proper implementation based on a persistence repository.
  *
+ * Actions are delivered to the listeners asynchronously by an {@link ActionDispatcher}, configured with the
+ * <code>hawkular-alerts.actions-*</code> properties. The actions are kept only in memory unless a journal file is
+ * set with <code>hawkular-alerts.actions-journal</code>, then the actions not delivered are sent again after a
+ * restart.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 @Singleton
 public class MemActionsServiceImpl implements ActionsService {
+    private static final String ACTIONS_BUFFER_CAPACITY = "hawkular-alerts.actions-buffer-capacity";
+    private static final String ACTIONS_WORKERS = "hawkular-alerts.actions-workers";
+    private static final String ACTIONS_PLUGIN_CONCURRENCY = "hawkular-alerts.actions-plugin-concurrency";
+    private static final String ACTIONS_BATCH_SIZE = "hawkular-alerts.actions-batch-size";
+    private static final String ACTIONS_JOURNAL = "hawkular-alerts.actions-journal";
+    private static final String ACTIONS_MAX_DEAD_LETTERS = "hawkular-alerts.actions-max-dead-letters";
+    private static final String ACTIONS_MAX_RETRIES = "hawkular-alerts.actions-max-retries";
+    private static final String ACTIONS_RETRY_DELAY = "hawkular-alerts.actions-retry-delay";
+
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(MemActionsServiceImpl.class);
 
-    Queue<Action> pending = new ConcurrentLinkedDeque<Action>();
     List<ActionListener> listeners = new CopyOnWriteArrayList<ActionListener>();
+    ActionDispatcher dispatcher;
 
     public MemActionsServiceImpl() {
         log.debugf("Creating instance.");
+        int capacity = new Integer(AlertProperties.getProperty(ACTIONS_BUFFER_CAPACITY, "10000"));
+        int workers = new Integer(AlertProperties.getProperty(ACTIONS_WORKERS, "4"));
+        int pluginConcurrency = new Integer(AlertProperties.getProperty(ACTIONS_PLUGIN_CONCURRENCY, "2"));
+        int batchSize = new Integer(AlertProperties.getProperty(ACTIONS_BATCH_SIZE, "100"));
+        int maxRetries = new Integer(AlertProperties.getProperty(ACTIONS_MAX_RETRIES, "5"));
+        long retryDelay = new Long(AlertProperties.getProperty(ACTIONS_RETRY_DELAY, "1000"));
+        int maxDeadLetters = new Integer(AlertProperties.getProperty(ACTIONS_MAX_DEAD_LETTERS, "1000"));
+        String journalFile = AlertProperties.getProperty(ACTIONS_JOURNAL, "");
+        ActionJournal journal = null;
+        if (!journalFile.isEmpty()) {
+            try {
+                journal = new ActionJournal(new File(journalFile));
+            } catch (IOException e) {
+                log.debug(e.getMessage(), e);
+                msgLog.errorActionJournal(e.getMessage());
+            }
+        }
+        dispatcher = new ActionDispatcher(capacity, workers, pluginConcurrency, batchSize, listeners, journal,
+                maxRetries, retryDelay, maxDeadLetters);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdown();
     }
 
     @Override
@@ -53,14 +92,8 @@ public class MemActionsServiceImpl implements ActionsService {
         if (action == null || action.getActionId() == null || action.getActionId().isEmpty()) {
             throw new IllegalArgumentException("Action must be not null");
         }
-        pending.add(action);
-
-        /*
-            In this implementation we invoke listeners as soon as we receive an event.
-            This can be modified per implementation basis adding asynchronously behaviour at this level.
-         */
-        for (ActionListener listener : listeners) {
-            listener.process(action);
+        if (!dispatcher.send(action)) {
+            log.debugf("Action dropped %s", action);
         }
     }
 
@@ -72,4 +105,11 @@ public class MemActionsServiceImpl implements ActionsService {
         listeners.add(listener);
         msgLog.infoActionListenerRegistered(listener.toString());
     }
+
+    /**
+     * @return the dispatcher delivering the actions, it exposes the queue depth and dispatch latency metrics
+     */
+    public ActionDispatcher getDispatcher() {
+        return dispatcher;
+    }
 }
@@ -0,0 +1,640 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.AvailabilityConditionEval;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.CompareConditionEval;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.model.data.StringData;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.TriggerTemplate.Match;
+import org.hawkular.alerts.api.services.ActionsService;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.jboss.logging.Logger;
+
+/**
+ * An implementation of RulesEngine that evaluates the ConditionMatch.drl semantics directly in java.
+ *
+ * Conditions are indexed by dataId, so a Data is only evaluated against the Conditions that reference it, and the
+ * Dampening facts are updated in place. The behaviour follows the drools rules:
+ * <ul>
+ *   <li>For any dataId only the oldest Data is evaluated in one pass, more recent Data is deferred to the next pass.
+ *   </li>
+ *   <li>Data scoped to a tenant is only evaluated by the Conditions of that tenant, and data of the same dataId of
+ *   different tenants is evaluated in the same pass.</li>
+ *   <li>A Condition is evaluated only if its Trigger is loaded and in the same mode than the Condition.</li>
+ *   <li>Single-condition and ANY-match Triggers apply every ConditionEval to the Dampening.</li>
+ *   <li>Multi-condition ALL-match Triggers keep the most recent ConditionEval of each condition, and apply the tuple
+ *   to the Dampening when all conditions have an eval and at least one of them is not used.</li>
+ *   <li>Satisfied Dampenings generate Alerts and toggle the Trigger mode (autoResolve, autoDisable), and
+ *   STRICT_TIMEOUT Dampenings are posted in the pendingTimeouts global.</li>
+ * </ul>
+ * Trigger ids are only unique within a tenant, so Triggers, Conditions, Dampenings and tuples are keyed by tenantId
+ * and id. Facts that are not Triggers, Conditions or Dampenings are stored but not evaluated. As in the rules, the
+ * evaluation details are logged through the <code>log</code> global.
+ *
+ * Facts are added and removed by reloads while the engine timer fires the rules, so every public method is
+ * synchronized on the engine instance.
+ */
+public class NativeRulesEngineImpl implements RulesEngine {
+    private final Logger log = Logger.getLogger(NativeRulesEngineImpl.class);
+
+    private static final Data[] EMPTY_DATA = new Data[0];
+
+    private final Map<String, Object> globals = new HashMap<>();
+
+    private final Map<String, Trigger> triggers = new HashMap<>();
+    private final Map<String, Condition> conditions = new HashMap<>();
+    private final Map<String, List<Condition>> conditionsByDataId = new HashMap<>();
+    private final Map<String, List<Condition>> conditionsByTriggerId = new HashMap<>();
+    private final Map<String, Dampening> dampenings = new HashMap<>();
+    private final Set<Object> facts = new HashSet<>();
+
+    /*
+        Most recent evals of multi-condition ALL-match Triggers, by tenantId and triggerId, indexed by
+        conditionSetIndex.
+     */
+    private final Map<String, ConditionEval[]> tuples = new HashMap<>();
+
+    /*
+        Triggers with a Dampening updated externally (i.e. dampening timeouts), checked on next fire.
+     */
+    private final Set<String> updatedTriggers = new LinkedHashSet<>();
+
+    TreeSet<Data> pendingData = new TreeSet<>();
+
+    public NativeRulesEngineImpl() {
+        log.debugf("Creating instance.");
+    }
+
+    @Override
+    public synchronized void addGlobal(String name, Object global) {
+        log.debugf("Add Global %s = %s", name, global);
+        globals.put(name, global);
+    }
+
+    @Override
+    public synchronized void removeGlobal(String name) {
+        log.debugf("Remove Global %s ", name);
+        globals.remove(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T global(String name) {
+        return (T) globals.get(name);
+    }
+
+    @Override
+    public synchronized void addFact(Object fact) {
+        if (fact instanceof Data) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+        log.debugf("Insert %s ", fact);
+        insert(fact);
+    }
+
+    @Override
+    public synchronized void addFacts(Collection facts) {
+        for (Object fact : facts) {
+            if (fact instanceof Data) {
+                throw new IllegalArgumentException(fact.toString());
+            }
+        }
+        for (Object fact : facts) {
+            log.debugf("Insert %s ", fact);
+            insert(fact);
+        }
+    }
+
+    /*
+        As a session with equality behaviour, inserting a fact equal to an existing one is ignored.
+     */
+    private void insert(Object fact) {
+        if (fact instanceof Trigger) {
+            Trigger t = (Trigger) fact;
+            triggers.putIfAbsent(triggerKey(t), t);
+
+        } else if (fact instanceof Condition) {
+            Condition c = (Condition) fact;
+            if (null == conditions.putIfAbsent(conditionKey(c), c)) {
+                conditionsByTriggerId.computeIfAbsent(triggerKey(c.getTenantId(), c.getTriggerId()),
+                        k -> new ArrayList<>(1)).add(c);
+                if (null != c.getDataId()) {
+                    conditionsByDataId.computeIfAbsent(c.getDataId(), k -> new ArrayList<>(1)).add(c);
+                }
+            }
+
+        } else if (fact instanceof Dampening) {
+            Dampening d = (Dampening) fact;
+            if (null == dampenings.putIfAbsent(dampeningKey(d), d)) {
+                checkTimeout(d);
+            }
+
+        } else {
+            facts.add(fact);
+        }
+    }
+
+    @Override
+    public synchronized Object getFact(Object fact) {
+        if (fact instanceof Trigger) {
+            Trigger t = triggers.get(triggerKey((Trigger) fact));
+            return fact.equals(t) ? t : null;
+
+        } else if (fact instanceof Condition) {
+            return conditions.get(conditionKey((Condition) fact));
+
+        } else if (fact instanceof Dampening) {
+            return dampenings.get(dampeningKey((Dampening) fact));
+        }
+        return facts.contains(fact) ? fact : null;
+    }
+
+    @Override
+    public synchronized void removeFact(Object fact) {
+        log.debugf("Delete %s ", fact);
+        if (fact instanceof Trigger) {
+            Trigger t = triggers.get(triggerKey((Trigger) fact));
+            if (fact.equals(t)) {
+                triggers.remove(triggerKey(t));
+                tuples.remove(triggerKey(t));
+            }
+
+        } else if (fact instanceof Condition) {
+            Condition c = conditions.remove(conditionKey((Condition) fact));
+            if (null != c) {
+                unindex(conditionsByTriggerId, triggerKey(c.getTenantId(), c.getTriggerId()), c);
+                unindex(conditionsByDataId, c.getDataId(), c);
+            }
+
+        } else if (fact instanceof Dampening) {
+            dampenings.remove(dampeningKey((Dampening) fact));
+
+        } else {
+            facts.remove(fact);
+        }
+    }
+
+    private static void unindex(Map<String, List<Condition>> index, String key, Condition c) {
+        if (null == key) {
+            return;
+        }
+        List<Condition> keyConditions = index.get(key);
+        if (null != keyConditions) {
+            keyConditions.remove(c);
+            if (keyConditions.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void updateFact(Object fact) {
+        if (null == getFact(fact)) {
+            return;
+        }
+        log.debugf("Update %s ", fact);
+        if (fact instanceof Trigger) {
+            triggers.put(triggerKey((Trigger) fact), (Trigger) fact);
+
+        } else if (fact instanceof Dampening) {
+            Dampening d = (Dampening) fact;
+            dampenings.put(dampeningKey(d), d);
+            checkTimeout(d);
+            updatedTriggers.add(triggerKey(d.getTenantId(), d.getTriggerId()));
+
+        } else {
+            removeFact(fact);
+            insert(fact);
+        }
+    }
+
+    @Override
+    public synchronized void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public synchronized void removeFacts(Predicate<Object> factFilter) {
+        List<Object> doomed = new ArrayList<>();
+        triggers.values().stream().filter(factFilter).forEach(doomed::add);
+        conditions.values().stream().filter(factFilter).forEach(doomed::add);
+        dampenings.values().stream().filter(factFilter).forEach(doomed::add);
+        facts.stream().filter(factFilter).forEach(doomed::add);
+        for (Object fact : doomed) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public synchronized boolean removeTriggerFacts(String tenantId, String triggerId) {
+        log.debugf("Delete facts of trigger %s of tenant %s ", triggerId, tenantId);
+        String triggerKey = triggerKey(tenantId, triggerId);
+        Trigger t = triggers.remove(triggerKey);
+        tuples.remove(triggerKey);
+        List<Condition> triggerConditions = conditionsByTriggerId.get(triggerKey);
+        if (null != triggerConditions) {
+            for (Condition c : new ArrayList<>(triggerConditions)) {
+                removeFact(c);
+            }
+        }
+        for (Mode mode : Mode.values()) {
+            dampenings.remove(triggerKey(tenantId,
+                    new Dampening(triggerId, mode, Dampening.Type.STRICT, 1, 1, 0).getDampeningId()));
+        }
+        return null != t;
+    }
+
+    @Override
+    public synchronized void addData(Data data) {
+        pendingData.add(data);
+    }
+
+    @Override
+    public synchronized void addData(Collection<Data> data) {
+        pendingData.addAll(data);
+    }
+
+    @Override
+    public synchronized void fire() {
+        if (pendingData.isEmpty()) {
+            fireNoData();
+            return;
+        }
+
+        log.debugf("Data found. Firing rules on [%1$d] datums.", pendingData.size());
+
+        // pendingData is sorted by (id ASC, tenantId ASC, timestamp ASC), so data with the same id and tenant is
+        // grouped and time-ordered. Only the oldest Data of any dataId and tenant is processed in one pass, the more
+        // recent ones are deferred.
+        List<Data[]> groups = new ArrayList<>();
+        int passes = 0;
+        Data[] all = pendingData.toArray(EMPTY_DATA);
+        pendingData.clear();
+        int start = 0;
+        for (int i = 1; i <= all.length; i++) {
+            if (i == all.length || !all[i].getId().equals(all[start].getId())
+                    || !Objects.equals(all[i].getTenantId(), all[start].getTenantId())) {
+                Data[] group = new Data[i - start];
+                System.arraycopy(all, start, group, 0, group.length);
+                groups.add(group);
+                passes = Math.max(passes, group.length);
+                start = i;
+            }
+        }
+
+        Map<String, Data> batch = new LinkedHashMap<>(groups.size() * 2);
+        for (int pass = 0; pass < passes; pass++) {
+            batch.clear();
+            for (Data[] group : groups) {
+                if (pass < group.length) {
+                    batch.put(key(group[pass].getTenantId(), group[pass].getId()), group[pass]);
+                }
+            }
+            if (pass > 0) {
+                log.debugf("Deferred pass [%1$d] on [%2$d] datums", pass, batch.size());
+            }
+            evaluate(batch);
+        }
+    }
+
+    @Override
+    public synchronized void fireNoData() {
+        processUpdatedTriggers();
+    }
+
+    private void evaluate(Map<String, Data> batch) {
+        // Condition evals, grouped by Trigger
+        Map<Trigger, List<ConditionEval>> evals = new LinkedHashMap<>();
+        for (Data data : batch.values()) {
+            List<Condition> dataConditions = conditionsByDataId.get(data.getId());
+            if (null == dataConditions) {
+                continue;
+            }
+            for (Condition c : dataConditions) {
+                if (!data.matchesTenant(c.getTenantId())) {
+                    continue;
+                }
+                Trigger t = triggers.get(triggerKey(c.getTenantId(), c.getTriggerId()));
+                if (null == t || t.getMode() != c.getTriggerMode()) {
+                    continue;
+                }
+                ConditionEval ce = eval(c, data, batch);
+                if (null != ce) {
+                    Logger rulesLog = global("log");
+                    if (null != rulesLog && rulesLog.isDebugEnabled()) {
+                        rulesLog.debug("Eval: " + (ce.isMatch() ? "  Match! " : "no match ") + ce.getLog());
+                    }
+                    evals.computeIfAbsent(t, k -> new ArrayList<>(1)).add(ce);
+                }
+            }
+        }
+
+        // Dampening
+        for (Map.Entry<Trigger, List<ConditionEval>> entry : evals.entrySet()) {
+            Trigger t = entry.getKey();
+            List<ConditionEval> tuple = null;
+            for (ConditionEval ce : entry.getValue()) {
+                if (!t.isEnabled() || !triggers.containsKey(triggerKey(t))) {
+                    break;
+                }
+                if (t.getMatch() == Match.ANY || ce.getConditionSetSize() == 1) {
+                    processSatisfied(t);
+                    perform(t, ce);
+                    processSatisfied(t);
+                } else {
+                    ConditionEval[] slots = tuples.computeIfAbsent(triggerKey(t),
+                            k -> new ConditionEval[ce.getConditionSetSize() + 1]);
+                    if (ce.getConditionSetIndex() >= slots.length) {
+                        slots = Arrays.copyOf(slots, ce.getConditionSetIndex() + 1);
+                        tuples.put(triggerKey(t), slots);
+                    }
+                    slots[ce.getConditionSetIndex()] = ce;
+                    if (null == tuple) {
+                        tuple = new ArrayList<>(1);
+                    }
+                    tuple.add(ce);
+                }
+            }
+            if (null != tuple && t.isEnabled() && triggers.containsKey(triggerKey(t))) {
+                dampenTuple(t, tuple.get(0).getConditionSetSize());
+            }
+        }
+
+        processUpdatedTriggers();
+    }
+
+    /*
+        Key of a Data in a pass, data not scoped to a tenant is keyed by its dataId.
+     */
+    private static String key(String tenantId, String dataId) {
+        return null == tenantId ? dataId : tenantId + "|" + dataId;
+    }
+
+    /*
+        Keys of the definition facts, ids are only unique within a tenant.
+     */
+    private static String triggerKey(String tenantId, String id) {
+        return tenantId + "|" + id;
+    }
+
+    private static String triggerKey(Trigger t) {
+        return triggerKey(t.getTenantId(), t.getId());
+    }
+
+    private static String conditionKey(Condition c) {
+        return triggerKey(c.getTenantId(), c.getConditionId());
+    }
+
+    private static String dampeningKey(Dampening d) {
+        return triggerKey(d.getTenantId(), d.getDampeningId());
+    }
+
+    private ConditionEval eval(Condition c, Data data, Map<String, Data> batch) {
+        switch (c.getType()) {
+            case THRESHOLD:
+                return data instanceof NumericData ?
+                        new ThresholdConditionEval((ThresholdCondition) c, (NumericData) data) : null;
+            case RANGE:
+                return data instanceof NumericData ?
+                        new ThresholdRangeConditionEval((ThresholdRangeCondition) c, (NumericData) data) : null;
+            case COMPARE:
+                Data data2 = batch.get(key(c.getTenantId(), ((CompareCondition) c).getData2Id()));
+                if (null == data2) {
+                    data2 = batch.get(key(null, ((CompareCondition) c).getData2Id()));
+                }
+                return data instanceof NumericData && data2 instanceof NumericData ?
+                        new CompareConditionEval((CompareCondition) c, (NumericData) data, (NumericData) data2) :
+                        null;
+            case AVAILABILITY:
+                return data instanceof Availability ?
+                        new AvailabilityConditionEval((AvailabilityCondition) c, (Availability) data) : null;
+            case STRING:
+                return data instanceof StringData ?
+                        new StringConditionEval((StringCondition) c, (StringData) data) : null;
+            default:
+                return null;
+        }
+    }
+
+    /*
+        The tuple is formed by the most recent eval of each condition of the set, and it is only applied if at least
+        one of the evals has not been used yet, so a tuple never updates the Dampening twice.
+     */
+    private void dampenTuple(Trigger t, int conditionSetSize) {
+        ConditionEval[] slots = tuples.get(triggerKey(t));
+        if (null == slots || slots.length <= conditionSetSize) {
+            return;
+        }
+        boolean unused = false;
+        ConditionEval[] tuple = new ConditionEval[conditionSetSize];
+        for (int i = 1; i <= conditionSetSize; i++) {
+            ConditionEval ce = slots[i];
+            if (null == ce || ce.getConditionSetSize() != conditionSetSize) {
+                return;
+            }
+            unused |= !ce.isUsed();
+            tuple[i - 1] = ce;
+        }
+        if (!unused) {
+            return;
+        }
+        processSatisfied(t);
+        perform(t, tuple);
+        for (ConditionEval ce : tuple) {
+            ce.setUsed(true);
+        }
+        processSatisfied(t);
+    }
+
+    private void perform(Trigger t, ConditionEval... ces) {
+        Dampening d = dampening(t);
+        if (d.isSatisfied()) {
+            return;
+        }
+        d.perform(ces);
+        checkTimeout(d);
+    }
+
+    private Dampening dampening(Trigger t) {
+        String dampeningKey = triggerKey(t.getTenantId(), t.getId() + "-" + t.getMode().name());
+        Dampening d = dampenings.get(dampeningKey);
+        if (null == d) {
+            Logger rulesLog = global("log");
+            if (null != rulesLog && rulesLog.isDebugEnabled()) {
+                rulesLog.debug("Adding default " + t.getMode() + " dampening for trigger! " + t.getId());
+            }
+            d = new Dampening(t.getId(), t.getMode(), Dampening.Type.STRICT, 1, 1, 0L);
+            d.setTenantId(t.getTenantId());
+            dampenings.put(dampeningKey, d);
+        }
+        return d;
+    }
+
+    private void checkTimeout(Dampening d) {
+        if (d.getType() != Dampening.Type.STRICT_TIMEOUT || d.isSatisfied()) {
+            return;
+        }
+        Set<Dampening> pendingTimeouts = global("pendingTimeouts");
+        if (null == pendingTimeouts) {
+            return;
+        }
+        if (d.getNumTrueEvals() == 1) {
+            pendingTimeouts.add(d);
+        } else if (d.getNumTrueEvals() == 0) {
+            pendingTimeouts.remove(d);
+        }
+    }
+
+    private void processUpdatedTriggers() {
+        if (updatedTriggers.isEmpty()) {
+            return;
+        }
+        for (Iterator<String> i = updatedTriggers.iterator(); i.hasNext();) {
+            Trigger t = triggers.get(i.next());
+            i.remove();
+            if (null != t) {
+                processSatisfied(t);
+            }
+        }
+    }
+
+    /*
+        A satisfied FIRING Dampening fires the Trigger, a satisfied AUTORESOLVE Dampening returns it to FIRING mode.
+     */
+    private void processSatisfied(Trigger t) {
+        while (t.isEnabled() && triggers.containsKey(triggerKey(t))) {
+            Dampening d = dampening(t);
+            if (!d.isSatisfied()) {
+                return;
+            }
+            if (t.getMode() == Mode.FIRING) {
+                fireTrigger(t, d);
+            } else {
+                autoResolveTrigger(t, d);
+            }
+        }
+    }
+
+    private void fireTrigger(Trigger t, Dampening d) {
+        Logger rulesLog = global("log");
+        if (null != rulesLog && rulesLog.isDebugEnabled()) {
+            rulesLog.debug("AlertOnSatisfiedDampening! " + d.log());
+        }
+        Alert newAlert = new Alert(t.getTenantId(), t.getId(), t.getSeverity(), d.getSatisfyingEvals());
+        List<Alert> alerts = global("alerts");
+        if (null != alerts) {
+            alerts.add(newAlert);
+        }
+        ActionsService actions = global("actions");
+        if (null != actions) {
+            for (Map.Entry<String, Set<String>> entry : t.getActions().entrySet()) {
+                for (String actionId : entry.getValue()) {
+                    actions.send(new Action(t.getTenantId(), entry.getKey(), actionId, newAlert.toString()));
+                }
+            }
+        }
+
+        d.reset();
+        checkTimeout(d);
+
+        if (t.isAutoResolve()) {
+            if (null != rulesLog && rulesLog.isDebugEnabled()) {
+                rulesLog.debug("Setting Trigger to AutoResolve Mode! " + t);
+            }
+            t.setMode(Mode.AUTORESOLVE);
+
+        } else if (t.isAutoDisable()) {
+            if (null != rulesLog && rulesLog.isDebugEnabled()) {
+                rulesLog.debug("Setting Trigger Disabled! " + t);
+            }
+            triggers.remove(triggerKey(t));
+            t.setEnabled(false);
+            Set<Trigger> disabledTriggers = global("disabledTriggers");
+            if (null != disabledTriggers) {
+                disabledTriggers.add(t);
+            }
+        }
+    }
+
+    private void autoResolveTrigger(Trigger t, Dampening d) {
+        Logger rulesLog = global("log");
+        if (null != rulesLog && rulesLog.isDebugEnabled()) {
+            rulesLog.debug("SetFiringModeOnSatisfiedDampening! " + d.log());
+        }
+        Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = global("autoResolvedTriggers");
+        if (null != autoResolvedTriggers) {
+            autoResolvedTriggers.put(t, d.getSatisfyingEvals());
+        }
+        d.reset();
+        checkTimeout(d);
+        t.setMode(Mode.FIRING);
+    }
+
+    @Override
+    public synchronized void clear() {
+        triggers.clear();
+        conditions.clear();
+        conditionsByDataId.clear();
+        conditionsByTriggerId.clear();
+        dampenings.clear();
+        facts.clear();
+        tuples.clear();
+        updatedTriggers.clear();
+        pendingData.clear();
+    }
+
+    @Override
+    public synchronized void reset() {
+        log.debugf("Reset session");
+        clear();
+        globals.clear();
+    }
+}
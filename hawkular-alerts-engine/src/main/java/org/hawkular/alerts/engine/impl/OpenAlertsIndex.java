@@ -0,0 +1,227 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+
+/**
+ * In-memory index of the unresolved (OPEN or ACKNOWLEDGED) alertIds of a trigger, used by
+ * {@link CassAlertsServiceImpl} to resolve the alerts of a trigger without querying all the alerts it ever produced.
+ *
+ * The index of a trigger is unknown until it is loaded from the store: {@link #load(String, String)} marks the
+ * trigger as loading, updates received meanwhile are recorded, and {@link #loaded(String, String, Object, Collection)}
+ * merges them with the alertIds read from the store. Known triggers are maintained by {@link #update(Collection)}
+ * with every added or transitioned alert.
+ *
+ * The index is bounded by <code>maxSize</code> entries, counting a trigger and each of its alertIds as an entry. When
+ * a trigger is loaded or grows over the bound the least recently used triggers are evicted, and a trigger that alone
+ * is over the bound is dropped. Evicted and dropped triggers, as the triggers whose writes fail with
+ * {@link #invalidate(Collection)}, are loaded again from the store on the next use.
+ */
+public class OpenAlertsIndex {
+
+    private final int maxSize;
+    /*
+        In access order, so the least recently used triggers are evicted first.
+     */
+    private final Map<String, TriggerIndex> triggers = new LinkedHashMap<>(16, 0.75f, true);
+    private int size = 0;
+
+    /**
+     * @param maxSize max number of triggers and alertIds indexed, 0 disables the index
+     */
+    public OpenAlertsIndex(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("MaxSize must be not negative");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param tenantId Tenant where trigger is stored
+     * @param triggerId Trigger id
+     * @return a copy of the unresolved alertIds of the trigger, null if the trigger is not loaded
+     */
+    public synchronized Set<String> get(String tenantId, String triggerId) {
+        TriggerIndex index = triggers.get(key(tenantId, triggerId));
+        if (index == null || index.removed != null) {
+            return null;
+        }
+        return new HashSet<>(index.open);
+    }
+
+    /**
+     * Starts the load of a trigger, the updates of its alerts are recorded until the load is completed.
+     *
+     * @param tenantId Tenant where trigger is stored
+     * @param triggerId Trigger id
+     * @return a token for {@link #loaded(String, String, Object, Collection)}
+     */
+    public synchronized Object load(String tenantId, String triggerId) {
+        String key = key(tenantId, triggerId);
+        TriggerIndex index = triggers.get(key);
+        if (index == null && maxSize > 0) {
+            index = new TriggerIndex();
+            index.removed = new HashSet<>();
+            triggers.put(key, index);
+            size++;
+            evict(key);
+        }
+        return index;
+    }
+
+    /**
+     * Completes the load of a trigger. It is ignored if the trigger was dropped since the load started.
+     *
+     * @param tenantId Tenant where trigger is stored
+     * @param triggerId Trigger id
+     * @param token returned by {@link #load(String, String)}
+     * @param alertIds unresolved alertIds of the trigger read from the store
+     */
+    public synchronized void loaded(String tenantId, String triggerId, Object token, Collection<String> alertIds) {
+        String key = key(tenantId, triggerId);
+        TriggerIndex index = triggers.get(key);
+        if (token == null || index != token || index.removed == null) {
+            return;
+        }
+        for (String alertId : alertIds) {
+            if (!index.removed.contains(alertId) && index.open.add(alertId)) {
+                size++;
+            }
+        }
+        index.removed = null;
+        checkSize(key);
+    }
+
+    /**
+     * Indexes the status of the alerts, unresolved alerts are added to the index of their trigger and resolved alerts
+     * are removed. Alerts of triggers not loaded are ignored.
+     *
+     * @param alerts added or transitioned alerts
+     */
+    public synchronized void update(Collection<Alert> alerts) {
+        for (Alert alert : alerts) {
+            String key = key(alert.getTenantId(), alert.getTriggerId());
+            TriggerIndex index = triggers.get(key);
+            if (index == null) {
+                continue;
+            }
+            if (alert.getStatus() == Alert.Status.RESOLVED) {
+                if (index.open.remove(alert.getAlertId())) {
+                    size--;
+                }
+                if (index.removed != null) {
+                    index.removed.add(alert.getAlertId());
+                }
+            } else {
+                if (index.open.add(alert.getAlertId())) {
+                    size++;
+                }
+                if (index.removed != null) {
+                    index.removed.remove(alert.getAlertId());
+                }
+                checkSize(key);
+            }
+        }
+    }
+
+    /**
+     * Removes alertIds of a trigger found resolved or missing in the store.
+     *
+     * @param tenantId Tenant where trigger is stored
+     * @param triggerId Trigger id
+     * @param alertIds alertIds to remove from the index of the trigger
+     */
+    public synchronized void remove(String tenantId, String triggerId, Collection<String> alertIds) {
+        TriggerIndex index = triggers.get(key(tenantId, triggerId));
+        if (index == null) {
+            return;
+        }
+        for (String alertId : alertIds) {
+            if (index.open.remove(alertId)) {
+                size--;
+            }
+            if (index.removed != null) {
+                index.removed.add(alertId);
+            }
+        }
+    }
+
+    /**
+     * Drops the triggers of the alerts, they are loaded again from the store on the next use.
+     *
+     * @param alerts alerts whose status in the store is not known
+     */
+    public synchronized void invalidate(Collection<Alert> alerts) {
+        for (Alert alert : alerts) {
+            drop(key(alert.getTenantId(), alert.getTriggerId()));
+        }
+    }
+
+    /**
+     * @return number of triggers and alertIds indexed
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void checkSize(String key) {
+        evict(key);
+        if (size > maxSize) {
+            drop(key);
+        }
+    }
+
+    /*
+        Evicts the least recently used triggers, but the one of the key, while the index is over the bound.
+     */
+    private void evict(String key) {
+        Iterator<Map.Entry<String, TriggerIndex>> i = triggers.entrySet().iterator();
+        while (size > maxSize && i.hasNext()) {
+            Map.Entry<String, TriggerIndex> entry = i.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            i.remove();
+            size -= 1 + entry.getValue().open.size();
+        }
+    }
+
+    private void drop(String key) {
+        TriggerIndex index = triggers.remove(key);
+        if (index != null) {
+            size -= 1 + index.open.size();
+        }
+    }
+
+    private String key(String tenantId, String triggerId) {
+        return tenantId + "|" + triggerId;
+    }
+
+    private static class TriggerIndex {
+        Set<String> open = new HashSet<>();
+        // alertIds resolved while the trigger is loading, null once it is loaded
+        Set<String> removed;
+    }
+}
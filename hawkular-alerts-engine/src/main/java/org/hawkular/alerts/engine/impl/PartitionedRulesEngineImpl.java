@@ -0,0 +1,460 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.jboss.logging.Logger;
+
+/**
+ * A RulesEngine that shards the trigger definitions across N independent RulesEngine partitions.
+ *
+ * A Trigger, with its Conditions and Dampenings, is assigned to a partition by a hash of its triggerId. Each
+ * partition is evaluated by its own worker thread, so {@link #fire()} runs the partitions in parallel and returns
+ * when all of them have finished. Incoming Data is only routed to the partitions holding Conditions that reference
+ * its dataId, data not referenced by any Condition is discarded as it can not match. Data scoped to a tenant is only
+ * routed to the partitions holding Conditions of that tenant.
+ *
+ * Globals are shared by all partitions, so they must be thread-safe collections.
+ */
+public class PartitionedRulesEngineImpl implements RulesEngine {
+    private final Logger log = Logger.getLogger(PartitionedRulesEngineImpl.class);
+    private static final long SHUTDOWN_TIMEOUT = 5000;
+
+    private final RulesEngine[] partitions;
+    private final ExecutorService[] workers;
+
+    /*
+        Conditions loaded per partition, the Conditions of every (tenantId, triggerId) and, for every dataId and
+        tenant, how many Conditions reference it in each partition.
+        Definitions are updated from several threads (reloads, engine timer) so all are guarded by this instance.
+     */
+    private final Map<Condition, Integer> conditions = new HashMap<>();
+    private final Map<String, Set<Condition>> triggerConditions = new HashMap<>();
+    private final Map<String, Map<String, int[]>> dataIdPartitions = new HashMap<>();
+
+    public PartitionedRulesEngineImpl(int numPartitions, Supplier<RulesEngine> factory) {
+        if (numPartitions < 1) {
+            throw new IllegalArgumentException("NumPartitions must be greater than 0");
+        }
+        if (null == factory) {
+            throw new IllegalArgumentException("Factory must be not null");
+        }
+        partitions = new RulesEngine[numPartitions];
+        workers = new ExecutorService[numPartitions];
+        for (int i = 0; i < numPartitions; i++) {
+            final String name = "PartitionedRulesEngine-" + i;
+            partitions[i] = factory.get();
+            workers[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        log.debugf("Created %s partitions", numPartitions);
+    }
+
+    public int getNumPartitions() {
+        return partitions.length;
+    }
+
+    /**
+     * @param triggerId the triggerId
+     * @return the index of the partition that owns the Trigger definitions
+     */
+    public int partitionOf(String triggerId) {
+        return null == triggerId ? 0 : (triggerId.hashCode() & Integer.MAX_VALUE) % partitions.length;
+    }
+
+    /*
+        Partition owning a definition fact, or -1 for facts not bound to a Trigger, which are sent to all partitions.
+     */
+    private int partitionOfFact(Object fact) {
+        if (fact instanceof Trigger) {
+            return partitionOf(((Trigger) fact).getId());
+        } else if (fact instanceof Condition) {
+            return partitionOf(((Condition) fact).getTriggerId());
+        } else if (fact instanceof Dampening) {
+            return partitionOf(((Dampening) fact).getTriggerId());
+        }
+        return -1;
+    }
+
+    private static String triggerKey(String tenantId, String triggerId) {
+        return tenantId + "|" + triggerId;
+    }
+
+    private synchronized void indexCondition(Condition condition, int partition) {
+        Integer previous = conditions.put(condition, partition);
+        if (null != previous) {
+            unindexDataIds(condition, previous);
+        }
+        triggerConditions.computeIfAbsent(triggerKey(condition.getTenantId(), condition.getTriggerId()),
+                k -> new HashSet<>()).add(condition);
+        indexDataId(condition.getTenantId(), condition.getDataId(), partition, 1);
+        if (condition instanceof CompareCondition) {
+            indexDataId(condition.getTenantId(), ((CompareCondition) condition).getData2Id(), partition, 1);
+        }
+    }
+
+    private synchronized void unindexCondition(Condition condition) {
+        Integer partition = conditions.remove(condition);
+        if (null != partition) {
+            unindexDataIds(condition, partition);
+            String triggerKey = triggerKey(condition.getTenantId(), condition.getTriggerId());
+            Set<Condition> doomed = triggerConditions.get(triggerKey);
+            if (null != doomed && doomed.remove(condition) && doomed.isEmpty()) {
+                triggerConditions.remove(triggerKey);
+            }
+        }
+    }
+
+    private void unindexDataIds(Condition condition, int partition) {
+        indexDataId(condition.getTenantId(), condition.getDataId(), partition, -1);
+        if (condition instanceof CompareCondition) {
+            indexDataId(condition.getTenantId(), ((CompareCondition) condition).getData2Id(), partition, -1);
+        }
+    }
+
+    private void indexDataId(String tenantId, String dataId, int partition, int delta) {
+        if (null == dataId) {
+            return;
+        }
+        Map<String, int[]> tenants = dataIdPartitions.get(dataId);
+        int[] counts = null == tenants ? null : tenants.get(tenantId);
+        if (null == counts) {
+            if (delta < 0) {
+                return;
+            }
+            counts = new int[partitions.length];
+            dataIdPartitions.computeIfAbsent(dataId, k -> new HashMap<>(2)).put(tenantId, counts);
+        }
+        counts[partition] = Math.max(0, counts[partition] + delta);
+        for (int count : counts) {
+            if (count > 0) {
+                return;
+            }
+        }
+        tenants = dataIdPartitions.get(dataId);
+        tenants.remove(tenantId);
+        if (tenants.isEmpty()) {
+            dataIdPartitions.remove(dataId);
+        }
+    }
+
+    /*
+        Count of Conditions per partition that can evaluate the Data, null if none. Data not scoped to a tenant is
+        routed to the partitions of the Conditions of any tenant.
+     */
+    private int[] partitionsOf(Data data) {
+        Map<String, int[]> tenants = dataIdPartitions.get(data.getId());
+        if (null == tenants) {
+            return null;
+        }
+        if (null != data.getTenantId()) {
+            return tenants.get(data.getTenantId());
+        }
+        if (tenants.size() == 1) {
+            return tenants.values().iterator().next();
+        }
+        int[] all = new int[partitions.length];
+        for (int[] counts : tenants.values()) {
+            for (int i = 0; i < counts.length; i++) {
+                all[i] += counts[i];
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public void addGlobal(String name, Object global) {
+        for (RulesEngine partition : partitions) {
+            partition.addGlobal(name, global);
+        }
+    }
+
+    @Override
+    public void removeGlobal(String name) {
+        for (RulesEngine partition : partitions) {
+            partition.removeGlobal(name);
+        }
+    }
+
+    @Override
+    public void addFact(Object fact) {
+        if (fact instanceof Data) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+        int partition = partitionOfFact(fact);
+        if (partition < 0) {
+            for (RulesEngine p : partitions) {
+                p.addFact(fact);
+            }
+            return;
+        }
+        partitions[partition].addFact(fact);
+        if (fact instanceof Condition) {
+            indexCondition((Condition) fact, partition);
+        }
+    }
+
+    @Override
+    public void addFacts(Collection facts) {
+        for (Object fact : facts) {
+            if (fact instanceof Data) {
+                throw new IllegalArgumentException(fact.toString());
+            }
+        }
+        for (Object fact : facts) {
+            addFact(fact);
+        }
+    }
+
+    @Override
+    public Object getFact(Object fact) {
+        int partition = partitionOfFact(fact);
+        if (partition >= 0) {
+            return partitions[partition].getFact(fact);
+        }
+        for (RulesEngine p : partitions) {
+            Object result = p.getFact(fact);
+            if (null != result) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void removeFact(Object fact) {
+        int partition = partitionOfFact(fact);
+        if (partition < 0) {
+            for (RulesEngine p : partitions) {
+                p.removeFact(fact);
+            }
+            return;
+        }
+        partitions[partition].removeFact(fact);
+        if (fact instanceof Condition) {
+            unindexCondition((Condition) fact);
+        }
+    }
+
+    @Override
+    public void updateFact(Object fact) {
+        int partition = partitionOfFact(fact);
+        if (partition < 0) {
+            for (RulesEngine p : partitions) {
+                p.updateFact(fact);
+            }
+            return;
+        }
+        partitions[partition].updateFact(fact);
+    }
+
+    @Override
+    public void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public void removeFacts(Predicate<Object> factFilter) {
+        synchronized (this) {
+            List<Condition> doomed = new ArrayList<>();
+            for (Condition c : conditions.keySet()) {
+                if (factFilter.test(c)) {
+                    doomed.add(c);
+                }
+            }
+            doomed.forEach(this::unindexCondition);
+        }
+        forEachPartition(p -> p.removeFacts(factFilter));
+    }
+
+    @Override
+    public boolean removeTriggerFacts(String tenantId, String triggerId) {
+        synchronized (this) {
+            Set<Condition> doomed = triggerConditions.get(triggerKey(tenantId, triggerId));
+            if (null != doomed) {
+                new ArrayList<>(doomed).forEach(this::unindexCondition);
+            }
+        }
+        return partitions[partitionOf(triggerId)].removeTriggerFacts(tenantId, triggerId);
+    }
+
+    @Override
+    public void addData(Data data) {
+        int[] counts;
+        synchronized (this) {
+            counts = partitionsOf(data);
+            if (null == counts) {
+                log.debugf("No partition for %s, discarded", data);
+                return;
+            }
+            counts = counts.clone();
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                partitions[i].addData(data);
+            }
+        }
+    }
+
+    @Override
+    public void addData(Collection<Data> data) {
+        List<List<Data>> routed = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            routed.add(new ArrayList<>());
+        }
+        int discarded = 0;
+        synchronized (this) {
+            for (Data d : data) {
+                int[] counts = partitionsOf(d);
+                if (null == counts) {
+                    discarded++;
+                    continue;
+                }
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) {
+                        routed.get(i).add(d);
+                    }
+                }
+            }
+        }
+        if (discarded > 0) {
+            log.debugf("No partition for [%s] datums, discarded", discarded);
+        }
+        for (int i = 0; i < partitions.length; i++) {
+            if (!routed.get(i).isEmpty()) {
+                partitions[i].addData(routed.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void fire() {
+        forEachPartition(RulesEngine::fire);
+    }
+
+    @Override
+    public void fireNoData() {
+        forEachPartition(RulesEngine::fireNoData);
+    }
+
+    @Override
+    public void clear() {
+        synchronized (this) {
+            conditions.clear();
+            triggerConditions.clear();
+            dataIdPartitions.clear();
+        }
+        forEachPartition(RulesEngine::clear);
+    }
+
+    @Override
+    public void reset() {
+        synchronized (this) {
+            conditions.clear();
+            triggerConditions.clear();
+            dataIdPartitions.clear();
+        }
+        forEachPartition(RulesEngine::reset);
+    }
+
+    /**
+     * Stop the partition worker threads, waiting for a running evaluation to finish. The engine can not be used
+     * after this call.
+     */
+    public void shutdown() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        try {
+            for (ExecutorService worker : workers) {
+                if (!worker.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.debugf("Partition worker not terminated after [%s] ms, interrupting", SHUTDOWN_TIMEOUT);
+                    worker.shutdownNow();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (ExecutorService worker : workers) {
+                worker.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * @return true if every partition worker thread has terminated after {@link #shutdown()}
+     */
+    public boolean isTerminated() {
+        for (ExecutorService worker : workers) {
+            if (!worker.isTerminated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Run the task on every partition in its own worker thread, and wait until all partitions have finished.
+     */
+    private void forEachPartition(Consumer<RulesEngine> task) {
+        List<Future<?>> futures = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            final RulesEngine partition = partitions[i];
+            futures.add(workers[i].submit(() -> task.accept(partition)));
+        }
+        RuntimeException error = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = new RuntimeException("Interrupted waiting for partitions", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                error = cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            }
+        }
+        if (null != error) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hawkular.alerts.engine.service.IngestionBuffer;
+
+/**
+ * Lock-free bounded {@link IngestionBuffer} implemented as a ring buffer.
+ *
+ * Each slot of the ring has a sequence number that tells producers and consumers whether the slot is free or
+ * filled for a given position, so both sides only need a CAS on their own cursor. Multiple consumers are supported,
+ * as {@link IngestionBuffer.OverflowPolicy#DROP_OLDEST} makes producers poll from the buffer head.
+ *
+ * The capacity is rounded up to the next power of two.
+ */
+public class RingIngestionBuffer<E> implements IngestionBuffer<E> {
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final long BLOCK_PARK_NANOS = 100_000L;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final OverflowPolicy overflowPolicy;
+    private volatile Runnable fullListener;
+
+    private final LongAdder addCalls = new LongAdder();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final LongAdder rejects = new LongAdder();
+    private final LongAdder enqueueLatency = new LongAdder();
+    private final AtomicLong maxEnqueueLatency = new AtomicLong();
+
+    public RingIngestionBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        if (null == overflowPolicy) {
+            throw new IllegalArgumentException("OverflowPolicy must be not null");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (null == element) {
+            throw new IllegalArgumentException("Element must be not null");
+        }
+        long start = System.nanoTime();
+        boolean added = true;
+        try {
+            if (offer(element)) {
+                return true;
+            }
+            notifyFull();
+            switch (overflowPolicy) {
+                case BLOCK:
+                    while (!offer(element)) {
+                        LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                        if (Thread.interrupted()) {
+                            Thread.currentThread().interrupt();
+                            added = false;
+                            throw new IllegalStateException("Interrupted while waiting for buffer space");
+                        }
+                    }
+                    return true;
+                case DROP_OLDEST:
+                    while (!offer(element)) {
+                        if (null != poll()) {
+                            drops.increment();
+                        }
+                    }
+                    return true;
+                case DROP_NEWEST:
+                    drops.increment();
+                    added = false;
+                    return false;
+                default:
+                    rejects.increment();
+                    added = false;
+                    throw new IllegalStateException("Buffer full, capacity: " + capacity);
+            }
+        } finally {
+            if (added) {
+                enqueued.increment();
+            }
+            addCalls.increment();
+            long latency = System.nanoTime() - start;
+            enqueueLatency.add(latency);
+            long max = maxEnqueueLatency.get();
+            while (latency > max && !maxEnqueueLatency.compareAndSet(max, latency)) {
+                max = maxEnqueueLatency.get();
+            }
+        }
+    }
+
+    private boolean offer(E element) {
+        long pos = tail.get();
+        int index;
+        for (;;) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // Slot not yet released by a consumer, the buffer is full
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+        elements.lazySet(index, element);
+        sequences.set(index, pos + 1);
+        return true;
+    }
+
+    private E poll() {
+        long pos = head.get();
+        int index;
+        for (;;) {
+            index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                // Slot not yet filled by a producer, the buffer is empty
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        sequences.set(index, pos + mask + 1);
+        return element;
+    }
+
+    private void notifyFull() {
+        Runnable listener = fullListener;
+        if (null != listener) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> target, int max) {
+        if (null == target) {
+            throw new IllegalArgumentException("Target must be not null");
+        }
+        int drained = 0;
+        E element;
+        while (drained < max && null != (element = poll())) {
+            target.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public void clear() {
+        while (null != poll()) {
+            // discard
+        }
+    }
+
+    @Override
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    @Override
+    public void setFullListener(Runnable listener) {
+        this.fullListener = listener;
+    }
+
+    @Override
+    public long getEnqueued() {
+        return enqueued.sum();
+    }
+
+    @Override
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    @Override
+    public long getRejects() {
+        return rejects.sum();
+    }
+
+    @Override
+    public long getAvgEnqueueLatency() {
+        long calls = addCalls.sum();
+        return calls == 0 ? 0 : enqueueLatency.sum() / calls;
+    }
+
+    @Override
+    public long getMaxEnqueueLatency() {
+        return maxEnqueueLatency.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RingIngestionBuffer [capacity=" + capacity +
+                ", overflowPolicy=" + overflowPolicy +
+                ", size=" + size() +
+                ", enqueued=" + getEnqueued() +
+                ", drops=" + getDrops() +
+                ", rejects=" + getRejects() +
+                ", avgEnqueueLatency=" + getAvgEnqueueLatency() +
+                ", maxEnqueueLatency=" + getMaxEnqueueLatency() + "]";
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution latency histogram of a statement.
+ *
+ * Latencies are counted in power of two buckets of microseconds, the bucket <code>i</code> holds the latencies lower
+ * than <code>2^i</code> microseconds, so percentiles are reported as the upper bound of their bucket, within a factor
+ * of two. Recording is lock free.
+ */
+public class StatementLatency {
+    private static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder latency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    public StatementLatency() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param nanos execution time in nanoseconds
+     * @param failed true if the execution failed
+     */
+    public void record(long nanos, boolean failed) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos));
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+        count.increment();
+        if (failed) {
+            failures.increment();
+        }
+        latency.add(micros);
+        long max = maxLatency.get();
+        while (micros > max && !maxLatency.compareAndSet(max, micros)) {
+            max = maxLatency.get();
+        }
+    }
+
+    /**
+     * @return total number of executions
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return total number of failed executions
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return average execution time in microseconds
+     */
+    public long getAvgLatency() {
+        long n = count.sum();
+        return n == 0 ? 0 : latency.sum() / n;
+    }
+
+    /**
+     * @return max execution time in microseconds
+     */
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound in microseconds of the execution time of the percentile
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank && seen > 0) {
+                return Math.min(1L << i, getMaxLatency());
+            }
+        }
+        return getMaxLatency();
+    }
+
+    @Override
+    public String toString() {
+        return "StatementLatency [count=" + getCount() +
+                ", failures=" + getFailures() +
+                ", avgLatency=" + getAvgLatency() +
+                ", p50=" + getPercentile(50) +
+                ", p99=" + getPercentile(99) +
+                ", maxLatency=" + getMaxLatency() + "]";
+    }
+}
@@ -81,6 +81,53 @@ public interface MsgLogger extends BasicLogger {
     @Message(id = 220012, value = "AlertsService cannot be initialized. Msg: [%s]")
     void errorCannotInitializeAlertsService(String msg);
 
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220013, value = "Ingestion buffer overflow. Dropped: [%s] Rejected: [%s] Buffer: [%s]")
+    void warnIngestionBufferOverflow(long drops, long rejects, String buffer);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 220014, value = "Error processing action: [%s]")
+    void errorProcessingAction(String msg);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220015, value = "Action dispatcher overflow. Dropped: [%s] Dispatcher: [%s]")
+    void warnActionDispatcherOverflow(long drops, String dispatcher);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 220016, value = "Action journal error. Msg: [%s]")
+    void errorActionJournal(String msg);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 220017, value = "Alerts migrated to time buckets. Tenants: [%s] Alerts: [%s] Skipped rows: [%s]")
+    void infoAlertsMigrated(long tenants, long alerts, long skipped);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 220018, value = "Statements prepared. Statements: [%s] Failed: [%s] Time (ms): [%s]")
+    void infoStatementsPrepared(int statements, int failures, long time);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220019, value = "Token range scans need Murmur3Partitioner, definitions are read with a full scan. " +
+            "Partitioner: [%s]")
+    void warnTokenRangeScanUnsupported(String partitioner);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220020, value = "Action not taken by a listener after [%s] attempts, kept as dead letter. " +
+            "Action: [%s]")
+    void warnActionDeadLetter(int attempts, String action);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220021, value = "Alerts write queue is full, alerts not written. Alerts: [%s] Max queued " +
+            "batches: [%s]")
+    void warnAlertsWriteRejected(int alerts, int maxQueued);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 220022, value = "Alerts not persisted, they are lost. Alerts: [%s] Msg: [%s]")
+    void errorAlertsLost(int alerts, String msg);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220023, value = "Alerts writes not completed after [%s] ms, AutoResolve proceeds without them")
+    void warnAlertsWritesPendingOnResolve(long timeout);
+
 
 
 }
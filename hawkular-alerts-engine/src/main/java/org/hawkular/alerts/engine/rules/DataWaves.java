@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.rules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import org.hawkular.alerts.api.model.data.Data;
+
+/**
+ * Holds the Data of one rules execution that can not be inserted together into working memory.
+ *
+ * The rules require that for any dataId and tenant only one Data instance is processed at a time, in timestamp
+ * order. A batch is split into waves: wave N holds the N-th oldest Data of every dataId and tenant.  The first wave is
+ * inserted directly and this fact is inserted alongside it; the low salience <code>ReleaseNextDataWave</code> rule
+ * inserts the next wave only when every other activation of the previous one has fired.  So a batch is processed in
+ * a single rules execution with the same results as one execution per wave.
+ */
+public class DataWaves {
+
+    private final List<List<Data>> waves = new ArrayList<>();
+    private int next = 0;
+
+    /**
+     * @param data the Data to process, sorted by (id ASC, tenantId ASC, timestamp ASC) as a TreeSet of Data is.
+     */
+    public DataWaves(Collection<Data> data) {
+        String previousId = null;
+        String previousTenantId = null;
+        int wave = 0;
+        for (Data d : data) {
+            wave = d.getId().equals(previousId) && Objects.equals(d.getTenantId(), previousTenantId) ? wave + 1 : 0;
+            if (wave == waves.size()) {
+                waves.add(new ArrayList<>());
+            }
+            waves.get(wave).add(d);
+            previousId = d.getId();
+            previousTenantId = d.getTenantId();
+        }
+    }
+
+    public int getSize() {
+        return waves.size();
+    }
+
+    /**
+     * @return number of waves not yet released.
+     */
+    public int getRemaining() {
+        return waves.size() - next;
+    }
+
+    /**
+     * @return the next wave of Data, at most one Data instance per dataId and tenant.
+     * @throws IllegalStateException if there are no remaining waves.
+     */
+    public List<Data> next() {
+        if (next >= waves.size()) {
+            throw new IllegalStateException("No remaining waves");
+        }
+        return waves.get(next++);
+    }
+
+    @Override
+    public String toString() {
+        return "DataWaves [size=" + waves.size() + ", remaining=" + getRemaining() + "]";
+    }
+}
@@ -85,6 +85,16 @@ public interface RulesEngine {
      */
     void removeFacts(Predicate<Object> factFilter);
 
+    /**
+     * Deletes the Trigger identified by <code>tenantId</code> and <code>triggerId</code>, and its Condition and
+     * Dampening facts, from the rules engine. The facts are indexed by (tenantId, triggerId), so only the facts of
+     * this Trigger are visited.
+     * @param tenantId the tenantId
+     * @param triggerId the triggerId
+     * @return true if the Trigger fact was found in the rules engine
+     */
+    boolean removeTriggerFacts(String tenantId, String triggerId);
+
     /**
      * Add to the accumulated <code>Data</code> to be processed the next time {@link #fire()} is called. After the
      * rules are fired on the accumulated <code>Data</code> it will be cleared.
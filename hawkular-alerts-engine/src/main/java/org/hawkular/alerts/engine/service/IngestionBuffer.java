@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.service;
+
+import java.util.Collection;
+
+/**
+ * A bounded buffer where incoming data is queued by producers (JMS listeners, REST calls) until the engine drains
+ * it for evaluation. Producers must not contend on a shared lock, and the buffer capacity is fixed so a burst of
+ * data can not exhaust the heap. What happens when the buffer is full is defined by its {@link OverflowPolicy}.
+ */
+public interface IngestionBuffer<E> {
+
+    /**
+     * Behaviour of {@link #add(Object)} when the buffer is full.
+     */
+    enum OverflowPolicy {
+        /** The producer waits until there is free space in the buffer. */
+        BLOCK,
+
+        /** The oldest element of the buffer is discarded to make room for the new one. */
+        DROP_OLDEST,
+
+        /** The new element is discarded. */
+        DROP_NEWEST,
+
+        /** The new element is not added and an {@link IllegalStateException} is thrown to the caller. */
+        REJECT
+    }
+
+    /**
+     * Add an element to the buffer, applying the {@link OverflowPolicy} if the buffer is full.
+     * @param element the element to add
+     * @return true if the element was added, false if it was discarded by the overflow policy
+     * @throws IllegalArgumentException if <code>element</code> is null
+     * @throws IllegalStateException if the buffer is full and the policy is {@link OverflowPolicy#REJECT}
+     */
+    boolean add(E element);
+
+    /**
+     * Move up to <code>max</code> elements from the buffer into <code>target</code>, in insertion order.
+     * @param target the collection where drained elements are added
+     * @param max maximum number of elements to drain
+     * @return number of drained elements
+     */
+    int drainTo(Collection<? super E> target, int max);
+
+    /**
+     * Discard all the elements of the buffer.
+     */
+    void clear();
+
+    /**
+     * @return current number of elements in the buffer (depth)
+     */
+    int size();
+
+    boolean isEmpty();
+
+    int getCapacity();
+
+    OverflowPolicy getOverflowPolicy();
+
+    /**
+     * @param listener callback invoked when a producer finds the buffer full, used to request an early drain
+     */
+    void setFullListener(Runnable listener);
+
+    /**
+     * @return total number of elements added to the buffer
+     */
+    long getEnqueued();
+
+    /**
+     * @return total number of elements discarded by {@link OverflowPolicy#DROP_OLDEST} or
+     * {@link OverflowPolicy#DROP_NEWEST}
+     */
+    long getDrops();
+
+    /**
+     * @return total number of elements rejected by {@link OverflowPolicy#REJECT}
+     */
+    long getRejects();
+
+    /**
+     * @return average time spent in {@link #add(Object)}, in nanoseconds
+     */
+    long getAvgEnqueueLatency();
+
+    /**
+     * @return maximum time spent in {@link #add(Object)}, in nanoseconds
+     */
+    long getMaxEnqueueLatency();
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.services.ActionListener;
+import org.hawkular.alerts.engine.impl.ActionDispatcher;
+import org.hawkular.alerts.engine.impl.ActionJournal;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the asynchronous delivery and the journal of actions of {@link ActionDispatcher}.
+ */
+public class ActionDispatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    ActionDispatcher dispatcher;
+
+    @After
+    public void after() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private void waitFor(long expected, long timeoutMs) throws Exception {
+        long timeout = System.currentTimeMillis() + timeoutMs;
+        while (dispatcher.getDispatched() < expected && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void sendDoesNotBlockOnSlowListeners() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<ActionListener> listeners = new ArrayList<>();
+        listeners.add(action -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher = new ActionDispatcher(10, 1, 1, 1, listeners);
+
+        long start = System.currentTimeMillis();
+        int sent = 0;
+        for (int i = 0; i < 100; i++) {
+            if (dispatcher.send(new Action("tenant", "email", "action-" + i, "alert-" + i))) {
+                sent++;
+            }
+        }
+        long stop = System.currentTimeMillis();
+
+        assertTrue("send took " + (stop - start) + " ms", (stop - start) < 1000);
+        assertTrue(dispatcher.toString(), dispatcher.getDrops() > 0);
+        assertEquals(dispatcher.toString(), 100, sent + dispatcher.getDrops());
+
+        release.countDown();
+        waitFor(sent, 5000);
+
+        assertEquals(dispatcher.toString(), sent, dispatcher.getDispatched());
+        assertEquals(dispatcher.toString(), 0, dispatcher.getDepth());
+        assertTrue(dispatcher.toString(), dispatcher.getMaxDispatchLatency() > 0);
+    }
+
+    @Test
+    public void pluginConcurrencyIsLimited() throws Exception {
+        Map<String, AtomicInteger> inProgress = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> maxInProgress = new ConcurrentHashMap<>();
+        List<Action> delivered = Collections.synchronizedList(new ArrayList<>());
+        List<ActionListener> listeners = new ArrayList<>();
+        listeners.add(new ActionListener() {
+            @Override
+            public void process(Action action) {
+            }
+
+            @Override
+            public void process(Collection<Action> actions) {
+                String plugin = actions.iterator().next().getActionPlugin();
+                for (Action a : actions) {
+                    assertEquals(plugin, a.getActionPlugin());
+                }
+                int n = inProgress.computeIfAbsent(plugin, p -> new AtomicInteger()).incrementAndGet();
+                maxInProgress.computeIfAbsent(plugin, p -> new AtomicInteger()).accumulateAndGet(n, Math::max);
+                try {
+                    TimeUnit.MILLISECONDS.sleep("slow".equals(plugin) ? 20 : 1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inProgress.get(plugin).decrementAndGet();
+                delivered.addAll(actions);
+            }
+        });
+        dispatcher = new ActionDispatcher(1000, 4, 2, 5, listeners);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(dispatcher.send(new Action("tenant", "slow", "action-" + i, "alert-" + i)));
+            assertTrue(dispatcher.send(new Action("tenant", "fast", "action-" + i, "alert-" + i)));
+        }
+        waitFor(200, 10000);
+
+        assertEquals(dispatcher.toString(), 200, delivered.size());
+        assertEquals(dispatcher.toString(), 0, dispatcher.getDrops());
+        assertEquals(dispatcher.toString(), 0, dispatcher.getFailures());
+        assertTrue(maxInProgress.toString(), maxInProgress.get("slow").get() <= 2);
+        assertTrue(maxInProgress.toString(), maxInProgress.get("fast").get() <= 2);
+    }
+
+    @Test
+    public void undeliveredActionsAreRecoveredFromJournal() throws Exception {
+        File file = new File(folder.getRoot(), "actions.journal");
+        CountDownLatch release = new CountDownLatch(1);
+        List<ActionListener> listeners = new ArrayList<>();
+        listeners.add(action -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher = new ActionDispatcher(100, 1, 1, 10, listeners, new ActionJournal(file));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(dispatcher.send(new Action("tenant", "email", "action-" + i, "alert-" + i)));
+        }
+        Thread.sleep(50);
+        assertEquals(dispatcher.toString(), 5, dispatcher.getDepth());
+        assertTrue(dispatcher.toString(), dispatcher.getOldestAge() > 0);
+
+        // restart with the actions still in delivery
+        dispatcher.shutdown();
+        release.countDown();
+
+        List<Action> delivered = Collections.synchronizedList(new ArrayList<>());
+        listeners.clear();
+        listeners.add(delivered::add);
+        dispatcher = new ActionDispatcher(100, 1, 1, 10, listeners, new ActionJournal(file));
+        waitFor(5, 5000);
+
+        assertEquals(delivered.toString(), 5, delivered.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("action-" + i, delivered.get(i).getActionId());
+            assertEquals("alert-" + i, delivered.get(i).getMessage());
+        }
+        assertEquals(dispatcher.toString(), 0, dispatcher.getOldestAge());
+
+        dispatcher.shutdown();
+        assertTrue(new ActionJournal(file).recover().isEmpty());
+    }
+
+    @Test
+    public void failedListenerGetsActionsAgain() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        List<Action> healthy = Collections.synchronizedList(new ArrayList<>());
+        List<Action> failing = Collections.synchronizedList(new ArrayList<>());
+        List<ActionListener> listeners = new ArrayList<>();
+        listeners.add(healthy::add);
+        listeners.add(action -> {
+            if (calls.incrementAndGet() <= 2) {
+                throw new IllegalStateException("Listener failure " + calls.get());
+            }
+            failing.add(action);
+        });
+        dispatcher = new ActionDispatcher(100, 2, 1, 10, listeners, null, 5, 10L);
+
+        assertTrue(dispatcher.send(new Action("tenant", "email", "action-0", "alert-0")));
+        waitFor(1, 5000);
+
+        assertEquals(dispatcher.toString(), 1, dispatcher.getDispatched());
+        assertEquals(dispatcher.toString(), 2, dispatcher.getFailures());
+        assertEquals(dispatcher.toString(), 2, dispatcher.getRetries());
+        assertEquals(dispatcher.toString(), 0, dispatcher.getDeadLetters());
+        assertEquals(dispatcher.toString(), 0, dispatcher.getDepth());
+        assertEquals(healthy.toString(), 1, healthy.size());
+        assertEquals(failing.toString(), 1, failing.size());
+        assertEquals("action-0", failing.get(0).getActionId());
+    }
+
+    @Test
+    public void onlyFailedActionsOfBatchAreRetried() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Map<String, AtomicInteger> deliveries = new ConcurrentHashMap<>();
+        AtomicInteger failed = new AtomicInteger();
+        List<ActionListener> listeners = new ArrayList<>();
+        listeners.add(action -> {
+            if ("blocker".equals(action.getActionId())) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if ("action-1".equals(action.getActionId()) && failed.getAndIncrement() == 0) {
+                throw new IllegalStateException("Listener failure");
+            }
+            deliveries.computeIfAbsent(action.getActionId(), k -> new AtomicInteger()).incrementAndGet();
+        });
+        dispatcher = new ActionDispatcher(100, 1, 1, 10, listeners, null, 5, 10L);
+
+        // the blocker holds the worker, so the next actions are delivered in a single batch
+        assertTrue(dispatcher.send(new Action("tenant", "email", "blocker", "alert")));
+        Thread.sleep(100);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(dispatcher.send(new Action("tenant", "email", "action-" + i, "alert-" + i)));
+        }
+        Thread.sleep(100);
+        release.countDown();
+        waitFor(4, 5000);
+
+        assertEquals(dispatcher.toString(), 4, dispatcher.getDispatched());
+        assertEquals(dispatcher.toString(), 1, dispatcher.getFailures());
+        assertEquals(dispatcher.toString(), 1, dispatcher.getRetries());
+        assertEquals(deliveries.toString(), 1, deliveries.get("action-0").get());
+        assertEquals(deliveries.toString(), 1, deliveries.get("action-1").get());
+        assertEquals(deliveries.toString(), 1, deliveries.get("action-2").get());
+    }
+
+    @Test
+    public void exhaustedActionsAreDeadLettered() throws Exception {
+        File file = new File(folder.getRoot(), "actions.journal");
+        List<ActionListener> listeners = new ArrayList<>();
+        listeners.add(action -> {
+            throw new IllegalStateException("Listener failure");
+        });
+        dispatcher = new ActionDispatcher(100, 1, 1, 10, listeners, new ActionJournal(file), 2, 10L);
+
+        assertTrue(dispatcher.send(new Action("tenant", "email", "action-0", "alert-0")));
+        long timeout = System.currentTimeMillis() + 5000;
+        while (dispatcher.getDeadLetters() == 0 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(dispatcher.toString(), 1, dispatcher.getDeadLetters());
+        assertEquals("action-0", dispatcher.getDeadLetterActions().get(0).getActionId());
+        assertEquals(dispatcher.toString(), 3, dispatcher.getFailures());
+        assertEquals(dispatcher.toString(), 2, dispatcher.getRetries());
+        assertEquals(dispatcher.toString(), 0, dispatcher.getDispatched());
+        assertEquals(dispatcher.toString(), 0, dispatcher.getDepth());
+
+        // dead letters are not marked as delivered, they are sent again after a restart
+        dispatcher.shutdown();
+        Map<Long, Action> recovered = new ActionJournal(file).recover();
+        assertEquals(recovered.toString(), 1, recovered.size());
+    }
+
+    @Test
+    public void deadLettersAreBounded() throws Exception {
+        File file = new File(folder.getRoot(), "actions.journal");
+        List<ActionListener> listeners = new ArrayList<>();
+        listeners.add(action -> {
+            throw new IllegalStateException("Listener failure");
+        });
+        dispatcher = new ActionDispatcher(100, 1, 1, 10, listeners, new ActionJournal(file), 0, 10L, 2);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(dispatcher.send(new Action("tenant", "email", "action-" + i, "alert-" + i)));
+        }
+        long timeout = System.currentTimeMillis() + 5000;
+        while (dispatcher.getEvictedDeadLetters() < 3 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(dispatcher.toString(), 2, dispatcher.getDeadLetters());
+        assertEquals(dispatcher.toString(), 3, dispatcher.getEvictedDeadLetters());
+        assertEquals("action-3", dispatcher.getDeadLetterActions().get(0).getActionId());
+        assertEquals("action-4", dispatcher.getDeadLetterActions().get(1).getActionId());
+
+        // the journal keeps the evicted dead letters
+        dispatcher.shutdown();
+        Map<Long, Action> recovered = new ActionJournal(file).recover();
+        assertEquals(recovered.toString(), 5, recovered.size());
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.AvailabilityConditionEval;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.CompareConditionEval;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.model.data.StringData;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
+import org.hawkular.alerts.engine.impl.AlertCodecs;
+import org.hawkular.alerts.engine.impl.BinaryAlertCodec;
+import org.hawkular.alerts.engine.impl.JsonAlertCodec;
+import org.junit.Test;
+
+/**
+ * Tests for the alert payload codecs.
+ */
+public class AlertCodecTest {
+
+    JsonAlertCodec json = new JsonAlertCodec();
+    BinaryAlertCodec binary = new BinaryAlertCodec(json);
+
+    static Alert alert(int numEvalSets) {
+        ThresholdCondition threshold = new ThresholdCondition("trigger-1", Mode.FIRING, 5, 1, "data-1",
+                ThresholdCondition.Operator.GT, 10.5);
+        AvailabilityCondition availability = new AvailabilityCondition("trigger-1", Mode.FIRING, 5, 2, "data-2",
+                AvailabilityCondition.Operator.DOWN);
+        CompareCondition compare = new CompareCondition("trigger-1", Mode.FIRING, 5, 3, "data-3",
+                CompareCondition.Operator.LT, 1.5, "data-4");
+        StringCondition string = new StringCondition("trigger-1", Mode.FIRING, 5, 4, "data-5",
+                StringCondition.Operator.CONTAINS, "Fatal", true);
+        ThresholdRangeCondition range = new ThresholdRangeCondition("trigger-1", Mode.FIRING, 5, 5, "data-6",
+                ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.EXCLUSIVE, 1.0, 2.0,
+                false);
+        ThresholdCondition resolve = new ThresholdCondition("trigger-1", Mode.AUTORESOLVE, 1, 1, "data-1",
+                ThresholdCondition.Operator.LTE, 10.5);
+        threshold.setTenantId("tenant");
+        resolve.setTenantId("tenant");
+
+        long now = System.currentTimeMillis();
+        List<Set<ConditionEval>> evalSets = new ArrayList<>();
+        for (int i = 0; i < numEvalSets; i++) {
+            Set<ConditionEval> evalSet = new HashSet<>();
+            evalSet.add(new ThresholdConditionEval(threshold, new NumericData("data-1", now + i, 11.5 + i)));
+            evalSet.add(new AvailabilityConditionEval(availability,
+                    new Availability("data-2", now + i, AvailabilityType.DOWN)));
+            CompareConditionEval compareEval = new CompareConditionEval(compare,
+                    new NumericData("data-3", now + i, 1.0), new NumericData("data-4", now - i, 2.0));
+            compareEval.setValue2(null);
+            evalSet.add(compareEval);
+            evalSet.add(new StringConditionEval(string, new StringData("data-5", now + i, "Fatal error é")));
+            evalSet.add(new ThresholdRangeConditionEval(range, new NumericData("data-6", now + i, 3.0)));
+            evalSets.add(evalSet);
+        }
+        Alert alert = new Alert("tenant", "trigger-1", Severity.HIGH, evalSets);
+        alert.setStatus(Alert.Status.RESOLVED);
+        alert.setAckTime(now + 1000);
+        alert.setAckBy("ackBy");
+        alert.setResolvedTime(now + 2000);
+        alert.setResolvedBy("resolvedBy");
+        alert.setResolvedNotes("resolvedNotes");
+        Set<ConditionEval> resolveSet = new HashSet<>();
+        ThresholdConditionEval resolveEval = new ThresholdConditionEval(resolve,
+                new NumericData("data-1", now + 2000, 9.5));
+        resolveEval.setUsed(true);
+        resolveSet.add(resolveEval);
+        List<Set<ConditionEval>> resolvedEvalSets = new ArrayList<>();
+        resolvedEvalSets.add(resolveSet);
+        alert.setResolvedEvalSets(resolvedEvalSets);
+        return alert;
+    }
+
+    @Test
+    public void binaryRoundTrip() {
+        Alert alert = alert(10);
+        Alert decoded = binary.decode(binary.encode(alert), false);
+
+        // the json encoding includes every field of the alert, evals and conditions
+        assertEquals(json.toJson(alert), json.toJson(decoded));
+
+        alert.setAlertId("custom-id");
+        assertEquals("custom-id", binary.decode(binary.encode(alert), false).getAlertId());
+    }
+
+    @Test
+    public void binaryThinSkipsEvals() {
+        Alert alert = alert(10);
+        Alert thin = binary.decode(binary.encode(alert), true);
+
+        assertNull(thin.getEvalSets());
+        assertNull(thin.getResolvedEvalSets());
+        assertEquals(json.toJson(json.decode(json.encode(alert), true)), json.toJson(thin));
+    }
+
+    @Test
+    public void payloadsOfAnyCodecAreDecoded() {
+        Alert alert = alert(10);
+        ByteBuffer jsonPayload = json.encode(alert);
+        ByteBuffer binaryPayload = binary.encode(alert);
+
+        assertEquals(json.toJson(alert), json.toJson(AlertCodecs.decode(jsonPayload, false)));
+        assertEquals(json.toJson(alert), json.toJson(AlertCodecs.decode(binaryPayload, false)));
+        // repeated conditions are stored once
+        assertTrue(binaryPayload.remaining() * 5 < jsonPayload.remaining());
+        // decoding does not consume the payload
+        assertEquals(json.toJson(alert), json.toJson(AlertCodecs.decode(binaryPayload, false)));
+    }
+
+    public static class ExternalConditionEval extends ConditionEval {
+        private String event = "event";
+
+        @Override
+        public String getTriggerId() {
+            return "trigger-1";
+        }
+
+        @Override
+        public int getConditionSetSize() {
+            return 1;
+        }
+
+        @Override
+        public int getConditionSetIndex() {
+            return 1;
+        }
+
+        @Override
+        public String getLog() {
+            return event;
+        }
+    }
+
+    @Test
+    public void unknownEvalsFallbackToJson() {
+        Alert alert = alert(1);
+        alert.getEvalSets().get(0).add(new ExternalConditionEval());
+        ByteBuffer payload = binary.encode(alert);
+
+        assertTrue(json.canDecode(payload));
+        assertEquals(json.toJson(alert), json.toJson(AlertCodecs.decode(payload, false)));
+    }
+
+    @Test
+    public void jsonSkipsMissingAndNonFiniteValues() {
+        Alert alert = alert(1);
+        ThresholdCondition threshold = new ThresholdCondition("trigger-1", Mode.FIRING, 5, 1, "data-7",
+                ThresholdCondition.Operator.GT, 10.5);
+        alert.getEvalSets().get(0).add(new ThresholdConditionEval(threshold,
+                new NumericData("data-7", 1, Double.NaN)));
+        String encoded = json.toJson(alert);
+
+        assertTrue(encoded, !encoded.contains("NaN"));
+        Alert decoded = json.decode(json.encode(alert), false);
+        assertEquals(encoded, json.toJson(decoded));
+        for (ConditionEval eval : decoded.getEvalSets().get(0)) {
+            if (eval instanceof CompareConditionEval) {
+                assertEquals(Double.valueOf(1.0), ((CompareConditionEval) eval).getValue1());
+                assertNull(((CompareConditionEval) eval).getValue2());
+            } else if (eval instanceof ThresholdConditionEval) {
+                ThresholdConditionEval thresholdEval = (ThresholdConditionEval) eval;
+                if ("data-7".equals(thresholdEval.getCondition().getDataId())) {
+                    assertTrue(thresholdEval.getValue().isNaN());
+                } else {
+                    assertEquals(Double.valueOf(11.5), thresholdEval.getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void jsonWithoutMissingFlagsIsDecoded() {
+        Alert alert = alert(1);
+        // alerts written before the missing flags
+        String legacy = json.toJson(alert).replaceAll(",?\\\\\"value[12]?Missing\\\\\":(true|false)", "");
+
+        assertTrue(legacy, !legacy.contains("Missing"));
+        Alert decoded = json.decode(ByteBuffer.wrap(legacy.getBytes(StandardCharsets.UTF_8)), false);
+        for (ConditionEval eval : decoded.getEvalSets().get(0)) {
+            if (eval instanceof ThresholdConditionEval) {
+                assertEquals(Double.valueOf(11.5), ((ThresholdConditionEval) eval).getValue());
+            } else if (eval instanceof ThresholdRangeConditionEval) {
+                assertEquals(Double.valueOf(3.0), ((ThresholdRangeConditionEval) eval).getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.engine.impl.AlertsEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Event mode batching of {@link AlertsEngineImpl}: a batch is fired when it reaches its size or when its linger
+ * expires, whichever comes first. The rules engine is a stub recording the size of every fired batch.
+ */
+public class AlertsEngineBatchTest {
+    private static final int BATCH_SIZE = 10;
+    private static final int BATCH_LINGER = 500;
+
+    BlockingQueue<Integer> batches = new LinkedBlockingQueue<>();
+
+    AlertsEngineImpl engine;
+
+    @Before
+    public void before() {
+        System.setProperty("hawkular-alerts.engine-mode", "event");
+        System.setProperty("hawkular-alerts.engine-batch-size", String.valueOf(BATCH_SIZE));
+        System.setProperty("hawkular-alerts.engine-batch-linger", String.valueOf(BATCH_LINGER));
+        System.setProperty("hawkular-alerts.engine-data-filter", "false");
+        engine = new AlertsEngineImpl();
+        engine.setRules((RulesEngine) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { RulesEngine.class }, (proxy, method, args) -> {
+                    if ("addData".equals(method.getName())) {
+                        batches.add(args[0] instanceof Collection ? ((Collection) args[0]).size() : 1);
+                    }
+                    if ("removeTriggerFacts".equals(method.getName())) {
+                        return false;
+                    }
+                    return null;
+                }));
+    }
+
+    @After
+    public void after() {
+        System.clearProperty("hawkular-alerts.engine-mode");
+        System.clearProperty("hawkular-alerts.engine-batch-size");
+        System.clearProperty("hawkular-alerts.engine-batch-linger");
+        System.clearProperty("hawkular-alerts.engine-data-filter");
+    }
+
+    private void send(int numData) {
+        for (int i = 0; i < numData; i++) {
+            Data data = new Availability("AvailData-01", i + 1, AvailabilityType.DOWN);
+            engine.sendData(data);
+        }
+    }
+
+    private int firedData(long timeout) throws Exception {
+        int fired = 0;
+        long deadline = System.currentTimeMillis() + timeout;
+        Integer batch;
+        while ((batch = batches.poll(Math.max(1, deadline - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS)) != null) {
+            fired += batch;
+        }
+        return fired;
+    }
+
+    @Test
+    public void lessThanBatchSizeWaitsForLinger() throws Exception {
+        long start = System.currentTimeMillis();
+        send(BATCH_SIZE - 1);
+
+        assertNull("fired before the linger", batches.poll(BATCH_LINGER / 2, TimeUnit.MILLISECONDS));
+        Integer batch = batches.poll(5000, TimeUnit.MILLISECONDS);
+        assertEquals(Integer.valueOf(BATCH_SIZE - 1), batch);
+        assertTrue(System.currentTimeMillis() - start >= BATCH_LINGER);
+    }
+
+    @Test
+    public void batchSizeFiresImmediately() throws Exception {
+        send(BATCH_SIZE);
+
+        Integer batch = batches.poll(BATCH_LINGER / 2, TimeUnit.MILLISECONDS);
+        assertEquals(Integer.valueOf(BATCH_SIZE), batch);
+
+        // the linger task of the batch finds no data and does not fire
+        assertNull(batches.poll(BATCH_LINGER * 2, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void moreThanBatchSizeFiresEveryDatum() throws Exception {
+        int numData = BATCH_SIZE * 2 + BATCH_SIZE / 2;
+        send(numData);
+
+        // the full batches do not wait for the linger, the remaining data can
+        int fired = firedData(BATCH_LINGER / 2);
+        assertTrue("fired " + fired, fired >= BATCH_SIZE * 2);
+
+        fired += firedData(BATCH_LINGER * 3);
+        assertEquals(numData, fired);
+        assertEquals(0, engine.getPendingData().size());
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.DefinitionsSnapshot;
+import org.hawkular.alerts.engine.impl.AlertsEngineImpl;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.NativeRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.PartitionedRulesEngineImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reload of the definitions in {@link AlertsEngineImpl}, with a stub DefinitionsService and AlertsService.
+ */
+public class AlertsEngineReloadTest {
+    private static final String TENANT = "tenant";
+
+    List<Trigger> triggers = new ArrayList<>();
+    List<Condition> conditions = new ArrayList<>();
+    List<Dampening> dampenings = new ArrayList<>();
+    List<Alert> alerts = Collections.synchronizedList(new ArrayList<>());
+
+    AlertsEngineImpl engine;
+
+    @Before
+    public void before() {
+        engine = new AlertsEngineImpl();
+        engine.setRules(new DroolsRulesEngineImpl());
+        engine.setDefinitions((DefinitionsService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { DefinitionsService.class }, (proxy, method, args) -> {
+                    if ("getAllDefinitions".equals(method.getName())) {
+                        return new DefinitionsSnapshot(copy(triggers), copy(conditions), copy(dampenings));
+                    }
+                    return null;
+                }));
+        engine.setAlertsService((AlertsService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if ("addAlerts".equals(method.getName())) {
+                        alerts.addAll((Collection<Alert>) args[0]);
+                    }
+                    if ("addAlertsAsync".equals(method.getName())) {
+                        alerts.addAll((Collection<Alert>) args[0]);
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    return null;
+                }));
+    }
+
+    @After
+    public void after() {
+        engine.clear();
+    }
+
+    /*
+        The definitions are read again on every reload, as a DefinitionsService would do.
+     */
+    private <T> List<T> copy(List<T> definitions) {
+        List<T> result = new ArrayList<>();
+        for (T d : definitions) {
+            if (d instanceof Trigger) {
+                Trigger t = (Trigger) d;
+                Trigger copy = new Trigger(t.getId(), t.getName());
+                copy.setTenantId(t.getTenantId());
+                copy.setEnabled(t.isEnabled());
+                result.add((T) copy);
+            } else if (d instanceof AvailabilityCondition) {
+                AvailabilityCondition c = (AvailabilityCondition) d;
+                AvailabilityCondition copy = new AvailabilityCondition(c.getTriggerId(), c.getDataId(),
+                        c.getOperator());
+                copy.setTenantId(c.getTenantId());
+                result.add((T) copy);
+            } else {
+                Dampening dampening = (Dampening) d;
+                Dampening copy = Dampening.forStrict(dampening.getTriggerId(), dampening.getTriggerMode(),
+                        dampening.getEvalTrueSetting());
+                copy.setTenantId(dampening.getTenantId());
+                result.add((T) copy);
+            }
+        }
+        return result;
+    }
+
+    private void addTrigger(String triggerId, String dataId, int numConsecutiveDown) {
+        addTrigger(TENANT, triggerId, dataId, numConsecutiveDown);
+    }
+
+    private void addTrigger(String tenantId, String triggerId, String dataId, int numConsecutiveDown) {
+        Trigger t = new Trigger(triggerId, triggerId);
+        t.setTenantId(tenantId);
+        t.setEnabled(true);
+        triggers.add(t);
+        AvailabilityCondition c = new AvailabilityCondition(triggerId, dataId, AvailabilityCondition.Operator.DOWN);
+        c.setTenantId(tenantId);
+        conditions.add(c);
+        Dampening d = Dampening.forStrict(triggerId, Mode.FIRING, numConsecutiveDown);
+        d.setTenantId(tenantId);
+        dampenings.add(d);
+    }
+
+    private Trigger trigger(String tenantId, String triggerId) {
+        Trigger t = new Trigger(triggerId, triggerId);
+        t.setTenantId(tenantId);
+        return t;
+    }
+
+    private void sendAndWait(String dataId, long timestamp, int expectedAlerts) throws Exception {
+        engine.sendData(new Availability(dataId, timestamp, AvailabilityType.DOWN));
+        long timeout = System.currentTimeMillis() + 5000;
+        while (engine.getPendingData().size() > 0 || alerts.size() < expectedAlerts) {
+            if (System.currentTimeMillis() > timeout) {
+                break;
+            }
+            Thread.sleep(20);
+        }
+        // give any unexpected alert the chance to arrive
+        Thread.sleep(100);
+    }
+
+    @Test
+    public void reconcileKeepsUnchangedTriggers() throws Exception {
+        addTrigger("trigger-1", "AvailData-01", 2);
+        addTrigger("trigger-2", "AvailData-02", 1);
+
+        engine.reload();
+
+        assertNotNull(engine.getRules().getFact(triggers.get(0)));
+        assertNotNull(engine.getRules().getFact(triggers.get(1)));
+
+        // first DOWN for trigger-1, its dampening needs two consecutive evals
+        sendAndWait("AvailData-01", 1, 0);
+        assertTrue(alerts.toString(), alerts.isEmpty());
+
+        // trigger-2 updated, trigger-3 added, trigger-1 unchanged keeps its dampening state
+        ((AvailabilityCondition) conditions.get(1)).setDataId("AvailData-02-updated");
+        addTrigger("trigger-3", "AvailData-03", 1);
+
+        engine.reload();
+
+        assertTrue(engine.getDataRoutingIndex().isReferenced("AvailData-02-updated"));
+        assertFalse(engine.getDataRoutingIndex().isReferenced("AvailData-02"));
+        assertTrue(engine.getDataRoutingIndex().isReferenced("AvailData-03"));
+
+        sendAndWait("AvailData-01", 2, 1);
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals("trigger-1", alerts.get(0).getTriggerId());
+
+        // trigger-1 removed from the definitions, trigger-2 disabled
+        triggers.remove(0);
+        triggers.get(0).setEnabled(false);
+
+        engine.reload();
+
+        Trigger t1 = new Trigger("trigger-1", "trigger-1");
+        t1.setTenantId(TENANT);
+        assertNull(engine.getRules().getFact(t1));
+        assertFalse(engine.getDataRoutingIndex().isReferenced("AvailData-01"));
+        assertFalse(engine.getDataRoutingIndex().isReferenced("AvailData-02-updated"));
+        assertTrue(engine.getDataRoutingIndex().isReferenced("AvailData-03"));
+    }
+
+    @Test
+    public void reconcileTenantsSharingTriggerId() throws Exception {
+        addTrigger("tenantA", "trigger-1", "AvailData-A", 1);
+        addTrigger("tenantB", "trigger-1", "AvailData-B", 1);
+
+        engine.reload();
+
+        assertNotNull(engine.getRules().getFact(trigger("tenantA", "trigger-1")));
+        assertNotNull(engine.getRules().getFact(trigger("tenantB", "trigger-1")));
+
+        // trigger-1 removed from tenantA only
+        triggers.remove(0);
+
+        engine.reload();
+
+        assertNull(engine.getRules().getFact(trigger("tenantA", "trigger-1")));
+        assertNotNull(engine.getRules().getFact(trigger("tenantB", "trigger-1")));
+        assertFalse(engine.getDataRoutingIndex().isReferenced("AvailData-A"));
+        assertTrue(engine.getDataRoutingIndex().isReferenced("AvailData-B"));
+
+        // and disabled in tenantB
+        triggers.get(0).setEnabled(false);
+
+        engine.reload();
+
+        assertNull(engine.getRules().getFact(trigger("tenantB", "trigger-1")));
+        assertFalse(engine.getDataRoutingIndex().isReferenced("AvailData-B"));
+    }
+
+    @Test
+    public void reloadTriggerOfTenantSharingTriggerId() throws Exception {
+        engine.setRules(new NativeRulesEngineImpl());
+        addTrigger("tenantA", "trigger-1", "AvailData-01", 1);
+        addTrigger("tenantB", "trigger-1", "AvailData-01", 1);
+
+        engine.reload();
+
+        assertNotNull(engine.getRules().getFact(trigger("tenantA", "trigger-1")));
+        assertNotNull(engine.getRules().getFact(trigger("tenantB", "trigger-1")));
+
+        // tenantA removes its trigger-1, the trigger-1 of tenantB is untouched
+        triggers.remove(0);
+        conditions.remove(0);
+        dampenings.remove(0);
+        engine.reloadTrigger("tenantA", "trigger-1");
+
+        assertNull(engine.getRules().getFact(trigger("tenantA", "trigger-1")));
+        assertNotNull(engine.getRules().getFact(trigger("tenantB", "trigger-1")));
+        Availability tenantAData = new Availability("AvailData-01", 1, AvailabilityType.DOWN);
+        tenantAData.setTenantId("tenantA");
+        assertFalse(engine.getDataRoutingIndex().isReferenced(tenantAData));
+
+        Availability tenantBData = new Availability("AvailData-01", 1, AvailabilityType.DOWN);
+        tenantBData.setTenantId("tenantB");
+        engine.sendData(tenantBData);
+        long timeout = System.currentTimeMillis() + 5000;
+        while (alerts.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(20);
+        }
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals("tenantB", alerts.get(0).getTenantId());
+    }
+
+    @Test
+    public void shutdownStopsPartitionWorkers() throws Exception {
+        addTrigger("trigger-1", "AvailData-01", 1);
+
+        System.setProperty("hawkular-alerts.engine-partitions", "2");
+        AlertsEngineImpl partitioned;
+        try {
+            partitioned = new AlertsEngineImpl();
+        } finally {
+            System.clearProperty("hawkular-alerts.engine-partitions");
+        }
+        partitioned.setDefinitions(engine.getDefinitions());
+        partitioned.setAlertsService(engine.getAlertsService());
+        partitioned.reload();
+        assertTrue(partitioned.getRules() instanceof PartitionedRulesEngineImpl);
+
+        partitioned.sendData(new Availability("AvailData-01", 1, AvailabilityType.DOWN));
+        long timeout = System.currentTimeMillis() + 5000;
+        while (alerts.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(20);
+        }
+        assertEquals(alerts.toString(), 1, alerts.size());
+
+        partitioned.shutdown();
+        assertTrue(((PartitionedRulesEngineImpl) partitioned.getRules()).isTerminated());
+    }
+}
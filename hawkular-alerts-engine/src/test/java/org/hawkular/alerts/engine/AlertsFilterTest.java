@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.engine.impl.AlertsFilter;
+import org.hawkular.alerts.engine.impl.AlertsFilter.Kind;
+import org.junit.Test;
+
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+
+/**
+ * Tests for the selectivity planning of {@link AlertsFilter}.
+ */
+public class AlertsFilterTest {
+
+    AlertsFilter filter(Kind kind, Predicate<Alert> predicate, int selects) {
+        List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < selects; i++) {
+            statements.add(new SimpleStatement("select " + i));
+        }
+        return new AlertsFilter(kind, predicate, statements, statements);
+    }
+
+    @Test
+    public void mostSelectiveFilterDrives() {
+        AlertsFilter triggers = filter(Kind.TRIGGERS, a -> "trigger1".equals(a.getTriggerId()), 1);
+        AlertsFilter severities = filter(Kind.SEVERITIES, a -> a.getSeverity() == Severity.HIGH, 1);
+        AlertsFilter statuses = filter(Kind.STATUSES, a -> a.getStatus() == Alert.Status.OPEN, 1);
+
+        Map<Kind, Long> sizes = new HashMap<>();
+        sizes.put(Kind.TRIGGERS, 5000L);
+        sizes.put(Kind.SEVERITIES, 200L);
+        sizes.put(Kind.STATUSES, 100000L);
+        Map<Kind, Long> bounds = new HashMap<>();
+
+        List<AlertsFilter> plan = AlertsFilter.plan(Arrays.asList(statuses, severities, triggers), (f, bound) -> {
+            bounds.put(f.getKind(), bound);
+            // an estimator stops counting once the bound is exceeded
+            return Math.min(sizes.get(f.getKind()), bound == Long.MAX_VALUE ? bound : bound + 1);
+        });
+
+        assertEquals(severities, plan.get(0));
+        // filters are estimated in the order of kinds, each one bounded by the best estimate so far
+        assertEquals(Long.MAX_VALUE, bounds.get(Kind.TRIGGERS).longValue());
+        assertEquals(5000L, bounds.get(Kind.SEVERITIES).longValue());
+        assertEquals(200L, bounds.get(Kind.STATUSES).longValue());
+        // a bounded estimate is only known to be worse than the bound
+        assertEquals(201L, statuses.getEstimate());
+    }
+
+    @Test
+    public void explicitAlertsAreNotEstimated() {
+        AlertsFilter alerts = filter(Kind.ALERTS, a -> "alert1".equals(a.getAlertId()), 3);
+        AlertsFilter statuses = filter(Kind.STATUSES, a -> a.getStatus() == Alert.Status.OPEN, 1);
+        AlertsFilter ctime = filter(Kind.CTIME, a -> a.getCtime() >= 1000L, 1);
+
+        List<AlertsFilter> plan = AlertsFilter.plan(Arrays.asList(statuses, ctime, alerts), (f, bound) -> {
+            assertTrue(f.getKind() != Kind.ALERTS);
+            return 3L;
+        });
+
+        // same estimates keep the order of kinds
+        assertEquals(Arrays.asList(alerts, ctime, statuses), plan);
+        assertEquals(3L, alerts.getEstimate());
+    }
+
+    @Test
+    public void residualChecksTheOtherFilters() {
+        AlertsFilter triggers = filter(Kind.TRIGGERS, a -> "trigger1".equals(a.getTriggerId()), 1);
+        AlertsFilter statuses = filter(Kind.STATUSES, a -> a.getStatus() == Alert.Status.OPEN, 1);
+        List<AlertsFilter> filters = Arrays.asList(triggers, statuses);
+
+        Alert alert = new Alert("tenant", "trigger2", Severity.LOW, Collections.emptyList());
+        alert.setStatus(Alert.Status.OPEN);
+
+        // the driver is not checked again, the alerts read by its index already match it
+        assertTrue(AlertsFilter.residual(filters, triggers).test(alert));
+        assertFalse(AlertsFilter.residual(filters, statuses).test(alert));
+    }
+}
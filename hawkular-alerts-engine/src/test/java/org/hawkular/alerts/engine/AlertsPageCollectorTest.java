@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.paging.AlertComparator.Field;
+import org.hawkular.alerts.api.model.paging.Order;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.paging.Pager;
+import org.hawkular.alerts.engine.impl.AlertsPageCollector;
+import org.junit.Test;
+
+/**
+ * Tests for the bounded ordering and the continuation tokens of {@link AlertsPageCollector}.
+ */
+public class AlertsPageCollectorTest {
+
+    List<Alert> alerts(int n) {
+        Random random = new Random(42);
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Alert alert = new Alert("tenant", "trigger" + random.nextInt(10),
+                    Severity.values()[random.nextInt(Severity.values().length)], null);
+            alert.setCtime(random.nextInt(50) * 1000000000L);
+            alert.setAlertId(alert.getTriggerId() + "|" + i);
+            alert.setStatus(Alert.Status.values()[random.nextInt(Alert.Status.values().length)]);
+            alerts.add(alert);
+        }
+        return alerts;
+    }
+
+    Page<Alert> page(List<Alert> alerts, Pager pager) {
+        AlertsPageCollector collector = new AlertsPageCollector(pager);
+        alerts.forEach(collector::add);
+        return collector.page();
+    }
+
+    @Test
+    public void limitedPagesMatchFullSort() {
+        List<Alert> alerts = alerts(500);
+        for (Field field : Field.values()) {
+            for (Order.Direction direction : Order.Direction.values()) {
+                List<Alert> sorted = new ArrayList<>(alerts);
+                Pager pager = Pager.builder().withPageSize(20).withStartPage(3)
+                        .orderBy(field.getText(), direction).build();
+                Collections.sort(sorted, AlertsPageCollector.comparator(pager.getOrder()));
+
+                Page<Alert> page = page(alerts, pager);
+
+                assertEquals(500, page.getTotalSize());
+                assertEquals(sorted.subList(60, 80), new ArrayList<>(page));
+            }
+        }
+    }
+
+    @Test
+    public void firstOrderIsPrimary() {
+        Pager pager = Pager.builder().withPageSize(500)
+                .orderByDescending(Field.SEVERITY.getText())
+                .orderByAscending(Field.CTIME.getText()).build();
+
+        Page<Alert> page = page(alerts(500), pager);
+
+        for (int i = 1; i < page.size(); i++) {
+            Alert a = page.get(i - 1);
+            Alert b = page.get(i);
+            assertTrue(a.getSeverity().compareTo(b.getSeverity()) >= 0);
+            if (a.getSeverity() == b.getSeverity()) {
+                assertTrue(a.getCtime() <= b.getCtime());
+            }
+        }
+    }
+
+    @Test
+    public void continuationTokensVisitAllAlertsOnce() {
+        List<Alert> alerts = alerts(237);
+        Pager pager = Pager.builder().withPageSize(25)
+                .orderByAscending(Field.STATUS.getText()).build();
+        List<Alert> sorted = new ArrayList<>(alerts);
+        Collections.sort(sorted, AlertsPageCollector.comparator(pager.getOrder()));
+
+        List<Alert> visited = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        Page<Alert> page = page(alerts, pager);
+        while (!page.isEmpty()) {
+            assertEquals(237, page.getTotalSize());
+            for (Alert a : page) {
+                assertTrue(ids.add(a.getAlertId()));
+                visited.add(a);
+            }
+            assertNotNull(page.getPageContext().getContinuationToken());
+            pager = ((Pager) page.getPageContext()).nextPage();
+            page = page(alerts, pager);
+        }
+
+        assertEquals(sorted, visited);
+    }
+
+    @Test
+    public void tokenCarriesTotalSize() {
+        List<Alert> alerts = alerts(10);
+        Pager pager = Pager.builder().withPageSize(4).orderByAscending(Field.CTIME.getText()).build();
+        assertEquals(-1, new AlertsPageCollector(pager).getAfterTotal());
+
+        AlertsPageCollector collector = new AlertsPageCollector(pager);
+        Page<Alert> page = collector.toPage(alerts.subList(0, 4), 1234);
+        String token = page.getPageContext().getContinuationToken();
+        assertEquals(1234, AlertsPageCollector.totalFromToken(token));
+        assertEquals(alerts.get(3).getAlertId(), AlertsPageCollector.fromToken(token).getAlertId());
+
+        collector = new AlertsPageCollector(((Pager) page.getPageContext()).nextPage());
+        assertEquals(1234, collector.getAfterTotal());
+
+        // tokens without a total size are still accepted
+        assertEquals(-1, AlertsPageCollector.totalFromToken(AlertsPageCollector.token(alerts.get(0))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidToken() {
+        AlertsPageCollector.fromToken("not-a-token");
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.engine.impl.CassAlertsWriter;
+import org.junit.Test;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Tests for the batching, the in-flight limit and the queue limit of {@link CassAlertsWriter}.
+ */
+public class CassAlertsWriterTest {
+
+    List<BatchStatement> executed = new ArrayList<>();
+    List<SettableFuture<Object>> results = new ArrayList<>();
+
+    CassAlertsWriter writer(int maxInFlight, int batchSize) {
+        return writer(maxInFlight, batchSize, 1000);
+    }
+
+    /*
+        Completions run on the thread setting the result, so the tests can check the writer right after.
+     */
+    CassAlertsWriter writer(int maxInFlight, int batchSize, int maxQueued) {
+        return new CassAlertsWriter(statement -> {
+            SettableFuture<Object> result = SettableFuture.create();
+            executed.add((BatchStatement) statement);
+            results.add(result);
+            return result;
+        }, maxInFlight, batchSize, maxQueued, Runnable::run);
+    }
+
+    Function<Alert, List<Statement>> statements = a -> Collections.singletonList(
+            new SimpleStatement("INSERT " + a.getTenantId() + " " + a.getTriggerId()));
+
+    List<Alert> alerts(String tenantId, int n) {
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            alerts.add(new Alert(tenantId, "trigger" + i, Severity.LOW, null));
+        }
+        return alerts;
+    }
+
+    @Test
+    public void batchesByTenant() throws Exception {
+        CassAlertsWriter writer = writer(10, 3);
+        List<Alert> alerts = alerts("tenant1", 4);
+        alerts.addAll(alerts("tenant2", 2));
+
+        CompletableFuture<Void> written = writer.write(alerts, statements);
+
+        assertEquals(3, executed.size());
+        assertEquals(3, executed.get(0).size());
+        assertEquals(1, executed.get(1).size());
+        assertEquals(2, executed.get(2).size());
+        for (Statement s : executed.get(2).getStatements()) {
+            assertTrue(s.toString().contains("tenant2"));
+        }
+        assertFalse(written.isDone());
+
+        results.forEach(r -> r.set(null));
+        written.get();
+        assertEquals(6, writer.getWritten());
+        assertEquals(3, writer.getBatches());
+        assertEquals(0, writer.getInFlight());
+    }
+
+    @Test
+    public void limitsInFlightBatches() throws Exception {
+        CassAlertsWriter writer = writer(2, 1);
+
+        CompletableFuture<Void> written = writer.write(alerts("tenant1", 5), statements);
+
+        assertEquals(2, executed.size());
+        assertEquals(2, writer.getInFlight());
+        assertEquals(3, writer.getQueued());
+
+        results.get(0).set(null);
+        assertEquals(3, executed.size());
+        assertEquals(2, writer.getInFlight());
+
+        for (int i = 1; i < 5; i++) {
+            results.get(i).set(null);
+        }
+        written.get();
+        assertEquals(5, executed.size());
+        assertEquals(0, writer.getQueued());
+        assertEquals(5, writer.getWritten());
+    }
+
+    @Test
+    public void failedBatchFailsWrite() throws Exception {
+        CassAlertsWriter writer = writer(10, 1);
+
+        CompletableFuture<Void> written = writer.write(alerts("tenant1", 2), statements);
+        results.get(0).setException(new RuntimeException("Write timeout"));
+        results.get(1).set(null);
+
+        try {
+            written.get();
+            fail("Write should fail");
+        } catch (ExecutionException e) {
+            assertEquals("Write timeout", e.getCause().getMessage());
+        }
+        assertEquals(1, writer.getWritten());
+        assertEquals(1, writer.getFailures());
+        assertEquals(0, writer.getInFlight());
+    }
+
+    @Test
+    public void fullQueueRejectsWrite() throws Exception {
+        CassAlertsWriter writer = writer(1, 1, 2);
+
+        // the batches that do not fit are rejected at once, the write never waits for room
+        CompletableFuture<Void> written = writer.write(alerts("tenant1", 5), statements);
+
+        assertFalse(written.isDone());
+        assertEquals(1, executed.size());
+        assertEquals(2, writer.getQueued());
+        assertEquals(2, writer.getRejected());
+
+        results.get(0).set(null);
+        results.get(1).set(null);
+        results.get(2).set(null);
+        try {
+            written.get();
+            fail("Write should be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(3, writer.getWritten());
+        assertEquals(0, writer.getQueued());
+
+        // the released slots accept new writes
+        written = writer.write(alerts("tenant1", 2), statements);
+        results.get(3).set(null);
+        results.get(4).set(null);
+        written.get();
+        assertEquals(5, writer.getWritten());
+        assertEquals(2, writer.getRejected());
+    }
+
+    @Test
+    public void completionsRunOnCallbackExecutor() throws Exception {
+        AtomicInteger callbacks = new AtomicInteger();
+        CassAlertsWriter writer = new CassAlertsWriter(statement -> {
+            SettableFuture<Object> result = SettableFuture.create();
+            results.add(result);
+            return result;
+        }, 10, 1, 10, r -> {
+            callbacks.incrementAndGet();
+            r.run();
+        });
+
+        CompletableFuture<Void> written = writer.write(alerts("tenant1", 3), statements);
+        assertEquals(0, callbacks.get());
+        results.forEach(r -> r.set(null));
+        written.get();
+
+        assertEquals(3, callbacks.get());
+        assertEquals(3, writer.getWritten());
+    }
+}
@@ -16,15 +16,28 @@
  */
 package org.hawkular.alerts.engine;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.engine.cassandra.EmbeddedCassandra;
 import org.hawkular.alerts.engine.impl.AlertProperties;
+import org.hawkular.alerts.engine.impl.AlertsBuckets;
+import org.hawkular.alerts.engine.impl.CassAlertsMigration;
 import org.hawkular.alerts.engine.impl.CassCluster;
 import org.junit.AfterClass;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
+import org.junit.Test;
 import org.junit.runners.MethodSorters;
 import com.datastax.driver.core.Session;
+import com.google.gson.Gson;
 
 /**
  * Basic tests for CassDefinitionsServiceImpl
@@ -80,12 +93,74 @@ public class CassDefinitionsTest extends DefinitionsTest {
             We don't have a "purge" public method for Alerts as this info should theoretically remain in the database.
             But we are going to clean alerts data for a clean scenario between tests.
          */
-        session.execute("TRUNCATE " + keyspace + ".alerts");
-        session.execute("TRUNCATE " + keyspace + ".alerts_triggers");
-        session.execute("TRUNCATE " + keyspace + ".alerts_ctimes");
-        session.execute("TRUNCATE " + keyspace + ".alerts_statuses");
-        session.execute("TRUNCATE " + keyspace + ".alerts_severities");
+        session.execute("TRUNCATE " + keyspace + ".alerts_buckets");
+        session.execute("TRUNCATE " + keyspace + ".alerts_v2");
+        session.execute("TRUNCATE " + keyspace + ".alerts_triggers_v2");
+        session.execute("TRUNCATE " + keyspace + ".alerts_ctimes_v2");
+        session.execute("TRUNCATE " + keyspace + ".alerts_statuses_v2");
+        session.execute("TRUNCATE " + keyspace + ".alerts_severities_v2");
     }
 
-
+    @Test
+    public void test100MigrateLegacyAlerts() throws Exception {
+        /*
+            Alerts tables of schema version 1, partitioned only by tenantId
+         */
+        session.execute("CREATE TABLE " + keyspace + ".alerts (tenantId text, alertId text, payload text, "
+                + "PRIMARY KEY (tenantId, alertId))");
+        session.execute("CREATE TABLE " + keyspace + ".alerts_triggers (tenantId text, alertId text, "
+                + "triggerId text, PRIMARY KEY (tenantId, triggerId, alertId))");
+        session.execute("CREATE TABLE " + keyspace + ".alerts_ctimes (tenantId text, alertId text, "
+                + "ctime bigint, PRIMARY KEY (tenantId, ctime, alertId))");
+        session.execute("CREATE TABLE " + keyspace + ".alerts_statuses (tenantId text, alertId text, "
+                + "status text, PRIMARY KEY (tenantId, status, alertId))");
+        session.execute("CREATE TABLE " + keyspace + ".alerts_severities (tenantId text, alertId text, "
+                + "severity text, PRIMARY KEY (tenantId, severity, alertId))");
+
+        Gson gson = new Gson();
+        long day = AlertsBuckets.BUCKET_SIZE;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            Alert alert = new Alert(TEST_TENANT, "trigger-1", Severity.HIGH, null);
+            alert.setCtime(now - i * day);
+            alert.setAlertId("trigger-1|" + alert.getCtime());
+            session.execute("INSERT INTO " + keyspace + ".alerts (tenantId, alertId, payload) VALUES (?, ?, ?)",
+                    TEST_TENANT, alert.getAlertId(), gson.toJson(alert));
+            session.execute("INSERT INTO " + keyspace + ".alerts_triggers (tenantId, alertId, triggerId) "
+                    + "VALUES (?, ?, ?)", TEST_TENANT, alert.getAlertId(), alert.getTriggerId());
+            session.execute("INSERT INTO " + keyspace + ".alerts_ctimes (tenantId, alertId, ctime) "
+                    + "VALUES (?, ?, ?)", TEST_TENANT, alert.getAlertId(), alert.getCtime());
+            session.execute("INSERT INTO " + keyspace + ".alerts_statuses (tenantId, alertId, status) "
+                    + "VALUES (?, ?, ?)", TEST_TENANT, alert.getAlertId(), alert.getStatus().name());
+            session.execute("INSERT INTO " + keyspace + ".alerts_severities (tenantId, alertId, severity) "
+                    + "VALUES (?, ?, ?)", TEST_TENANT, alert.getAlertId(), alert.getSeverity().name());
+        }
+        session.execute("DELETE FROM " + keyspace + ".schema_version WHERE name = ?",
+                CassAlertsMigration.ALERTS_SCHEMA);
+
+        try {
+            assertTrue(CassAlertsMigration.migrate(session, keyspace));
+            assertFalse(CassAlertsMigration.migrate(session, keyspace));
+
+            assertEquals(3, alertsService.getAlerts(TEST_TENANT, null, null).size());
+
+            AlertsCriteria criteria = new AlertsCriteria();
+            criteria.setStartTime(now - day / 2);
+            criteria.setTriggerId("trigger-1");
+            criteria.setStatus(Alert.Status.OPEN);
+            criteria.setSeverity(Severity.HIGH);
+            List<Alert> result = alertsService.getAlerts(TEST_TENANT, criteria, null);
+            assertEquals(1, result.size());
+            assertEquals(now, result.get(0).getCtime());
+
+            criteria = new AlertsCriteria();
+            criteria.setAlertId("trigger-1|" + (now - 2 * day));
+            assertEquals(1, alertsService.getAlerts(TEST_TENANT, criteria, null).size());
+        } finally {
+            for (String table : new String[] { "alerts", "alerts_triggers", "alerts_ctimes", "alerts_statuses",
+                    "alerts_severities" }) {
+                session.execute("DROP TABLE " + keyspace + "." + table);
+            }
+        }
+    }
 }
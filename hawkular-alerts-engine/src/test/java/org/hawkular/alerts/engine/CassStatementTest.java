@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.engine.impl.CassStatement;
+import org.hawkular.alerts.engine.impl.StatementLatency;
+import org.junit.Test;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Tests for the concurrent preparation of {@link CassStatement} and the latencies of {@link StatementLatency}.
+ */
+public class CassStatementTest {
+
+    Map<String, AtomicInteger> prepared = new ConcurrentHashMap<>();
+
+    /*
+        Stand-in of a session that counts the preparations of each statement
+     */
+    Session session() {
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Session.class },
+                (proxy, method, args) -> {
+                    String cql = (String) args[0];
+                    prepared.computeIfAbsent(cql, s -> new AtomicInteger()).incrementAndGet();
+                    PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                            new Class<?>[] { PreparedStatement.class }, (p, m, a) -> cql);
+                    switch (method.getName()) {
+                        case "prepare":
+                            Thread.sleep(1);
+                            return ps;
+                        case "prepareAsync":
+                            return Futures.immediateFuture(ps);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Test
+    public void concurrentGetPreparesOnce() throws Exception {
+        Session session = session();
+        // not in the registry, so it is prepared on first use whatever the order of the tests
+        String cql = "SELECT payload FROM test.alerts WHERE tenantId = ? ";
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<PreparedStatement>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return CassStatement.get(session, cql);
+            }));
+        }
+        start.countDown();
+        PreparedStatement first = results.get(0).get();
+        for (Future<PreparedStatement> result : results) {
+            assertSame(first, result.get());
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertEquals(1, prepared.get(cql).get());
+    }
+
+    @Test
+    public void prepareAllPreparesEveryStatement() throws Exception {
+        Session session = session();
+        assertEquals(0, CassStatement.prepareAll(session));
+        assertTrue(CassStatement.getStatementNames().containsKey(CassStatement.INSERT_ALERT));
+        assertEquals(CassStatement.getStatementNames().size(), prepared.size());
+
+        // prepared statements are not prepared again on use
+        CassStatement.get(session, CassStatement.INSERT_ALERT);
+        CassStatement.get(session, CassStatement.UPDATE_TRIGGER);
+        assertEquals(1, prepared.get(CassStatement.INSERT_ALERT).get());
+        assertEquals(1, prepared.get(CassStatement.UPDATE_TRIGGER).get());
+    }
+
+    @Test
+    public void latencyPercentiles() {
+        StatementLatency latency = new StatementLatency();
+        for (int i = 0; i < 98; i++) {
+            latency.record(TimeUnit.MICROSECONDS.toNanos(100), false);
+        }
+        latency.record(TimeUnit.MILLISECONDS.toNanos(10), false);
+        latency.record(TimeUnit.MILLISECONDS.toNanos(50), true);
+
+        assertEquals(100, latency.getCount());
+        assertEquals(1, latency.getFailures());
+        assertEquals(50000, latency.getMaxLatency());
+        // percentiles are reported as the upper bound of a power of two bucket
+        assertEquals(128, latency.getPercentile(50));
+        assertEquals(16384, latency.getPercentile(99));
+        assertEquals(50000, latency.getPercentile(100));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.engine.impl.DataRoutingIndex;
+import org.junit.Test;
+
+/**
+ * Basic test of DataRoutingIndex.
+ */
+public class DataRoutingIndexTest {
+
+    @Test
+    public void indexAndRemoveTriggers() {
+        DataRoutingIndex index = new DataRoutingIndex();
+
+        List<Condition> t1 = new ArrayList<>();
+        t1.add(new ThresholdCondition("trigger-1", 2, 1, "NumericData-01", ThresholdCondition.Operator.LT, 10.0));
+        t1.add(new CompareCondition("trigger-1", 2, 2, "NumericData-02", CompareCondition.Operator.LT, 0.5,
+                "NumericData-03"));
+        index.addTrigger(null, "trigger-1", t1);
+
+        List<Condition> t2 = new ArrayList<>();
+        t2.add(new ThresholdCondition("trigger-2", "NumericData-01", ThresholdCondition.Operator.GT, 10.0));
+        index.addTrigger(null, "trigger-2", t2);
+
+        assertEquals(3, index.size());
+        assertTrue(index.isReferenced("NumericData-01"));
+        assertTrue(index.isReferenced("NumericData-03"));
+        assertFalse(index.isReferenced("NumericData-04"));
+        assertEquals(2, index.getConditions("NumericData-01").size());
+        assertEquals(2, index.getHits());
+        assertEquals(1, index.getMisses());
+
+        index.removeTrigger(null, "trigger-1");
+        assertEquals(1, index.size());
+        assertTrue(index.isReferenced("NumericData-01"));
+        assertFalse(index.isReferenced("NumericData-02"));
+        assertEquals(1, index.getConditions("NumericData-01").size());
+
+        // Reloading a trigger replaces its previous conditions
+        t2.clear();
+        t2.add(new ThresholdCondition("trigger-2", "NumericData-05", ThresholdCondition.Operator.GT, 10.0));
+        index.addTrigger(null, "trigger-2", t2);
+        assertFalse(index.isReferenced("NumericData-01"));
+        assertTrue(index.isReferenced("NumericData-05"));
+
+        index.clear();
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void tenantScopedData() {
+        DataRoutingIndex index = new DataRoutingIndex();
+
+        List<Condition> t1 = new ArrayList<>();
+        ThresholdCondition c1 = new ThresholdCondition("trigger-1", "NumericData-01", ThresholdCondition.Operator.GT,
+                10.0);
+        c1.setTenantId("tenantA");
+        t1.add(c1);
+        index.addTrigger("tenantA", "trigger-1", t1);
+
+        NumericData d = new NumericData("NumericData-01", 1, 15.0);
+        assertTrue(index.isReferenced(d));
+        d.setTenantId("tenantA");
+        assertTrue(index.isReferenced(d));
+        d.setTenantId("tenantB");
+        assertFalse(index.isReferenced(d));
+
+        // same triggerId and dataId in another tenant, removing the trigger of one tenant keeps the other
+        List<Condition> t1b = new ArrayList<>();
+        ThresholdCondition c1b = new ThresholdCondition("trigger-1", "NumericData-01", ThresholdCondition.Operator.GT,
+                10.0);
+        c1b.setTenantId("tenantB");
+        t1b.add(c1b);
+        index.addTrigger("tenantB", "trigger-1", t1b);
+        assertEquals(2, index.getConditions("NumericData-01").size());
+        assertTrue(index.isReferenced(d));
+
+        index.removeTrigger("tenantA", "trigger-1");
+        assertTrue(index.isReferenced(d));
+        d.setTenantId("tenantA");
+        assertFalse(index.isReferenced(d));
+    }
+}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -47,6 +48,7 @@ import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.DefinitionsSnapshot;
 import org.junit.Test;
 
 /**
@@ -563,7 +565,109 @@ public abstract class DefinitionsTest {
         System.out.println("first status: " + firstStatus + " last status: " + lastStatus);
 
         assertTrue(firstStatus.compareTo(lastStatus) > 0);
+
+        /*
+            Paging by continuation token, ctime ordering is read in the clustering order of the ctime index
+         */
+        for (String field : new String[] { AlertComparator.Field.CTIME.getText(),
+                AlertComparator.Field.SEVERITY.getText() }) {
+            pager = Pager.builder().withPageSize(10).orderByDescending(field).build();
+            Set<String> visited = new HashSet<>();
+            Alert previous = null;
+            page = alertsService.getAlerts(TEST_TENANT, null, pager);
+            while (!page.isEmpty()) {
+                assertEquals(107, page.getTotalSize());
+                for (Alert a : page) {
+                    assertTrue(a.getAlertId(), visited.add(a.getAlertId()));
+                    if (previous != null && field.equals(AlertComparator.Field.CTIME.getText())) {
+                        assertTrue(previous.getCtime() >= a.getCtime());
+                    }
+                    previous = a;
+                }
+                pager = ((Pager) page.getPageContext()).nextPage();
+                page = alertsService.getAlerts(TEST_TENANT, null, pager);
+            }
+            assertEquals(107, visited.size());
+        }
     }
 
+    @Test
+    public void test005AllDefinitions() throws Exception {
+        Collection<Trigger> triggers = definitionsService.getAllTriggers();
+        DefinitionsSnapshot snapshot = definitionsService.getAllDefinitions();
+        assertNotNull(snapshot);
+        assertEquals(snapshot.toString(), triggers.size(), snapshot.getTriggers().size());
+        assertEquals(snapshot.toString(), definitionsService.getAllConditions().size(), snapshot.getNumConditions());
+        assertEquals(snapshot.toString(), definitionsService.getAllDampenings().size(), snapshot.getNumDampenings());
+
+        for (Trigger t : snapshot.getTriggers()) {
+            Trigger stored = definitionsService.getTrigger(t.getTenantId(), t.getId());
+            assertNotNull(t.toString(), stored);
+            assertEquals(t.toString(), stored.getActions(), t.getActions());
+            assertEquals(t.toString(), definitionsService.getTriggerConditions(t.getTenantId(), t.getId(), null)
+                    .size(), snapshot.getTriggerConditions(t.getTenantId(), t.getId()).size());
+            assertEquals(t.toString(), definitionsService.getTriggerDampenings(t.getTenantId(), t.getId(), null)
+                    .size(), snapshot.getTriggerDampenings(t.getTenantId(), t.getId()).size());
+        }
+    }
 
+    @Test
+    public void test006AlertsStatusTransitions() throws Exception {
+        Trigger t = definitionsService.getTrigger(TEST_TENANT, "trigger-1");
+        assertNotNull(t);
+        ThresholdCondition threshold = (ThresholdCondition) definitionsService.getTriggerConditions(TEST_TENANT,
+                t.getId(), null).iterator().next();
+
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            NumericData data = new NumericData("NumericData-01", System.currentTimeMillis(), 5.0d);
+            Set<ConditionEval> evalSet = new HashSet<>();
+            evalSet.add(new ThresholdConditionEval(threshold, data));
+            List<Set<ConditionEval>> evals = new ArrayList<>();
+            evals.add(evalSet);
+            alerts.add(new Alert(TEST_TENANT, t.getId(), t.getSeverity(), evals));
+            Thread.sleep(2);
+        }
+        alertsService.addAlerts(alerts);
+
+        List<String> alertIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            alertIds.add(alerts.get(i).getAlertId());
+        }
+        alertsService.ackAlerts(TEST_TENANT, alertIds, "ackBy", "ackNotes");
+
+        // the status index is read when the status is the only criteria
+        AlertsCriteria criteria = new AlertsCriteria();
+        criteria.setStatus(Alert.Status.ACKNOWLEDGED);
+        List<Alert> result = alertsService.getAlerts(TEST_TENANT, criteria, null);
+        assertEquals(result.toString(), 3, result.size());
+        for (Alert a : result) {
+            assertTrue(a.toString(), alertIds.contains(a.getAlertId()));
+            assertEquals("ackBy", a.getAckBy());
+            assertTrue(a.getAckTime() > 0);
+        }
+        criteria.setStatus(Alert.Status.OPEN);
+        assertEquals(7, alertsService.getAlerts(TEST_TENANT, criteria, null).size());
+
+        alertsService.resolveAlertsForTrigger(TEST_TENANT, t.getId(), "AUTO", null, null);
+
+        criteria.setStatus(Alert.Status.OPEN);
+        assertEquals(0, alertsService.getAlerts(TEST_TENANT, criteria, null).size());
+        criteria.setStatus(Alert.Status.ACKNOWLEDGED);
+        assertEquals(0, alertsService.getAlerts(TEST_TENANT, criteria, null).size());
+        criteria.setStatus(Alert.Status.RESOLVED);
+        result = alertsService.getAlerts(TEST_TENANT, criteria, null);
+        assertEquals(10, result.size());
+        for (Alert a : result) {
+            assertEquals("AUTO", a.getResolvedBy());
+            assertTrue(a.getResolvedTime() > 0);
+        }
+
+        // resolving again keeps a single status
+        alertsService.resolveAlerts(TEST_TENANT, alertIds, "user", "notes", null);
+        result = alertsService.getAlerts(TEST_TENANT, criteria, null);
+        assertEquals(10, result.size());
+        criteria.setStatusSet(EnumSet.complementOf(EnumSet.of(Alert.Status.RESOLVED)));
+        assertEquals(0, alertsService.getAlerts(TEST_TENANT, criteria, null).size());
+    }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.model.data.StringData;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.TriggerTemplate.Match;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.NativeRulesEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Differential test between the drools and native RulesEngine implementations.
+ *
+ * The same definitions and the same random series of data are sent to both engines, and after every firing the
+ * generated alerts, auto-resolved and auto-disabled triggers, and trigger modes must be the same.
+ */
+public class DifferentialRulesEngineTest {
+
+    private static final int NUM_TRIGGERS = 50;
+    private static final int NUM_ROUNDS = 30;
+
+    Session drools = new Session(new DroolsRulesEngineImpl());
+    Session nativeRules = new Session(new NativeRulesEngineImpl());
+
+    @After
+    public void after() {
+        drools.rulesEngine.reset();
+        nativeRules.rulesEngine.reset();
+    }
+
+    @Test
+    public void randomDataSameResults() {
+        Random random = new Random(42L);
+        long timestamp = 1;
+
+        for (int round = 0; round < NUM_ROUNDS; round++) {
+            List<Data> datums = new ArrayList<>();
+            for (int i = 0; i < NUM_TRIGGERS; i++) {
+                int n = 1 + random.nextInt(3);
+                for (int j = 0; j < n; j++) {
+                    timestamp++;
+                    switch (i % 5) {
+                        case 0:
+                            datums.add(new NumericData("NumericData-" + i, timestamp, random.nextDouble() * 20));
+                            break;
+                        case 1:
+                        case 2:
+                            String dataId = (random.nextBoolean() ? "NumericData-a-" : "NumericData-b-") + i;
+                            datums.add(new NumericData(dataId, timestamp, random.nextDouble() * 200));
+                            break;
+                        case 3:
+                            datums.add(new Availability("AvailData-" + i, timestamp,
+                                    random.nextBoolean() ? AvailabilityType.UP : AvailabilityType.DOWN));
+                            break;
+                        default:
+                            if (random.nextBoolean()) {
+                                datums.add(new StringData("StringData-" + i, timestamp,
+                                        random.nextBoolean() ? "Fail" : "Ok"));
+                            } else {
+                                datums.add(new NumericData("NumericData-a-" + i, timestamp, random.nextDouble() * 20));
+                                datums.add(new NumericData("NumericData-b-" + i, timestamp, random.nextDouble() * 20));
+                            }
+                    }
+                }
+            }
+
+            drools.fire(datums);
+            nativeRules.fire(datums);
+
+            assertEquals("Round " + round, drools.alerts(), nativeRules.alerts());
+            assertEquals("Round " + round, drools.autoResolved(), nativeRules.autoResolved());
+            assertEquals("Round " + round, drools.disabled(), nativeRules.disabled());
+            assertEquals("Round " + round, drools.modes(), nativeRules.modes());
+        }
+
+        assertTrue(drools.totalAlerts > 0);
+        assertEquals(drools.totalAlerts, nativeRules.totalAlerts);
+    }
+
+    private static class Session {
+        RulesEngine rulesEngine;
+        List<Alert> alerts = new ArrayList<>();
+        Set<Dampening> pendingTimeouts = new HashSet<>();
+        Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+        Set<Trigger> disabledTriggers = new CopyOnWriteArraySet<>();
+        List<Trigger> triggers = new ArrayList<>();
+        int totalAlerts = 0;
+
+        Session(RulesEngine rulesEngine) {
+            this.rulesEngine = rulesEngine;
+            rulesEngine.addGlobal("alerts", alerts);
+            rulesEngine.addGlobal("pendingTimeouts", pendingTimeouts);
+            rulesEngine.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+            rulesEngine.addGlobal("disabledTriggers", disabledTriggers);
+
+            for (int i = 0; i < NUM_TRIGGERS; i++) {
+                String triggerId = "trigger-" + i;
+                Trigger t = new Trigger(triggerId, "Trigger-" + i);
+                t.setEnabled(true);
+                triggers.add(t);
+                switch (i % 5) {
+                    case 0:
+                        rulesEngine.addFact(new ThresholdCondition(triggerId, "NumericData-" + i,
+                                ThresholdCondition.Operator.LT, 10.0));
+                        rulesEngine.addFact(Dampening.forStrict(triggerId, Mode.FIRING, 2));
+                        break;
+                    case 1:
+                        rulesEngine.addFact(new ThresholdCondition(triggerId, 2, 1, "NumericData-a-" + i,
+                                ThresholdCondition.Operator.GT, 50.0));
+                        rulesEngine.addFact(new ThresholdRangeCondition(triggerId, 2, 2, "NumericData-b-" + i,
+                                ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE,
+                                20.0, 150.0, true));
+                        break;
+                    case 2:
+                        t.setFiringMatch(Match.ANY);
+                        t.setMode(Mode.FIRING);
+                        rulesEngine.addFact(new ThresholdCondition(triggerId, 2, 1, "NumericData-a-" + i,
+                                ThresholdCondition.Operator.GT, 180.0));
+                        rulesEngine.addFact(new ThresholdCondition(triggerId, 2, 2, "NumericData-b-" + i,
+                                ThresholdCondition.Operator.LT, 20.0));
+                        rulesEngine.addFact(Dampening.forRelaxedCount(triggerId, Mode.FIRING, 2, 4));
+                        break;
+                    case 3:
+                        t.setAutoResolve(true);
+                        t.setAutoResolveAlerts(true);
+                        rulesEngine.addFact(new AvailabilityCondition(triggerId, Mode.FIRING, "AvailData-" + i,
+                                AvailabilityCondition.Operator.DOWN));
+                        rulesEngine.addFact(Dampening.forStrict(triggerId, Mode.FIRING, 2));
+                        rulesEngine.addFact(new AvailabilityCondition(triggerId, Mode.AUTORESOLVE, "AvailData-" + i,
+                                AvailabilityCondition.Operator.UP));
+                        rulesEngine.addFact(Dampening.forStrict(triggerId, Mode.AUTORESOLVE, 3));
+                        break;
+                    default:
+                        t.setAutoDisable(i % 10 == 4);
+                        rulesEngine.addFact(new StringCondition(triggerId, 2, 1, "StringData-" + i,
+                                StringCondition.Operator.EQUAL, "Fail", false));
+                        rulesEngine.addFact(new CompareCondition(triggerId, 2, 2, "NumericData-a-" + i,
+                                CompareCondition.Operator.LT, 1.0, "NumericData-b-" + i));
+                }
+                rulesEngine.addFact(t);
+            }
+        }
+
+        void fire(List<Data> datums) {
+            alerts.clear();
+            autoResolvedTriggers.clear();
+            rulesEngine.addData(datums);
+            rulesEngine.fire();
+            totalAlerts += alerts.size();
+        }
+
+        List<String> alerts() {
+            List<String> result = new ArrayList<>();
+            for (Alert a : alerts) {
+                StringBuilder sb = new StringBuilder(a.getTriggerId());
+                for (Set<ConditionEval> evalSet : a.getEvalSets()) {
+                    Set<String> evals = new TreeSet<>();
+                    for (ConditionEval ce : evalSet) {
+                        evals.add(ce.getConditionSetIndex() + ":" + ce.getDataTimestamp() + ":" + ce.isMatch());
+                    }
+                    sb.append(evals);
+                }
+                result.add(sb.toString());
+            }
+            Collections.sort(result);
+            return result;
+        }
+
+        Set<String> autoResolved() {
+            Set<String> result = new TreeSet<>();
+            autoResolvedTriggers.keySet().forEach(t -> result.add(t.getId()));
+            return result;
+        }
+
+        Set<String> disabled() {
+            Set<String> result = new TreeSet<>();
+            disabledTriggers.forEach(t -> result.add(t.getId()));
+            return result;
+        }
+
+        List<String> modes() {
+            List<String> result = new ArrayList<>();
+            triggers.forEach(t -> result.add(t.getId() + ":" + t.getMode() + ":" + t.isEnabled()));
+            return result;
+        }
+    }
+}
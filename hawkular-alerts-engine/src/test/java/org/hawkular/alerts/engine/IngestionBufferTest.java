@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.hawkular.alerts.engine.impl.RingIngestionBuffer;
+import org.hawkular.alerts.engine.service.IngestionBuffer;
+import org.hawkular.alerts.engine.service.IngestionBuffer.OverflowPolicy;
+import org.junit.Test;
+
+/**
+ * Basic test of IngestionBuffer implementation.
+ */
+public class IngestionBufferTest {
+
+    @Test
+    public void capacityAndOrder() {
+        IngestionBuffer<Integer> buffer = new RingIngestionBuffer<>(5, OverflowPolicy.REJECT);
+        assertEquals(8, buffer.getCapacity());
+        assertTrue(buffer.isEmpty());
+
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.add(i));
+        }
+        assertEquals(8, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(drained, 3));
+        assertEquals(5, buffer.drainTo(drained, Integer.MAX_VALUE));
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i, drained.get(i).intValue());
+        }
+        assertTrue(buffer.isEmpty());
+        assertEquals(8, buffer.getEnqueued());
+    }
+
+    @Test
+    public void overflowPolicies() {
+        IngestionBuffer<Integer> reject = new RingIngestionBuffer<>(2, OverflowPolicy.REJECT);
+        reject.add(1);
+        reject.add(2);
+        try {
+            reject.add(3);
+            fail("Buffer full should reject");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(1, reject.getRejects());
+
+        IngestionBuffer<Integer> dropNewest = new RingIngestionBuffer<>(2, OverflowPolicy.DROP_NEWEST);
+        dropNewest.add(1);
+        dropNewest.add(2);
+        assertFalse(dropNewest.add(3));
+        assertEquals(1, dropNewest.getDrops());
+        List<Integer> drained = new ArrayList<>();
+        dropNewest.drainTo(drained, Integer.MAX_VALUE);
+        assertEquals("[1, 2]", drained.toString());
+
+        IngestionBuffer<Integer> dropOldest = new RingIngestionBuffer<>(2, OverflowPolicy.DROP_OLDEST);
+        final AtomicBoolean full = new AtomicBoolean(false);
+        dropOldest.setFullListener(() -> full.set(true));
+        dropOldest.add(1);
+        dropOldest.add(2);
+        assertTrue(dropOldest.add(3));
+        assertTrue(full.get());
+        assertEquals(1, dropOldest.getDrops());
+        drained.clear();
+        dropOldest.drainTo(drained, Integer.MAX_VALUE);
+        assertEquals("[2, 3]", drained.toString());
+    }
+
+    @Test
+    public void concurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 20000;
+        final IngestionBuffer<Integer> buffer = new RingIngestionBuffer<>(1024, OverflowPolicy.BLOCK);
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        final CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    buffer.add(base + i);
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> received = new HashSet<>();
+        List<Integer> drained = new ArrayList<>();
+        while (done.getCount() > 0 || !buffer.isEmpty()) {
+            drained.clear();
+            buffer.drainTo(drained, 512);
+            received.addAll(drained);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(producers * perProducer, received.size());
+        assertEquals(producers * perProducer, buffer.getEnqueued());
+        assertEquals(0, buffer.getDrops());
+    }
+}
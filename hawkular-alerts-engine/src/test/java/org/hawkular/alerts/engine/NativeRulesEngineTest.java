@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.NativeRulesEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.junit.Test;
+
+/**
+ * Runs the RulesEngineTest scenarios against the native RulesEngine implementation, so both implementations are
+ * checked against the same expected results.
+ */
+public class NativeRulesEngineTest extends RulesEngineTest {
+
+    @Override
+    protected RulesEngine createRulesEngine() {
+        return new NativeRulesEngineImpl();
+    }
+
+    /*
+        Definitions are added and removed by reloads while the engine timer fires the rules. The churned Triggers
+        reference the same dataId as the fired one, so the fired Conditions are updated during the evaluation.
+     */
+    @Test
+    public void concurrentAddAndFireTest() throws Exception {
+        final int numData = 2000;
+
+        Trigger t1 = new Trigger("trigger-1", "Fired");
+        t1.setEnabled(true);
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(new ThresholdCondition("trigger-1", 1, 1, "NumericData-01",
+                ThresholdCondition.Operator.GT, 0.0));
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch fired = new CountDownLatch(1);
+        Thread reloads = new Thread(() -> {
+            try {
+                for (int i = 0; fired.getCount() > 0; i++) {
+                    String triggerId = "trigger-churn-" + (i % 50);
+                    Trigger t = new Trigger(triggerId, "Churn");
+                    t.setEnabled(true);
+                    rulesEngine.addFact(t);
+                    rulesEngine.addFact(new ThresholdCondition(triggerId, 1, 1, "NumericData-01",
+                            ThresholdCondition.Operator.GT, 1000.0));
+                    if (i % 3 == 0) {
+                        rulesEngine.removeTriggerFacts(null, "trigger-churn-" + ((i + 25) % 50));
+                    }
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        reloads.start();
+        try {
+            for (int i = 0; i < numData; i++) {
+                rulesEngine.addData(new NumericData("NumericData-01", i + 1, 1.0));
+                rulesEngine.fire();
+            }
+        } finally {
+            fired.countDown();
+            reloads.join();
+        }
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        assertEquals(numData, alerts.size());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.engine.impl.OpenAlertsIndex;
+import org.junit.Test;
+
+/**
+ * Tests for the unresolved alerts by trigger of {@link OpenAlertsIndex}.
+ */
+public class OpenAlertsIndexTest {
+
+    Alert alert(String triggerId, long ctime, Alert.Status status) {
+        Alert alert = new Alert("tenant", triggerId, Severity.LOW, null);
+        alert.setCtime(ctime);
+        alert.setAlertId(triggerId + "|" + ctime);
+        alert.setStatus(status);
+        return alert;
+    }
+
+    @Test
+    public void triggersAreIndexedOnceLoaded() {
+        OpenAlertsIndex index = new OpenAlertsIndex(100);
+        Alert a1 = alert("trigger1", 1, Alert.Status.OPEN);
+        Alert a2 = alert("trigger1", 2, Alert.Status.OPEN);
+
+        // not loaded, alerts are ignored
+        index.update(Arrays.asList(a1));
+        assertNull(index.get("tenant", "trigger1"));
+        assertEquals(0, index.size());
+
+        Object token = index.load("tenant", "trigger1");
+        assertNull(index.get("tenant", "trigger1"));
+        index.loaded("tenant", "trigger1", token, Arrays.asList(a1.getAlertId()));
+        assertEquals(Collections.singleton(a1.getAlertId()), index.get("tenant", "trigger1"));
+
+        index.update(Arrays.asList(a2));
+        assertEquals(2, index.get("tenant", "trigger1").size());
+
+        a1.setStatus(Alert.Status.ACKNOWLEDGED);
+        a2.setStatus(Alert.Status.RESOLVED);
+        index.update(Arrays.asList(a1, a2));
+        assertEquals(Collections.singleton(a1.getAlertId()), index.get("tenant", "trigger1"));
+        assertNull(index.get("tenant2", "trigger1"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void updatesWhileLoadingAreMerged() {
+        OpenAlertsIndex index = new OpenAlertsIndex(100);
+        Alert a1 = alert("trigger1", 1, Alert.Status.OPEN);
+        Alert a2 = alert("trigger1", 2, Alert.Status.OPEN);
+        Alert a3 = alert("trigger1", 3, Alert.Status.OPEN);
+
+        Object token = index.load("tenant", "trigger1");
+        a1.setStatus(Alert.Status.RESOLVED);
+        index.update(Arrays.asList(a1, a3));
+        // the store read saw a1 and a2 unresolved, but not a3
+        index.loaded("tenant", "trigger1", token, Arrays.asList(a1.getAlertId(), a2.getAlertId()));
+
+        assertEquals(2, index.get("tenant", "trigger1").size());
+        assertTrue(index.get("tenant", "trigger1").contains(a2.getAlertId()));
+        assertTrue(index.get("tenant", "trigger1").contains(a3.getAlertId()));
+    }
+
+    @Test
+    public void indexIsBounded() {
+        OpenAlertsIndex index = new OpenAlertsIndex(4);
+        index.loaded("tenant", "trigger1", index.load("tenant", "trigger1"), Collections.emptyList());
+        index.loaded("tenant", "trigger2", index.load("tenant", "trigger2"), Collections.emptyList());
+        index.update(Arrays.asList(alert("trigger1", 1, Alert.Status.OPEN), alert("trigger1", 2, Alert.Status.OPEN)));
+        assertEquals(4, index.size());
+
+        // trigger1 grows over the bound, the least recently used trigger2 is evicted
+        index.update(Arrays.asList(alert("trigger1", 3, Alert.Status.OPEN)));
+        assertNull(index.get("tenant", "trigger2"));
+        assertEquals(3, index.get("tenant", "trigger1").size());
+        assertEquals(4, index.size());
+
+        // trigger1 alone grows over the bound and it is dropped
+        index.update(Arrays.asList(alert("trigger1", 4, Alert.Status.OPEN)));
+        assertNull(index.get("tenant", "trigger1"));
+        assertEquals(0, index.size());
+
+        // failed writes drop the trigger, it is loaded again
+        index.loaded("tenant", "trigger2", index.load("tenant", "trigger2"), Collections.singleton("trigger2|5"));
+        assertEquals(Collections.singleton("trigger2|5"), index.get("tenant", "trigger2"));
+        index.invalidate(Arrays.asList(alert("trigger2", 5, Alert.Status.OPEN)));
+        assertNull(index.get("tenant", "trigger2"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void newTriggersEvictLeastRecentlyUsed() {
+        OpenAlertsIndex index = new OpenAlertsIndex(3);
+        for (int i = 1; i <= 3; i++) {
+            index.loaded("tenant", "trigger" + i, index.load("tenant", "trigger" + i), Collections.emptyList());
+        }
+        assertEquals(3, index.size());
+
+        // trigger1 is used, trigger2 is now the least recently used
+        index.get("tenant", "trigger1");
+        index.loaded("tenant", "trigger4", index.load("tenant", "trigger4"), Collections.emptyList());
+
+        assertEquals(3, index.size());
+        assertNull(index.get("tenant", "trigger2"));
+        assertEquals(Collections.emptySet(), index.get("tenant", "trigger1"));
+        assertEquals(Collections.emptySet(), index.get("tenant", "trigger3"));
+        assertEquals(Collections.emptySet(), index.get("tenant", "trigger4"));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.engine.impl.AlertCodec;
+import org.hawkular.alerts.engine.impl.BinaryAlertCodec;
+import org.hawkular.alerts.engine.impl.JsonAlertCodec;
+import org.jboss.logging.Logger;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * <p>
+ * Performance tests of the alert payload codecs.
+ * </p>
+ * Throughput of encode, decode and thin decode, and payload size, of the json and binary codecs for alerts with a
+ * growing number of eval sets. Each measure runs warmup iterations before the measured ones, and reports the best
+ * measured iteration.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfAlertCodecTest {
+    private static final Logger log = Logger.getLogger(PerfAlertCodecTest.class);
+    private static final int NUM_ALERTS = 1000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 5;
+
+    static JsonAlertCodec json = new JsonAlertCodec();
+    static BinaryAlertCodec binary = new BinaryAlertCodec(json);
+
+    // keeps the results reachable so the measured work is not eliminated
+    static long blackhole;
+
+    private long opsPerSecond(List<Alert> alerts, Consumer<Alert> op) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            long start = System.nanoTime();
+            alerts.forEach(op);
+            long time = System.nanoTime() - start;
+            if (i >= WARMUP_ITERATIONS) {
+                best = Math.min(best, time);
+            }
+        }
+        return alerts.size() * 1000000000L / Math.max(1, best);
+    }
+
+    private void measure(AlertCodec codec, int numEvalSets) {
+        List<Alert> alerts = new ArrayList<>();
+        List<ByteBuffer> payloads = new ArrayList<>();
+        long size = 0;
+        for (int i = 0; i < NUM_ALERTS; i++) {
+            Alert alert = AlertCodecTest.alert(numEvalSets);
+            alerts.add(alert);
+            ByteBuffer payload = codec.encode(alert);
+            payloads.add(payload);
+            size += payload.remaining();
+        }
+        assertEquals(json.toJson(alerts.get(0)), json.toJson(codec.decode(payloads.get(0), false)));
+
+        long encode = opsPerSecond(alerts, a -> blackhole += codec.encode(a).remaining());
+        List<Alert> indexes = new ArrayList<>(alerts);
+        int[] next = new int[1];
+        long decode = opsPerSecond(indexes, a -> blackhole += codec.decode(payloads.get(next[0]++ % NUM_ALERTS),
+                false).getCtime());
+        long thin = opsPerSecond(indexes, a -> blackhole += codec.decode(payloads.get(next[0]++ % NUM_ALERTS),
+                true).getCtime());
+
+        log.info("Report: " + codec.getName() + " - EvalSets: " + numEvalSets + " - Avg size (bytes): " +
+                (size / NUM_ALERTS) + " - Encode ops/s: " + encode + " - Decode ops/s: " + decode +
+                " - Thin decode ops/s: " + thin);
+    }
+
+    @Test
+    public void test000Json() {
+        for (int numEvalSets : new int[] { 1, 10, 50 }) {
+            measure(json, numEvalSets);
+        }
+    }
+
+    @Test
+    public void test001Binary() {
+        for (int numEvalSets : new int[] { 1, 10, 50 }) {
+            measure(binary, numEvalSets);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.DefinitionsSnapshot;
+import org.hawkular.alerts.engine.impl.AlertsEngineImpl;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.apache.log4j.Level;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * <p>
+ * Performance tests of the initial load of the definitions in AlertsEngineImpl.
+ * </p>
+ * Definitions are read from a stub store which simulates the latency of a round trip per query or per page of rows,
+ * to compare the per trigger queries with the bulk snapshot of the definitions.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfAlertsEngineStartupTest {
+    private static final Logger log = Logger.getLogger(PerfAlertsEngineStartupTest.class);
+    private static final String TENANT = "tenant";
+    private static final long ROUND_TRIP_NANOS = 200 * 1000;
+    private static final int PAGE_SIZE = 5000;
+
+    List<Trigger> triggers = new ArrayList<>();
+    Map<String, List<Condition>> conditions = new HashMap<>();
+    Map<String, List<Dampening>> dampenings = new HashMap<>();
+    AtomicInteger roundTrips = new AtomicInteger();
+    DefinitionsService definitions = (DefinitionsService) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class[] { DefinitionsService.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAllTriggers":
+                        // actions fetched per trigger row
+                        roundTrip(pages(triggers.size()) + triggers.size());
+                        return triggers;
+                    case "getTriggerConditions":
+                        roundTrip(1);
+                        return conditions.get((String) args[1]);
+                    case "getTriggerDampenings":
+                        roundTrip(1);
+                        return dampenings.get((String) args[1]);
+                    case "getAllDefinitions":
+                        // triggers, actions, conditions and dampenings scans
+                        roundTrip(4 * pages(triggers.size()));
+                        return snapshot();
+                    default:
+                        return null;
+                }
+            });
+    AlertsEngineImpl engine;
+
+    @BeforeClass
+    public static void quietEngine() {
+        // the engine logs every fact at debug level, it would dominate the load time
+        org.apache.log4j.Logger.getLogger("org.hawkular.alerts.engine.impl").setLevel(Level.INFO);
+    }
+
+    @After
+    public void after() {
+        if (engine != null) {
+            engine.clear();
+        }
+    }
+
+    private int pages(int rows) {
+        return rows / PAGE_SIZE + 1;
+    }
+
+    private void roundTrip(int n) {
+        roundTrips.addAndGet(n);
+        for (int i = 0; i < n; i++) {
+            LockSupport.parkNanos(ROUND_TRIP_NANOS);
+        }
+    }
+
+    private DefinitionsSnapshot snapshot() {
+        List<Condition> allConditions = new ArrayList<>();
+        conditions.values().forEach(allConditions::addAll);
+        List<Dampening> allDampenings = new ArrayList<>();
+        dampenings.values().forEach(allDampenings::addAll);
+        return new DefinitionsSnapshot(triggers, allConditions, allDampenings);
+    }
+
+    private void createDefinitions(int nTriggers) {
+        for (int i = 0; i < nTriggers; i++) {
+            String triggerId = "trigger-" + i;
+            Trigger t = new Trigger(triggerId, "Threshold-LT");
+            t.setTenantId(TENANT);
+            t.setEnabled(true);
+            triggers.add(t);
+            ThresholdCondition c = new ThresholdCondition(triggerId, "NumericData-" + i,
+                    ThresholdCondition.Operator.LT, 10.0);
+            c.setTenantId(TENANT);
+            List<Condition> triggerConditions = new ArrayList<>();
+            triggerConditions.add(c);
+            conditions.put(triggerId, triggerConditions);
+            Dampening d = Dampening.forStrict(triggerId, Trigger.Mode.FIRING, 2);
+            d.setTenantId(TENANT);
+            List<Dampening> triggerDampenings = new ArrayList<>();
+            triggerDampenings.add(d);
+            dampenings.put(triggerId, triggerDampenings);
+        }
+    }
+
+    /*
+        The definitions fetch of the initial load before the bulk snapshot: one query for the triggers with one
+        query per trigger for its actions, then one query per trigger for conditions and dampenings.
+     */
+    protected void perfPerTrigger(String test, int nTriggers) throws Exception {
+        createDefinitions(nTriggers);
+
+        long start = System.currentTimeMillis();
+
+        int nConditions = 0;
+        int nDampenings = 0;
+        for (Trigger trigger : definitions.getAllTriggers()) {
+            Collection<Condition> triggerConditions = definitions.getTriggerConditions(trigger.getTenantId(),
+                    trigger.getId(), null);
+            Collection<Dampening> triggerDampenings = definitions.getTriggerDampenings(trigger.getTenantId(),
+                    trigger.getId(), null);
+            nConditions += triggerConditions.size();
+            nDampenings += triggerDampenings.size();
+        }
+
+        long stop = System.currentTimeMillis();
+
+        assert nConditions == nTriggers : nConditions;
+        assert nDampenings == nTriggers : nDampenings;
+        report(test, nTriggers, start, stop);
+    }
+
+    protected void perfSnapshot(String test, int nTriggers) throws Exception {
+        createDefinitions(nTriggers);
+        engine = new AlertsEngineImpl();
+        engine.setRules(new DroolsRulesEngineImpl());
+        engine.setDefinitions(definitions);
+
+        long start = System.currentTimeMillis();
+
+        engine.reload();
+
+        long stop = System.currentTimeMillis();
+
+        assert engine.getDataRoutingIndex().isReferenced("NumericData-" + (nTriggers - 1));
+        report(test, nTriggers, start, stop);
+    }
+
+    private void report(String test, int nTriggers, long start, long stop) {
+        log.info("Report: " + test + " -- Triggers: " + nTriggers + " -- Round trips: " + roundTrips.get() +
+                " -- Total: " + (stop - start) + " ms ");
+    }
+
+    @Test
+    public void perf000PerTriggerSmall() throws Exception {
+        perfPerTrigger("perf000PerTriggerSmall", 1000);
+    }
+
+    @Test
+    public void perf001PerTriggerMedium() throws Exception {
+        perfPerTrigger("perf001PerTriggerMedium", 10000);
+    }
+
+    @Test
+    public void perf002SnapshotSmall() throws Exception {
+        perfSnapshot("perf002SnapshotSmall", 1000);
+    }
+
+    @Test
+    public void perf003SnapshotMedium() throws Exception {
+        perfSnapshot("perf003SnapshotMedium", 10000);
+    }
+
+    @Test
+    public void perf004SnapshotLarge() throws Exception {
+        perfSnapshot("perf004SnapshotLarge", 100000);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.engine.impl.CassAlertsWriter;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * <p>
+ * Performance tests of the Alerts writes.
+ * </p>
+ * Writes are executed by a stand-in of the cluster with a fixed number of workers, where each request costs a
+ * fixed overhead plus a cost per statement, to compare a request per statement with unlogged batches per tenant.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfAlertsWriterTest {
+    private static final Logger log = Logger.getLogger(PerfAlertsWriterTest.class);
+    private static final int WORKERS = 8;
+    private static final long REQUEST_NANOS = 200 * 1000;
+    private static final long STATEMENT_NANOS = 20 * 1000;
+    private static final int STATEMENTS_PER_ALERT = 5;
+    private static final int NUM_TENANTS = 10;
+
+    ExecutorService pool = Executors.newFixedThreadPool(WORKERS);
+    ListeningExecutorService cluster = MoreExecutors.listeningDecorator(pool);
+
+    @After
+    public void after() {
+        pool.shutdownNow();
+    }
+
+    private ListenableFuture<?> execute(Statement statement) {
+        int n = statement instanceof BatchStatement ? ((BatchStatement) statement).size() : 1;
+        return cluster.submit(() -> LockSupport.parkNanos(REQUEST_NANOS + n * STATEMENT_NANOS));
+    }
+
+    private List<Alert> alerts(int n) {
+        List<Alert> alerts = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            alerts.add(new Alert("tenant" + (i % NUM_TENANTS), "trigger" + i, Severity.LOW, null));
+        }
+        return alerts;
+    }
+
+    private List<Statement> statements(Alert a) {
+        List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < STATEMENTS_PER_ALERT; i++) {
+            statements.add(new SimpleStatement("INSERT " + i + " " + a.getTenantId() + " " + a.getTriggerId()));
+        }
+        return statements;
+    }
+
+    @Test
+    public void test000StatementPerRequest() throws Exception {
+        List<Alert> alerts = alerts(10000);
+
+        long start = System.currentTimeMillis();
+        List<ListenableFuture<?>> futures = new ArrayList<>();
+        for (Alert a : alerts) {
+            for (Statement s : statements(a)) {
+                futures.add(execute(s));
+            }
+        }
+        Futures.allAsList(futures).get();
+        long time = System.currentTimeMillis() - start;
+
+        log.info("Report: StatementPerRequest - Alerts: " + alerts.size() + " - Requests: " + futures.size() +
+                " - Time (ms): " + time + " - Alerts/s: " + (alerts.size() * 1000L / Math.max(1, time)));
+    }
+
+    @Test
+    public void test001UnloggedBatches() throws Exception {
+        List<Alert> alerts = alerts(10000);
+        CassAlertsWriter writer = new CassAlertsWriter(this::execute, 64, 10);
+
+        long start = System.currentTimeMillis();
+        writer.write(alerts, this::statements).get();
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(alerts.size(), writer.getWritten());
+        log.info("Report: UnloggedBatches - Alerts: " + alerts.size() + " - Requests: " + writer.getBatches() +
+                " - Time (ms): " + time + " - Alerts/s: " + (alerts.size() * 1000L / Math.max(1, time)) +
+                " - " + writer);
+    }
+}
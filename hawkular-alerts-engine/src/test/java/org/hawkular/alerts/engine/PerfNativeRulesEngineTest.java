@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import org.hawkular.alerts.engine.impl.NativeRulesEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+
+/**
+ * <p>
+ * Performance tests of NativeRulesEngineImpl.
+ * </p>
+ * Same scenarios than {@link PerfRulesEngineTest}, to compare the native evaluation with the drools one.
+ */
+public class PerfNativeRulesEngineTest extends PerfRulesEngineTest {
+
+    @Override
+    protected RulesEngine createRulesEngine() {
+        return new NativeRulesEngineImpl();
+    }
+}
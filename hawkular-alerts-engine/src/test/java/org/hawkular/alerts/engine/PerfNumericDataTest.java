@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.jboss.logging.Logger;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * <p>
+ * Performance tests of the numeric data model.
+ * </p>
+ * Throughput and allocated bytes per sample of the numeric hot path: building a NumericData, evaluating it against a
+ * threshold condition, ordering it against the previous sample and hashing it. Each measure runs warmup iterations
+ * before the measured ones, and reports the best measured iteration.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfNumericDataTest {
+    private static final Logger log = Logger.getLogger(PerfNumericDataTest.class);
+    private static final int NUM_SAMPLES = 1000000;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 5;
+
+    static ThresholdCondition condition = new ThresholdCondition("trigger-1", "NumericData-01",
+            ThresholdCondition.Operator.GT, 50.0);
+
+    // keeps the results reachable so the measured work and its allocations are not eliminated
+    static long blackhole;
+    static Object[] sink = new Object[1024];
+    static NumericData previous = new NumericData("NumericData-01", 1, 0.0);
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private void measure(String name, IntConsumer op) {
+        long best = Long.MAX_VALUE;
+        long bytes = Long.MAX_VALUE;
+        for (int i = 0; i < WARMUP_ITERATIONS + ITERATIONS; i++) {
+            long startBytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (int j = 0; j < NUM_SAMPLES; j++) {
+                op.accept(j);
+            }
+            long time = System.nanoTime() - start;
+            long allocated = allocatedBytes() - startBytes;
+            if (i >= WARMUP_ITERATIONS) {
+                best = Math.min(best, time);
+                bytes = Math.min(bytes, allocated);
+            }
+        }
+        log.info("Report: " + name + " - Samples/s: " + (NUM_SAMPLES * 1000000000L / Math.max(1, best)) +
+                " - Allocated (bytes/sample): " + (allocatedBytes() < 0 ? "n/a" : (bytes / NUM_SAMPLES)));
+    }
+
+    private static NumericData sample(int i) {
+        return new NumericData("NumericData-01", i + 2, (double) (i % 100));
+    }
+
+    @Test
+    public void test000Create() {
+        measure("Create", i -> sink[i & 1023] = sample(i));
+    }
+
+    @Test
+    public void test001Evaluate() {
+        ThresholdConditionEval eval = new ThresholdConditionEval(condition, sample(75));
+        assertEquals(true, eval.isMatch());
+        assertEquals(75.0, eval.getValue(), 0);
+
+        measure("Create and evaluate", i -> {
+            ThresholdConditionEval ce = new ThresholdConditionEval(condition, sample(i));
+            blackhole += ce.isMatch() ? 1 : 0;
+            sink[i & 1023] = ce;
+        });
+    }
+
+    @Test
+    public void test002OrderAndHash() {
+        measure("Create, order and hash", i -> {
+            NumericData data = sample(i);
+            blackhole += data.compareTo(previous) + data.hashCode();
+            previous = data;
+        });
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.PartitionedRulesEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * <p>
+ * Performance tests of PartitionedRulesEngineImpl.
+ * </p>
+ * Same scenarios than {@link PerfRulesEngineTest} but evaluated with one partition per available core, plus a
+ * scaling test that runs the same load with an increasing number of partitions.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfPartitionedRulesEngineTest extends PerfRulesEngineTest {
+    private static final Logger log = Logger.getLogger(PerfPartitionedRulesEngineTest.class);
+
+    private static final int PARTITIONS = Runtime.getRuntime().availableProcessors();
+
+    @Override
+    protected RulesEngine createRulesEngine() {
+        return new PartitionedRulesEngineImpl(PARTITIONS, DroolsRulesEngineImpl::new);
+    }
+
+    @After
+    @Override
+    public void after() {
+        super.after();
+        ((PartitionedRulesEngineImpl) rulesEngine).shutdown();
+    }
+
+    @Test
+    public void perf100ThresholdScaling() throws Exception {
+        int max = Math.max(4, PARTITIONS);
+        log.info("Scaling up to " + max + " partitions on " + PARTITIONS + " cores");
+        for (int n = 1; n <= max; n *= 2) {
+            after();
+            rulesEngine = new PartitionedRulesEngineImpl(n, DroolsRulesEngineImpl::new);
+            before();
+            perfThreshold("perf100ThresholdScaling-" + n + "-Partitions", 10000, 10000, 0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.engine.impl.CassAlertsWriter;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * <p>
+ * Performance tests of resolving the alerts of a trigger.
+ * </p>
+ * Statements are executed by a stand-in of the cluster with a fixed number of workers, where each request costs a
+ * fixed overhead plus a cost per statement, to compare the status transition of an alert at a time, reading its
+ * status index before the writes, with the bulk transition in unlogged batches per partition.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfResolveAlertsTest {
+    private static final Logger log = Logger.getLogger(PerfResolveAlertsTest.class);
+    private static final int WORKERS = 8;
+    private static final long REQUEST_NANOS = 200 * 1000;
+    private static final long STATEMENT_NANOS = 20 * 1000;
+    private static final int NUM_ALERTS = 10000;
+
+    ExecutorService pool = Executors.newFixedThreadPool(WORKERS);
+    ListeningExecutorService cluster = MoreExecutors.listeningDecorator(pool);
+    AtomicInteger requests = new AtomicInteger();
+
+    @After
+    public void after() {
+        pool.shutdownNow();
+    }
+
+    private ListenableFuture<?> execute(Statement statement) {
+        requests.incrementAndGet();
+        int n = statement instanceof BatchStatement ? ((BatchStatement) statement).size() : 1;
+        return cluster.submit(() -> LockSupport.parkNanos(REQUEST_NANOS + n * STATEMENT_NANOS));
+    }
+
+    private List<Alert> alerts() {
+        List<Alert> alerts = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < NUM_ALERTS; i++) {
+            // a flapping trigger, its alerts spread over a few days
+            Alert alert = new Alert("tenant", "trigger", Severity.LOW, null);
+            alert.setCtime(now - i * 60 * 1000L);
+            alert.setAlertId("trigger|" + alert.getCtime());
+            alerts.add(alert);
+        }
+        return alerts;
+    }
+
+    @Test
+    public void test000AlertAtATime() throws Exception {
+        List<Alert> alerts = alerts();
+
+        long start = System.currentTimeMillis();
+        for (Alert a : alerts) {
+            List<ListenableFuture<?>> selects = new ArrayList<>();
+            for (Alert.Status status : Alert.Status.values()) {
+                selects.add(execute(new SimpleStatement("SELECT " + status + " " + a.getAlertId())));
+            }
+            Futures.allAsList(selects).get();
+            a.setStatus(Alert.Status.RESOLVED);
+            execute(new SimpleStatement("DELETE OPEN " + a.getAlertId())).get();
+            execute(new SimpleStatement("INSERT RESOLVED " + a.getAlertId())).get();
+            execute(new SimpleStatement("UPDATE " + a.getAlertId())).get();
+        }
+        long time = System.currentTimeMillis() - start;
+
+        log.info("Report: AlertAtATime - Alerts: " + alerts.size() + " - Requests: " + requests.get() +
+                " - Time (ms): " + time + " - Alerts/s: " + (alerts.size() * 1000L / Math.max(1, time)));
+    }
+
+    @Test
+    public void test001BulkTransition() throws Exception {
+        List<Alert> alerts = alerts();
+        CassAlertsWriter writer = new CassAlertsWriter(this::execute, 64, 10);
+
+        long start = System.currentTimeMillis();
+        alerts.forEach(a -> a.setStatus(Alert.Status.RESOLVED));
+        writer.write(alerts, a -> Arrays.asList(new SimpleStatement("DELETE OPEN " + a.getAlertId()),
+                new SimpleStatement("INSERT RESOLVED " + a.getAlertId()),
+                new SimpleStatement("UPDATE " + a.getAlertId()))).get();
+        long time = System.currentTimeMillis() - start;
+
+        assertEquals(alerts.size(), writer.getWritten());
+        log.info("Report: BulkTransition - Alerts: " + alerts.size() + " - Requests: " + requests.get() +
+                " - Time (ms): " + time + " - Alerts/s: " + (alerts.size() * 1000L / Math.max(1, time)) +
+                " - " + writer);
+    }
+}
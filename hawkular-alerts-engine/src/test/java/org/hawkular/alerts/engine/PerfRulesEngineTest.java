@@ -18,9 +18,12 @@ package org.hawkular.alerts.engine;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.hawkular.alerts.api.model.condition.Alert;
 import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
 import org.hawkular.alerts.api.model.condition.CompareCondition;
@@ -56,11 +59,15 @@ import org.junit.runners.MethodSorters;
 public class PerfRulesEngineTest {
     private static final Logger log = Logger.getLogger(PerfRulesEngineTest.class);
 
-    RulesEngine rulesEngine = new DroolsRulesEngineImpl();
-    List<Alert> alerts = new ArrayList<>();
-    Set<Dampening> pendingTimeouts = new HashSet<>();
+    RulesEngine rulesEngine = createRulesEngine();
+    List<Alert> alerts = Collections.synchronizedList(new ArrayList<>());
+    Set<Dampening> pendingTimeouts = ConcurrentHashMap.newKeySet();
     Set<Data> datums = new HashSet<Data>();
 
+    protected RulesEngine createRulesEngine() {
+        return new DroolsRulesEngineImpl();
+    }
+
     @Before
     public void before() {
         PerfLogger perfLogger = new PerfLogger("PERFLOGGER");
@@ -77,7 +84,7 @@ public class PerfRulesEngineTest {
         datums.clear();
     }
 
-    private void perfThreshold(String test, int nDefinitions, int nData, int nQueue) throws Exception {
+    protected void perfThreshold(String test, int nDefinitions, int nData, int nQueue) throws Exception {
         List definitions = new ArrayList();
 
         for (int i = 0; i < nDefinitions; i++) {
@@ -356,6 +363,45 @@ public class PerfRulesEngineTest {
 
     }
 
+    /*
+        Reload latency of a single Trigger (remove its facts and add them again) against the working memory size.
+     */
+    protected void perfReload(String test, int nDefinitions, int nReloads) throws Exception {
+        List definitions = new ArrayList();
+
+        for (int i = 0; i < nDefinitions; i++) {
+            Trigger tN = new Trigger("trigger-" + i, "Threshold-LT");
+            ThresholdCondition tNc1 = new ThresholdCondition("trigger-" + i,
+                                                             "NumericData-" + i,
+                                                             ThresholdCondition.Operator.LT, 10.0);
+            Dampening tNd = Dampening.forStrict("trigger-" + i, Trigger.Mode.FIRING, 2);
+            tN.setEnabled(true);
+            definitions.add(tN);
+            definitions.add(tNc1);
+            definitions.add(tNd);
+        }
+
+        rulesEngine.addFacts(definitions);
+
+        int step = Math.max(1, nDefinitions / nReloads);
+
+        long start = System.currentTimeMillis();
+
+        for (int i = 0; i < nReloads; i++) {
+            int n = (i * step) % nDefinitions;
+            boolean removed = rulesEngine.removeTriggerFacts(null, "trigger-" + n);
+            assert removed : "trigger-" + n;
+            rulesEngine.addFact(definitions.get(n * 3));
+            rulesEngine.addFact(definitions.get(n * 3 + 1));
+            rulesEngine.addFact(definitions.get(n * 3 + 2));
+        }
+
+        long stop = System.currentTimeMillis();
+
+        log.info("Report: " + test + " -- Definitions: " + nDefinitions + " -- Reloads: " + nReloads + " -- " +
+                         "Total: " + (stop - start) + " ms -- Avg: " + ((double) (stop - start) / nReloads) + " ms ");
+    }
+
     private void report(String description, int numDefinitions, int numData, long start, long stop) {
         log.info("Report: " + description + " -- Definitions: " + numDefinitions + " -- Data: " + numData + " -- " +
                          "Total: " + (stop - start) + " ms ");
@@ -509,6 +555,21 @@ public class PerfRulesEngineTest {
         perfCompare("perf022AvailabilityQueue", 1000, 1000, 10);
     }
 
+    @Test
+    public void perf023ReloadSmall() throws Exception {
+        perfReload("perf023ReloadSmall", 1000, 1000);
+    }
+
+    @Test
+    public void perf024ReloadMedium() throws Exception {
+        perfReload("perf024ReloadMedium", 10000, 1000);
+    }
+
+    @Test
+    public void perf025ReloadLarge() throws Exception {
+        perfReload("perf025ReloadLarge", 50000, 1000);
+    }
+
     public class PerfLogger extends Logger {
 
         public PerfLogger(String name) {
@@ -17,6 +17,9 @@
 package org.hawkular.alerts.engine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -68,13 +71,17 @@ import com.google.gson.GsonBuilder;
 public class RulesEngineTest {
     private static final Logger log = Logger.getLogger(RulesEngineTest.class);
 
-    RulesEngine rulesEngine = new DroolsRulesEngineImpl();
+    RulesEngine rulesEngine = createRulesEngine();
     List<Alert> alerts = new ArrayList<>();
     Set<Dampening> pendingTimeouts = new HashSet<>();
     Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
     Set<Trigger> disabledTriggers = new CopyOnWriteArraySet<>();
     Set<Data> datums = new HashSet<Data>();
 
+    protected RulesEngine createRulesEngine() {
+        return new DroolsRulesEngineImpl();
+    }
+
     @Before
     public void before() {
         rulesEngine.addGlobal("log", log);
@@ -231,6 +238,63 @@ public class RulesEngineTest {
         assertEquals(e.getCondition().toString(), "NumericData-01", e.getCondition().getDataId());
     }
 
+    @Test
+    public void tenantScopedDataTest() {
+        // same dataId on two tenants, data of a tenant is only evaluated by its conditions
+        Trigger t1 = new Trigger("trigger-1", "Threshold-GT-TenantA");
+        t1.setTenantId("tenantA");
+        ThresholdCondition t1c1 = new ThresholdCondition("trigger-1", 1, 1,
+                "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0);
+        t1c1.setTenantId("tenantA");
+        Trigger t2 = new Trigger("trigger-2", "Threshold-GT-TenantB");
+        t2.setTenantId("tenantB");
+        ThresholdCondition t2c1 = new ThresholdCondition("trigger-2", 1, 1,
+                "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0);
+        t2c1.setTenantId("tenantB");
+        // data not scoped to a tenant is evaluated by the conditions of any tenant
+        Trigger t3 = new Trigger("trigger-3", "Threshold-GT-TenantB");
+        t3.setTenantId("tenantB");
+        ThresholdCondition t3c1 = new ThresholdCondition("trigger-3", 1, 1,
+                "NumericData-02",
+                ThresholdCondition.Operator.GT, 10.0);
+        t3c1.setTenantId("tenantB");
+
+        NumericData d1 = new NumericData("NumericData-01", 1, 15.0);
+        d1.setTenantId("tenantA");
+        NumericData d2 = new NumericData("NumericData-01", 1, 5.0);
+        d2.setTenantId("tenantB");
+        datums.add(d1);
+        datums.add(d2);
+        datums.add(new NumericData("NumericData-02", 1, 20.0));
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+        t3.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+        rulesEngine.addFact(t3);
+        rulesEngine.addFact(t3c1);
+
+        rulesEngine.addData(datums);
+
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 2, alerts.size());
+        Collections.sort(alerts, (Alert a1, Alert a2) -> a1.getTriggerId().compareTo(a2.getTriggerId()));
+
+        Alert a = alerts.get(0);
+        assertEquals("trigger-1", a.getTriggerId());
+        assertEquals(a.getEvalSets().toString(), 1, a.getEvalSets().size());
+        ThresholdConditionEval e = (ThresholdConditionEval) a.getEvalSets().get(0).iterator().next();
+        assertEquals(15.0, e.getValue(), 0);
+        assertEquals("trigger-3", alerts.get(1).getTriggerId());
+    }
+
     @Test
     public void thresholdRangeTest() {
         Trigger t1 = new Trigger("trigger-1", "NumericData-01-");
@@ -1210,6 +1274,70 @@ public class RulesEngineTest {
         assertEquals("NumericData-02", e2.getCondition().getDataId());
     }
 
+    @Test
+    public void multipleDataPerIdTest() {
+        Trigger t1 = new Trigger("trigger-1", "Busy-Metric");
+        ThresholdCondition t1c1 = new ThresholdCondition("trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0);
+        Dampening t1d = Dampening.forStrict("trigger-1", Mode.FIRING, 3);
+
+        Trigger t2 = new Trigger("trigger-2", "Two-Conditions");
+        ThresholdCondition t2c1 = new ThresholdCondition("trigger-2", 2, 1, "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0);
+        ThresholdCondition t2c2 = new ThresholdCondition("trigger-2", 2, 2, "NumericData-02",
+                ThresholdCondition.Operator.GT, 100.0);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+        rulesEngine.addFact(t2c2);
+
+        // A busy metric reported 60 times in the same batch, in blocks of (15, 15, 15, 5). Every block satisfies
+        // the strict dampening of trigger-1 once.  All the datums must be applied in timestamp order.
+        for (int i = 1; i <= 60; i++) {
+            datums.add(new NumericData("NumericData-01", i, (i % 4 == 0) ? 5.0 : 15.0));
+        }
+        // Only the oldest NumericData-02 is processed together with the oldest NumericData-01, so the tuple
+        // (eval(d1,t4), eval(d2,t2)) is the first one that matches for trigger-2
+        datums.add(new NumericData("NumericData-02", 1, 50.0));
+        datums.add(new NumericData("NumericData-02", 2, 150.0));
+
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        List<Alert> t1Alerts = new ArrayList<>();
+        List<Alert> t2Alerts = new ArrayList<>();
+        for (Alert a : alerts) {
+            ("trigger-1".equals(a.getTriggerId()) ? t1Alerts : t2Alerts).add(a);
+        }
+
+        assertEquals(t1Alerts.toString(), 15, t1Alerts.size());
+        long expectedTimestamp = 1;
+        for (Alert a : t1Alerts) {
+            assertEquals(3, a.getEvalSets().size());
+            for (Set<ConditionEval> evalSet : a.getEvalSets()) {
+                assertEquals(1, evalSet.size());
+                ConditionEval e = evalSet.iterator().next();
+                assertTrue(e.isMatch());
+                assertEquals(expectedTimestamp++, e.getDataTimestamp());
+            }
+            // skip the non-matching datum of the block
+            expectedTimestamp++;
+        }
+
+        assertEquals(t2Alerts.toString(), 15, t2Alerts.size());
+        Set<ConditionEval> evals = t2Alerts.get(0).getEvalSets().get(0);
+        assertEquals(2, evals.size());
+        for (ConditionEval e : evals) {
+            assertEquals(e.toString(), e.getConditionSetIndex() == 1 ? 4 : 2, e.getDataTimestamp());
+        }
+    }
+
     @Test
     public void autoResolveTest() {
         // The single trigger has definitions for both FIRING and AUTORESOLVE modes
@@ -1349,4 +1477,58 @@ public class RulesEngineTest {
         assertTrue(rulesEngine.getFact(jsonfmt1c2) != null);
         assertTrue(rulesEngine.getFact(jsonfmt1c2eval) != null);
     }
+
+    @Test
+    public void removeTriggerFactsTest() {
+        Trigger t1 = new Trigger("trigger-1", "Threshold-LT");
+        ThresholdCondition t1c1 = new ThresholdCondition("trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0);
+        Trigger t2 = new Trigger("trigger-2", "Avail-DOWN");
+        AvailabilityCondition t2c1 = new AvailabilityCondition("trigger-2", "AvailData-01",
+                AvailabilityCondition.Operator.DOWN);
+        Dampening t2d = Dampening.forStrict("trigger-2", Mode.FIRING, 2);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+        rulesEngine.addFact(t2d);
+
+        datums.add(new NumericData("NumericData-01", 1, 5.0));
+        datums.add(new Availability("AvailData-01", 1, AvailabilityType.DOWN));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals("trigger-1", alerts.get(0).getTriggerId());
+
+        // trigger-1 has a default dampening inserted on evaluation, it must be removed as well
+        assertTrue(rulesEngine.removeTriggerFacts(null, "trigger-1"));
+        assertNull(rulesEngine.getFact(t1));
+        assertNull(rulesEngine.getFact(t1c1));
+        assertNull(rulesEngine.getFact(Dampening.forStrict("trigger-1", Mode.FIRING, 1)));
+        assertFalse(rulesEngine.removeTriggerFacts(null, "trigger-1"));
+
+        assertNotNull(rulesEngine.getFact(t2));
+        assertNotNull(rulesEngine.getFact(t2c1));
+        assertNotNull(rulesEngine.getFact(t2d));
+
+        // reload trigger-1 with a different threshold, the new definition must be the one evaluated
+        t1c1 = new ThresholdCondition("trigger-1", "NumericData-01", ThresholdCondition.Operator.LT, 1.0);
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+
+        alerts.clear();
+        datums.clear();
+        datums.add(new NumericData("NumericData-01", 2, 5.0));
+        datums.add(new Availability("AvailData-01", 2, AvailabilityType.DOWN));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals("trigger-2", alerts.get(0).getTriggerId());
+    }
 }
@@ -42,6 +42,7 @@ import javax.ws.rs.core.UriInfo;
 import org.hawkular.accounts.api.model.Persona;
 import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.data.MixedData;
 import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.Pager;
@@ -272,7 +273,10 @@ public class AlertsHandler {
             if (isEmpty(mixedData)) {
                 return ResponseUtil.badRequest("Data is empty");
             } else {
-                alertsEngine.sendData(mixedData.asCollection());
+                // data sent by a persona is only evaluated by the triggers of its tenant
+                Collection<Data> data = mixedData.asCollection();
+                data.forEach(d -> d.setTenantId(persona.getId()));
+                alertsEngine.sendData(data);
                 log.debugf("MixedData: %s ", mixedData);
                 return ResponseUtil.ok();
             }
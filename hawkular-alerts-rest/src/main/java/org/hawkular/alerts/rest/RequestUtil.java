@@ -40,6 +40,7 @@ public class RequestUtil {
         String perPageS = params.getFirst("per_page");
         List<String> sort = params.get("sort");
         List<String> order = params.get("order");
+        String continuation = params.getFirst("continuation");
 
         int page = pageS == null ? 0 : Integer.parseInt(pageS);
         int perPage = perPageS == null ? PageContext.UNLIMITED_PAGE_SIZE : Integer.parseInt(perPageS);
@@ -60,6 +61,6 @@ public class RequestUtil {
             }
         }
 
-        return new Pager(page, perPage, ordering);
+        return new Pager(page, perPage, ordering, continuation);
     }
 }
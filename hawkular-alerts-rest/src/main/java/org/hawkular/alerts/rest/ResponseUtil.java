@@ -104,6 +104,10 @@ public class ResponseUtil {
             int nextPage = page + 1;
             uriBuilder = uriInfo.getRequestUriBuilder(); // adds ?q, ?per_page, ?page, etc. if needed
             uriBuilder.replaceQueryParam("page", nextPage);
+            // the next page continues after the last element of this one, when the results support it
+            if (pc.getContinuationToken() != null) {
+                uriBuilder.replaceQueryParam("continuation", pc.getContinuationToken());
+            }
 
             links.add(new Link("next", uriBuilder.build().toString()));
         }
@@ -112,6 +116,7 @@ public class ResponseUtil {
             int prevPage = page - 1;
             uriBuilder = uriInfo.getRequestUriBuilder(); // adds ?q, ?per_page, ?page, etc. if needed
             uriBuilder.replaceQueryParam("page", prevPage);
+            uriBuilder.replaceQueryParam("continuation");
             links.add(new Link("prev", uriBuilder.build().toString()));
         }
 
@@ -124,6 +129,7 @@ public class ResponseUtil {
 
             uriBuilder = uriInfo.getRequestUriBuilder(); // adds ?q, ?per_page, ?page, etc. if needed
             uriBuilder.replaceQueryParam("page", lastPage);
+            uriBuilder.replaceQueryParam("continuation");
             links.add(new Link("last", uriBuilder.build().toString()));
         }
 